@@ -0,0 +1,51 @@
+package com.raven.api;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Reads and writes request/response entities as CBOR or Smile
+ */
+@Provider
+@Produces({WireFormat.APPLICATION_CBOR, WireFormat.APPLICATION_SMILE})
+@Consumes({WireFormat.APPLICATION_CBOR, WireFormat.APPLICATION_SMILE})
+public class BinaryJacksonProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+    
+    @Inject
+    WireFormatMappers mappers;
+    
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return WireFormat.binaryFormatOf(mediaType) != null;
+    }
+    
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        var mapper = mappers.mapperFor(WireFormat.binaryFormatOf(mediaType));
+        return mapper.readValue(entityStream, mapper.constructType(genericType != null ? genericType : type));
+    }
+    
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return WireFormat.binaryFormatOf(mediaType) != null;
+    }
+    
+    @Override
+    public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        mappers.mapperFor(WireFormat.binaryFormatOf(mediaType)).writeValue(entityStream, entity);
+    }
+}
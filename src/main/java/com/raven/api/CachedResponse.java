@@ -0,0 +1,289 @@
+package com.raven.api;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import io.vertx.core.buffer.Buffer;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.jboss.logging.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Immutable, pre-encoded response body (JSON or a binary wire format) with
+ * identity, gzip and brotli variants and a strong ETag derived from the identity bytes.
+ * The buffers are shared by all requests and written as-is by {@link CachedResponseWriter}.
+ */
+public final class CachedResponse {
+    
+    private static final Logger LOG = Logger.getLogger(CachedResponse.class);
+    
+    static final String GZIP = "gzip";
+    static final String BROTLI = "br";
+    
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String VARY = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+    
+    private final String tag;
+    private final MediaType mediaType;
+    private final Body identity;
+    private final Body gzip;
+    private final Body brotli; // null when brotli is unavailable on this platform
+    private final Map<String, String> headers; // sent with 200 and 304
+    private final long createdAtMillis;
+    
+    private CachedResponse(String tag, MediaType mediaType, Body identity, Body gzip, Body brotli,
+                           Map<String, String> headers, long createdAtMillis) {
+        this.tag = tag;
+        this.mediaType = mediaType;
+        this.identity = identity;
+        this.gzip = gzip;
+        this.brotli = brotli;
+        this.headers = headers;
+        this.createdAtMillis = createdAtMillis;
+    }
+    
+    /**
+     * Encode a JSON body once into all supported content codings
+     * 
+     * @param json The identity JSON bytes
+     * @return CachedResponse
+     */
+    public static CachedResponse encode(byte[] json) {
+        return encode(json, MediaType.APPLICATION_JSON_TYPE);
+    }
+    
+    /**
+     * Encode a body once into all supported content codings
+     * 
+     * @param data The identity bytes
+     * @param mediaType The media type of the body
+     * @return CachedResponse
+     */
+    public static CachedResponse encode(byte[] data, MediaType mediaType) {
+        return new CachedResponse(
+            sha256Hex(data),
+            mediaType,
+            new Body(Buffer.buffer(data)),
+            new Body(Buffer.buffer(gzip(data))),
+            brotli(data),
+            Map.of(),
+            System.currentTimeMillis()
+        );
+    }
+    
+    /**
+     * The same body, sent with one more response header (e.g. the catalog
+     * sequence it was encoded from)
+     */
+    public CachedResponse withHeader(String name, String value) {
+        Map<String, String> withHeader = new LinkedHashMap<>(headers);
+        withHeader.put(name, value);
+        return new CachedResponse(tag, mediaType, identity, gzip, brotli, Map.copyOf(withHeader), createdAtMillis);
+    }
+    
+    /**
+     * Build the response for a request: 304 when the client already holds this
+     * body, otherwise 200 with the best content coding the client accepts
+     * 
+     * @param ifNoneMatch The If-None-Match request header (may be null)
+     * @param acceptEncoding The Accept-Encoding request header (may be null)
+     * @return Response
+     */
+    public Response toResponse(String ifNoneMatch, String acceptEncoding) {
+        String encoding = selectEncoding(acceptEncoding);
+        String etag = etag(encoding);
+        
+        if (matches(ifNoneMatch)) {
+            Response.ResponseBuilder builder = Response.notModified()
+                .header(HttpHeaders.ETAG, etag)
+                .header(HttpHeaders.VARY, VARY)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache");
+            headers.forEach(builder::header);
+            return builder.build();
+        }
+        
+        Response.ResponseBuilder builder = Response.ok(body(encoding), mediaType)
+            .header(HttpHeaders.ETAG, etag)
+            .header(HttpHeaders.VARY, VARY)
+            .header(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (encoding != null) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        headers.forEach(builder::header);
+        return builder.build();
+    }
+    
+    /**
+     * Check an If-None-Match header against this body. Tags of the other
+     * content codings of the same body also match.
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*")) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            int dash = value.indexOf('-');
+            if (dash > 0) {
+                value = value.substring(0, dash);
+            }
+            if (value.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Pick the content coding for an Accept-Encoding header: brotli, then gzip,
+     * then identity (null). Codings with q=0 are ignored.
+     */
+    String selectEncoding(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return null;
+        }
+        boolean acceptsGzip = false;
+        boolean acceptsBrotli = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            if (isRefused(params)) {
+                continue;
+            }
+            if (coding.equals(BROTLI)) {
+                acceptsBrotli = true;
+            } else if (coding.equals(GZIP)) {
+                acceptsGzip = true;
+            } else if (coding.equals("*")) {
+                acceptsBrotli = true;
+                acceptsGzip = true;
+            }
+        }
+        if (acceptsBrotli && brotli != null) {
+            return BROTLI;
+        }
+        return acceptsGzip ? GZIP : null;
+    }
+    
+    public String getTag() {
+        return tag;
+    }
+    
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+    
+    /**
+     * A copy of the identity bytes
+     */
+    public byte[] getBytes() {
+        return identity.getBuffer().getBytes();
+    }
+    
+    /**
+     * Size in bytes of the body for a content coding (null for identity)
+     */
+    public int size(String encoding) {
+        return body(encoding).getBuffer().length();
+    }
+    
+    private Body body(String encoding) {
+        if (BROTLI.equals(encoding)) {
+            return brotli;
+        }
+        return GZIP.equals(encoding) ? gzip : identity;
+    }
+    
+    private String etag(String encoding) {
+        return encoding == null ? "\"" + tag + "\"" : "\"" + tag + "-" + encoding + "\"";
+    }
+    
+    private static boolean isRefused(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to gzip response body", e);
+        }
+        return out.toByteArray();
+    }
+    
+    private static Body brotli(byte[] data) {
+        if (!Brotli4jLoader.isAvailable()) {
+            LOG.debugf("Brotli not available, serving gzip only: %s", Brotli4jLoader.getUnavailabilityCause());
+            return null;
+        }
+        try {
+            return new Body(Buffer.buffer(Encoder.compress(data, new Encoder.Parameters().setQuality(11))));
+        } catch (IOException e) {
+            LOG.warn("Failed to brotli-compress response body, serving gzip only", e);
+            return null;
+        }
+    }
+    
+    private static String sha256Hex(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            char[] chars = new char[32];
+            for (int i = 0; i < 16; i++) {
+                chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Response entity wrapping a shared, read-only buffer
+     */
+    public static final class Body {
+        private final Buffer buffer;
+        
+        Body(Buffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        public Buffer getBuffer() {
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.raven.api;
+
+import io.vertx.ext.web.RoutingContext;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.Provider;
+import org.jboss.resteasy.reactive.server.core.ResteasyReactiveRequestContext;
+import org.jboss.resteasy.reactive.server.spi.ResteasyReactiveResourceInfo;
+import org.jboss.resteasy.reactive.server.spi.ServerMessageBodyWriter;
+import org.jboss.resteasy.reactive.server.spi.ServerRequestContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes {@link CachedResponse.Body} entities by handing the shared Vert.x
+ * buffer straight to the HTTP response, without copying it into a byte[]
+ */
+@Provider
+public class CachedResponseWriter implements ServerMessageBodyWriter<CachedResponse.Body> {
+    
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, ResteasyReactiveResourceInfo target, MediaType mediaType) {
+        return CachedResponse.Body.class.equals(type);
+    }
+    
+    @Override
+    public void writeResponse(CachedResponse.Body body, Type genericType, ServerRequestContext context) {
+        // The Vert.x request is reached through the request, not the response
+        if (context instanceof ResteasyReactiveRequestContext requestContext) {
+            RoutingContext routingContext = requestContext.serverRequest().unwrap(RoutingContext.class);
+            if (routingContext != null) {
+                routingContext.response().end(body.getBuffer());
+                return;
+            }
+        }
+        context.serverResponse().end(body.getBuffer().getBytes());
+    }
+    
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return CachedResponse.Body.class.equals(type);
+    }
+    
+    @Override
+    public void writeTo(CachedResponse.Body body, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+                        OutputStream entityStream) throws IOException {
+        entityStream.write(body.getBuffer().getBytes());
+    }
+}
@@ -0,0 +1,61 @@
+package com.raven.api;
+
+import com.raven.catalog.CatalogChangeLog;
+import com.raven.metrics.Instrumented;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.logging.Logger;
+
+/**
+ * REST API for catalog synchronization
+ */
+@Path("/api/catalog")
+@Produces({MediaType.APPLICATION_JSON, WireFormat.APPLICATION_CBOR, WireFormat.APPLICATION_SMILE})
+@RunOnVirtualThread
+@Instrumented
+@Tag(name = "Catalog", description = "Catalog synchronization endpoints")
+public class CatalogResource {
+    
+    private static final Logger LOG = Logger.getLogger(CatalogResource.class);
+    
+    @Inject
+    CatalogChangeLog changeLog;
+    
+    @GET
+    @Path("/changes")
+    @Operation(summary = "Get catalog changes", description = "Retrieve the category and product changes "
+        + "(including deletions) after a catalog sequence. When resync is true the client must download "
+        + "the full catalog and continue from the lower X-Catalog-Seq header of GET /api/categories and "
+        + "GET /api/products, not from the returned seq: the lists may not hold the latest changes yet")
+    public Response getChanges(@QueryParam("since") Long since) {
+        try {
+            if (since == null || since < 0) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("Query parameter 'since' must be a non-negative sequence"))
+                    .build();
+            }
+            
+            return Response.ok(changeLog.changesSince(since)).build();
+            
+        } catch (Exception e) {
+            LOG.errorf(e, "Error getting catalog changes since: %d", since);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(new ErrorResponse("Failed to retrieve catalog changes"))
+                .build();
+        }
+    }
+    
+    // Error response class
+    public static class ErrorResponse {
+        public String message;
+        
+        public ErrorResponse(String message) {
+            this.message = message;
+        }
+    }
+}
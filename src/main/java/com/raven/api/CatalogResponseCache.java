@@ -0,0 +1,162 @@
+package com.raven.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.raven.catalog.CatalogCache;
+import com.raven.catalog.CatalogChange;
+import com.raven.catalog.CatalogListener;
+import com.raven.catalog.CatalogSnapshot;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Cache of the pre-serialized, pre-compressed catalog list responses, one
+ * body per wire format, encoded from the shared catalog. Bodies are built
+ * on first request after each change to their list, whether made here or,
+ * once the catalog is loaded again, through another instance. Each body is
+ * sent with the sequence of the catalog it was encoded from, which a client
+ * resumes GET /api/catalog/changes from.
+ */
+@ApplicationScoped
+public class CatalogResponseCache implements CatalogListener {
+    
+    private static final Logger LOG = Logger.getLogger(CatalogResponseCache.class);
+    
+    /**
+     * Response header with the catalog sequence of a list body: every change
+     * up to it is in the list
+     */
+    public static final String SEQUENCE_HEADER = "X-Catalog-Seq";
+    
+    @Inject
+    CatalogCache catalogCache;
+    
+    @Inject
+    WireFormatMappers mappers;
+    
+    private final Map<WireFormat, Entry> categories = entries("categories");
+    private final Map<WireFormat, Entry> products = entries("products");
+    
+    void onStart(@Observes StartupEvent event) {
+        catalogCache.listen(this);
+    }
+    
+    /**
+     * Cached JSON body of GET /api/categories
+     */
+    public CachedResponse categories() {
+        return categories(WireFormat.JSON);
+    }
+    
+    /**
+     * Cached body of GET /api/categories in a wire format
+     */
+    public CachedResponse categories(WireFormat format) {
+        return categories.get(format).get(CatalogSnapshot::getCategories);
+    }
+    
+    /**
+     * Cached JSON body of GET /api/products
+     */
+    public CachedResponse products() {
+        return products(WireFormat.JSON);
+    }
+    
+    /**
+     * Cached body of GET /api/products in a wire format
+     */
+    public CachedResponse products(WireFormat format) {
+        return products.get(format).get(CatalogSnapshot::getProducts);
+    }
+    
+    @Override
+    public void loaded(CatalogSnapshot previous, CatalogSnapshot catalog) {
+        categories.values().forEach(Entry::invalidate);
+        products.values().forEach(Entry::invalidate);
+    }
+    
+    @Override
+    public void changed(CatalogSnapshot catalog, CatalogChange change) {
+        entries(change.getEntityType()).values().forEach(Entry::invalidate);
+    }
+    
+    private Map<WireFormat, Entry> entries(CatalogChange.EntityType type) {
+        return type == CatalogChange.EntityType.CATEGORY ? categories : products;
+    }
+    
+    private Map<WireFormat, Entry> entries(String name) {
+        Map<WireFormat, Entry> entries = new EnumMap<>(WireFormat.class);
+        for (WireFormat format : WireFormat.values()) {
+            entries.put(format, new Entry(name, format));
+        }
+        return entries;
+    }
+    
+    private final class Entry {
+        private final String name;
+        private final WireFormat format;
+        private final AtomicLong generation = new AtomicLong();
+        // A lock rather than a monitor: the first rebuild may load the catalog
+        // from DynamoDB and would otherwise pin the calling virtual thread
+        private final ReentrantLock rebuildLock = new ReentrantLock();
+        private volatile CachedResponse cached;
+        
+        Entry(String name, WireFormat format) {
+            this.name = name;
+            this.format = format;
+        }
+        
+        CachedResponse get(Function<CatalogSnapshot, Object> list) {
+            CachedResponse current = cached;
+            if (current != null) {
+                return current;
+            }
+            rebuildLock.lock();
+            try {
+                current = cached;
+                if (current != null) {
+                    return current;
+                }
+                
+                long startGeneration = generation.get();
+                CatalogSnapshot catalog = catalogCache.catalog();
+                CachedResponse built = encode(list.apply(catalog))
+                    .withHeader(SEQUENCE_HEADER, Long.toString(catalog.getSequence()));
+                
+                // Don't keep a body that a concurrent change already made stale
+                if (generation.get() == startGeneration) {
+                    cached = built;
+                }
+                
+                LOG.infof("Rebuilt cached %s %s response at sequence %d: %d bytes, %d gzip, ETag %s",
+                    name, format, catalog.getSequence(), built.size(null), built.size(CachedResponse.GZIP),
+                    built.getTag());
+                return built;
+            } finally {
+                rebuildLock.unlock();
+            }
+        }
+        
+        void invalidate() {
+            generation.incrementAndGet();
+            cached = null;
+            LOG.debugf("Invalidated cached %s response", name);
+        }
+        
+        private CachedResponse encode(Object body) {
+            try {
+                return CachedResponse.encode(mappers.mapperFor(format).writeValueAsBytes(body), format.getMediaType());
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Failed to serialize cached " + name + " response", e);
+            }
+        }
+    }
+}
@@ -1,24 +1,28 @@
 
 package com.raven.api;
 
+import com.raven.metrics.Instrumented;
 import com.raven.model.Category;
 import com.raven.repository.CategoryRepository;
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.jboss.logging.Logger;
 
-import java.util.List;
-
 /**
  * REST API for Category management
  */
 @Path("/api/categories")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, WireFormat.APPLICATION_CBOR, WireFormat.APPLICATION_SMILE})
+@Consumes({MediaType.APPLICATION_JSON, WireFormat.APPLICATION_CBOR, WireFormat.APPLICATION_SMILE})
+@RunOnVirtualThread
+@Instrumented
 @Tag(name = "Categories", description = "Category management endpoints")
 public class CategoryResource {
     
@@ -27,12 +31,19 @@ public class CategoryResource {
     @Inject
     CategoryRepository categoryRepository;
     
+    @Inject
+    CatalogResponseCache responseCache;
+    
     @GET
-    @Operation(summary = "Get all categories", description = "Retrieve all categories from the database")
-    public Response getAllCategories() {
+    @Operation(summary = "Get all categories", description = "Retrieve all categories. The body is served from a "
+        + "pre-serialized cache (JSON, CBOR or Smile; identity, gzip or brotli) and honors If-None-Match with 304. "
+        + "X-Catalog-Seq is the catalog sequence the list was read at")
+    public Response getAllCategories(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+                                     @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+                                     @Context HttpHeaders headers) {
         try {
-            List<Category> categories = categoryRepository.findAll();
-            return Response.ok(categories).build();
+            WireFormat format = WireFormat.negotiate(headers.getAcceptableMediaTypes());
+            return responseCache.categories(format).toResponse(ifNoneMatch, acceptEncoding);
         } catch (Exception e) {
             LOG.error("Error getting all categories", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
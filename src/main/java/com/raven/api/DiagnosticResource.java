@@ -1,5 +1,7 @@
 package com.raven.api;
 
+import com.raven.config.DynamoDbConcurrencyLimiter;
+import com.raven.diagnostics.VirtualThreadPinningMonitor;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
@@ -35,6 +37,12 @@ public class DiagnosticResource {
     @Inject
     DynamoDbClient dynamoDbClient;
     
+    @Inject
+    DynamoDbConcurrencyLimiter concurrencyLimiter;
+    
+    @Inject
+    VirtualThreadPinningMonitor pinningMonitor;
+    
     @ConfigProperty(name = "quarkus.dynamodb.aws.region", defaultValue = "eu-central-1")
     String awsRegion;
     
@@ -282,6 +290,37 @@ public class DiagnosticResource {
         return Response.ok(results).build();
     }
     
+    /**
+     * Virtual thread execution: DynamoDB concurrency limiter state and
+     * carrier-thread pinning detected through JFR
+     */
+    @GET
+    @Path("/virtual-threads")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response virtualThreads() {
+        Map<String, Object> limiter = new HashMap<>();
+        limiter.put("maxConcurrency", concurrencyLimiter.getMaxConcurrency());
+        limiter.put("inFlight", concurrencyLimiter.getInFlight());
+        limiter.put("queued", concurrencyLimiter.getQueued());
+        limiter.put("waitedTotal", concurrencyLimiter.getWaited());
+        limiter.put("rejectedTotal", concurrencyLimiter.getRejected());
+        
+        Map<String, Object> pinning = new HashMap<>();
+        pinning.put("active", pinningMonitor.isActive());
+        pinning.put("unavailableReason", pinningMonitor.getUnavailableReason());
+        pinning.put("thresholdMillis", pinningMonitor.getThreshold().toMillis());
+        pinning.put("pinnedCount", pinningMonitor.getPinnedCount());
+        pinning.put("pinnedTotalMillis", pinningMonitor.getPinnedTotal().toMillis());
+        pinning.put("recent", pinningMonitor.getRecent());
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("javaVersion", Runtime.version().toString());
+        result.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        result.put("dynamoDbLimiter", limiter);
+        result.put("pinning", pinning);
+        return Response.ok(result).build();
+    }
+    
     /**
      * Masks credential for logging (shows first 4 and last 4 characters)
      */
@@ -0,0 +1,71 @@
+package com.raven.api;
+
+import com.raven.metrics.Instrumented;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.logging.Logger;
+
+/**
+ * REST API for the menu of a channel, to bootstrap an app in one request
+ */
+@Path("/api/menu")
+@Produces({MediaType.APPLICATION_JSON, WireFormat.APPLICATION_CBOR, WireFormat.APPLICATION_SMILE})
+@RunOnVirtualThread
+@Instrumented
+@Tag(name = "Menu", description = "Menu bootstrap endpoint")
+public class MenuResource {
+    
+    private static final Logger LOG = Logger.getLogger(MenuResource.class);
+    
+    @Inject
+    MenuResponseCache menuCache;
+    
+    @GET
+    @Operation(summary = "Get the menu of a channel", description = "Retrieve the categories by sortOrder, each with "
+        + "its products visible on the channel (pos or app, in any case), in one request. The body is built from "
+        + "the in-memory catalog once per change and served from memory (JSON, CBOR or Smile; identity, gzip or "
+        + "brotli), and honors If-None-Match with 304")
+    public Response getMenu(@QueryParam("channel") String channel,
+                            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+                            @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+                            @Context HttpHeaders headers) {
+        if (channel == null || channel.isBlank()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse("Query parameter channel is required: pos or app"))
+                .build();
+        }
+        try {
+            WireFormat format = WireFormat.negotiate(headers.getAcceptableMediaTypes());
+            return menuCache.menu(channel, format).toResponse(ifNoneMatch, acceptEncoding);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
+        } catch (Exception e) {
+            LOG.errorf(e, "Error getting the %s menu", channel);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(new ErrorResponse("Failed to retrieve menu"))
+                .build();
+        }
+    }
+    
+    // Error response class
+    public static class ErrorResponse {
+        public String message;
+        
+        public ErrorResponse(String message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.raven.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.raven.catalog.CatalogCache;
+import com.raven.catalog.CatalogChange;
+import com.raven.catalog.CatalogListener;
+import com.raven.catalog.CatalogSnapshot;
+import com.raven.catalog.ProductFilter;
+import com.raven.model.Category;
+import com.raven.model.Menu;
+import com.raven.model.MenuCategory;
+import com.raven.model.Product;
+import com.raven.model.VisibleOn;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pre-serialized, pre-compressed menu of each channel (GET /api/menu), one
+ * body per wire format, so an app starts with one request served from
+ * memory. The menus are built together from the shared catalog when it is
+ * loaded; a local catalog change drops them at once, and the next request
+ * builds them again, so a menu never lags behind the catalog.
+ */
+@ApplicationScoped
+public class MenuResponseCache implements CatalogListener {
+    
+    private static final Logger LOG = Logger.getLogger(MenuResponseCache.class);
+    private static final Comparator<Category> BY_SORT_ORDER = Comparator
+        .comparing(Category::getSortOrder, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(Category::getName, Comparator.nullsLast(Comparator.naturalOrder()));
+    private static final Comparator<Product> BY_NAME = Comparator
+        .comparing(Product::getName, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(Product::getId);
+    
+    @Inject
+    CatalogCache catalogCache;
+    
+    @Inject
+    WireFormatMappers mappers;
+    
+    // Serializes the builds, so concurrent requests after a change build the
+    // menus once. A lock rather than a monitor: a build may load the catalog
+    // from DynamoDB and would otherwise pin the calling virtual thread.
+    private final ReentrantLock buildLock = new ReentrantLock();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Map<String, Map<WireFormat, CachedResponse>> menus; // by channel, null until (re)built
+    
+    void onStart(@Observes StartupEvent event) {
+        catalogCache.listen(this);
+    }
+    
+    @Override
+    public void loaded(CatalogSnapshot previous, CatalogSnapshot catalog) {
+        invalidate();
+        build(); // ready for the first request
+    }
+    
+    @Override
+    public void changed(CatalogSnapshot catalog, CatalogChange change) {
+        invalidate();
+    }
+    
+    private void invalidate() {
+        generation.incrementAndGet();
+        menus = null;
+        LOG.debug("Invalidated the menus");
+    }
+    
+    /**
+     * Cached body of GET /api/menu for a channel in a wire format
+     * 
+     * @param channel pos or app, in any case
+     * @param format The wire format
+     * @return The cached body
+     * @throws IllegalArgumentException if the channel is unknown
+     * @throws RuntimeException if the catalog is not loaded yet and can't be read from DynamoDB
+     */
+    public CachedResponse menu(String channel, WireFormat format) {
+        Map<WireFormat, CachedResponse> bodies = menus().get(channel.trim().toLowerCase(Locale.ROOT));
+        if (bodies == null) {
+            throw new IllegalArgumentException("Unknown channel: " + channel + ", expected one of "
+                + ProductFilter.CHANNELS);
+        }
+        return bodies.get(format);
+    }
+    
+    private Map<String, Map<WireFormat, CachedResponse>> menus() {
+        // Loaded first, outside the build lock: the load takes the catalog
+        // lock, then builds the menus
+        catalogCache.catalog();
+        Map<String, Map<WireFormat, CachedResponse>> current = menus;
+        if (current != null) {
+            return current;
+        }
+        buildLock.lock();
+        try {
+            // Built by another request while this one waited
+            current = menus;
+            return current != null ? current : build();
+        } finally {
+            buildLock.unlock();
+        }
+    }
+    
+    /**
+     * Build the menus of the current catalog
+     */
+    private Map<String, Map<WireFormat, CachedResponse>> build() {
+        buildLock.lock();
+        try {
+            long start = System.nanoTime();
+            long startGeneration = generation.get();
+            CatalogSnapshot catalog = catalogCache.catalog();
+            List<Category> categories = new ArrayList<>(catalog.getCategories());
+            categories.sort(BY_SORT_ORDER);
+            Map<String, List<Product>> productsByCategory = new HashMap<>();
+            for (Product product : catalog.getProducts()) {
+                productsByCategory.computeIfAbsent(product.getCategoryId(), id -> new ArrayList<>()).add(product);
+            }
+            
+            Map<String, Map<WireFormat, CachedResponse>> built = new HashMap<>();
+            for (String channel : ProductFilter.CHANNELS) {
+                Menu menu = menu(channel, catalog.getSequence(), categories, productsByCategory);
+                Map<WireFormat, CachedResponse> bodies = new EnumMap<>(WireFormat.class);
+                for (WireFormat format : WireFormat.values()) {
+                    bodies.put(format, encode(menu, format));
+                }
+                built.put(channel, bodies);
+                CachedResponse json = bodies.get(WireFormat.JSON);
+                LOG.infof("Built the %s menu: %d categories, %d bytes, %d gzip, ETag %s", channel,
+                    menu.getCategories().size(), json.size(null), json.size(CachedResponse.GZIP), json.getTag());
+            }
+            // Don't keep menus that a concurrent change already made stale
+            if (generation.get() == startGeneration) {
+                menus = built;
+            }
+            LOG.debugf("Built the menus at sequence %d in %d ms", catalog.getSequence(),
+                (System.nanoTime() - start) / 1_000_000);
+            return built;
+        } finally {
+            buildLock.unlock();
+        }
+    }
+    
+    /**
+     * The categories with at least one product visible on the channel, each
+     * with those products by name
+     */
+    private static Menu menu(String channel, long sequence, List<Category> categories,
+                             Map<String, List<Product>> productsByCategory) {
+        List<MenuCategory> sections = new ArrayList<>();
+        for (Category category : categories) {
+            List<Product> visible = new ArrayList<>();
+            for (Product product : productsByCategory.getOrDefault(category.getId(), List.of())) {
+                if (isVisible(product.getVisibleOn(), channel)) {
+                    visible.add(product);
+                }
+            }
+            if (!visible.isEmpty()) {
+                visible.sort(BY_NAME);
+                sections.add(new MenuCategory(category, visible));
+            }
+        }
+        return new Menu(channel, sequence, sections);
+    }
+    
+    private static boolean isVisible(VisibleOn visibleOn, String channel) {
+        if (visibleOn == null) {
+            return false;
+        }
+        return Boolean.TRUE.equals(channel.equals("pos") ? visibleOn.getPos() : visibleOn.getApp());
+    }
+    
+    private CachedResponse encode(Menu menu, WireFormat format) {
+        try {
+            return CachedResponse.encode(mappers.mapperFor(format).writeValueAsBytes(menu), format.getMediaType());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize the " + menu.getChannel() + " menu", e);
+        }
+    }
+}
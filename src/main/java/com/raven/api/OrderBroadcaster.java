@@ -1,35 +1,389 @@
 package com.raven.api;
 
-import com.raven.api.dto.Order;
-import io.smallrye.mutiny.Multi;
-import io.smallrye.mutiny.infrastructure.Infrastructure;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raven.model.Order;
+import com.raven.orders.OrderBook;
+import com.raven.orders.OrderEvent;
+import com.raven.orders.OrderEventBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.function.Consumer;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Fans out the order events received from the order event bus to the order stream
+ * subscribers, each through its own bounded queue. Events are routed through
+ * a subscriber index on the subscription filters (station, status, channel,
+ * source), so only interested subscribers are visited. Each distinct view
+ * of an event (the full order, or one projection per station set) is
+ * encoded once, and the same frame is written to all its subscribers.
+ * 
+ * Every event gets a stream id and is kept in a replay buffer, so a client
+ * reconnecting with Last-Event-ID receives exactly the events it missed; a
+ * client too far behind receives a snapshot of the active orders instead.
+ * 
+ * Fan-out runs on a dedicated thread, so writers never wait for it, and a
+ * periodic sweep on the same thread sends heartbeats on idle connections
+ * and evicts dead, stalled and lagging subscribers. New subscribers that
+ * need no replay are handed to that thread through a lock-free queue, so
+ * the event loop never waits for a fan-out in progress.
+ */
 @ApplicationScoped
 public class OrderBroadcaster {
-    private final ConcurrentLinkedQueue<Consumer<Order>> subscribers = new ConcurrentLinkedQueue<>();
-
-    public Multi<Order> stream() {
-        return Multi.createFrom().<Order>emitter(emitter -> {
-            Consumer<Order> consumer = emitter::emit;
-            subscribers.add(consumer);
-            emitter.onTermination(() -> subscribers.remove(consumer)); // Runnable richiesto
-        }).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    
+    private static final Logger LOG = Logger.getLogger(OrderBroadcaster.class);
+    
+    @ConfigProperty(name = "orders.stream.queue-capacity", defaultValue = "256")
+    int queueCapacity;
+    
+    @ConfigProperty(name = "orders.stream.overflow", defaultValue = "drop-oldest")
+    String overflow;
+    
+    @ConfigProperty(name = "orders.stream.replay-capacity", defaultValue = "1024")
+    int replayCapacity;
+    
+    @ConfigProperty(name = "orders.stream.batch.window", defaultValue = "0s")
+    Duration batchWindow;
+    
+    @ConfigProperty(name = "orders.stream.batch.max-events", defaultValue = "64")
+    int batchMaxEvents;
+    
+    @ConfigProperty(name = "orders.stream.heartbeat", defaultValue = "15s")
+    Duration heartbeat;
+    
+    @ConfigProperty(name = "orders.stream.write-timeout", defaultValue = "30s")
+    Duration writeTimeout;
+    
+    @ConfigProperty(name = "orders.stream.max-lag", defaultValue = "30s")
+    Duration maxLag;
+    
+    @ConfigProperty(name = "orders.stream.sweep-interval", defaultValue = "5s")
+    Duration sweepInterval;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    @Inject
+    OrderBook orderBook;
+    
+    @Inject
+    ObjectMapper objectMapper;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    OrderEventBus eventBus;
+    
+    // Serializes sequencing, fan-out and registration: a new subscriber is
+    // either given an event by the replay or by the fan-out, never both.
+    // Held by the fan-out thread while encoding, so never taken on the event loop
+    private final ReentrantLock lock = new ReentrantLock();
+    private OrderReplayBuffer replay;
+    
+    private final Map<Long, OrderSubscriber> subscribers = new ConcurrentHashMap<>();
+    private final Queue<OrderSubscriber> joining = new ConcurrentLinkedQueue<>(); // registered by the fan-out
+    private final SubscriberIndex index = new SubscriberIndex();
+    private final AtomicLong nextSubscriberId = new AtomicLong();
+    private OrderSubscriber.OverflowPolicy overflowPolicy;
+    private ThreadPoolExecutor fanOut;
+    private Counter published;
+    private final Map<OrderSubscriber.Eviction, Counter> evicted = new EnumMap<>(OrderSubscriber.Eviction.class);
+    private Timer fanOutDuration;
+    
+    @PostConstruct
+    void init() {
+        overflowPolicy = OrderSubscriber.OverflowPolicy.parse(overflow);
+        replay = new OrderReplayBuffer(replayCapacity);
+        // One thread keeps the events in order; the queue absorbs bursts
+        fanOut = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            Thread.ofPlatform().name("order-stream-fanout").daemon().factory());
+        registry.gauge("raven.stream.subscribers", subscribers, Map::size);
+        registry.gauge("raven.stream.fanout.pending", fanOut, executor -> executor.getQueue().size());
+        published = registry.counter("raven.stream.published");
+        for (OrderSubscriber.Eviction reason : OrderSubscriber.Eviction.values()) {
+            evicted.put(reason, Counter.builder("raven.stream.evicted")
+                .description("Order stream subscribers evicted by the sweep")
+                .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                .register(registry));
+        }
+        fanOutDuration = Timer.builder("raven.stream.fanout.duration")
+            .description("Time to route, encode and queue a batch of order events for all subscribers")
+            .register(registry);
     }
-
-    public void broadcast(Order order) {
-        for (Consumer<Order> s : subscribers) {
+    
+    void onStart(@Observes StartupEvent event) {
+        eventBus.subscribe(this::broadcastAll);
+        vertx.setPeriodic(sweepInterval.toMillis(), timer -> fanOut.execute(this::sweep));
+    }
+    
+    @PreDestroy
+    void stop() {
+        fanOut.shutdown();
+    }
+    
+    /**
+     * Hand a batch of events from the event bus to the fan-out thread, which
+     * broadcasts them in order without letting registrations in between
+     */
+    public void broadcastAll(List<OrderEvent> events) {
+        fanOut.execute(() -> {
+            long start = System.nanoTime();
+            lock.lock();
             try {
-                s.accept(order);
-            } catch (Throwable ignored) {
+                join();
+                events.forEach(this::broadcast);
+            } catch (RuntimeException e) {
+                LOG.errorf(e, "Error broadcasting %d order events", events.size());
+            } finally {
+                lock.unlock();
             }
+            fanOutDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+    }
+    
+    /**
+     * Assign the next stream id to an event and queue it on every subscriber
+     * whose filter matches it
+     */
+    public void broadcast(OrderEvent event) {
+        published.increment();
+        // Frames are encoded on first use, once per view: per payload mode,
+        // the full event under the empty key and station projections under
+        // their station set
+        Map<OrderStreamMode, Map<String, OrderStreamFrame>> frames = new EnumMap<>(OrderStreamMode.class);
+        int[] delivered = new int[1];
+        OrderEvent sequenced;
+        lock.lock();
+        try {
+            sequenced = replay.append(event);
+            index.forEachCandidate(sequenced, subscriber -> {
+                OrderStreamFilter filter = subscriber.getFilter();
+                if (!filter.matches(sequenced)) {
+                    return;
+                }
+                OrderStreamMode mode = modeFor(subscriber, sequenced);
+                OrderStreamFrame frame = frames.computeIfAbsent(mode, m -> new HashMap<>()).computeIfAbsent(
+                    filter.projectionKey(), key -> OrderStreamFrame.encode(filter.project(sequenced), mode, objectMapper));
+                if (subscriber.offer(frame)) {
+                    delivered[0]++;
+                } else {
+                    remove(subscriber);
+                }
+            });
+        } finally {
+            lock.unlock();
         }
+        LOG.debugf("Broadcast %s to %d of %d subscribers", sequenced, delivered[0], subscribers.size());
     }
-
+    
+    /**
+     * Register an SSE connection as a subscriber. Without a Last-Event-ID it
+     * is only queued, never waiting for the fan-out lock (it's called on the
+     * event loop): the fan-out thread registers it before the next events.
+     * 
+     * @param response The SSE response, with its headers already sent
+     * @param filter The subscription filter
+     * @param mode The payload mode
+     * @param batchWindowMillis The batch window requested by the client, or null for the configured one
+     * @param lastEventId The Last-Event-ID of a reconnecting client, or null
+     * @return The new subscriber
+     */
+    public OrderSubscriber subscribe(HttpServerResponse response, OrderStreamFilter filter, OrderStreamMode mode,
+                                     Long batchWindowMillis, String lastEventId) {
+        long id = nextSubscriberId.incrementAndGet();
+        long window = batchWindowMillis != null ? batchWindowMillis : batchWindow.toMillis();
+        OrderSubscriber subscriber = new OrderSubscriber(id, filter, mode, response, queueCapacity, overflowPolicy,
+            window, batchMaxEvents, vertx, this::remove);
+        response.closeHandler(ignored -> subscriber.close());
+        if (lastEventId == null || lastEventId.isBlank()) {
+            joining.add(subscriber);
+            fanOut.execute(() -> {
+                lock.lock();
+                try {
+                    join();
+                } finally {
+                    lock.unlock();
+                }
+            });
+            LOG.infof("Order stream subscriber %d connected with filter %s, %s mode, %d ms batches", id, filter,
+                mode, window);
+            return subscriber;
+        }
+        
+        String snapshotId;
+        lock.lock();
+        try {
+            subscribers.put(id, subscriber);
+            index.add(subscriber);
+            List<OrderStreamFrame> missed = missedEvents(subscriber, lastEventId.trim());
+            if (missed != null) {
+                missed.forEach(subscriber::offer);
+                LOG.infof("Order stream subscriber %d resumed after %s with filter %s, replayed %d events",
+                    id, lastEventId, filter, missed.size());
+                return subscriber;
+            }
+            // Live events are queued but held back until the snapshot is sent
+            subscriber.hold();
+            snapshotId = replay.lastId();
+        } finally {
+            lock.unlock();
+        }
+        
+        LOG.infof("Order stream subscriber %d can't be resumed after %s, sending a snapshot as of %s",
+            id, lastEventId, snapshotId);
+        sendSnapshot(subscriber, snapshotId);
+        return subscriber;
+    }
+    
+    /**
+     * Register the queued new subscribers, on the fan-out thread with the
+     * lock held. One whose connection closed meanwhile is left out.
+     */
+    private void join() {
+        OrderSubscriber subscriber;
+        while ((subscriber = joining.poll()) != null) {
+            if (subscriber.isClosed()) {
+                continue;
+            }
+            subscribers.put(subscriber.getId(), subscriber);
+            index.add(subscriber);
+            LOG.debugf("Order stream subscriber %d registered (%d total)", subscriber.getId(), subscribers.size());
+        }
+    }
+    
+    /**
+     * The events after lastEventId as seen by a subscriber, or null if they
+     * can't be replayed (not in the buffer, or more than the queue holds)
+     */
+    private List<OrderStreamFrame> missedEvents(OrderSubscriber subscriber, String lastEventId) {
+        OrderStreamFilter filter = subscriber.getFilter();
+        List<OrderEvent> events = replay.since(lastEventId);
+        if (events == null) {
+            return null;
+        }
+        List<OrderEvent> missed = new ArrayList<>();
+        for (OrderEvent event : events) {
+            if (filter.matches(event)) {
+                if (missed.size() == queueCapacity) {
+                    return null;
+                }
+                missed.add(event);
+            }
+        }
+        List<OrderStreamFrame> frames = new ArrayList<>(missed.size());
+        for (OrderEvent event : missed) {
+            frames.add(OrderStreamFrame.encode(filter.project(event), modeFor(subscriber, event), objectMapper));
+        }
+        return frames;
+    }
+    
+    /**
+     * Payload mode of an event for a subscriber: an order entering a
+     * filtered subscription is sent whole, since there is nothing to apply
+     * a delta to
+     */
+    private static OrderStreamMode modeFor(OrderSubscriber subscriber, OrderEvent event) {
+        return subscriber.getMode() == OrderStreamMode.DELTA && subscriber.getFilter().entered(event)
+            ? OrderStreamMode.FULL
+            : subscriber.getMode();
+    }
+    
+    /**
+     * Take the active orders from the order book and send them ahead of the
+     * live events queued since snapshotId. The book may be ahead of or
+     * behind the stream, so queued events are discarded only if the
+     * snapshot already holds their version.
+     */
+    private void sendSnapshot(OrderSubscriber subscriber, String snapshotId) {
+        OrderStreamFilter filter = subscriber.getFilter();
+        Map<String, Order> active = new HashMap<>();
+        try {
+            for (Order order : orderBook.find(null, null, null)) {
+                if (filter.accepts(order)) {
+                    active.put(order.getId(), filter.project(OrderEvent.created(order)).getOrder());
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Error loading the order stream snapshot for subscriber %d", subscriber.getId());
+            subscriber.resync();
+            return;
+        }
+        
+        OrderEvent snapshot = OrderEvent.snapshot(new ArrayList<>(active.values()), snapshotId);
+        subscriber.resume(OrderStreamFrame.encode(snapshot, objectMapper), queued -> {
+            Order current = active.get(queued.getOrderId());
+            if (queued.getType() == OrderEvent.Type.DELETED) {
+                return current == null;
+            }
+            return current != null && current.getVersion() >= queued.getOrder().getVersion();
+        });
+    }
+    
+    /**
+     * Heartbeats and evictions, run periodically on the fan-out thread
+     */
+    private void sweep() {
+        long heartbeatNanos = heartbeat.toNanos();
+        long writeTimeoutNanos = writeTimeout.toNanos();
+        long maxLagNanos = maxLag.toNanos();
+        for (OrderSubscriber subscriber : subscribers.values()) {
+            OrderSubscriber.Eviction eviction = subscriber.sweep(heartbeatNanos, writeTimeoutNanos, maxLagNanos);
+            if (eviction != null) {
+                remove(subscriber);
+                evicted.get(eviction).increment();
+            }
+        }
+    }
+    
     public int subscriberCount() {
         return subscribers.size();
     }
-}
\ No newline at end of file
+    
+    /**
+     * Per-subscriber queue depth, drops and delivery latency. Subscribers
+     * whose connection has gone away are removed.
+     */
+    public List<OrderSubscriber.Stats> stats() {
+        List<OrderSubscriber.Stats> stats = new ArrayList<>(subscribers.size());
+        for (OrderSubscriber subscriber : subscribers.values()) {
+            if (subscriber.isClosed()) {
+                remove(subscriber);
+                continue;
+            }
+            stats.add(subscriber.stats());
+        }
+        return stats;
+    }
+    
+    private void remove(OrderSubscriber subscriber) {
+        if (subscribers.remove(subscriber.getId()) != null) {
+            index.remove(subscriber);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.raven.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.raven.model.Order;
+import com.raven.orders.OrderEvent;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Compact payloads of the delta stream mode. A delta applies to the version
+ * before its own: a client holding another version has missed a change
+ * and must resync.
+ * 
+ * - STATUS_CHANGED: {"type", "id", "status", "updatedAt", "version"}
+ * - UPDATED: {"type", "id", "version", "patch"}, patch being a JSON Merge
+ *   Patch (RFC 7386) from the previous version to this one
+ * - DELETED: {"type", "id", "version"}
+ */
+final class OrderDelta {
+    
+    private OrderDelta() {
+    }
+    
+    /**
+     * The delta payload of an event
+     * 
+     * @return The payload, or null if the event must be sent whole
+     *         (creations, snapshots, or no previous version to diff against)
+     */
+    static ObjectNode of(OrderEvent event, ObjectMapper mapper) {
+        Order order = event.getOrder();
+        switch (event.getType()) {
+            case STATUS_CHANGED:
+                return header(event, mapper)
+                    .put("status", order.getStatus())
+                    .put("updatedAt", order.getUpdatedAt());
+            case UPDATED:
+                if (event.getPrevious() == null) {
+                    return null;
+                }
+                ObjectNode delta = header(event, mapper);
+                delta.set("patch", mergePatch(mapper.valueToTree(event.getPrevious()), mapper.valueToTree(order)));
+                return delta;
+            case DELETED:
+                return header(event, mapper);
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * JSON Merge Patch turning source into target. Objects are diffed
+     * recursively; any other changed value (arrays included) is replaced
+     * whole, and removed members are set to null.
+     */
+    static JsonNode mergePatch(JsonNode source, JsonNode target) {
+        if (!source.isObject() || !target.isObject()) {
+            return target;
+        }
+        ObjectNode patch = JsonNodeFactory.instance.objectNode();
+        for (Iterator<Map.Entry<String, JsonNode>> it = target.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = it.next();
+            JsonNode before = source.get(field.getKey());
+            if (before == null) {
+                patch.set(field.getKey(), field.getValue());
+            } else if (!before.equals(field.getValue())) {
+                patch.set(field.getKey(), mergePatch(before, field.getValue()));
+            }
+        }
+        for (Iterator<String> it = source.fieldNames(); it.hasNext(); ) {
+            String name = it.next();
+            if (!target.has(name)) {
+                patch.putNull(name);
+            }
+        }
+        return patch;
+    }
+    
+    private static ObjectNode header(OrderEvent event, ObjectMapper mapper) {
+        ObjectNode delta = mapper.createObjectNode();
+        delta.put("type", event.getType().name());
+        delta.put("id", event.getOrder().getId());
+        delta.put("version", event.getOrder().getVersion());
+        return delta;
+    }
+}
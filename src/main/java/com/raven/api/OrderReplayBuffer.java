@@ -0,0 +1,87 @@
+package com.raven.api;
+
+import com.raven.orders.OrderEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ring buffer of the most recent order stream events. Events are numbered
+ * by a monotonically increasing sequence and identified as
+ * {@code <epoch>-<seq>}, where the epoch changes with every start of the
+ * application, so ids issued by another process are never mistaken for ours.
+ * 
+ * Not thread-safe: guarded by the OrderBroadcaster lock.
+ */
+final class OrderReplayBuffer {
+    
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final OrderEvent[] ring;
+    private long last; // sequence of the newest event, 0 when empty
+    
+    OrderReplayBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Replay buffer capacity must be positive: " + capacity);
+        }
+        this.ring = new OrderEvent[capacity];
+    }
+    
+    /**
+     * Assign the next id to an event and keep it, evicting the oldest one
+     * when full
+     * 
+     * @return The event with its id
+     */
+    OrderEvent append(OrderEvent event) {
+        long seq = ++last;
+        OrderEvent sequenced = event.withId(idOf(seq));
+        ring[slot(seq)] = sequenced;
+        return sequenced;
+    }
+    
+    /**
+     * Id of the newest event; a client positioned here has missed nothing
+     */
+    String lastId() {
+        return idOf(last);
+    }
+    
+    /**
+     * Events published after a given id
+     * 
+     * @param lastEventId The id of the last event received by the client
+     * @return The missed events, oldest first, or null if the gap can't be
+     *         served (unknown or malformed id, or events already evicted)
+     */
+    List<OrderEvent> since(String lastEventId) {
+        long seq = parse(lastEventId);
+        if (seq < 0 || seq > last || last - seq > ring.length) {
+            return null;
+        }
+        List<OrderEvent> missed = new ArrayList<>((int) (last - seq));
+        for (long next = seq + 1; next <= last; next++) {
+            missed.add(ring[slot(next)]);
+        }
+        return missed;
+    }
+    
+    private long parse(String id) {
+        int separator = id.lastIndexOf('-');
+        if (separator < 0 || !epoch.equals(id.substring(0, separator))) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(id.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private int slot(long seq) {
+        return (int) (seq % ring.length);
+    }
+    
+    private String idOf(long seq) {
+        return epoch + "-" + seq;
+    }
+}
@@ -1,8 +1,16 @@
 
 package com.raven.api;
 
+import com.raven.metrics.Instrumented;
 import com.raven.model.Order;
+import com.raven.orders.OrderBook;
+import com.raven.orders.OrderEventBus;
+import com.raven.orders.OrderStatus;
+import com.raven.pricing.PricingUnavailableException;
+import com.raven.pricing.UnpricedItemException;
 import com.raven.repository.OrderRepository;
+import com.raven.repository.OrderTooLargeException;
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
@@ -11,15 +19,19 @@ import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.jboss.logging.Logger;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * REST API for Order management
  */
 @Path("/api/orders")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, WireFormat.APPLICATION_CBOR, WireFormat.APPLICATION_SMILE})
+@Consumes({MediaType.APPLICATION_JSON, WireFormat.APPLICATION_CBOR, WireFormat.APPLICATION_SMILE})
+@RunOnVirtualThread
+@Instrumented
 @Tag(name = "Orders", description = "Order management endpoints")
 public class OrderResource {
     
@@ -28,12 +40,25 @@ public class OrderResource {
     @Inject
     OrderRepository orderRepository;
     
+    @Inject
+    OrderBook orderBook;
+    
+    @Inject
+    OrderEventBus eventBus;
+    
     @GET
-    @Operation(summary = "Get all orders", description = "Retrieve all orders from the database")
-    public Response getAllOrders() {
+    @Operation(summary = "Get all orders", description = "Retrieve all orders from the database, "
+        + "or only the orders created after a time-ordered order ID")
+    public Response getAllOrders(@QueryParam("after") String afterId) {
         try {
-            List<Order> orders = orderRepository.findAll();
+            List<Order> orders = afterId == null || afterId.isBlank()
+                ? orderRepository.findAll()
+                : orderRepository.findCreatedAfter(afterId);
             return Response.ok(orders).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
         } catch (Exception e) {
             LOG.error("Error getting all orders", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -42,11 +67,37 @@ public class OrderResource {
         }
     }
     
+    @GET
+    @Path("/active")
+    @Operation(summary = "Get active orders", description = "Retrieve the open orders (not completed or canceled), "
+        + "oldest first, from the in-memory order book. Optional filters, repeatable or comma-separated: "
+        + "status, station (orders with at least one item for it) and channel")
+    public Response getActiveOrders(@QueryParam("status") List<String> status,
+                                    @QueryParam("station") List<String> station,
+                                    @QueryParam("channel") List<String> channel) {
+        try {
+            // e.g. kitchen: ?station=kitchen&status=NEW,IN_PROGRESS, counter: ?channel=counter&status=READY
+            List<Order> orders = orderBook.find(values(status), values(station), values(channel));
+            return Response.ok(orders).build();
+        } catch (Exception e) {
+            LOG.error("Error getting active orders", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(new ErrorResponse("Failed to retrieve orders"))
+                .build();
+        }
+    }
+    
     @GET
     @Path("/{id}")
-    @Operation(summary = "Get order by ID", description = "Retrieve a single order by its ID")
+    @Operation(summary = "Get order by ID", description = "Retrieve a single order by its ID, from the order book "
+        + "if it is open or was closed recently and the book sees the writes of every instance")
     public Response getOrderById(@PathParam("id") String id) {
         try {
+            // With the in-process bus the book misses the other instances' writes: read DynamoDB
+            Order cached = orderBook.isWarm() && eventBus.seesAllInstances() ? orderBook.get(id) : null;
+            if (cached != null) {
+                return Response.ok(cached).build();
+            }
             return orderRepository.findById(id)
                 .map(order -> Response.ok(order).build())
                 .orElse(Response.status(Response.Status.NOT_FOUND)
@@ -61,7 +112,8 @@ public class OrderResource {
     }
     
     @POST
-    @Operation(summary = "Create order", description = "Create a new order")
+    @Operation(summary = "Create order", description = "Create a new order. An order with the ID of an "
+        + "existing one is rejected with 409")
     public Response createOrder(Order order) {
         try {
             if (order == null) {
@@ -76,6 +128,12 @@ public class OrderResource {
                     .build();
             }
             
+            if (OrderStatus.of(order.getStatus()) == null) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("Invalid status: " + order.getStatus()))
+                    .build();
+            }
+            
             if (order.getItems() == null || order.getItems().isEmpty()) {
                 return Response.status(Response.Status.BAD_REQUEST)
                     .entity(new ErrorResponse("Order must have at least one item"))
@@ -85,6 +143,19 @@ public class OrderResource {
             Order created = orderRepository.create(order);
             return Response.status(Response.Status.CREATED).entity(created).build();
             
+        } catch (IllegalStateException e) {
+            return Response.status(Response.Status.CONFLICT)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
+        } catch (PricingUnavailableException e) {
+            LOG.error("Error pricing new order", e);
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .entity(new ErrorResponse("Prices are not available, try again"))
+                .build();
         } catch (Exception e) {
             LOG.error("Error creating order", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -110,6 +181,12 @@ public class OrderResource {
                     .build();
             }
             
+            if (OrderStatus.of(order.getStatus()) == null) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("Invalid status: " + order.getStatus()))
+                    .build();
+            }
+            
             if (order.getItems() == null || order.getItems().isEmpty()) {
                 return Response.status(Response.Status.BAD_REQUEST)
                     .entity(new ErrorResponse("Order must have at least one item"))
@@ -119,10 +196,23 @@ public class OrderResource {
             Order updated = orderRepository.update(id, order);
             return Response.ok(updated).build();
             
+        } catch (IllegalStateException e) {
+            return Response.status(Response.Status.CONFLICT)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
+        } catch (UnpricedItemException | OrderTooLargeException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
         } catch (IllegalArgumentException e) {
             return Response.status(Response.Status.NOT_FOUND)
                 .entity(new ErrorResponse(e.getMessage()))
                 .build();
+        } catch (PricingUnavailableException e) {
+            LOG.errorf(e, "Error pricing order: %s", id);
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .entity(new ErrorResponse("Prices are not available, try again"))
+                .build();
         } catch (Exception e) {
             LOG.errorf(e, "Error updating order: %s", id);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -133,7 +223,8 @@ public class OrderResource {
     
     @PATCH
     @Path("/{id}/status")
-    @Operation(summary = "Update order status", description = "Update only the status of an existing order")
+    @Operation(summary = "Update order status", description = "Update only the status of an existing order; "
+        + "409 if the order can't move to that status")
     public Response updateOrderStatus(@PathParam("id") String id, Map<String, String> statusUpdate) {
         try {
             String newStatus = statusUpdate.get("status");
@@ -144,9 +235,19 @@ public class OrderResource {
                     .build();
             }
             
+            if (OrderStatus.of(newStatus) == null) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("Invalid status: " + newStatus))
+                    .build();
+            }
+            
             Order updated = orderRepository.updateStatus(id, newStatus);
             return Response.ok(updated).build();
             
+        } catch (IllegalStateException e) {
+            return Response.status(Response.Status.CONFLICT)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
         } catch (IllegalArgumentException e) {
             return Response.status(Response.Status.NOT_FOUND)
                 .entity(new ErrorResponse(e.getMessage()))
@@ -182,6 +283,23 @@ public class OrderResource {
         }
     }
     
+    /**
+     * Values of a repeatable, comma-separated query parameter
+     */
+    private static Set<String> values(List<String> params) {
+        Set<String> values = new HashSet<>();
+        if (params != null) {
+            for (String param : params) {
+                for (String value : param.split(",")) {
+                    if (!value.isBlank()) {
+                        values.add(value.trim());
+                    }
+                }
+            }
+        }
+        return values;
+    }
+    
     // Error response class
     public static class ErrorResponse {
         public String message;
@@ -0,0 +1,214 @@
+package com.raven.api;
+
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.orders.OrderEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Topic filter of an order stream subscription. Each dimension is a set of
+ * accepted values (null accepts everything); an event matches when every
+ * filtered dimension matches. Station-filtered subscribers receive only the
+ * items of their stations.
+ */
+public final class OrderStreamFilter {
+    
+    /**
+     * Filter dimensions, in the order in which they are preferred as index
+     * anchor (most selective first)
+     */
+    public enum Dimension {
+        STATION,
+        STATUS,
+        CHANNEL,
+        SOURCE
+    }
+    
+    public static final OrderStreamFilter NONE = new OrderStreamFilter(null, null, null, null);
+    
+    private final Set<String> stations;
+    private final Set<String> statuses;
+    private final Set<String> channels;
+    private final Set<String> sources;
+    private final String description;
+    
+    private OrderStreamFilter(Set<String> stations, Set<String> statuses, Set<String> channels, Set<String> sources) {
+        this.stations = stations;
+        this.statuses = statuses;
+        this.channels = channels;
+        this.sources = sources;
+        this.description = describe();
+    }
+    
+    /**
+     * Build a filter from query parameters; each may be repeated or
+     * comma-separated, and empty parameters accept everything
+     */
+    public static OrderStreamFilter of(List<String> station, List<String> status, List<String> channel,
+                                       List<String> source) {
+        OrderStreamFilter filter = new OrderStreamFilter(
+            parse(station), parse(status), parse(channel), parse(source));
+        return filter.anchor() == null ? NONE : filter;
+    }
+    
+    /**
+     * The most selective filtered dimension, or null for an unfiltered subscription
+     */
+    public Dimension anchor() {
+        for (Dimension dimension : Dimension.values()) {
+            if (values(dimension) != null) {
+                return dimension;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Accepted values of a dimension, or null if the dimension is not filtered
+     */
+    public Set<String> values(Dimension dimension) {
+        switch (dimension) {
+            case STATION:
+                return stations;
+            case STATUS:
+                return statuses;
+            case CHANNEL:
+                return channels;
+            default:
+                return sources;
+        }
+    }
+    
+    /**
+     * Whether the event concerns this subscription: the order matches, or
+     * its previous version did (the order is leaving the filter, e.g. a
+     * status change away from a filtered status)
+     */
+    public boolean matches(OrderEvent event) {
+        return accepts(event.getOrder()) || (event.getPrevious() != null && accepts(event.getPrevious()));
+    }
+    
+    /**
+     * Whether the event brings an order into this subscription: its previous
+     * version didn't match, so the subscriber hasn't seen the order yet
+     */
+    public boolean entered(OrderEvent event) {
+        return event.getPrevious() != null && !accepts(event.getPrevious());
+    }
+    
+    /**
+     * Whether one version of an order matches every filtered dimension
+     */
+    public boolean accepts(Order order) {
+        return (channels == null || channels.contains(key(order.getChannel())))
+            && (sources == null || sources.contains(key(order.getSource())))
+            && (statuses == null || statuses.contains(key(order.getStatus())))
+            && (stations == null || hasStation(order));
+    }
+    
+    /**
+     * The event as this subscriber sees it: for station filters, the order
+     * (and its previous version) with only the items of the subscribed stations
+     */
+    public OrderEvent project(OrderEvent event) {
+        if (stations == null) {
+            return event;
+        }
+        Order view = project(event.getOrder());
+        Order previousView = event.getPrevious() != null ? project(event.getPrevious()) : null;
+        if (view == event.getOrder() && previousView == event.getPrevious()) {
+            return event;
+        }
+        return event.withOrder(view, previousView);
+    }
+    
+    /**
+     * Stable key of the station projection, shared by subscribers that see
+     * the same view of an event (empty for the full event)
+     */
+    public String projectionKey() {
+        return stations == null ? "" : String.join(",", new TreeSet<>(stations));
+    }
+    
+    /**
+     * Normalized value of an event attribute as used by filters and the index
+     */
+    static String key(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private Order project(Order order) {
+        if (order.getItems() == null) {
+            return order;
+        }
+        List<OrderItem> items = new ArrayList<>();
+        for (OrderItem item : order.getItems()) {
+            if (stations.contains(key(item.getStation()))) {
+                items.add(item);
+            }
+        }
+        if (items.size() == order.getItems().size()) {
+            return order;
+        }
+        Order view = new Order(order);
+        view.setItems(items);
+        return view;
+    }
+    
+    private boolean hasStation(Order order) {
+        if (order.getItems() == null) {
+            return false;
+        }
+        for (OrderItem item : order.getItems()) {
+            if (stations.contains(key(item.getStation()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static Set<String> parse(Collection<String> parameters) {
+        if (parameters == null) {
+            return null;
+        }
+        Set<String> values = new LinkedHashSet<>();
+        for (String parameter : parameters) {
+            if (parameter == null) {
+                continue;
+            }
+            for (String value : parameter.split(",")) {
+                if (!value.isBlank()) {
+                    values.add(key(value));
+                }
+            }
+        }
+        return values.isEmpty() ? null : Set.copyOf(values);
+    }
+    
+    private String describe() {
+        StringBuilder builder = new StringBuilder();
+        for (Dimension dimension : Dimension.values()) {
+            Set<String> values = values(dimension);
+            if (values != null) {
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                }
+                builder.append(dimension.name().toLowerCase(Locale.ROOT)).append('=')
+                    .append(String.join(",", new TreeSet<>(values)));
+            }
+        }
+        return builder.length() == 0 ? "*" : builder.toString();
+    }
+    
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,124 @@
+package com.raven.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raven.orders.OrderEvent;
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * An order stream event encoded once into an immutable SSE frame
+ * ({@code id:} and {@code data:} lines). The same buffer is written to
+ * every connection that receives this view of the event.
+ */
+public final class OrderStreamFrame {
+    
+    private static final byte[] ID = "id: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATA = "data: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BATCH_START = "data: {\"type\":\"BATCH\",\"events\":[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BATCH_END = "]}\n\n".getBytes(StandardCharsets.UTF_8);
+    
+    /** Sent when a connection opens, so the client sees the stream as established */
+    static final Buffer OPEN = Buffer.buffer(": connected\n\n");
+    
+    /** Written on idle connections; EventSource ignores comments */
+    static final Buffer HEARTBEAT = Buffer.buffer(": heartbeat\n\n");
+    
+    /** Asks the client to reload the orders before reconnecting */
+    static final Buffer RESYNC = Buffer.buffer("data: {\"type\":\"RESYNC\"}\n\n");
+    
+    private final OrderEvent event;
+    private final Buffer data;
+    private final Buffer json; // the payload, a slice of data
+    
+    private OrderStreamFrame(OrderEvent event, Buffer data, Buffer json) {
+        this.event = event;
+        this.data = data;
+        this.json = json;
+    }
+    
+    /**
+     * Encode the whole event
+     * 
+     * @param event The event, with its stream id if it has one
+     * @param mapper The JSON mapper
+     * @return OrderStreamFrame
+     */
+    public static OrderStreamFrame encode(OrderEvent event, ObjectMapper mapper) {
+        return encode(event, OrderStreamMode.FULL, mapper);
+    }
+    
+    /**
+     * Encode an event in a stream mode. Compact JSON has no line breaks (they
+     * are escaped inside strings), so the payload always fits a single data line.
+     * 
+     * @param event The event, with its stream id if it has one
+     * @param mode FULL for the whole event, DELTA for its delta payload when it has one
+     * @param mapper The JSON mapper
+     * @return OrderStreamFrame
+     */
+    public static OrderStreamFrame encode(OrderEvent event, OrderStreamMode mode, ObjectMapper mapper) {
+        Object payload = mode == OrderStreamMode.DELTA ? OrderDelta.of(event, mapper) : null;
+        byte[] json;
+        try {
+            json = mapper.writeValueAsBytes(payload != null ? payload : event);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to encode order event " + event, e);
+        }
+        byte[] id = event.getId() != null ? event.getId().getBytes(StandardCharsets.UTF_8) : null;
+        Buffer data = Buffer.buffer((id != null ? ID.length + id.length + 1 : 0) + DATA.length + json.length + 2);
+        if (id != null) {
+            data.appendBytes(ID).appendBytes(id).appendByte((byte) '\n');
+        }
+        data.appendBytes(DATA);
+        int start = data.length();
+        data.appendBytes(json).appendBytes(new byte[] {'\n', '\n'});
+        return new OrderStreamFrame(event, data, data.slice(start, start + json.length));
+    }
+    
+    /**
+     * Combine frames into one {"type": "BATCH", "events": [...]} frame,
+     * reusing their encoded payloads. The batch carries the id of its last
+     * event, so a client resuming after it has missed nothing.
+     * 
+     * @param frames The frames, oldest first
+     * @return The encoded batch frame
+     */
+    static Buffer batch(List<OrderStreamFrame> frames) {
+        String lastId = null;
+        int size = BATCH_START.length + BATCH_END.length + frames.size();
+        for (OrderStreamFrame frame : frames) {
+            size += frame.json.length();
+            if (frame.event.getId() != null) {
+                lastId = frame.event.getId();
+            }
+        }
+        byte[] id = lastId != null ? lastId.getBytes(StandardCharsets.UTF_8) : null;
+        Buffer data = Buffer.buffer(size + (id != null ? ID.length + id.length + 1 : 0));
+        if (id != null) {
+            data.appendBytes(ID).appendBytes(id).appendByte((byte) '\n');
+        }
+        data.appendBytes(BATCH_START);
+        for (int i = 0; i < frames.size(); i++) {
+            if (i > 0) {
+                data.appendByte((byte) ',');
+            }
+            data.appendBuffer(frames.get(i).json);
+        }
+        return data.appendBytes(BATCH_END);
+    }
+    
+    public OrderEvent getEvent() {
+        return event;
+    }
+    
+    /**
+     * The encoded frame. Vert.x writes a slice of it, so it can be written to
+     * any number of connections.
+     */
+    public Buffer getData() {
+        return data;
+    }
+}
@@ -0,0 +1,29 @@
+package com.raven.api;
+
+import java.util.Locale;
+
+/**
+ * Payload of order stream events, chosen per subscription (?mode=)
+ */
+public enum OrderStreamMode {
+    /** Every event carries the whole order */
+    FULL,
+    /** Changes carry only what changed; the whole order only on creation and snapshots */
+    DELTA;
+    
+    /**
+     * Parse the mode query parameter; null or empty means FULL
+     * 
+     * @throws IllegalArgumentException if the mode is unknown
+     */
+    public static OrderStreamMode parse(String value) {
+        if (value == null || value.isBlank()) {
+            return FULL;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid mode: '" + value + "'. Must be 'full' or 'delta'.");
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.raven.api;
+
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * GET /orders/stream, served as a plain Vert.x route rather than a JAX-RS
+ * SseEventSink: the sink serializes and frames every event once per
+ * connection, while here the broadcaster's pre-encoded frames are written
+ * to the connections as they are.
+ */
+@ApplicationScoped
+public class OrderStreamRoute {
+    
+    static final String PATH = "/orders/stream";
+    
+    /** Longest batch window a client can ask for */
+    static final long MAX_BATCH_WINDOW_MILLIS = 1000;
+    
+    @Inject
+    OrderBroadcaster broadcaster;
+    
+    void init(@Observes Router router) {
+        router.get(PATH).handler(this::stream);
+    }
+    
+    void stream(RoutingContext context) {
+        // Optional filters, repeatable or comma-separated, e.g. ?station=bar or ?status=READY
+        OrderStreamFilter filter = OrderStreamFilter.of(
+            context.queryParam("station"),
+            context.queryParam("status"),
+            context.queryParam("channel"),
+            context.queryParam("source"));
+        OrderStreamMode mode;
+        Long batchWindowMillis;
+        try {
+            mode = OrderStreamMode.parse(firstParam(context, "mode"));
+            batchWindowMillis = parseBatchWindow(firstParam(context, "batch"));
+        } catch (IllegalArgumentException e) {
+            context.response()
+                .setStatusCode(400)
+                .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .end(Json.encode(new OrderResource.ErrorResponse(e.getMessage())));
+            return;
+        }
+        String lastEventId = context.request().getHeader("Last-Event-ID");
+        
+        HttpServerResponse response = context.response()
+            .setChunked(true)
+            .putHeader(HttpHeaders.CONTENT_TYPE, "text/event-stream")
+            .putHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.write(OrderStreamFrame.OPEN);
+        
+        if (lastEventId == null) {
+            broadcaster.subscribe(response, filter, mode, batchWindowMillis, null);
+        } else {
+            // Resuming may load a snapshot from DynamoDB: not on the event loop
+            Thread.ofVirtual().name("order-stream-resume").start(
+                () -> broadcaster.subscribe(response, filter, mode, batchWindowMillis, lastEventId));
+        }
+    }
+    
+    private static String firstParam(RoutingContext context, String name) {
+        return context.queryParam(name).stream().findFirst().orElse(null);
+    }
+    
+    /**
+     * Batch window in milliseconds (?batch=50), 0 to disable batching,
+     * null when the parameter is absent
+     */
+    private static Long parseBatchWindow(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            long millis = Long.parseLong(value.trim());
+            if (millis >= 0 && millis <= MAX_BATCH_WINDOW_MILLIS) {
+                return millis;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(String.format(
+            "Invalid batch: '%s'. Must be a window in milliseconds between 0 and %d.", value, MAX_BATCH_WINDOW_MILLIS));
+    }
+}
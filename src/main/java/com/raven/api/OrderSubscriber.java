@@ -0,0 +1,549 @@
+package com.raven.api;
+
+import com.raven.orders.OrderEvent;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * One order stream connection. Events wait in a bounded queue of encoded
+ * frames and are written one at a time: the next write starts only when the
+ * previous one completed, so a slow client builds up its own queue (and hits
+ * the overflow policy) instead of buffering without bound in the connection.
+ * 
+ * With a batch window, the first queued event starts a timer and everything
+ * queued until it fires (or until the batch is full) is written as one BATCH
+ * frame. In full mode, events for the same order within a batch collapse to
+ * the last one; deltas are all kept, since each applies to the previous version.
+ * 
+ * The broadcaster sweeps subscribers periodically: idle connections get a
+ * heartbeat comment, and subscribers whose connection is gone, whose write
+ * has stalled or that stay behind for too long are evicted.
+ */
+public final class OrderSubscriber {
+    
+    private static final Logger LOG = Logger.getLogger(OrderSubscriber.class);
+    
+    /**
+     * What to do when an event arrives and the queue is full
+     */
+    public enum OverflowPolicy {
+        /** Discard the oldest queued event */
+        DROP_OLDEST,
+        /** Discard the queue, send a RESYNC event and close the connection */
+        DISCONNECT;
+        
+        static OverflowPolicy parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+    
+    /**
+     * Why a subscriber was evicted by a sweep
+     */
+    public enum Eviction {
+        /** The connection was closed without the close handler running */
+        CLOSED,
+        /** A write has been pending too long: the client stopped reading */
+        STALLED,
+        /** Behind with no queued event written for too long: sent RESYNC and closed */
+        LAGGING
+    }
+    
+    private static final double LATENCY_SMOOTHING = 0.2;
+    
+    private final long id;
+    private final OrderStreamFilter filter;
+    private final OrderStreamMode mode;
+    private final HttpServerResponse response;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final long batchWindowMillis; // 0 when batching is off
+    private final int batchMaxEvents;
+    private final Vertx vertx;
+    private final Consumer<OrderSubscriber> onClose;
+    private final Instant connectedAt = Instant.now();
+    
+    // Guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<OrderStreamFrame> queue;
+    private boolean sending;
+    private boolean holding;
+    private boolean flushScheduled;
+    private boolean closed;
+    private int maxDepth;
+    private long delivered;
+    private long dropped;
+    private long collapsed;
+    private long batches;
+    private long heartbeats;
+    private long lastWriteNanos = System.nanoTime();
+    private long writeStartedNanos; // 0 when no write is pending
+    private long behindSinceNanos; // last progress while behind, 0 when the queue is empty and nothing is being written
+    private double latencyAvgMillis;
+    private double latencyMaxMillis;
+    private double latencyLastMillis;
+    
+    OrderSubscriber(long id, OrderStreamFilter filter, OrderStreamMode mode, HttpServerResponse response,
+                    int capacity, OverflowPolicy policy, long batchWindowMillis, int batchMaxEvents, Vertx vertx,
+                    Consumer<OrderSubscriber> onClose) {
+        this.id = id;
+        this.filter = filter;
+        this.mode = mode;
+        this.response = response;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.batchWindowMillis = batchWindowMillis;
+        this.batchMaxEvents = batchMaxEvents;
+        this.vertx = vertx;
+        this.onClose = onClose;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 64));
+    }
+    
+    public long getId() {
+        return id;
+    }
+    
+    public OrderStreamFilter getFilter() {
+        return filter;
+    }
+    
+    public OrderStreamMode getMode() {
+        return mode;
+    }
+    
+    /**
+     * Queue an event for delivery, applying the overflow policy when full
+     * 
+     * @param frame The encoded event
+     * @return false if the event was not queued because the subscriber is closed
+     */
+    boolean offer(OrderStreamFrame frame) {
+        boolean disconnect = false;
+        boolean schedule = false;
+        boolean send = false;
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (queue.size() >= capacity) {
+                if (policy == OverflowPolicy.DISCONNECT) {
+                    dropped += queue.size() + 1;
+                    queue.clear();
+                    closed = true;
+                    disconnect = true;
+                } else {
+                    queue.pollFirst();
+                    dropped++;
+                }
+            }
+            if (!disconnect) {
+                queue.addLast(frame);
+                maxDepth = Math.max(maxDepth, queue.size());
+                if (behindSinceNanos == 0) {
+                    behindSinceNanos = System.nanoTime();
+                }
+                if (sending || holding) {
+                    return true;
+                }
+                if (batchWindowMillis > 0 && queue.size() < batchMaxEvents) {
+                    // Wait for the window to fill; the first event starts the timer
+                    schedule = !flushScheduled;
+                    flushScheduled = true;
+                } else {
+                    sending = true;
+                    send = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        
+        if (disconnect) {
+            LOG.warnf("Order stream subscriber %d fell %d events behind, disconnecting for resync", id, capacity);
+            sendResync();
+            return true;
+        }
+        if (schedule) {
+            vertx.setTimer(batchWindowMillis, timer -> flush());
+        } else if (send) {
+            drain();
+        }
+        return true;
+    }
+    
+    /**
+     * End of a batch window: write what was queued, unless a write is
+     * already in progress (it picks the queue up when done)
+     */
+    private void flush() {
+        lock.lock();
+        try {
+            flushScheduled = false;
+            if (closed || sending || holding || queue.isEmpty()) {
+                return;
+            }
+            sending = true;
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+    
+    /**
+     * Keep queuing events without sending them, until resume()
+     */
+    void hold() {
+        lock.lock();
+        try {
+            holding = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Send a snapshot, then the events queued while holding. Queued events
+     * whose effect the snapshot already reflects are discarded, along with
+     * the older events of the same order.
+     * 
+     * @param snapshot The encoded snapshot event
+     * @param reflected Whether the snapshot reflects a queued event
+     */
+    void resume(OrderStreamFrame snapshot, Predicate<OrderEvent> reflected) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            Set<String> superseded = new HashSet<>();
+            for (Iterator<OrderStreamFrame> it = queue.descendingIterator(); it.hasNext(); ) {
+                OrderEvent queued = it.next().getEvent();
+                if (superseded.contains(queued.getOrderId()) || reflected.test(queued)) {
+                    superseded.add(queued.getOrderId());
+                    it.remove();
+                }
+            }
+            queue.addFirst(snapshot);
+            holding = false;
+            if (sending) {
+                return;
+            }
+            sending = true;
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+    
+    /**
+     * Discard the queue, ask the client to reload the orders and close
+     */
+    void resync() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+        } finally {
+            lock.unlock();
+        }
+        sendResync();
+    }
+    
+    private void sendResync() {
+        // The RESYNC write counts as pending, so a client that stopped reading is still caught
+        lock.lock();
+        try {
+            writeStartedNanos = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+        response.write(OrderStreamFrame.RESYNC).onComplete(ignored -> close());
+    }
+    
+    /**
+     * Write queued events until the queue is empty or a write is pending.
+     * Writes that complete synchronously are handled in this loop rather
+     * than by recursion.
+     */
+    private void drain() {
+        while (true) {
+            List<OrderStreamFrame> next;
+            lock.lock();
+            try {
+                next = closed ? List.of() : pollBatch();
+                if (next.isEmpty()) {
+                    sending = false;
+                    behindSinceNanos = 0;
+                    return;
+                }
+                writeStartedNanos = System.nanoTime();
+            } finally {
+                lock.unlock();
+            }
+            
+            Buffer data = next.size() == 1 ? next.get(0).getData() : OrderStreamFrame.batch(next);
+            Future<Void> write = response.write(data);
+            if (!write.isComplete()) {
+                write.onComplete(result -> {
+                    if (completed(next, result.cause())) {
+                        drain();
+                    }
+                });
+                return;
+            }
+            if (!completed(next, write.cause())) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Take the next frame, or with batching up to batchMaxEvents frames
+     * (snapshots always travel alone). Must hold lock.
+     */
+    private List<OrderStreamFrame> pollBatch() {
+        OrderStreamFrame first = queue.pollFirst();
+        if (first == null) {
+            return List.of();
+        }
+        if (batchWindowMillis == 0 || first.getEvent().getType() == OrderEvent.Type.SNAPSHOT) {
+            return List.of(first);
+        }
+        List<OrderStreamFrame> batch = new ArrayList<>(Math.min(queue.size() + 1, batchMaxEvents));
+        batch.add(first);
+        while (batch.size() < batchMaxEvents && !queue.isEmpty()
+                && queue.peekFirst().getEvent().getType() != OrderEvent.Type.SNAPSHOT) {
+            batch.add(queue.pollFirst());
+        }
+        if (batch.size() > 1) {
+            batches++;
+        }
+        if (mode == OrderStreamMode.DELTA || batch.size() == 1) {
+            return batch;
+        }
+        // Last write wins: keep one event per order, at the position of the latest
+        Map<String, OrderStreamFrame> latest = new LinkedHashMap<>();
+        for (OrderStreamFrame frame : batch) {
+            latest.remove(frame.getEvent().getOrderId());
+            latest.put(frame.getEvent().getOrderId(), frame);
+        }
+        collapsed += batch.size() - latest.size();
+        return new ArrayList<>(latest.values());
+    }
+    
+    private boolean completed(List<OrderStreamFrame> frames, Throwable error) {
+        if (error != null) {
+            LOG.debugf("Order stream subscriber %d write failed: %s", id, error.getMessage());
+            close();
+            return false;
+        }
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            writeStartedNanos = 0;
+            lastWriteNanos = now;
+            if (!frames.isEmpty() && behindSinceNanos != 0) {
+                // Progress: a consumer that keeps up without ever emptying its queue is not lagging
+                behindSinceNanos = now;
+            }
+            for (OrderStreamFrame frame : frames) {
+                double latencyMillis = (now - frame.getEvent().getPublishedAtNanos())
+                    / (double) TimeUnit.MILLISECONDS.toNanos(1);
+                delivered++;
+                latencyLastMillis = latencyMillis;
+                latencyMaxMillis = Math.max(latencyMaxMillis, latencyMillis);
+                latencyAvgMillis = delivered == 1
+                    ? latencyMillis
+                    : latencyAvgMillis + LATENCY_SMOOTHING * (latencyMillis - latencyAvgMillis);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+    
+    /**
+     * Periodic check: evict the subscriber if its connection is gone, a write
+     * has been pending for longer than writeTimeoutNanos, or it has been
+     * behind without writing any queued event for longer than maxLagNanos;
+     * otherwise send a heartbeat comment
+     * if nothing was written for heartbeatNanos, so proxies keep the idle
+     * connection open and a dead one fails its write.
+     * 
+     * @param maxLagNanos The lag threshold, 0 to never evict for lag
+     * @return Why the subscriber was evicted, or null if it is still active
+     */
+    Eviction sweep(long heartbeatNanos, long writeTimeoutNanos, long maxLagNanos) {
+        long now = System.nanoTime();
+        Eviction eviction = null;
+        boolean heartbeat = false;
+        lock.lock();
+        try {
+            if (writeStartedNanos != 0 && now - writeStartedNanos > writeTimeoutNanos) {
+                eviction = Eviction.STALLED;
+            } else if (response.closed()) {
+                eviction = Eviction.CLOSED;
+            } else if (closed) {
+                // Closing after a final RESYNC write, which can still stall
+                return null;
+            } else if (maxLagNanos > 0 && behindSinceNanos != 0 && now - behindSinceNanos > maxLagNanos) {
+                eviction = Eviction.LAGGING;
+            } else if (!sending && !holding && queue.isEmpty() && now - lastWriteNanos >= heartbeatNanos) {
+                sending = true;
+                writeStartedNanos = now;
+                heartbeats++;
+                heartbeat = true;
+            }
+            if (eviction != null) {
+                dropped += queue.size();
+                queue.clear();
+                closed = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        
+        if (heartbeat) {
+            response.write(OrderStreamFrame.HEARTBEAT).onComplete(result -> {
+                if (completed(List.of(), result.cause())) {
+                    drain();
+                }
+            });
+            return null;
+        }
+        if (eviction == null) {
+            return null;
+        }
+        switch (eviction) {
+            case STALLED -> {
+                LOG.warnf("Order stream subscriber %d stopped reading, closing the connection", id);
+                response.reset();
+                onClose.accept(this);
+            }
+            case LAGGING -> {
+                LOG.warnf("Order stream subscriber %d stayed behind for over %d ms, disconnecting for resync",
+                    id, TimeUnit.NANOSECONDS.toMillis(maxLagNanos));
+                sendResync();
+            }
+            case CLOSED -> close();
+        }
+        return eviction;
+    }
+    
+    /**
+     * Whether the client connection is gone or was closed by the server
+     */
+    boolean isClosed() {
+        lock.lock();
+        try {
+            return closed || response.closed();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            queue.clear();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (!response.ended() && !response.closed()) {
+                response.end();
+            }
+        } catch (Exception e) {
+            LOG.debugf("Error closing order stream subscriber %d: %s", id, e.getMessage());
+        }
+        onClose.accept(this);
+    }
+    
+    /**
+     * Point-in-time statistics of this subscriber
+     */
+    public Stats stats() {
+        lock.lock();
+        try {
+            long lagNanos = behindSinceNanos != 0 ? System.nanoTime() - behindSinceNanos : 0;
+            return new Stats(id, filter.toString(), mode, connectedAt.toString(), policy, capacity, queue.size(),
+                maxDepth, delivered, dropped, batchWindowMillis, batches, collapsed, heartbeats,
+                TimeUnit.NANOSECONDS.toMillis(lagNanos), latencyLastMillis, latencyAvgMillis, latencyMaxMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Queue depth, drops, batching, heartbeats, lag (how long it has been
+     * behind since its last write of queued events) and delivery latency
+     * (publish to write completion)
+     */
+    public static final class Stats {
+        public final long id;
+        public final String filter;
+        public final OrderStreamMode mode;
+        public final String connectedAt;
+        public final OverflowPolicy overflowPolicy;
+        public final int queueCapacity;
+        public final int queueDepth;
+        public final int maxQueueDepth;
+        public final long delivered;
+        public final long dropped;
+        public final long batchWindowMillis;
+        public final long batches;
+        public final long collapsed;
+        public final long heartbeats;
+        public final long lagMillis;
+        public final double latencyLastMillis;
+        public final double latencyAvgMillis;
+        public final double latencyMaxMillis;
+        
+        Stats(long id, String filter, OrderStreamMode mode, String connectedAt, OverflowPolicy overflowPolicy,
+              int queueCapacity, int queueDepth, int maxQueueDepth, long delivered, long dropped,
+              long batchWindowMillis, long batches, long collapsed, long heartbeats, long lagMillis,
+              double latencyLastMillis, double latencyAvgMillis, double latencyMaxMillis) {
+            this.id = id;
+            this.filter = filter;
+            this.mode = mode;
+            this.connectedAt = connectedAt;
+            this.overflowPolicy = overflowPolicy;
+            this.queueCapacity = queueCapacity;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.delivered = delivered;
+            this.dropped = dropped;
+            this.batchWindowMillis = batchWindowMillis;
+            this.batches = batches;
+            this.collapsed = collapsed;
+            this.heartbeats = heartbeats;
+            this.lagMillis = lagMillis;
+            this.latencyLastMillis = latencyLastMillis;
+            this.latencyAvgMillis = latencyAvgMillis;
+            this.latencyMaxMillis = latencyMaxMillis;
+        }
+    }
+}
@@ -1,24 +1,34 @@
 
 package com.raven.api;
 
+import com.raven.catalog.ProductFilter;
+import com.raven.catalog.ProductSearch;
+import com.raven.metrics.Instrumented;
 import com.raven.model.Product;
 import com.raven.repository.ProductRepository;
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.jboss.logging.Logger;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * REST API for Product management
  */
 @Path("/api/products")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, WireFormat.APPLICATION_CBOR, WireFormat.APPLICATION_SMILE})
+@Consumes({MediaType.APPLICATION_JSON, WireFormat.APPLICATION_CBOR, WireFormat.APPLICATION_SMILE})
+@RunOnVirtualThread
+@Instrumented
 @Tag(name = "Products", description = "Product management endpoints")
 public class ProductResource {
     
@@ -27,12 +37,39 @@ public class ProductResource {
     @Inject
     ProductRepository productRepository;
     
+    @Inject
+    CatalogResponseCache responseCache;
+    
+    @Inject
+    ProductSearch productSearch;
+    
     @GET
-    @Operation(summary = "Get all products", description = "Retrieve all products from the database")
-    public Response getAllProducts() {
+    @Operation(summary = "Get all products", description = "Retrieve all products. The body is served from a "
+        + "pre-serialized cache (JSON, CBOR or Smile; identity, gzip or brotli) and honors If-None-Match with 304. "
+        + "X-Catalog-Seq is the catalog sequence the unfiltered list was read at. Optional filters, repeatable "
+        + "or comma-separated, evaluated on in-memory bitmap indexes: category (any of), "
+        + "ingredient (all of), excludeIngredient and excludeAllergen (none of), visibleOn (pos, app: all of)")
+    public Response getAllProducts(@QueryParam("category") List<String> category,
+                                   @QueryParam("ingredient") List<String> ingredient,
+                                   @QueryParam("excludeIngredient") List<String> excludeIngredient,
+                                   @QueryParam("excludeAllergen") List<String> excludeAllergen,
+                                   @QueryParam("visibleOn") List<String> visibleOn,
+                                   @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+                                   @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+                                   @Context HttpHeaders headers) {
         try {
-            List<Product> products = productRepository.findAll();
-            return Response.ok(products).build();
+            // e.g. ?excludeAllergen=glutine,frutta a guscio&excludeIngredient=prosciutto crudo&visibleOn=app
+            ProductFilter filter = new ProductFilter(values(category), values(ingredient), values(excludeIngredient),
+                values(excludeAllergen), values(visibleOn));
+            if (!filter.isEmpty()) {
+                return Response.ok(productSearch.filter(filter)).build();
+            }
+            WireFormat format = WireFormat.negotiate(headers.getAcceptableMediaTypes());
+            return responseCache.products(format).toResponse(ifNoneMatch, acceptEncoding);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
         } catch (Exception e) {
             LOG.error("Error getting all products", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -41,6 +78,27 @@ public class ProductResource {
         }
     }
     
+    @GET
+    @Path("/search")
+    @Operation(summary = "Search products", description = "Full-text search over name, ingredients and description, "
+        + "from an in-memory index: every word must match, as a whole word, a prefix or with a typo")
+    public Response searchProducts(@QueryParam("q") String query,
+                                   @QueryParam("limit") @DefaultValue("20") int limit) {
+        if (query == null || query.isBlank()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse("Query parameter q is required"))
+                .build();
+        }
+        try {
+            return Response.ok(productSearch.search(query, limit)).build();
+        } catch (Exception e) {
+            LOG.errorf(e, "Error searching products: %s", query);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(new ErrorResponse("Failed to search products"))
+                .build();
+        }
+    }
+    
     @GET
     @Path("/{id}")
     @Operation(summary = "Get product by ID", description = "Retrieve a single product by its ID")
@@ -61,11 +119,28 @@ public class ProductResource {
     
     @GET
     @Path("/category/{categoryId}")
-    @Operation(summary = "Get products by category", description = "Retrieve all products for a specific category")
-    public Response getProductsByCategory(@PathParam("categoryId") String categoryId) {
+    @Operation(summary = "Get products by category", description = "Retrieve all products for a specific category. "
+        + "With the filters of GET /api/products (ingredient, excludeIngredient, excludeAllergen, visibleOn) the list "
+        + "comes from the in-memory bitmap indexes")
+    public Response getProductsByCategory(@PathParam("categoryId") String categoryId,
+                                          @QueryParam("ingredient") List<String> ingredient,
+                                          @QueryParam("excludeIngredient") List<String> excludeIngredient,
+                                          @QueryParam("excludeAllergen") List<String> excludeAllergen,
+                                          @QueryParam("visibleOn") List<String> visibleOn) {
         try {
+            ProductFilter filter = new ProductFilter(Set.of(), values(ingredient), values(excludeIngredient),
+                values(excludeAllergen), values(visibleOn));
+            if (!filter.isEmpty()) {
+                return Response.ok(productSearch.filter(new ProductFilter(Set.of(categoryId),
+                    filter.getIngredients(), filter.getExcludedIngredients(), filter.getExcludedAllergens(),
+                    filter.getVisibleOn()))).build();
+            }
             List<Product> products = productRepository.findByCategoryId(categoryId);
             return Response.ok(products).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
         } catch (Exception e) {
             LOG.errorf(e, "Error getting products by category: %s", categoryId);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -168,6 +243,20 @@ public class ProductResource {
         }
     }
     
+    private static Set<String> values(List<String> params) {
+        Set<String> values = new HashSet<>();
+        if (params != null) {
+            for (String param : params) {
+                for (String value : param.split(",")) {
+                    if (!value.isBlank()) {
+                        values.add(value.trim());
+                    }
+                }
+            }
+        }
+        return values;
+    }
+    
     // Error response class
     public static class ErrorResponse {
         public String message;
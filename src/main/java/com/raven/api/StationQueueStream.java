@@ -0,0 +1,167 @@
+package com.raven.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raven.orders.StationScheduler;
+import com.raven.orders.StationTicket;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GET /api/stations/{station}/queue/stream: the ticket queue of a station as an
+ * SSE stream of {"type": "QUEUE", "station", "tickets": [...]} events. The
+ * queue is sent when the connection opens and again after it changes, at
+ * most once per orders.stations.stream.interval, encoded once for all the
+ * station's connections. A connection that can't keep up skips queues and
+ * gets the latest one when it drains.
+ */
+@ApplicationScoped
+public class StationQueueStream {
+    
+    private static final Logger LOG = Logger.getLogger(StationQueueStream.class);
+    
+    static final String PATH = "/api/stations/:station/queue/stream";
+    
+    @ConfigProperty(name = "orders.stations.stream.interval", defaultValue = "250ms")
+    Duration interval;
+    
+    @ConfigProperty(name = "orders.stations.stream.limit", defaultValue = "200")
+    int limit;
+    
+    @ConfigProperty(name = "orders.stream.heartbeat", defaultValue = "15s")
+    Duration heartbeat;
+    
+    @Inject
+    StationScheduler scheduler;
+    
+    @Inject
+    ObjectMapper objectMapper;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    private static final class Subscriber {
+        
+        private final HttpServerResponse response;
+        private volatile boolean behind; // skipped a queue, send the latest on drain
+        
+        private Subscriber(HttpServerResponse response) {
+            this.response = response;
+        }
+    }
+    
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+    
+    void init(@Observes Router router) {
+        router.get(PATH).handler(this::stream);
+    }
+    
+    void onStart(@Observes StartupEvent event) {
+        registry.gauge("raven.stations.stream.subscribers", subscribers,
+            subscribers -> subscribers.values().stream().mapToInt(Set::size).sum());
+        scheduler.listen(changed::add);
+        vertx.setPeriodic(interval.toMillis(), timer -> flush());
+        vertx.setPeriodic(heartbeat.toMillis(), timer -> heartbeat());
+    }
+    
+    void stream(RoutingContext context) {
+        String station = context.pathParam("station").trim().toLowerCase(Locale.ROOT);
+        HttpServerResponse response = context.response()
+            .setChunked(true)
+            .putHeader(HttpHeaders.CONTENT_TYPE, "text/event-stream")
+            .putHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.write(OrderStreamFrame.OPEN);
+        
+        Subscriber subscriber = new Subscriber(response);
+        // Added under the station's entry lock, so a close can't drop the set in
+        // between; the set is dropped once empty, as any station name is accepted
+        subscribers.compute(station, (s, stationSubscribers) -> {
+            Set<Subscriber> added = stationSubscribers != null ? stationSubscribers : ConcurrentHashMap.newKeySet();
+            added.add(subscriber);
+            return added;
+        });
+        response.closeHandler(v -> subscribers.computeIfPresent(station, (s, stationSubscribers) -> {
+            stationSubscribers.remove(subscriber);
+            return stationSubscribers.isEmpty() ? null : stationSubscribers;
+        }));
+        response.drainHandler(v -> {
+            if (subscriber.behind) {
+                subscriber.behind = false;
+                response.write(encode(station));
+            }
+        });
+        response.write(encode(station));
+    }
+    
+    /**
+     * Send the queues changed since the last flush to their subscribers
+     */
+    private void flush() {
+        for (String station : changed) {
+            changed.remove(station);
+            Set<Subscriber> stationSubscribers = subscribers.get(station);
+            if (stationSubscribers == null || stationSubscribers.isEmpty()) {
+                continue;
+            }
+            Buffer frame = encode(station);
+            for (Subscriber subscriber : stationSubscribers) {
+                if (subscriber.response.writeQueueFull()) {
+                    subscriber.behind = true;
+                } else {
+                    subscriber.response.write(frame);
+                }
+            }
+        }
+    }
+    
+    private void heartbeat() {
+        for (Set<Subscriber> stationSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : stationSubscribers) {
+                if (!subscriber.response.writeQueueFull()) {
+                    subscriber.response.write(OrderStreamFrame.HEARTBEAT);
+                }
+            }
+        }
+    }
+    
+    private Buffer encode(String station) {
+        List<StationTicket> tickets = scheduler.queue(station, limit);
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("type", "QUEUE");
+        event.put("station", station);
+        event.put("tickets", tickets);
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(event);
+            return Buffer.buffer(json.length + 8)
+                .appendString("data: ")
+                .appendBytes(json)
+                .appendString("\n\n");
+        } catch (JsonProcessingException e) {
+            LOG.errorf(e, "Error encoding the queue of station %s", station);
+            throw new RuntimeException("Failed to encode station queue " + station, e);
+        }
+    }
+}
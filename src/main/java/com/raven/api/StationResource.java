@@ -0,0 +1,64 @@
+package com.raven.api;
+
+import com.raven.metrics.Instrumented;
+import com.raven.orders.StationScheduler;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.logging.Logger;
+
+/**
+ * REST API for the station ticket queues; their stream
+ * (GET /api/stations/{station}/queue/stream) is served by {@link StationQueueStream}
+ */
+@Path("/api/stations")
+@Produces({MediaType.APPLICATION_JSON, WireFormat.APPLICATION_CBOR, WireFormat.APPLICATION_SMILE})
+@RunOnVirtualThread
+@Instrumented
+@Tag(name = "Stations", description = "Station ticket queue endpoints")
+public class StationResource {
+    
+    private static final Logger LOG = Logger.getLogger(StationResource.class);
+    
+    @Inject
+    StationScheduler scheduler;
+    
+    @GET
+    @Path("/{station}/queue")
+    @Operation(summary = "Get station queue", description = "Retrieve the open tickets of a station (e.g. kitchen, "
+        + "bar), one per order and course, first due first")
+    public Response getQueue(@PathParam("station") String station,
+                             @QueryParam("limit") @DefaultValue("200") int limit) {
+        if (limit < 1) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse("Limit must be at least 1"))
+                .build();
+        }
+        try {
+            return Response.ok(scheduler.queue(station, limit)).build();
+        } catch (Exception e) {
+            LOG.errorf(e, "Error getting the queue of station: %s", station);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(new ErrorResponse("Failed to retrieve station queue"))
+                .build();
+        }
+    }
+    
+    // Error response class
+    public static class ErrorResponse {
+        public String message;
+        
+        public ErrorResponse(String message) {
+            this.message = message;
+        }
+    }
+}
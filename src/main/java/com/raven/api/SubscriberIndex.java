@@ -0,0 +1,131 @@
+package com.raven.api;
+
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.orders.OrderEvent;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Routes order events to interested subscribers. Each subscriber is indexed
+ * under the values of one dimension of its filter (its anchor); an event
+ * only visits the buckets of its own values, so the cost of a broadcast is
+ * proportional to the subscribers of those buckets plus the unfiltered
+ * ones, not to all subscribers. The other dimensions of a candidate's
+ * filter are checked by the caller.
+ */
+final class SubscriberIndex {
+    
+    private final Set<OrderSubscriber> unfiltered = ConcurrentHashMap.newKeySet();
+    private final Map<OrderStreamFilter.Dimension, Map<String, Set<OrderSubscriber>>> buckets =
+        new EnumMap<>(OrderStreamFilter.Dimension.class);
+    
+    SubscriberIndex() {
+        for (OrderStreamFilter.Dimension dimension : OrderStreamFilter.Dimension.values()) {
+            buckets.put(dimension, new ConcurrentHashMap<>());
+        }
+    }
+    
+    void add(OrderSubscriber subscriber) {
+        OrderStreamFilter.Dimension anchor = subscriber.getFilter().anchor();
+        if (anchor == null) {
+            unfiltered.add(subscriber);
+            return;
+        }
+        Map<String, Set<OrderSubscriber>> index = buckets.get(anchor);
+        for (String value : subscriber.getFilter().values(anchor)) {
+            // Added under the bucket's entry lock, so a remove can't drop the bucket in between
+            index.compute(value, (v, bucket) -> {
+                Set<OrderSubscriber> subscribers = bucket != null ? bucket : ConcurrentHashMap.newKeySet();
+                subscribers.add(subscriber);
+                return subscribers;
+            });
+        }
+    }
+    
+    void remove(OrderSubscriber subscriber) {
+        OrderStreamFilter.Dimension anchor = subscriber.getFilter().anchor();
+        if (anchor == null) {
+            unfiltered.remove(subscriber);
+            return;
+        }
+        Map<String, Set<OrderSubscriber>> index = buckets.get(anchor);
+        for (String value : subscriber.getFilter().values(anchor)) {
+            index.computeIfPresent(value, (v, bucket) -> {
+                bucket.remove(subscriber);
+                return bucket.isEmpty() ? null : bucket;
+            });
+        }
+    }
+    
+    /**
+     * Visit each subscriber that may be interested in an event exactly once
+     */
+    void forEachCandidate(OrderEvent event, Consumer<OrderSubscriber> action) {
+        unfiltered.forEach(action);
+        
+        Order order = event.getOrder();
+        Order previous = event.getPrevious();
+        
+        Set<String> stations = new HashSet<>();
+        addStations(stations, order);
+        addStations(stations, previous);
+        visit(OrderStreamFilter.Dimension.STATION, stations, action);
+        
+        visit(OrderStreamFilter.Dimension.STATUS,
+            keys(order.getStatus(), previous != null ? previous.getStatus() : order.getStatus()), action);
+        visit(OrderStreamFilter.Dimension.CHANNEL,
+            keys(order.getChannel(), previous != null ? previous.getChannel() : order.getChannel()), action);
+        visit(OrderStreamFilter.Dimension.SOURCE,
+            keys(order.getSource(), previous != null ? previous.getSource() : order.getSource()), action);
+    }
+    
+    /**
+     * Keys of the current and previous value of an attribute
+     */
+    private static Set<String> keys(String value, String previousValue) {
+        String key = OrderStreamFilter.key(value);
+        String previousKey = OrderStreamFilter.key(previousValue);
+        return key.equals(previousKey) ? Set.of(key) : Set.of(key, previousKey);
+    }
+    
+    private void visit(OrderStreamFilter.Dimension dimension, Set<String> values, Consumer<OrderSubscriber> action) {
+        Map<String, Set<OrderSubscriber>> index = buckets.get(dimension);
+        if (index.isEmpty()) {
+            return;
+        }
+        if (values.size() == 1) {
+            Set<OrderSubscriber> bucket = index.get(values.iterator().next());
+            if (bucket != null) {
+                bucket.forEach(action);
+            }
+            return;
+        }
+        // A subscriber anchored on several of these values must be visited once
+        Set<OrderSubscriber> seen = new HashSet<>();
+        for (String value : values) {
+            Set<OrderSubscriber> bucket = index.get(value);
+            if (bucket != null) {
+                for (OrderSubscriber subscriber : bucket) {
+                    if (seen.add(subscriber)) {
+                        action.accept(subscriber);
+                    }
+                }
+            }
+        }
+    }
+    
+    private static void addStations(Set<String> stations, Order order) {
+        if (order == null || order.getItems() == null) {
+            return;
+        }
+        for (OrderItem item : order.getItems()) {
+            stations.add(OrderStreamFilter.key(item.getStation()));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.raven.api;
+
+import jakarta.ws.rs.core.MediaType;
+
+import java.util.List;
+
+/**
+ * Wire formats offered by the REST API. The binary formats reuse the Jackson
+ * model annotations and are chosen through the Accept / Content-Type headers.
+ */
+public enum WireFormat {
+    
+    JSON(MediaType.APPLICATION_JSON_TYPE),
+    CBOR(new MediaType("application", "cbor")),
+    SMILE(new MediaType("application", "x-jackson-smile"));
+    
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    
+    private final MediaType mediaType;
+    
+    WireFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+    
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+    
+    /**
+     * Pick the format for a request's acceptable media types (already sorted
+     * by preference). Wildcards resolve to JSON.
+     * 
+     * @param acceptable The acceptable media types of the request
+     * @return The preferred supported format, JSON when none matches
+     */
+    public static WireFormat negotiate(List<MediaType> acceptable) {
+        for (MediaType candidate : acceptable) {
+            for (WireFormat format : values()) {
+                if (candidate.isCompatible(format.mediaType)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+    
+    /**
+     * Find the binary format for a media type
+     * 
+     * @param mediaType The media type
+     * @return The format, or null if the media type is not a binary format
+     */
+    public static WireFormat binaryFormatOf(MediaType mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        if (CBOR.mediaType.isCompatible(mediaType) && !mediaType.isWildcardType()) {
+            return CBOR;
+        }
+        if (SMILE.mediaType.isCompatible(mediaType) && !mediaType.isWildcardType()) {
+            return SMILE;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,66 @@
+package com.raven.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * One ObjectMapper per wire format, all copied from the application's JSON
+ * mapper so they share its modules and configuration
+ */
+@ApplicationScoped
+public class WireFormatMappers {
+    
+    @Inject
+    ObjectMapper objectMapper;
+    
+    private final Map<WireFormat, ObjectMapper> mappers = new EnumMap<>(WireFormat.class);
+    
+    @PostConstruct
+    void init() {
+        for (WireFormat format : WireFormat.values()) {
+            mappers.put(format, create(objectMapper, format));
+        }
+    }
+    
+    /**
+     * Get the mapper for a wire format
+     */
+    public ObjectMapper mapperFor(WireFormat format) {
+        return mappers.get(format);
+    }
+    
+    /**
+     * Derive the mapper of a wire format from a JSON mapper. Streams are left
+     * open, as JAX-RS expects from message body readers and writers.
+     * 
+     * @param jsonMapper The configured JSON mapper
+     * @param format The wire format
+     * @return ObjectMapper
+     */
+    public static ObjectMapper create(ObjectMapper jsonMapper, WireFormat format) {
+        ObjectMapper mapper;
+        switch (format) {
+            case CBOR:
+                mapper = jsonMapper.copyWith(new CBORFactory());
+                break;
+            case SMILE:
+                mapper = jsonMapper.copyWith(new SmileFactory());
+                break;
+            default:
+                mapper = jsonMapper.copy();
+                break;
+        }
+        mapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        mapper.getFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        return mapper;
+    }
+}
@@ -0,0 +1,205 @@
+package com.raven.catalog;
+
+import com.raven.repository.CategoryRepository;
+import com.raven.repository.ProductRepository;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The one in-memory copy of the catalog, which the response caches, the
+ * menus, the search indexes and the price list derive from through a
+ * CatalogListener. It is read on first use (or at startup, from a
+ * CatalogSeed if one has it at the current sequence), follows the catalog
+ * writes of this instance one change at a time and, every catalog.refresh,
+ * is read again only if the change log shows changes it doesn't hold (made
+ * through another instance). So the catalog is scanned once per instance,
+ * not once per copy.
+ */
+@ApplicationScoped
+public class CatalogCache {
+    
+    private static final Logger LOG = Logger.getLogger(CatalogCache.class);
+    
+    @ConfigProperty(name = "catalog.refresh", defaultValue = "30s")
+    Duration refresh;
+    
+    @Inject
+    CategoryRepository categoryRepository;
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    @Inject
+    CatalogChangeLog changeLog;
+    
+    @Inject
+    Instance<CatalogSeed> seeds;
+    
+    @Inject
+    Vertx vertx;
+    
+    // A lock rather than a monitor: loading blocks on DynamoDB and would
+    // otherwise pin the calling virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile CatalogSnapshot catalog; // null until loaded
+    
+    void onStart(@Observes StartupEvent event) {
+        // Blocks on DynamoDB: not on the startup thread
+        Thread.ofVirtual().name("catalog-load").start(() -> {
+            try {
+                catalog();
+            } catch (RuntimeException e) {
+                LOG.errorf(e, "Error loading the catalog, retrying on first use");
+            }
+        });
+        vertx.setPeriodic(refresh.toMillis(), timer -> Thread.ofVirtual().name("catalog-refresh").start(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                LOG.errorf(e, "Error refreshing the catalog, keeping the current one");
+            }
+        }));
+    }
+    
+    /**
+     * Keep something derived from the catalog current. If the catalog is
+     * already loaded, the listener is given it right away as a first load.
+     */
+    public void listen(CatalogListener listener) {
+        listeners.add(listener);
+        // Not while a first load is running: it will call the listener
+        if (catalog != null) {
+            lock.lock();
+            try {
+                loaded(listener, null, catalog);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * The current catalog, loaded on first use
+     * 
+     * @throws RuntimeException if it can't be read from DynamoDB
+     */
+    public CatalogSnapshot catalog() {
+        CatalogSnapshot current = catalog;
+        if (current != null) {
+            return current;
+        }
+        lock.lock();
+        try {
+            if (catalog == null) {
+                load(null);
+            }
+            return catalog;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public boolean isLoaded() {
+        return catalog != null;
+    }
+    
+    void onCatalogChange(@Observes CatalogChange change) {
+        // Waits for a load in progress, which may have read the catalog
+        // before this change
+        lock.lock();
+        try {
+            CatalogSnapshot current = catalog;
+            if (current == null) {
+                return; // loaded with the change on first use
+            }
+            CatalogSnapshot next = current.with(change);
+            catalog = next;
+            for (CatalogListener listener : listeners) {
+                try {
+                    listener.changed(next, change);
+                } catch (RuntimeException e) {
+                    LOG.errorf(e, "Error applying catalog change %s to %s", change,
+                        listener.getClass().getSimpleName());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Read the catalog again if it changed through another instance. The
+     * changes made here are already in it, so only a gap in the change log
+     * (it can't list every change since the catalog's sequence) does.
+     */
+    void refresh() {
+        CatalogSnapshot current = catalog;
+        if (current == null) {
+            return;
+        }
+        CatalogChanges changes = changeLog.changesSince(current.getSequence());
+        lock.lock();
+        try {
+            if (!changes.isResync()) {
+                // The latest catalog: a local change applied meanwhile is in it too
+                catalog = catalog.at(Math.max(catalog.getSequence(), changes.getSeq()));
+                return;
+            }
+            LOG.infof("Catalog changed since sequence %d, loading it again", current.getSequence());
+            load(catalog);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Read the catalog and give it to the listeners; the caller holds the lock
+     */
+    private void load(CatalogSnapshot previous) {
+        long start = System.nanoTime();
+        // The sequence is read first: the local changes made while loading
+        // are applied once it's done, the others are after it and caught by
+        // the next refresh
+        long sequence = changeLog.currentSequence();
+        CatalogSnapshot loaded = previous == null ? seed(sequence) : null;
+        if (loaded == null) {
+            loaded = CatalogSnapshot.of(categoryRepository.findAll(), productRepository.findAll(), sequence);
+        }
+        catalog = loaded;
+        LOG.infof("Loaded the catalog at sequence %d: %d categories, %d products in %d ms", sequence,
+            loaded.getCategories().size(), loaded.getProducts().size(), (System.nanoTime() - start) / 1_000_000);
+        for (CatalogListener listener : listeners) {
+            loaded(listener, previous, loaded);
+        }
+    }
+    
+    private CatalogSnapshot seed(long sequence) {
+        for (CatalogSeed seed : seeds) {
+            CatalogSnapshot seeded = seed.seed(sequence);
+            if (seeded != null) {
+                return seeded;
+            }
+        }
+        return null;
+    }
+    
+    private static void loaded(CatalogListener listener, CatalogSnapshot previous, CatalogSnapshot loaded) {
+        try {
+            listener.loaded(previous, loaded);
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Error applying the loaded catalog to %s", listener.getClass().getSimpleName());
+        }
+    }
+}
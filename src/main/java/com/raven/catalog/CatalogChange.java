@@ -0,0 +1,70 @@
+package com.raven.catalog;
+
+import com.raven.model.Category;
+import com.raven.model.Product;
+
+/**
+ * CDI event fired by the catalog repositories after a successful write
+ */
+public class CatalogChange {
+    
+    public enum EntityType {
+        CATEGORY,
+        PRODUCT
+    }
+    
+    public enum Operation {
+        UPSERT,
+        DELETE
+    }
+    
+    private final EntityType entityType;
+    private final Operation operation;
+    private final String id;
+    private final Object entity; // Category or Product, null for deletes
+    
+    private CatalogChange(EntityType entityType, Operation operation, String id, Object entity) {
+        this.entityType = entityType;
+        this.operation = operation;
+        this.id = id;
+        this.entity = entity;
+    }
+    
+    public static CatalogChange upsert(Category category) {
+        return new CatalogChange(EntityType.CATEGORY, Operation.UPSERT, category.getId(), category);
+    }
+    
+    public static CatalogChange upsert(Product product) {
+        return new CatalogChange(EntityType.PRODUCT, Operation.UPSERT, product.getId(), product);
+    }
+    
+    public static CatalogChange delete(EntityType entityType, String id) {
+        return new CatalogChange(entityType, Operation.DELETE, id, null);
+    }
+    
+    // Getters
+    public EntityType getEntityType() {
+        return entityType;
+    }
+    
+    public Operation getOperation() {
+        return operation;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public Object getEntity() {
+        return entity;
+    }
+    
+    @Override
+    public String toString() {
+        return "CatalogChange{" +
+                "entityType=" + entityType +
+                ", operation=" + operation +
+                ", id='" + id + '\'' +
+                '}';
+    }
+}
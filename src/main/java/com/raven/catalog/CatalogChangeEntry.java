@@ -0,0 +1,56 @@
+package com.raven.catalog;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One entry of the catalog change log. Deletes are kept as tombstones
+ * (operation DELETE, no data).
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CatalogChangeEntry {
+    
+    @JsonProperty("seq")
+    private final long seq;
+    
+    @JsonProperty("type")
+    private final CatalogChange.EntityType type;
+    
+    @JsonProperty("op")
+    private final CatalogChange.Operation operation;
+    
+    @JsonProperty("id")
+    private final String id;
+    
+    @JsonProperty("data")
+    private final Object data;
+    
+    public CatalogChangeEntry(long seq, CatalogChange change) {
+        this.seq = seq;
+        this.type = change.getEntityType();
+        this.operation = change.getOperation();
+        this.id = change.getId();
+        this.data = change.getEntity();
+    }
+    
+    // Getters
+    public long getSeq() {
+        return seq;
+    }
+    
+    public CatalogChange.EntityType getType() {
+        return type;
+    }
+    
+    public CatalogChange.Operation getOperation() {
+        return operation;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public Object getData() {
+        return data;
+    }
+}
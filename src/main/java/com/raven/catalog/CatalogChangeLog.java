@@ -0,0 +1,216 @@
+package com.raven.catalog;
+
+import com.raven.util.DynamoDBBuilder;
+import com.raven.util.DynamoDBSerializer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Bounded in-memory log of catalog changes, numbered by a monotonically
+ * increasing sequence. The sequence is a DynamoDB atomic counter, which is
+ * also the persistent checkpoint: it survives restarts and is shared by all
+ * instances, so a client whose sequence can't be served from this log
+ * (too old, or changed through another instance) is told to resync.
+ * 
+ * The log itself is per instance: only the changes made through this
+ * instance are in it, so after a change made through another one every
+ * client is told to resync, until it resumes from a sequence after that
+ * change. The catalog lists state the sequence they were read at, which
+ * is at most catalog.refresh behind: a client resuming from it may be told
+ * to resync again until then.
+ */
+@ApplicationScoped
+public class CatalogChangeLog {
+    
+    private static final Logger LOG = Logger.getLogger(CatalogChangeLog.class);
+    
+    private static final String SEQUENCE_ID = "catalog-seq";
+    private static final String SEQUENCE_ATTRIBUTE = "seq";
+    
+    @Inject
+    DynamoDbClient dynamoDbClient;
+    
+    @Inject
+    DynamoDBBuilder builder;
+    
+    @Inject
+    DynamoDBSerializer serializer;
+    
+    @ConfigProperty(name = "dynamodb.table.catalog-meta")
+    String metaTableName;
+    
+    @ConfigProperty(name = "catalog.changes.capacity", defaultValue = "1000")
+    int capacity;
+    
+    @ConfigProperty(name = "catalog.changes.checkpoint-refresh", defaultValue = "5s")
+    Duration checkpointRefresh;
+    
+    // All fields below are guarded by this
+    private final NavigableMap<Long, CatalogChangeEntry> entries = new TreeMap<>();
+    private long checkpoint = -1;
+    private long checkpointReadAtMillis;
+    private int unsequenced; // changes made while the counter was unreachable
+    
+    void onCatalogChange(@Observes CatalogChange change) {
+        long seq = nextSequence();
+        synchronized (this) {
+            if (seq < 0) {
+                unsequenced++;
+                return;
+            }
+            entries.put(seq, new CatalogChangeEntry(seq, change));
+            while (entries.size() > capacity) {
+                entries.pollFirstEntry();
+            }
+            checkpoint = Math.max(checkpoint, seq);
+        }
+        LOG.debugf("Recorded catalog change %d: %s", seq, change);
+    }
+    
+    /**
+     * Get the changes after a client's sequence, collapsed to the latest
+     * change per entity
+     * 
+     * @param since The last sequence applied by the client
+     * @return The changes, or a resync marker when the gap can't be served;
+     *         its seq is the current sequence, which the full catalog served
+     *         here may not have reached yet
+     */
+    public CatalogChanges changesSince(long since) {
+        sequenceUnsequenced();
+        long current = currentSequence();
+        
+        synchronized (this) {
+            if (unsequenced > 0) {
+                return CatalogChanges.resync(current); // some change has no place in the log yet
+            }
+            if (since == current) {
+                return CatalogChanges.of(current, List.of());
+            }
+            if (since > current) {
+                return CatalogChanges.resync(current);
+            }
+            
+            // The log must hold every sequence in (since, current], otherwise
+            // some change is unknown here (evicted, or made by another instance)
+            Map<String, CatalogChangeEntry> latest = new LinkedHashMap<>();
+            long expected = since + 1;
+            for (CatalogChangeEntry entry : entries.tailMap(since, false).values()) {
+                if (entry.getSeq() != expected) {
+                    break;
+                }
+                latest.remove(entry.getType() + ":" + entry.getId());
+                latest.put(entry.getType() + ":" + entry.getId(), entry);
+                expected++;
+            }
+            if (expected != current + 1) {
+                return CatalogChanges.resync(current);
+            }
+            
+            return CatalogChanges.of(current, new ArrayList<>(latest.values()));
+        }
+    }
+    
+    /**
+     * Current catalog sequence, read from the persistent checkpoint at most
+     * once per refresh interval
+     */
+    public long currentSequence() {
+        synchronized (this) {
+            if (checkpoint >= 0 && System.currentTimeMillis() - checkpointReadAtMillis < checkpointRefresh.toMillis()) {
+                return checkpoint;
+            }
+        }
+        
+        long stored = readCheckpoint();
+        synchronized (this) {
+            checkpoint = Math.max(checkpoint, stored);
+            checkpointReadAtMillis = System.currentTimeMillis();
+            return checkpoint;
+        }
+    }
+    
+    /**
+     * Give the changes made while the counter was unreachable one sequence
+     * number, left out of the log: every client behind it finds a gap and
+     * resyncs, here and on the other instances. A number can't be made up
+     * locally, since the counter would issue it again for another change.
+     */
+    private void sequenceUnsequenced() {
+        int pending;
+        synchronized (this) {
+            pending = unsequenced;
+        }
+        if (pending == 0) {
+            return;
+        }
+        long seq = nextSequence();
+        if (seq < 0) {
+            return;
+        }
+        synchronized (this) {
+            unsequenced -= pending;
+            checkpoint = Math.max(checkpoint, seq);
+        }
+        LOG.infof("Catalog counter reachable again, %d unrecorded changes marked by sequence %d", pending, seq);
+    }
+    
+    /**
+     * Atomically increment the persistent counter. If the counter can't be
+     * reached the change gets no sequence, so writes are never blocked;
+     * clients are asked to resync until it gets one.
+     * 
+     * @return The new sequence, or -1 if the counter can't be reached
+     */
+    private long nextSequence() {
+        try {
+            Map<String, String> expressionAttributeNames = Map.of("#seq", SEQUENCE_ATTRIBUTE);
+            Map<String, AttributeValue> expressionAttributeValues = Map.of(":one", serializer.numberValue(1));
+            
+            UpdateItemRequest request = builder.buildUpdateItemRequest(
+                metaTableName,
+                builder.buildKey(SEQUENCE_ID),
+                "ADD #seq :one",
+                expressionAttributeNames,
+                expressionAttributeValues
+            );
+            
+            return Long.parseLong(dynamoDbClient.updateItem(request).attributes().get(SEQUENCE_ATTRIBUTE).n());
+            
+        } catch (RuntimeException e) {
+            LOG.warnf(e, "Failed to increment catalog sequence in table: %s, clients will resync", metaTableName);
+            return -1;
+        }
+    }
+    
+    private long readCheckpoint() {
+        try {
+            GetItemResponse response = dynamoDbClient.getItem(
+                builder.buildGetItemRequest(metaTableName, builder.buildKey(SEQUENCE_ID)));
+            
+            if (response.hasItem() && response.item().containsKey(SEQUENCE_ATTRIBUTE)) {
+                return Long.parseLong(response.item().get(SEQUENCE_ATTRIBUTE).n());
+            }
+            return 0;
+            
+        } catch (RuntimeException e) {
+            LOG.warnf(e, "Failed to read catalog sequence from table: %s", metaTableName);
+            return 0;
+        }
+    }
+}
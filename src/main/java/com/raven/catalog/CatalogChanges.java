@@ -0,0 +1,48 @@
+package com.raven.catalog;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Response of a delta-sync request: the changes after the client's sequence,
+ * or resync = true when the client must download the full catalog again
+ */
+public class CatalogChanges {
+    
+    @JsonProperty("seq")
+    private final long seq;
+    
+    @JsonProperty("resync")
+    private final boolean resync;
+    
+    @JsonProperty("changes")
+    private final List<CatalogChangeEntry> changes;
+    
+    private CatalogChanges(long seq, boolean resync, List<CatalogChangeEntry> changes) {
+        this.seq = seq;
+        this.resync = resync;
+        this.changes = changes;
+    }
+    
+    public static CatalogChanges of(long seq, List<CatalogChangeEntry> changes) {
+        return new CatalogChanges(seq, false, changes);
+    }
+    
+    public static CatalogChanges resync(long seq) {
+        return new CatalogChanges(seq, true, List.of());
+    }
+    
+    // Getters
+    public long getSeq() {
+        return seq;
+    }
+    
+    public boolean isResync() {
+        return resync;
+    }
+    
+    public List<CatalogChangeEntry> getChanges() {
+        return changes;
+    }
+}
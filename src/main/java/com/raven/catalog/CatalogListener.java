@@ -0,0 +1,26 @@
+package com.raven.catalog;
+
+/**
+ * Something derived from the shared catalog (an index, a price list, cached
+ * bodies), kept current by the CatalogCache. Called one at a time, in the
+ * order the catalog changes.
+ */
+public interface CatalogListener {
+    
+    /**
+     * The catalog was read in full: on first use, or after changes made
+     * through another instance
+     * 
+     * @param previous The catalog before, null the first time
+     * @param catalog The catalog read
+     */
+    void loaded(CatalogSnapshot previous, CatalogSnapshot catalog);
+    
+    /**
+     * A change made through this instance was applied
+     * 
+     * @param catalog The catalog with the change
+     * @param change The change
+     */
+    void changed(CatalogSnapshot catalog, CatalogChange change);
+}
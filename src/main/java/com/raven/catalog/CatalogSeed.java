@@ -0,0 +1,14 @@
+package com.raven.catalog;
+
+/**
+ * Source of the catalog other than DynamoDB (e.g. a state snapshot), tried
+ * by the CatalogCache before its first full read
+ */
+public interface CatalogSeed {
+    
+    /**
+     * @param sequence The current catalog sequence
+     * @return The catalog at exactly that sequence, or null if not available
+     */
+    CatalogSnapshot seed(long sequence);
+}
@@ -0,0 +1,105 @@
+package com.raven.catalog;
+
+import com.raven.model.Category;
+import com.raven.model.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable copy of the whole catalog: every change up to its sequence is
+ * in it (local changes after the sequence may be too). A change makes a new
+ * snapshot, so readers never lock and never see a half-applied write.
+ */
+public final class CatalogSnapshot {
+    
+    private final Map<String, Category> categories; // by id, in read order
+    private final Map<String, Product> products;
+    private final List<Category> categoryList;
+    private final List<Product> productList;
+    private final long sequence;
+    
+    private CatalogSnapshot(Map<String, Category> categories, Map<String, Product> products,
+                            List<Category> categoryList, List<Product> productList, long sequence) {
+        this.categories = categories;
+        this.products = products;
+        this.categoryList = categoryList;
+        this.productList = productList;
+        this.sequence = sequence;
+    }
+    
+    /**
+     * @param categories Every category
+     * @param products Every product
+     * @param sequence Catalog sequence read before the lists
+     */
+    public static CatalogSnapshot of(List<Category> categories, List<Product> products, long sequence) {
+        Map<String, Category> categoriesById = new LinkedHashMap<>();
+        for (Category category : categories) {
+            categoriesById.put(category.getId(), category);
+        }
+        Map<String, Product> productsById = new LinkedHashMap<>();
+        for (Product product : products) {
+            productsById.put(product.getId(), product);
+        }
+        return new CatalogSnapshot(categoriesById, productsById, list(categoriesById), list(productsById), sequence);
+    }
+    
+    /**
+     * The snapshot with a change applied; the sequence is unchanged
+     */
+    public CatalogSnapshot with(CatalogChange change) {
+        if (change.getEntityType() == CatalogChange.EntityType.CATEGORY) {
+            Map<String, Category> changed = apply(categories, change, Category.class);
+            return new CatalogSnapshot(changed, products, list(changed), productList, sequence);
+        }
+        Map<String, Product> changed = apply(products, change, Product.class);
+        return new CatalogSnapshot(categories, changed, categoryList, list(changed), sequence);
+    }
+    
+    /**
+     * The same catalog, known to hold every change up to a later sequence
+     */
+    public CatalogSnapshot at(long sequence) {
+        return new CatalogSnapshot(categories, products, categoryList, productList, sequence);
+    }
+    
+    /**
+     * Every category, in the order read
+     */
+    public List<Category> getCategories() {
+        return categoryList;
+    }
+    
+    /**
+     * Every product, in the order read
+     */
+    public List<Product> getProducts() {
+        return productList;
+    }
+    
+    public Product getProduct(String id) {
+        return products.get(id);
+    }
+    
+    public long getSequence() {
+        return sequence;
+    }
+    
+    private static <T> List<T> list(Map<String, T> entities) {
+        return Collections.unmodifiableList(new ArrayList<>(entities.values()));
+    }
+    
+    private static <T> Map<String, T> apply(Map<String, T> entities, CatalogChange change, Class<T> type) {
+        Map<String, T> copy = new LinkedHashMap<>(entities);
+        if (change.getOperation() == CatalogChange.Operation.DELETE) {
+            copy.remove(change.getId());
+        } else {
+            copy.put(change.getId(), type.cast(change.getEntity()));
+        }
+        return copy;
+    }
+}
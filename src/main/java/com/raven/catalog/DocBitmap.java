@@ -0,0 +1,153 @@
+package com.raven.catalog;
+
+import java.util.Arrays;
+
+/**
+ * Set of doc numbers, stored in whichever of two forms is smaller: a sorted
+ * array of the docs while sparse (a category, a rare ingredient), 64-bit
+ * words once dense (a common allergen, a visibility flag). Filters are
+ * evaluated into a dense accumulator of words, one bitmap at a time, so
+ * every operation is a pass over either the docs or the words. Not
+ * thread-safe.
+ */
+final class DocBitmap {
+    
+    private int[] docs = new int[4]; // sorted, while sparse
+    private long[] words; // once dense, null before
+    private int cardinality;
+    
+    void add(int doc) {
+        if (words != null) {
+            if (doc >= words.length * 64) {
+                words = Arrays.copyOf(words, Math.max(words.length * 2, doc / 64 + 1));
+            }
+            if ((words[doc >> 6] & 1L << doc) == 0) {
+                words[doc >> 6] |= 1L << doc;
+                cardinality++;
+            }
+            return;
+        }
+        int at = Arrays.binarySearch(docs, 0, cardinality, doc);
+        if (at >= 0) {
+            return;
+        }
+        at = -at - 1;
+        if (cardinality == docs.length) {
+            docs = Arrays.copyOf(docs, cardinality * 2);
+        }
+        System.arraycopy(docs, at, docs, at + 1, cardinality - at);
+        docs[at] = doc;
+        cardinality++;
+        // An int per doc against a bit per doc number up to the highest
+        if (cardinality * 32 > docs[cardinality - 1] + 64) {
+            toWords();
+        }
+    }
+    
+    void remove(int doc) {
+        if (words != null) {
+            if (doc < words.length * 64 && (words[doc >> 6] & 1L << doc) != 0) {
+                words[doc >> 6] &= ~(1L << doc);
+                cardinality--;
+                // Back to docs below half the break-even (2 docs per word), so
+                // a doc going in and out doesn't switch forms every time
+                if (cardinality < words.length) {
+                    toDocs();
+                }
+            }
+            return;
+        }
+        int at = Arrays.binarySearch(docs, 0, cardinality, doc);
+        if (at >= 0) {
+            System.arraycopy(docs, at + 1, docs, at, cardinality - at - 1);
+            cardinality--;
+        }
+    }
+    
+    int cardinality() {
+        return cardinality;
+    }
+    
+    /**
+     * Bytes taken by the docs or words
+     */
+    long bytes() {
+        return words != null ? words.length * 8L : docs.length * 4L;
+    }
+    
+    /**
+     * Keep in the accumulator only the docs in this bitmap
+     */
+    void andInto(long[] accumulator) {
+        if (words != null) {
+            int shared = Math.min(words.length, accumulator.length);
+            for (int i = 0; i < shared; i++) {
+                accumulator[i] &= words[i];
+            }
+            Arrays.fill(accumulator, shared, accumulator.length, 0);
+            return;
+        }
+        // Rebuild the words the docs fall in; the others are emptied
+        int next = 0;
+        for (int i = 0; i < accumulator.length; i++) {
+            long mask = 0;
+            while (next < cardinality && docs[next] >> 6 == i) {
+                mask |= 1L << docs[next++];
+            }
+            accumulator[i] &= mask;
+        }
+    }
+    
+    /**
+     * Add the docs in this bitmap to the accumulator
+     */
+    void orInto(long[] accumulator) {
+        if (words != null) {
+            int shared = Math.min(words.length, accumulator.length);
+            for (int i = 0; i < shared; i++) {
+                accumulator[i] |= words[i];
+            }
+            return;
+        }
+        for (int i = 0; i < cardinality && docs[i] >> 6 < accumulator.length; i++) {
+            accumulator[docs[i] >> 6] |= 1L << docs[i];
+        }
+    }
+    
+    /**
+     * Remove the docs in this bitmap from the accumulator
+     */
+    void andNotInto(long[] accumulator) {
+        if (words != null) {
+            int shared = Math.min(words.length, accumulator.length);
+            for (int i = 0; i < shared; i++) {
+                accumulator[i] &= ~words[i];
+            }
+            return;
+        }
+        for (int i = 0; i < cardinality && docs[i] >> 6 < accumulator.length; i++) {
+            accumulator[docs[i] >> 6] &= ~(1L << docs[i]);
+        }
+    }
+    
+    private void toWords() {
+        words = new long[docs[cardinality - 1] / 64 + 1];
+        for (int i = 0; i < cardinality; i++) {
+            words[docs[i] >> 6] |= 1L << docs[i];
+        }
+        docs = null;
+    }
+    
+    private void toDocs() {
+        docs = new int[Math.max(4, cardinality)];
+        int n = 0;
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                docs[n++] = i * 64 + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        words = null;
+    }
+}
@@ -0,0 +1,92 @@
+package com.raven.catalog;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Criteria of a product list: a product matches if it is in any of the
+ * categories, has all of the ingredients, none of the excluded ingredients
+ * and allergens, and is visible on all of the channels. Empty sets don't
+ * filter. Ingredients and allergens are compared ignoring case. A product
+ * without an allergen list (unknown, unlike an empty one) is excluded by
+ * any allergen exclusion.
+ */
+public class ProductFilter {
+    
+    public static final Set<String> CHANNELS = Set.of("pos", "app");
+    
+    private final Set<String> categories;
+    private final Set<String> ingredients;
+    private final Set<String> excludedIngredients;
+    private final Set<String> excludedAllergens;
+    private final Set<String> visibleOn;
+    
+    /**
+     * @throws IllegalArgumentException if a channel of visibleOn is not pos or app
+     */
+    public ProductFilter(Set<String> categories, Set<String> ingredients, Set<String> excludedIngredients,
+                         Set<String> excludedAllergens, Set<String> visibleOn) {
+        this.categories = categories != null ? Set.copyOf(categories) : Set.of();
+        this.ingredients = normalize(ingredients);
+        this.excludedIngredients = normalize(excludedIngredients);
+        this.excludedAllergens = normalize(excludedAllergens);
+        this.visibleOn = normalize(visibleOn);
+        for (String channel : this.visibleOn) {
+            if (!CHANNELS.contains(channel)) {
+                throw new IllegalArgumentException("Unknown channel: " + channel + ", expected one of " + CHANNELS);
+            }
+        }
+    }
+    
+    public boolean isEmpty() {
+        return categories.isEmpty() && ingredients.isEmpty() && excludedIngredients.isEmpty()
+            && excludedAllergens.isEmpty() && visibleOn.isEmpty();
+    }
+    
+    // Getters
+    public Set<String> getCategories() {
+        return categories;
+    }
+    
+    public Set<String> getIngredients() {
+        return ingredients;
+    }
+    
+    public Set<String> getExcludedIngredients() {
+        return excludedIngredients;
+    }
+    
+    public Set<String> getExcludedAllergens() {
+        return excludedAllergens;
+    }
+    
+    public Set<String> getVisibleOn() {
+        return visibleOn;
+    }
+    
+    static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private static Set<String> normalize(Set<String> values) {
+        if (values == null) {
+            return Set.of();
+        }
+        return values.stream()
+            .filter(value -> value != null && !value.isBlank())
+            .map(ProductFilter::normalize)
+            .collect(Collectors.toUnmodifiableSet());
+    }
+    
+    @Override
+    public String toString() {
+        return "ProductFilter{" +
+                "categories=" + categories +
+                ", ingredients=" + ingredients +
+                ", excludedIngredients=" + excludedIngredients +
+                ", excludedAllergens=" + excludedAllergens +
+                ", visibleOn=" + visibleOn +
+                '}';
+    }
+}
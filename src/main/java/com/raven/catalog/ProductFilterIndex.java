@@ -0,0 +1,274 @@
+package com.raven.catalog;
+
+import com.raven.model.Product;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bitmap indexes of the products: one DocBitmap per category, ingredient,
+ * allergen and visibility channel, plus one of the products whose allergens
+ * are unknown, over dense doc numbers. A ProductFilter
+ * is evaluated as bitmap operations (OR of the categories, AND of the
+ * ingredients and channels, AND NOT of the exclusions) without looking at
+ * any product, so its cost depends on the bitmaps, not on the lists inside
+ * each product.
+ * 
+ * Products are added, replaced and removed one at a time, under a
+ * read-write lock: filters run in parallel.
+ */
+public final class ProductFilterIndex {
+    
+    private static final String CATEGORY = "category:";
+    private static final String INGREDIENT = "ingredient:";
+    private static final String ALLERGEN = "allergen:";
+    private static final String VISIBLE_ON = "visibleOn:";
+    private static final String UNKNOWN_ALLERGENS = "allergens:unknown";
+    private static final Comparator<Product> BY_NAME = Comparator.comparing(Product::getName,
+        Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(Product::getId);
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, DocBitmap> bitmaps = new HashMap<>();
+    private final DocBitmap all = new DocBitmap();
+    private final Map<String, Integer> docsById = new HashMap<>();
+    private final List<Product> products = new ArrayList<>(); // by doc, null if free
+    private final List<String[]> docKeys = new ArrayList<>(); // by doc, for removal
+    private final List<Integer> free = new ArrayList<>();
+    private int[] byName; // docs sorted by name, null after a write until the next filter
+    
+    /**
+     * Add a product, or replace it
+     */
+    public void put(Product product) {
+        String[] keys = keys(product);
+        lock.writeLock().lock();
+        try {
+            Integer doc = docsById.get(product.getId());
+            if (doc != null) {
+                unindex(doc);
+            } else {
+                doc = !free.isEmpty() ? free.remove(free.size() - 1) : products.size();
+                if (doc == products.size()) {
+                    products.add(null);
+                    docKeys.add(null);
+                }
+                docsById.put(product.getId(), doc);
+            }
+            products.set(doc, product);
+            docKeys.set(doc, keys);
+            byName = null;
+            all.add(doc);
+            for (String key : keys) {
+                bitmaps.computeIfAbsent(key, k -> new DocBitmap()).add(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Remove a product, if indexed
+     */
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docsById.remove(id);
+            if (doc != null) {
+                unindex(doc);
+                all.remove(doc);
+                products.set(doc, null);
+                docKeys.set(doc, null);
+                free.add(doc);
+                byName = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * The products matching a filter
+     * 
+     * @param filter The criteria
+     * @return The matching products, by name
+     */
+    public List<Product> filter(ProductFilter filter) {
+        while (true) {
+            lock.readLock().lock();
+            try {
+                if (byName != null) {
+                    return filter(filter, byName);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            sortByName();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Estimated size of the bitmaps in bytes
+     */
+    public long bytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = all.bytes();
+            for (DocBitmap bitmap : bitmaps.values()) {
+                bytes += bitmap.bytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private List<Product> filter(ProductFilter filter, int[] order) {
+        long[] matching = new long[(products.size() + 63) / 64];
+        all.orInto(matching);
+        if (!filter.getCategories().isEmpty()) {
+            long[] any = new long[matching.length];
+            for (String category : filter.getCategories()) {
+                DocBitmap bitmap = bitmaps.get(CATEGORY + category);
+                if (bitmap != null) {
+                    bitmap.orInto(any);
+                }
+            }
+            for (int i = 0; i < matching.length; i++) {
+                matching[i] &= any[i];
+            }
+        }
+        if (!and(matching, INGREDIENT, filter.getIngredients())
+            || !and(matching, VISIBLE_ON, filter.getVisibleOn())) {
+            return List.of();
+        }
+        andNot(matching, INGREDIENT, filter.getExcludedIngredients());
+        andNot(matching, ALLERGEN, filter.getExcludedAllergens());
+        if (!filter.getExcludedAllergens().isEmpty()) {
+            // Not declared is not allergen-free
+            DocBitmap unknown = bitmaps.get(UNKNOWN_ALLERGENS);
+            if (unknown != null) {
+                unknown.andNotInto(matching);
+            }
+        }
+        
+        int count = 0;
+        for (long word : matching) {
+            count += Long.bitCount(word);
+        }
+        List<Product> result = new ArrayList<>(count);
+        if (count * 16 < order.length) {
+            // Few matches: sorting them is cheaper than a pass over the name order
+            for (int i = 0; i < matching.length; i++) {
+                long word = matching[i];
+                while (word != 0) {
+                    result.add(products.get(i * 64 + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+            result.sort(BY_NAME);
+        } else {
+            for (int doc : order) {
+                if ((matching[doc >> 6] & 1L << doc) != 0) {
+                    result.add(products.get(doc));
+                }
+            }
+        }
+        return result;
+    }
+    
+    private void sortByName() {
+        lock.writeLock().lock();
+        try {
+            if (byName == null) {
+                byName = docsById.values().stream()
+                    .sorted((a, b) -> BY_NAME.compare(products.get(a), products.get(b)))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Keep the docs in every bitmap of the values
+     * 
+     * @return false if a value has no bitmap, i.e. nothing matches
+     */
+    private boolean and(long[] matching, String prefix, Set<String> values) {
+        for (String value : values) {
+            DocBitmap bitmap = bitmaps.get(prefix + value);
+            if (bitmap == null) {
+                return false;
+            }
+            bitmap.andInto(matching);
+        }
+        return true;
+    }
+    
+    private void andNot(long[] matching, String prefix, Set<String> values) {
+        for (String value : values) {
+            DocBitmap bitmap = bitmaps.get(prefix + value);
+            if (bitmap != null) {
+                bitmap.andNotInto(matching);
+            }
+        }
+    }
+    
+    private void unindex(int doc) {
+        for (String key : docKeys.get(doc)) {
+            DocBitmap bitmap = bitmaps.get(key);
+            bitmap.remove(doc);
+            if (bitmap.cardinality() == 0) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+    
+    private static String[] keys(Product product) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (product.getCategoryId() != null) {
+            keys.add(CATEGORY + product.getCategoryId());
+        }
+        if (product.getIngredients() != null) {
+            for (String ingredient : product.getIngredients()) {
+                if (ingredient != null && !ingredient.isBlank()) {
+                    keys.add(INGREDIENT + ProductFilter.normalize(ingredient));
+                }
+            }
+        }
+        if (product.getAllergens() != null) {
+            for (String allergen : product.getAllergens()) {
+                if (allergen != null && !allergen.isBlank()) {
+                    keys.add(ALLERGEN + ProductFilter.normalize(allergen));
+                }
+            }
+        } else {
+            keys.add(UNKNOWN_ALLERGENS);
+        }
+        if (product.getVisibleOn() != null) {
+            if (Boolean.TRUE.equals(product.getVisibleOn().getPos())) {
+                keys.add(VISIBLE_ON + "pos");
+            }
+            if (Boolean.TRUE.equals(product.getVisibleOn().getApp())) {
+                keys.add(VISIBLE_ON + "app");
+            }
+        }
+        return keys.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,110 @@
+package com.raven.catalog;
+
+import com.raven.model.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+
+/**
+ * Product search and filtering in memory: full-text search over a
+ * ProductSearchIndex, filters over the bitmaps of a ProductFilterIndex.
+ * Both indexes are built together from the shared catalog when it is
+ * loaded and follow its changes one product at a time.
+ */
+@ApplicationScoped
+public class ProductSearch implements CatalogListener {
+    
+    private static final Logger LOG = Logger.getLogger(ProductSearch.class);
+    
+    @ConfigProperty(name = "catalog.search.max-results", defaultValue = "100")
+    int maxResults;
+    
+    @Inject
+    CatalogCache catalogCache;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    // Written by the catalog cache, one call at a time
+    private volatile ProductSearchIndex index; // null until built
+    private volatile ProductFilterIndex filters; // built with index
+    
+    void onStart(@Observes StartupEvent event) {
+        registry.gauge("raven.search.products", this, search -> search.index != null ? search.index.size() : 0);
+        registry.gauge("raven.search.terms", this, search -> search.index != null ? search.index.termCount() : 0);
+        registry.gauge("raven.search.bitmaps.bytes", this,
+            search -> search.filters != null ? search.filters.bytes() : 0);
+        catalogCache.listen(this);
+    }
+    
+    @Override
+    public void loaded(CatalogSnapshot previous, CatalogSnapshot catalog) {
+        long start = System.nanoTime();
+        ProductSearchIndex built = new ProductSearchIndex();
+        ProductFilterIndex builtFilters = new ProductFilterIndex();
+        for (Product product : catalog.getProducts()) {
+            built.put(product);
+            builtFilters.put(product);
+        }
+        // The filters first: a non-null index means both are there
+        filters = builtFilters;
+        index = built;
+        LOG.infof("Built the product search indexes of %d products (%d terms, %d bytes of bitmaps) in %d ms",
+            built.size(), built.termCount(), builtFilters.bytes(), (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    @Override
+    public void changed(CatalogSnapshot catalog, CatalogChange change) {
+        ProductSearchIndex current = index;
+        if (current == null || change.getEntityType() != CatalogChange.EntityType.PRODUCT) {
+            return;
+        }
+        if (change.getOperation() == CatalogChange.Operation.DELETE) {
+            current.remove(change.getId());
+            filters.remove(change.getId());
+        } else {
+            current.put((Product) change.getEntity());
+            filters.put((Product) change.getEntity());
+        }
+    }
+    
+    /**
+     * Search products by name, ingredients and description, tolerating
+     * typos and incomplete words
+     * 
+     * @param query Free text; every word must match
+     * @param limit Maximum number of results, capped at catalog.search.max-results
+     * @return The best matching products, best first
+     * @throws RuntimeException if the catalog can't be loaded from DynamoDB
+     */
+    public List<Product> search(String query, int limit) {
+        return index().search(query, Math.min(limit, maxResults));
+    }
+    
+    /**
+     * List the products matching a filter, evaluated on the bitmap indexes
+     * 
+     * @param filter The criteria
+     * @return The matching products, by name
+     * @throws RuntimeException if the catalog can't be loaded from DynamoDB
+     */
+    public List<Product> filter(ProductFilter filter) {
+        index();
+        return filters.filter(filter);
+    }
+    
+    private ProductSearchIndex index() {
+        catalogCache.catalog();
+        ProductSearchIndex current = index;
+        if (current == null) {
+            throw new IllegalStateException("The product search index could not be built");
+        }
+        return current;
+    }
+}
@@ -0,0 +1,505 @@
+package com.raven.catalog;
+
+import com.raven.model.Product;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index of the products' name, ingredients and description. Text
+ * is folded to lowercase without accents and split into words; each word
+ * (term) maps to the products containing it, with the fields it appears in.
+ * 
+ * A query word matches the terms equal to it, the terms it is a prefix of
+ * (found by a range of the sorted term dictionary) and, from 4 letters, the
+ * terms within 1 edit of it or of their prefix (2 edits from 8 letters), so
+ * "mozarel" finds "mozzarella". Typo candidates come from a dictionary of
+ * the terms' trigrams and are confirmed by a bounded edit distance, so the
+ * dictionary is never scanned. Every query word must match; products are
+ * ranked by the sum of their best match per word, weighted by field.
+ * 
+ * Products are added, replaced and removed one at a time, under a
+ * read-write lock: searches run in parallel.
+ */
+public final class ProductSearchIndex {
+    
+    private static final int NAME = 1;
+    private static final int INGREDIENTS = 2;
+    private static final int DESCRIPTION = 4;
+    private static final int MIN_PREFIX = 2; // shorter words only match whole terms
+    private static final int MAX_EXPANSIONS = 256; // terms a prefix or typo expands to
+    
+    /**
+     * The products containing a term, unordered
+     */
+    private static final class Postings {
+        
+        private int[] docs = new int[2];
+        private byte[] fields = new byte[2];
+        private int size;
+        
+        private void add(int doc, int mask) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            docs[size] = doc;
+            fields[size] = (byte) mask;
+            size++;
+        }
+        
+        private void remove(int doc) {
+            for (int i = 0; i < size; i++) {
+                if (docs[i] == doc) {
+                    size--;
+                    docs[i] = docs[size];
+                    fields[i] = fields[size];
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Working arrays of a search, indexed by doc and pooled, so a query
+     * matching most of the catalog neither boxes nor allocates per match.
+     * Words are matched in turn; a doc stays a candidate while it matched
+     * every word so far. Only the entries of the docs touched are reset.
+     */
+    private static final class Scratch {
+        
+        private float[] best = new float[0]; // best score for the current word
+        private float[] total = new float[0]; // sum of the best scores of the words so far
+        private int[] matched = new int[0]; // words matched
+        private int[] seen = new int[0]; // 1 + the last word that touched the doc
+        private int[] first = new int[64]; // docs matching the first word: all those to reset
+        private int firstCount;
+        private int[] touched = new int[64]; // docs matching the current word
+        private int touchedCount;
+        private int word;
+        
+        private void ensure(int docs) {
+            if (best.length < docs) {
+                int size = Math.max(docs, best.length * 2);
+                best = new float[size];
+                total = new float[size];
+                matched = new int[size];
+                seen = new int[size];
+            }
+        }
+        
+        private void hit(int doc, float score) {
+            if (matched[doc] != word) {
+                return; // missed an earlier word
+            }
+            if (seen[doc] != word + 1) {
+                seen[doc] = word + 1;
+                best[doc] = score;
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touchedCount * 2);
+                }
+                touched[touchedCount++] = doc;
+            } else if (score > best[doc]) {
+                best[doc] = score;
+            }
+        }
+        
+        /**
+         * Close the current word
+         * 
+         * @return Whether any doc is still a candidate
+         */
+        private boolean next() {
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                total[doc] += best[doc];
+                matched[doc] = word + 1;
+            }
+            if (word == 0) {
+                first = touchedCount <= first.length ? first : new int[touchedCount];
+                System.arraycopy(touched, 0, first, 0, touchedCount);
+                firstCount = touchedCount;
+            }
+            word++;
+            return touchedCount > 0;
+        }
+        
+        private void startWord() {
+            touchedCount = 0;
+        }
+        
+        private void reset() {
+            for (int i = 0; i < firstCount; i++) {
+                int doc = first[i];
+                best[doc] = 0;
+                total[doc] = 0;
+                matched[doc] = 0;
+                seen[doc] = 0;
+            }
+            firstCount = 0;
+            touchedCount = 0;
+            word = 0;
+        }
+    }
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, Set<String>> trigrams = new HashMap<>(); // of "$" + term
+    private final Map<String, Integer> docsById = new HashMap<>();
+    private final List<Product> products = new ArrayList<>(); // by doc, null if free
+    private final List<String[]> docTerms = new ArrayList<>(); // by doc, for removal
+    private final List<Integer> free = new ArrayList<>();
+    private final Queue<Scratch> scratches = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Add a product, or replace it
+     */
+    public void put(Product product) {
+        Map<String, Integer> fields = new LinkedHashMap<>();
+        collect(product.getName(), NAME, fields);
+        if (product.getIngredients() != null) {
+            for (String ingredient : product.getIngredients()) {
+                collect(ingredient, INGREDIENTS, fields);
+            }
+        }
+        collect(product.getDescription(), DESCRIPTION, fields);
+        
+        lock.writeLock().lock();
+        try {
+            Integer doc = docsById.get(product.getId());
+            if (doc != null) {
+                unindex(doc);
+            } else {
+                doc = !free.isEmpty() ? free.remove(free.size() - 1) : products.size();
+                if (doc == products.size()) {
+                    products.add(null);
+                    docTerms.add(null);
+                }
+                docsById.put(product.getId(), doc);
+            }
+            products.set(doc, product);
+            docTerms.set(doc, fields.keySet().toArray(new String[0]));
+            for (Map.Entry<String, Integer> entry : fields.entrySet()) {
+                Postings postings = terms.get(entry.getKey());
+                if (postings == null) {
+                    postings = new Postings();
+                    terms.put(entry.getKey(), postings);
+                    for (String trigram : trigrams("$" + entry.getKey())) {
+                        trigrams.computeIfAbsent(trigram, key -> new HashSet<>()).add(entry.getKey());
+                    }
+                }
+                postings.add(doc, entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Remove a product, if indexed
+     */
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docsById.remove(id);
+            if (doc != null) {
+                unindex(doc);
+                products.set(doc, null);
+                docTerms.set(doc, null);
+                free.add(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Search the products matching every word of a query
+     * 
+     * @param query Free text
+     * @param limit Maximum number of results
+     * @return The best matching products, best first; ties in index order
+     */
+    public List<Product> search(String query, int limit) {
+        Set<String> words = new LinkedHashSet<>();
+        tokenize(query, words);
+        if (words.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        
+        lock.readLock().lock();
+        Scratch scratch = scratches.poll();
+        if (scratch == null) {
+            scratch = new Scratch();
+        }
+        try {
+            scratch.ensure(products.size());
+            for (String word : words) {
+                scratch.startWord();
+                match(word, scratch);
+                if (!scratch.next()) {
+                    return List.of();
+                }
+            }
+            return top(scratch, limit);
+        } finally {
+            scratch.reset();
+            scratches.offer(scratch);
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Score the candidates matching one query word, each by its best match
+     */
+    private void match(String word, Scratch scratch) {
+        Postings exact = terms.get(word);
+        if (exact != null) {
+            collect(exact, 1.0f, scratch);
+        }
+        int expansions = 0;
+        if (word.length() >= MIN_PREFIX) {
+            for (Map.Entry<String, Postings> entry : terms.subMap(word, false, word + Character.MAX_VALUE, false)
+                .entrySet()) {
+                if (++expansions > MAX_EXPANSIONS) {
+                    break;
+                }
+                // Completions of a larger part of the term rank higher
+                collect(entry.getValue(), 0.6f + 0.3f * word.length() / entry.getKey().length(), scratch);
+            }
+        }
+        
+        int maxEdits = word.length() >= 8 ? 2 : word.length() >= 4 ? 1 : 0;
+        if (maxEdits == 0) {
+            return;
+        }
+        // Each edit changes at most 3 trigrams of the word
+        List<String> wordTrigrams = trigrams("$" + word);
+        int needed = Math.max(1, wordTrigrams.size() - 3 * maxEdits);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : wordTrigrams) {
+            Set<String> candidates = trigrams.get(trigram);
+            if (candidates != null) {
+                for (String term : candidates) {
+                    shared.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+        expansions = 0;
+        for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+            String term = entry.getKey();
+            if (entry.getValue() < needed || term.startsWith(word) || term.length() < word.length() - maxEdits) {
+                continue; // too different, or already matched
+            }
+            if (++expansions > MAX_EXPANSIONS) {
+                break;
+            }
+            int distance = distance(word, term, maxEdits, false);
+            if (distance <= maxEdits) {
+                collect(terms.get(term), 0.5f / distance, scratch);
+            } else {
+                // A typo in a word still being typed: close to a prefix of the term
+                distance = distance(word, term, maxEdits, true);
+                if (distance <= maxEdits) {
+                    collect(terms.get(term), 0.4f / distance, scratch);
+                }
+            }
+        }
+    }
+    
+    private static void collect(Postings postings, float quality, Scratch scratch) {
+        for (int i = 0; i < postings.size; i++) {
+            int mask = postings.fields[i];
+            float weight = (mask & NAME) != 0 ? 3 : (mask & INGREDIENTS) != 0 ? 2 : 1;
+            scratch.hit(postings.docs[i], weight * quality);
+        }
+    }
+    
+    /**
+     * The best candidates, through a min-heap of doc numbers holding the
+     * best so far with the worst at the root
+     */
+    private List<Product> top(Scratch scratch, int limit) {
+        float[] total = scratch.total;
+        int[] heap = new int[Math.min(limit, scratch.touchedCount)];
+        int size = 0;
+        for (int i = 0; i < scratch.touchedCount; i++) {
+            int doc = scratch.touched[i];
+            if (size < heap.length) {
+                heap[size] = doc;
+                for (int child = size++; child > 0 && better(heap[(child - 1) / 2], heap[child], total); ) {
+                    swap(heap, child, (child - 1) / 2);
+                    child = (child - 1) / 2;
+                }
+            } else if (better(doc, heap[0], total)) {
+                heap[0] = doc;
+                siftDown(heap, size, total);
+            }
+        }
+        Product[] result = new Product[size];
+        while (size > 0) {
+            result[size - 1] = products.get(heap[0]);
+            heap[0] = heap[--size];
+            siftDown(heap, size, total);
+        }
+        return List.of(result);
+    }
+    
+    private static boolean better(int doc, int other, float[] total) {
+        return total[doc] > total[other] || total[doc] == total[other] && doc < other;
+    }
+    
+    private static void siftDown(int[] heap, int size, float[] total) {
+        int parent = 0;
+        while (2 * parent + 1 < size) {
+            int child = 2 * parent + 1;
+            if (child + 1 < size && better(heap[child], heap[child + 1], total)) {
+                child++;
+            }
+            if (!better(heap[parent], heap[child], total)) {
+                return;
+            }
+            swap(heap, parent, child);
+            parent = child;
+        }
+    }
+    
+    private static void swap(int[] heap, int a, int b) {
+        int doc = heap[a];
+        heap[a] = heap[b];
+        heap[b] = doc;
+    }
+    
+    private void unindex(int doc) {
+        for (String term : docTerms.get(doc)) {
+            Postings postings = terms.get(term);
+            postings.remove(doc);
+            if (postings.size == 0) {
+                terms.remove(term);
+                for (String trigram : trigrams("$" + term)) {
+                    Set<String> candidates = trigrams.get(trigram);
+                    candidates.remove(term);
+                    if (candidates.isEmpty()) {
+                        trigrams.remove(trigram);
+                    }
+                }
+            }
+        }
+    }
+    
+    private static void collect(String text, int field, Map<String, Integer> fields) {
+        if (text == null) {
+            return;
+        }
+        Set<String> words = new HashSet<>();
+        tokenize(text, words);
+        for (String word : words) {
+            fields.merge(word, field, (a, b) -> a | b);
+        }
+    }
+    
+    /**
+     * Split text into lowercase words without accents
+     */
+    private static void tokenize(String text, Set<String> words) {
+        if (text == null) {
+            return;
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= folded.length(); i++) {
+            char c = i < folded.length() ? folded.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (!word.isEmpty()) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+    }
+    
+    private static List<String> trigrams(String text) {
+        List<String> result = new ArrayList<>(Math.max(1, text.length() - 2));
+        if (text.length() < 3) {
+            result.add(text);
+            return result;
+        }
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            result.add(text.substring(i, i + 3));
+        }
+        return result;
+    }
+    
+    /**
+     * Edit distance between a word and a term, or the closest prefix of the
+     * term, bounded: the rows stop as soon as every cell exceeds max
+     * 
+     * @return The distance, or max + 1 if more than max
+     */
+    private static int distance(String word, String term, int max, boolean toPrefix) {
+        int m = word.length();
+        int n = term.length();
+        int[] previous = new int[n + 1];
+        int[] current = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= m; i++) {
+            current[0] = i;
+            int rowMin = i;
+            char c = word.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                int cost = c == term.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        int distance = previous[n];
+        if (toPrefix) {
+            for (int j = 0; j < n; j++) {
+                distance = Math.min(distance, previous[j]);
+            }
+        }
+        return Math.min(distance, max + 1);
+    }
+}
@@ -1,7 +1,9 @@
 package com.raven.config;
 
+import com.raven.metrics.DynamoDbMetricsInterceptor;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
@@ -12,6 +14,8 @@ import software.amazon.awssdk.auth.credentials.SystemPropertyCredentialsProvider
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
+import software.amazon.awssdk.services.dynamodb.streams.DynamoDbStreamsClient;
+import software.amazon.awssdk.services.dynamodb.streams.DynamoDbStreamsClientBuilder;
 
 import java.net.URI;
 import java.util.Optional;
@@ -34,6 +38,12 @@ public class AwsClientProducer {
     @ConfigProperty(name = "aws.profile", defaultValue = "default")
     String awsProfile;
     
+    @Inject
+    DynamoDbConcurrencyLimiter concurrencyLimiter;
+    
+    @Inject
+    DynamoDbMetricsInterceptor metricsInterceptor;
+    
     /**
      * Produces a DynamoDB client with explicit configuration
      * This overrides the default Quarkus DynamoDB client to ensure proper setup
@@ -60,7 +70,10 @@ public class AwsClientProducer {
             // Build DynamoDB client
             DynamoDbClientBuilder builder = DynamoDbClient.builder()
                 .region(Region.of(awsRegion))
-                .credentialsProvider(credentialsProvider);
+                .credentialsProvider(credentialsProvider)
+                .overrideConfiguration(c -> c
+                    .addExecutionInterceptor(concurrencyLimiter)
+                    .addExecutionInterceptor(metricsInterceptor));
             
             // Add endpoint override if configured (for local development)
             if (endpointOverride.isPresent() && !endpointOverride.get().isBlank()) {
@@ -83,6 +96,30 @@ public class AwsClientProducer {
         }
     }
     
+    /**
+     * Produces the DynamoDB Streams client used by the order event bus,
+     * with the same credentials, region and endpoint override (DynamoDB
+     * Local serves streams on its main endpoint). Stream polling doesn't
+     * take concurrency limiter permits, so request load can't stall it.
+     */
+    @Produces
+    @ApplicationScoped
+    public DynamoDbStreamsClient dynamoDbStreamsClient() {
+        LOG.info("Creating DynamoDB Streams client");
+        
+        DynamoDbStreamsClientBuilder builder = DynamoDbStreamsClient.builder()
+            .region(Region.of(awsRegion))
+            .credentialsProvider(createCredentialsProvider())
+            .overrideConfiguration(c -> c.addExecutionInterceptor(metricsInterceptor));
+        
+        if (endpointOverride.isPresent() && !endpointOverride.get().isBlank()) {
+            LOG.warnf("Using custom DynamoDB Streams endpoint: %s (not recommended for production)", endpointOverride.get());
+            builder.endpointOverride(URI.create(endpointOverride.get()));
+        }
+        
+        return builder.build();
+    }
+    
     /**
      * Creates a credentials provider chain that tries multiple sources in order:
      * 1. Environment variables (AWS_ACCESS_KEY_ID, AWS_SECRET_ACCESS_KEY)
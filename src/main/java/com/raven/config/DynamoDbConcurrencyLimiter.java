@@ -0,0 +1,120 @@
+package com.raven.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the number of in-flight DynamoDB calls. With request handlers on
+ * virtual threads the worker pool no longer bounds concurrency, so this
+ * limit is what keeps a traffic burst within the table's throughput.
+ * Callers over the limit wait (without pinning a carrier thread) up to
+ * dynamodb.max-concurrency.acquire-timeout, then fail.
+ */
+@ApplicationScoped
+public class DynamoDbConcurrencyLimiter implements ExecutionInterceptor {
+    
+    private static final Logger LOG = Logger.getLogger(DynamoDbConcurrencyLimiter.class);
+    
+    private static final ExecutionAttribute<Boolean> PERMIT = new ExecutionAttribute<>("RavenConcurrencyPermit");
+    
+    @ConfigProperty(name = "dynamodb.max-concurrency", defaultValue = "64")
+    int maxConcurrency;
+    
+    @ConfigProperty(name = "dynamodb.max-concurrency.acquire-timeout", defaultValue = "5s")
+    Duration acquireTimeout;
+    
+    private Semaphore permits;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    
+    @PostConstruct
+    void init() {
+        if (maxConcurrency > 0) {
+            permits = new Semaphore(maxConcurrency, true);
+            LOG.infof("DynamoDB concurrency limited to %d in-flight calls", maxConcurrency);
+        }
+    }
+    
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        if (permits == null) {
+            return;
+        }
+        if (!permits.tryAcquire()) {
+            waited.incrementAndGet();
+            try {
+                if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    rejected.incrementAndGet();
+                    throw SdkClientException.create(String.format(
+                        "DynamoDB concurrency limit of %d reached, no permit within %s", maxConcurrency, acquireTimeout));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw SdkClientException.create("Interrupted while waiting for a DynamoDB permit", e);
+            }
+        }
+        executionAttributes.putAttribute(PERMIT, Boolean.TRUE);
+    }
+    
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        release(executionAttributes);
+    }
+    
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        release(executionAttributes);
+    }
+    
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+    
+    /**
+     * Number of DynamoDB calls currently holding a permit
+     */
+    public int getInFlight() {
+        return permits == null ? 0 : maxConcurrency - permits.availablePermits();
+    }
+    
+    /**
+     * Number of callers currently waiting for a permit
+     */
+    public int getQueued() {
+        return permits == null ? 0 : permits.getQueueLength();
+    }
+    
+    /**
+     * Total calls that had to wait for a permit
+     */
+    public long getWaited() {
+        return waited.get();
+    }
+    
+    /**
+     * Total calls rejected after the acquire timeout
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+    
+    private void release(ExecutionAttributes executionAttributes) {
+        // The attribute is cleared so a permit is released exactly once
+        if (Boolean.TRUE.equals(executionAttributes.getAttribute(PERMIT))) {
+            executionAttributes.putAttribute(PERMIT, Boolean.FALSE);
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.raven.diagnostics;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches the in-process JFR stream for jdk.VirtualThreadPinned events
+ * (a virtual thread blocking while pinned to its carrier, e.g. inside a
+ * synchronized block or a native frame) and keeps the most recent ones
+ * for the diagnostic endpoint.
+ */
+@ApplicationScoped
+public class VirtualThreadPinningMonitor {
+    
+    private static final Logger LOG = Logger.getLogger(VirtualThreadPinningMonitor.class);
+    
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_FRAMES = 12;
+    
+    @ConfigProperty(name = "diagnostics.pinning.enabled", defaultValue = "true")
+    boolean enabled;
+    
+    @ConfigProperty(name = "diagnostics.pinning.threshold", defaultValue = "20ms")
+    Duration threshold;
+    
+    @ConfigProperty(name = "diagnostics.pinning.history", defaultValue = "50")
+    int history;
+    
+    private final AtomicLong pinnedCount = new AtomicLong();
+    private final AtomicLong pinnedNanos = new AtomicLong();
+    private final Deque<PinnedEvent> recent = new ArrayDeque<>(); // guarded by itself
+    private volatile RecordingStream stream;
+    private volatile String unavailableReason;
+    
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            unavailableReason = "disabled";
+            return;
+        }
+        try {
+            RecordingStream recording = new RecordingStream();
+            recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+            recording.onEvent(PINNED_EVENT, this::record);
+            recording.startAsync();
+            stream = recording;
+            LOG.infof("Virtual thread pinning monitor started (threshold %s)", threshold);
+        } catch (Exception | LinkageError e) {
+            // JFR is not available in every runtime (e.g. native images)
+            unavailableReason = e.getClass().getSimpleName() + ": " + e.getMessage();
+            LOG.warnf("Virtual thread pinning monitor not available: %s", unavailableReason);
+        }
+    }
+    
+    void onStop(@Observes ShutdownEvent event) {
+        RecordingStream recording = stream;
+        if (recording != null) {
+            recording.close();
+        }
+    }
+    
+    /**
+     * Whether pinning events are currently being recorded
+     */
+    public boolean isActive() {
+        return stream != null;
+    }
+    
+    public String getUnavailableReason() {
+        return unavailableReason;
+    }
+    
+    public Duration getThreshold() {
+        return threshold;
+    }
+    
+    public long getPinnedCount() {
+        return pinnedCount.get();
+    }
+    
+    public Duration getPinnedTotal() {
+        return Duration.ofNanos(pinnedNanos.get());
+    }
+    
+    /**
+     * Most recent pinning events, newest first
+     */
+    public List<PinnedEvent> getRecent() {
+        synchronized (recent) {
+            return new ArrayList<>(recent);
+        }
+    }
+    
+    private void record(RecordedEvent event) {
+        PinnedEvent pinned = PinnedEvent.of(event);
+        pinnedCount.incrementAndGet();
+        pinnedNanos.addAndGet(event.getDuration().toNanos());
+        synchronized (recent) {
+            recent.addFirst(pinned);
+            while (recent.size() > history) {
+                recent.removeLast();
+            }
+        }
+        LOG.warnf("Virtual thread pinned for %d ms on %s at %s",
+            pinned.durationMillis, pinned.thread, pinned.frames.isEmpty() ? "?" : pinned.frames.get(0));
+    }
+    
+    /**
+     * A recorded pinning: when, for how long, on which thread and where
+     */
+    public static final class PinnedEvent {
+        public final String startTime;
+        public final long durationMillis;
+        public final String thread;
+        public final List<String> frames;
+        
+        private PinnedEvent(String startTime, long durationMillis, String thread, List<String> frames) {
+            this.startTime = startTime;
+            this.durationMillis = durationMillis;
+            this.thread = thread;
+            this.frames = frames;
+        }
+        
+        static PinnedEvent of(RecordedEvent event) {
+            List<String> frames = new ArrayList<>();
+            RecordedStackTrace stackTrace = event.getStackTrace();
+            if (stackTrace != null) {
+                for (RecordedFrame frame : stackTrace.getFrames()) {
+                    if (frames.size() == MAX_FRAMES) {
+                        break;
+                    }
+                    frames.add(frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber());
+                }
+            }
+            String thread = event.getThread() != null ? event.getThread().getJavaName() : null;
+            return new PinnedEvent(event.getStartTime().toString(), event.getDuration().toMillis(), thread, frames);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.raven.metrics;
+
+/**
+ * Attributes the DynamoDB capacity consumed on the current thread to a
+ * background task, as the endpoint tag of raven.dynamodb.consumed.capacity,
+ * and sums it. Must be closed on the thread that opened it.
+ */
+public final class CapacityScope implements AutoCloseable {
+    
+    private final RequestMetrics metrics;
+    
+    private CapacityScope(RequestMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * @param task The task name, e.g. snapshot-restore
+     */
+    public static CapacityScope begin(String task) {
+        return new CapacityScope(RequestMetrics.begin(task));
+    }
+    
+    /**
+     * Capacity units consumed so far in this scope
+     */
+    public double consumedCapacity() {
+        return metrics.getConsumedCapacity();
+    }
+    
+    @Override
+    public void close() {
+        metrics.end();
+    }
+}
@@ -0,0 +1,185 @@
+package com.raven.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.SdkResponse;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactGetItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactGetItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DynamoDB client interceptor: asks every data-plane request for its
+ * consumed capacity (ReturnConsumedCapacity=TOTAL), times each call as
+ * raven.dynamodb.duration (tagged by table, operation and outcome) and
+ * accumulates raven.dynamodb.consumed.capacity per table, operation and
+ * the REST endpoint that issued the call.
+ */
+@ApplicationScoped
+public class DynamoDbMetricsInterceptor implements ExecutionInterceptor {
+    
+    private static final ExecutionAttribute<Long> START_NANOS = new ExecutionAttribute<>("RavenMetricsStart");
+    private static final String MULTIPLE_TABLES = "multiple";
+    private static final String UNKNOWN_OPERATION = "unknown";
+    
+    @Inject
+    MeterRegistry registry;
+    
+    // Meters by tag values, so a call only builds one the first time
+    private final Map<List<String>, Counter> capacityCounters = new ConcurrentHashMap<>();
+    private final Map<List<String>, Timer> timers = new ConcurrentHashMap<>();
+    
+    @Override
+    public SdkRequest modifyRequest(Context.ModifyRequest context, ExecutionAttributes executionAttributes) {
+        SdkRequest request = context.request();
+        ReturnConsumedCapacity total = ReturnConsumedCapacity.TOTAL;
+        if (request instanceof GetItemRequest r) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof PutItemRequest r) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof UpdateItemRequest r) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof DeleteItemRequest r) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof QueryRequest r) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof ScanRequest r) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof BatchGetItemRequest r) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof BatchWriteItemRequest r) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof TransactGetItemsRequest r) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof TransactWriteItemsRequest r) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        }
+        return request;
+    }
+    
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(START_NANOS, System.nanoTime());
+    }
+    
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        String operation = operationOf(executionAttributes);
+        String table = tableOf(context.request());
+        record(executionAttributes, operation, table, "SUCCESS");
+        
+        List<ConsumedCapacity> consumed = consumedCapacity(context.response());
+        String endpoint = RequestMetrics.currentEndpoint();
+        RequestMetrics request = RequestMetrics.current();
+        for (ConsumedCapacity capacity : consumed) {
+            if (capacity == null || capacity.capacityUnits() == null) {
+                continue;
+            }
+            String capacityTable = capacity.tableName() != null ? capacity.tableName() : table;
+            capacityCounters.computeIfAbsent(List.of(capacityTable, operation, endpoint), tags ->
+                Counter.builder("raven.dynamodb.consumed.capacity")
+                    .description("DynamoDB capacity units consumed")
+                    .baseUnit("capacity.units")
+                    .tag("table", capacityTable)
+                    .tag("operation", operation)
+                    .tag("endpoint", endpoint)
+                    .register(registry))
+                .increment(capacity.capacityUnits());
+            if (request != null) {
+                request.addConsumedCapacity(capacity.capacityUnits());
+            }
+        }
+    }
+    
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        record(executionAttributes, operationOf(executionAttributes), tableOf(context.request()), "ERROR");
+    }
+    
+    private void record(ExecutionAttributes executionAttributes, String operation, String table, String outcome) {
+        Long start = executionAttributes.getAttribute(START_NANOS);
+        if (start == null) {
+            return;
+        }
+        timers.computeIfAbsent(List.of(table, operation, outcome), tags ->
+            Timer.builder("raven.dynamodb.duration")
+                .description("Duration of DynamoDB calls, including SDK retries")
+                .tag("table", table)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .publishPercentiles(InstrumentedInterceptor.PERCENTILES)
+                .register(registry))
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+    
+    private static String operationOf(ExecutionAttributes executionAttributes) {
+        String operation = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        return operation != null ? operation : UNKNOWN_OPERATION;
+    }
+    
+    private static String tableOf(SdkRequest request) {
+        return request.getValueForField("TableName", String.class).orElse(MULTIPLE_TABLES);
+    }
+    
+    private static List<ConsumedCapacity> consumedCapacity(SdkResponse response) {
+        if (response instanceof GetItemResponse r) {
+            return single(r.consumedCapacity());
+        } else if (response instanceof PutItemResponse r) {
+            return single(r.consumedCapacity());
+        } else if (response instanceof UpdateItemResponse r) {
+            return single(r.consumedCapacity());
+        } else if (response instanceof DeleteItemResponse r) {
+            return single(r.consumedCapacity());
+        } else if (response instanceof QueryResponse r) {
+            return single(r.consumedCapacity());
+        } else if (response instanceof ScanResponse r) {
+            return single(r.consumedCapacity());
+        } else if (response instanceof BatchGetItemResponse r) {
+            return r.consumedCapacity();
+        } else if (response instanceof BatchWriteItemResponse r) {
+            return r.consumedCapacity();
+        } else if (response instanceof TransactGetItemsResponse r) {
+            return r.consumedCapacity();
+        } else if (response instanceof TransactWriteItemsResponse r) {
+            return r.consumedCapacity();
+        }
+        return List.of();
+    }
+    
+    private static List<ConsumedCapacity> single(ConsumedCapacity capacity) {
+        return capacity != null ? List.of(capacity) : List.of();
+    }
+}
@@ -0,0 +1,19 @@
+package com.raven.metrics;
+
+import jakarta.interceptor.InterceptorBinding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Records a latency histogram for every method of the annotated bean.
+ * On JAX-RS resources it also opens the endpoint scope that DynamoDB
+ * consumed capacity is attributed to.
+ */
+@InterceptorBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Instrumented {
+}
@@ -0,0 +1,155 @@
+package com.raven.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.core.Response;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@link Instrumented} beans. Resource methods are recorded as
+ * raven.endpoint.duration (tagged by endpoint and outcome) together with the
+ * DynamoDB capacity each request consumed; other beans as
+ * raven.method.duration (tagged by class and method).
+ */
+@Instrumented
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION)
+public class InstrumentedInterceptor {
+    
+    static final double[] PERCENTILES = {0.5, 0.9, 0.95, 0.99};
+    
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(30);
+    
+    @Inject
+    MeterRegistry registry;
+    
+    private final Map<Method, MethodMeters> meters = new ConcurrentHashMap<>();
+    
+    @AroundInvoke
+    Object measure(InvocationContext context) throws Exception {
+        MethodMeters methodMeters = meters.computeIfAbsent(context.getMethod(), this::createMeters);
+        RequestMetrics request = methodMeters.endpoint != null ? RequestMetrics.begin(methodMeters.endpoint) : null;
+        long start = System.nanoTime();
+        String outcome = "EXCEPTION";
+        try {
+            Object result = context.proceed();
+            outcome = outcomeOf(result);
+            return result;
+        } finally {
+            methodMeters.timer(outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (request != null) {
+                request.end();
+                methodMeters.capacity.record(request.getConsumedCapacity());
+            }
+        }
+    }
+    
+    private MethodMeters createMeters(Method method) {
+        Class<?> type = method.getDeclaringClass();
+        if (type.isAnnotationPresent(Path.class)) {
+            return new MethodMeters(endpointName(type, method));
+        }
+        return new MethodMeters(null, Timer.builder("raven.method.duration")
+            .description("Duration of instrumented bean methods")
+            .tag("class", type.getSimpleName())
+            .tag("method", method.getName())
+            .publishPercentileHistogram()
+            .publishPercentiles(PERCENTILES)
+            .minimumExpectedValue(MIN_EXPECTED)
+            .maximumExpectedValue(MAX_EXPECTED)
+            .register(registry));
+    }
+    
+    /**
+     * Endpoint name as "<HTTP method> <path template>", e.g. "GET /api/orders/{id}"
+     */
+    static String endpointName(Class<?> type, Method method) {
+        String httpMethod = null;
+        for (Annotation annotation : method.getAnnotations()) {
+            HttpMethod designator = annotation.annotationType().getAnnotation(HttpMethod.class);
+            if (designator != null) {
+                httpMethod = designator.value();
+                break;
+            }
+        }
+        String path = type.getAnnotation(Path.class).value();
+        Path methodPath = method.getAnnotation(Path.class);
+        if (methodPath != null) {
+            String sub = methodPath.value();
+            path = path.endsWith("/") || sub.startsWith("/") ? path + sub : path + "/" + sub;
+        }
+        return httpMethod != null ? httpMethod + " " + path : type.getSimpleName() + "." + method.getName();
+    }
+    
+    private static String outcomeOf(Object result) {
+        if (!(result instanceof Response response)) {
+            return "SUCCESS";
+        }
+        Response.Status.Family family = Response.Status.Family.familyOf(response.getStatus());
+        switch (family) {
+            case CLIENT_ERROR:
+                return "CLIENT_ERROR";
+            case SERVER_ERROR:
+                return "SERVER_ERROR";
+            default:
+                return "SUCCESS";
+        }
+    }
+    
+    /**
+     * Meters of one intercepted method; endpoint timers are kept per outcome
+     */
+    private final class MethodMeters {
+        private final String endpoint;
+        private final Timer methodTimer;
+        private final DistributionSummary capacity;
+        private final Map<String, Timer> outcomeTimers = new ConcurrentHashMap<>();
+        
+        MethodMeters(String endpoint) {
+            this.endpoint = endpoint;
+            this.methodTimer = null;
+            this.capacity = DistributionSummary.builder("raven.endpoint.consumed.capacity")
+                .description("DynamoDB capacity units consumed per request")
+                .baseUnit("capacity.units")
+                .tag("endpoint", endpoint)
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+        }
+        
+        MethodMeters(String endpoint, Timer methodTimer) {
+            this.endpoint = endpoint;
+            this.methodTimer = methodTimer;
+            this.capacity = null;
+        }
+        
+        Timer timer(String outcome) {
+            if (methodTimer != null) {
+                return methodTimer;
+            }
+            return outcomeTimers.computeIfAbsent(outcome, o -> Timer.builder("raven.endpoint.duration")
+                .description("Duration of REST endpoint invocations")
+                .tag("endpoint", endpoint)
+                .tag("outcome", o)
+                .publishPercentileHistogram()
+                .publishPercentiles(PERCENTILES)
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(registry));
+        }
+    }
+}
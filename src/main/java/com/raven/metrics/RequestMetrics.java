@@ -0,0 +1,62 @@
+package com.raven.metrics;
+
+/**
+ * Per-request metrics scope, bound to the thread serving the request (a
+ * virtual thread for the blocking resources, and the DynamoDB sync client
+ * runs its interceptors on the calling thread)
+ */
+final class RequestMetrics {
+    
+    static final String NO_ENDPOINT = "none";
+    
+    private static final ThreadLocal<RequestMetrics> CURRENT = new ThreadLocal<>();
+    
+    private final String endpoint;
+    private final RequestMetrics previous;
+    private double consumedCapacity;
+    
+    private RequestMetrics(String endpoint, RequestMetrics previous) {
+        this.endpoint = endpoint;
+        this.previous = previous;
+    }
+    
+    /**
+     * Open a scope for an endpoint invocation; must be closed with {@link #end()}
+     */
+    static RequestMetrics begin(String endpoint) {
+        RequestMetrics metrics = new RequestMetrics(endpoint, CURRENT.get());
+        CURRENT.set(metrics);
+        return metrics;
+    }
+    
+    /**
+     * The scope of the current thread, or null outside of an endpoint
+     */
+    static RequestMetrics current() {
+        return CURRENT.get();
+    }
+    
+    /**
+     * Endpoint name of the current thread's scope
+     */
+    static String currentEndpoint() {
+        RequestMetrics metrics = CURRENT.get();
+        return metrics != null ? metrics.endpoint : NO_ENDPOINT;
+    }
+    
+    void addConsumedCapacity(double capacityUnits) {
+        consumedCapacity += capacityUnits;
+    }
+    
+    double getConsumedCapacity() {
+        return consumedCapacity;
+    }
+    
+    void end() {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+}
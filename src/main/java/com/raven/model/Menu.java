@@ -0,0 +1,65 @@
+package com.raven.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * The menu of a channel: its categories by sortOrder, each with the
+ * products visible on the channel
+ */
+public class Menu {
+    
+    @JsonProperty("channel")
+    private String channel;
+    
+    @JsonProperty("seq")
+    private long seq; // catalog sequence, to follow with GET /api/catalog/changes?since=
+    
+    @JsonProperty("categories")
+    private List<MenuCategory> categories;
+    
+    // Constructors
+    public Menu() {
+    }
+    
+    public Menu(String channel, long seq, List<MenuCategory> categories) {
+        this.channel = channel;
+        this.seq = seq;
+        this.categories = categories;
+    }
+    
+    // Getters and Setters
+    public String getChannel() {
+        return channel;
+    }
+    
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+    
+    public long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+    
+    public List<MenuCategory> getCategories() {
+        return categories;
+    }
+    
+    public void setCategories(List<MenuCategory> categories) {
+        this.categories = categories;
+    }
+    
+    @Override
+    public String toString() {
+        return "Menu{" +
+                "channel='" + channel + '\'' +
+                ", seq=" + seq +
+                ", categories=" + categories +
+                '}';
+    }
+}
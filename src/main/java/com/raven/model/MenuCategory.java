@@ -0,0 +1,53 @@
+package com.raven.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+import java.util.List;
+
+/**
+ * A category of the menu with its products, serialized as the category's
+ * own fields plus "products"
+ */
+public class MenuCategory {
+    
+    @JsonUnwrapped
+    private Category category;
+    
+    @JsonProperty("products")
+    private List<Product> products;
+    
+    // Constructors
+    public MenuCategory() {
+    }
+    
+    public MenuCategory(Category category, List<Product> products) {
+        this.category = category;
+        this.products = products;
+    }
+    
+    // Getters and Setters
+    public Category getCategory() {
+        return category;
+    }
+    
+    public void setCategory(Category category) {
+        this.category = category;
+    }
+    
+    public List<Product> getProducts() {
+        return products;
+    }
+    
+    public void setProducts(List<Product> products) {
+        this.products = products;
+    }
+    
+    @Override
+    public String toString() {
+        return "MenuCategory{" +
+                "category=" + category +
+                ", products=" + products +
+                '}';
+    }
+}
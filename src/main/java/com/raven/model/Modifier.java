@@ -0,0 +1,63 @@
+package com.raven.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Modifier nested object for OrderItem (e.g. extra cheese), with its price
+ * difference per unit
+ */
+public class Modifier {
+    
+    @JsonProperty("id")
+    private String id; // optional, the FE may generate it
+    
+    @JsonProperty("name")
+    private String name;
+    
+    @JsonProperty("priceDelta")
+    private Double priceDelta;
+    
+    // Constructors
+    public Modifier() {
+    }
+    
+    public Modifier(String id, String name, Double priceDelta) {
+        this.id = id;
+        this.name = name;
+        this.priceDelta = priceDelta;
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public Double getPriceDelta() {
+        return priceDelta;
+    }
+    
+    public void setPriceDelta(Double priceDelta) {
+        this.priceDelta = priceDelta;
+    }
+    
+    @Override
+    public String toString() {
+        return "Modifier{" +
+                "id='" + id + '\'' +
+                ", name='" + name + '\'' +
+                ", priceDelta=" + priceDelta +
+                '}';
+    }
+}
@@ -34,12 +34,18 @@ public class Order {
     @JsonProperty("items")
     private List<OrderItem> items;
     
+    @JsonProperty("totals")
+    private OrderTotals totals; // computed by the server
+    
     @JsonProperty("createdAt")
     private String createdAt; // ISO date format
     
     @JsonProperty("updatedAt")
     private String updatedAt; // ISO date format
     
+    @JsonProperty("version")
+    private long version; // incremented by every write, 0 for orders stored before versioning
+    
     // Constructors
     public Order() {
     }
@@ -58,6 +64,16 @@ public class Order {
         this.updatedAt = updatedAt;
     }
     
+    /**
+     * Shallow copy (the customer and item objects are shared)
+     */
+    public Order(Order other) {
+        this(other.id, other.status, other.source, other.channel, other.etaMinutes,
+             other.customer, other.notes, other.items, other.createdAt, other.updatedAt);
+        this.version = other.version;
+        this.totals = other.totals;
+    }
+    
     // Getters and Setters
     public String getId() {
         return id;
@@ -123,6 +139,14 @@ public class Order {
         this.items = items;
     }
     
+    public OrderTotals getTotals() {
+        return totals;
+    }
+    
+    public void setTotals(OrderTotals totals) {
+        this.totals = totals;
+    }
+    
     public String getCreatedAt() {
         return createdAt;
     }
@@ -139,6 +163,14 @@ public class Order {
         this.updatedAt = updatedAt;
     }
     
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
     @Override
     public String toString() {
         return "Order{" +
@@ -150,8 +182,10 @@ public class Order {
                 ", customer=" + customer +
                 ", notes='" + notes + '\'' +
                 ", items=" + items +
+                ", totals=" + totals +
                 ", createdAt='" + createdAt + '\'' +
                 ", updatedAt='" + updatedAt + '\'' +
+                ", version=" + version +
                 '}';
     }
 }
@@ -3,6 +3,8 @@ package com.raven.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.List;
+
 /**
  * OrderItem nested object for Order
  */
@@ -23,6 +25,18 @@ public class OrderItem {
     @JsonProperty("notes")
     private String notes;
     
+    @JsonProperty("station")
+    private String station; // kitchen, bar
+    
+    @JsonProperty("course")
+    private String course; // starter, main, dessert
+    
+    @JsonProperty("modifiers")
+    private List<Modifier> modifiers;
+    
+    @JsonProperty("lineTotalCents")
+    private Long lineTotalCents; // (price + modifiers) x quantity, computed by the server
+    
     // Constructors
     public OrderItem() {
     }
@@ -35,6 +49,17 @@ public class OrderItem {
         this.notes = notes;
     }
     
+    /**
+     * Shallow copy (the modifier objects are shared)
+     */
+    public OrderItem(OrderItem other) {
+        this(other.productId, other.productName, other.quantity, other.price, other.notes);
+        this.station = other.station;
+        this.course = other.course;
+        this.modifiers = other.modifiers;
+        this.lineTotalCents = other.lineTotalCents;
+    }
+    
     // Getters and Setters
     public String getProductId() {
         return productId;
@@ -76,6 +101,38 @@ public class OrderItem {
         this.notes = notes;
     }
     
+    public String getStation() {
+        return station;
+    }
+    
+    public void setStation(String station) {
+        this.station = station;
+    }
+    
+    public String getCourse() {
+        return course;
+    }
+    
+    public void setCourse(String course) {
+        this.course = course;
+    }
+    
+    public List<Modifier> getModifiers() {
+        return modifiers;
+    }
+    
+    public void setModifiers(List<Modifier> modifiers) {
+        this.modifiers = modifiers;
+    }
+    
+    public Long getLineTotalCents() {
+        return lineTotalCents;
+    }
+    
+    public void setLineTotalCents(Long lineTotalCents) {
+        this.lineTotalCents = lineTotalCents;
+    }
+    
     @Override
     public String toString() {
         return "OrderItem{" +
@@ -84,6 +141,10 @@ public class OrderItem {
                 ", quantity=" + quantity +
                 ", price=" + price +
                 ", notes='" + notes + '\'' +
+                ", station='" + station + '\'' +
+                ", course='" + course + '\'' +
+                ", modifiers=" + (modifiers != null ? modifiers.size() : 0) +
+                ", lineTotalCents=" + lineTotalCents +
                 '}';
     }
 }
@@ -0,0 +1,97 @@
+package com.raven.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Totals of an order computed by the server, in cents: net, tax and gross,
+ * overall and per tax rate
+ */
+public class OrderTotals {
+    
+    @JsonProperty("subtotalCents")
+    private long subtotalCents; // net of tax
+    
+    @JsonProperty("taxCents")
+    private long taxCents;
+    
+    @JsonProperty("totalCents")
+    private long totalCents;
+    
+    @JsonProperty("taxes")
+    private List<TaxSubtotal> taxes; // one per tax rate used
+    
+    // Constructors
+    public OrderTotals() {
+    }
+    
+    public OrderTotals(long subtotalCents, long taxCents, long totalCents, List<TaxSubtotal> taxes) {
+        this.subtotalCents = subtotalCents;
+        this.taxCents = taxCents;
+        this.totalCents = totalCents;
+        this.taxes = taxes;
+    }
+    
+    // Getters and Setters
+    public long getSubtotalCents() {
+        return subtotalCents;
+    }
+    
+    public void setSubtotalCents(long subtotalCents) {
+        this.subtotalCents = subtotalCents;
+    }
+    
+    public long getTaxCents() {
+        return taxCents;
+    }
+    
+    public void setTaxCents(long taxCents) {
+        this.taxCents = taxCents;
+    }
+    
+    public long getTotalCents() {
+        return totalCents;
+    }
+    
+    public void setTotalCents(long totalCents) {
+        this.totalCents = totalCents;
+    }
+    
+    public List<TaxSubtotal> getTaxes() {
+        return taxes;
+    }
+    
+    public void setTaxes(List<TaxSubtotal> taxes) {
+        this.taxes = taxes;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OrderTotals)) {
+            return false;
+        }
+        OrderTotals other = (OrderTotals) o;
+        return subtotalCents == other.subtotalCents && taxCents == other.taxCents
+            && totalCents == other.totalCents && Objects.equals(taxes, other.taxes);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(subtotalCents, taxCents, totalCents, taxes);
+    }
+    
+    @Override
+    public String toString() {
+        return "OrderTotals{" +
+                "subtotalCents=" + subtotalCents +
+                ", taxCents=" + taxCents +
+                ", totalCents=" + totalCents +
+                ", taxes=" + taxes +
+                '}';
+    }
+}
@@ -0,0 +1,109 @@
+package com.raven.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * The amounts of an order taxed at one rate, in cents
+ */
+public class TaxSubtotal {
+    
+    @JsonProperty("taxRateId")
+    private String taxRateId;
+    
+    @JsonProperty("rateBasisPoints")
+    private int rateBasisPoints; // e.g. 2200 for 22%
+    
+    @JsonProperty("netCents")
+    private long netCents;
+    
+    @JsonProperty("taxCents")
+    private long taxCents;
+    
+    @JsonProperty("grossCents")
+    private long grossCents;
+    
+    // Constructors
+    public TaxSubtotal() {
+    }
+    
+    public TaxSubtotal(String taxRateId, int rateBasisPoints, long netCents, long taxCents, long grossCents) {
+        this.taxRateId = taxRateId;
+        this.rateBasisPoints = rateBasisPoints;
+        this.netCents = netCents;
+        this.taxCents = taxCents;
+        this.grossCents = grossCents;
+    }
+    
+    // Getters and Setters
+    public String getTaxRateId() {
+        return taxRateId;
+    }
+    
+    public void setTaxRateId(String taxRateId) {
+        this.taxRateId = taxRateId;
+    }
+    
+    public int getRateBasisPoints() {
+        return rateBasisPoints;
+    }
+    
+    public void setRateBasisPoints(int rateBasisPoints) {
+        this.rateBasisPoints = rateBasisPoints;
+    }
+    
+    public long getNetCents() {
+        return netCents;
+    }
+    
+    public void setNetCents(long netCents) {
+        this.netCents = netCents;
+    }
+    
+    public long getTaxCents() {
+        return taxCents;
+    }
+    
+    public void setTaxCents(long taxCents) {
+        this.taxCents = taxCents;
+    }
+    
+    public long getGrossCents() {
+        return grossCents;
+    }
+    
+    public void setGrossCents(long grossCents) {
+        this.grossCents = grossCents;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TaxSubtotal)) {
+            return false;
+        }
+        TaxSubtotal other = (TaxSubtotal) o;
+        return rateBasisPoints == other.rateBasisPoints && netCents == other.netCents
+            && taxCents == other.taxCents && grossCents == other.grossCents
+            && Objects.equals(taxRateId, other.taxRateId);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(taxRateId, rateBasisPoints, netCents, taxCents, grossCents);
+    }
+    
+    @Override
+    public String toString() {
+        return "TaxSubtotal{" +
+                "taxRateId='" + taxRateId + '\'' +
+                ", rateBasisPoints=" + rateBasisPoints +
+                ", netCents=" + netCents +
+                ", taxCents=" + taxCents +
+                ", grossCents=" + grossCents +
+                '}';
+    }
+}
@@ -0,0 +1,509 @@
+package com.raven.orders;
+
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.repository.OrderRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DescribeStreamRequest;
+import software.amazon.awssdk.services.dynamodb.model.DescribeStreamResponse;
+import software.amazon.awssdk.services.dynamodb.model.ExpiredIteratorException;
+import software.amazon.awssdk.services.dynamodb.model.GetRecordsResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetShardIteratorRequest;
+import software.amazon.awssdk.services.dynamodb.model.OperationType;
+import software.amazon.awssdk.services.dynamodb.model.Record;
+import software.amazon.awssdk.services.dynamodb.model.Shard;
+import software.amazon.awssdk.services.dynamodb.model.ShardIteratorType;
+import software.amazon.awssdk.services.dynamodb.model.StreamRecord;
+import software.amazon.awssdk.services.dynamodb.model.StreamViewType;
+import software.amazon.awssdk.services.dynamodb.model.TrimmedDataAccessException;
+import software.amazon.awssdk.services.dynamodb.streams.DynamoDbStreamsClient;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Order event bus fed by the DynamoDB Stream of the orders table
+ * (orders.events.bus=dynamodb-streams), so every instance sees the writes
+ * made through any instance. Each instance reads every shard of the stream
+ * itself and delivers each record once to its local listeners; local
+ * publications are ignored, since the stream already carries them.
+ * 
+ * Shards are polled in turn by one thread. The position in each shard (the
+ * sequence number of the last record delivered) is checkpointed, so an
+ * expired iterator or a failed call resumes right after it, neither
+ * skipping nor repeating records. A child shard is read only once its
+ * parent is exhausted, which keeps the writes to each order in order.
+ * 
+ * The stream must have the NEW_AND_OLD_IMAGES view type. In the split
+ * layout only header records make events. Their line items come from the
+ * line records of the stream, kept per order: a header whose lines were
+ * rewritten waits until every line at its version has been read (they may
+ * follow it, even in a later batch), a header written alone takes the lines
+ * as they are. Only an order whose lines were never seen (changed before
+ * this instance started reading) has them read once from the table.
+ */
+@ApplicationScoped
+@Typed(DynamoDbStreamsOrderEventBus.class)
+public class DynamoDbStreamsOrderEventBus implements OrderEventBus {
+    
+    private static final Logger LOG = Logger.getLogger(DynamoDbStreamsOrderEventBus.class);
+    
+    // Attributes rewritten by a status change; any other difference is an update
+    private static final Set<String> STATUS_ATTRIBUTES = Set.of("status", "updatedAt", "version");
+    
+    @Inject
+    DynamoDbStreamsClient streamsClient;
+    
+    @Inject
+    DynamoDbClient dynamoDbClient;
+    
+    @Inject
+    OrderRepository orderRepository;
+    
+    @ConfigProperty(name = "dynamodb.table.orders")
+    String tableName;
+    
+    @ConfigProperty(name = "orders.events.dynamodb.stream-arn")
+    Optional<String> configuredStreamArn;
+    
+    @ConfigProperty(name = "orders.events.dynamodb.batch-size", defaultValue = "100")
+    int batchSize;
+    
+    @ConfigProperty(name = "orders.events.dynamodb.poll-interval", defaultValue = "500ms")
+    Duration pollInterval;
+    
+    @ConfigProperty(name = "orders.events.dynamodb.shard-refresh", defaultValue = "60s")
+    Duration shardRefresh;
+    
+    private final List<Consumer<List<OrderEvent>>> listeners = new CopyOnWriteArrayList<>();
+    
+    // Only touched by the polling thread
+    private final Map<String, ShardPosition> shards = new LinkedHashMap<>(); // shards being read
+    private final Set<String> knownShards = new HashSet<>(); // every shard seen, read or not
+    private String streamArn;
+    
+    // Split layout, only touched by the polling thread: the lines read per
+    // order, the items of each order's last event, and the header records
+    // waiting for their lines, by order id
+    private final Map<String, Map<String, OrderRepository.StoredLine>> lines = new HashMap<>();
+    private final Map<String, List<OrderItem>> lastItems = new HashMap<>();
+    private final Map<String, Deque<Record>> waitingHeaders = new HashMap<>();
+    
+    private Thread poller;
+    private volatile boolean running;
+    
+    @Override
+    public void publish(OrderEvent event) {
+        LOG.debugf("Order event %s will be delivered from the stream", event);
+    }
+    
+    /**
+     * Register a listener; the first one starts reading the stream
+     */
+    @Override
+    public synchronized void subscribe(Consumer<List<OrderEvent>> listener) {
+        listeners.add(listener);
+        if (poller == null) {
+            running = true;
+            poller = Thread.ofVirtual().name("order-event-bus").start(this::run);
+        }
+    }
+    
+    @Override
+    public boolean seesAllInstances() {
+        return true;
+    }
+    
+    @PreDestroy
+    synchronized void stop() {
+        running = false;
+        if (poller != null) {
+            poller.interrupt();
+        }
+    }
+    
+    private void run() {
+        boolean initial = true;
+        long nextRefresh = 0;
+        while (running) {
+            try {
+                if (streamArn == null) {
+                    streamArn = resolveStreamArn();
+                }
+                if (System.currentTimeMillis() >= nextRefresh) {
+                    refreshShards(initial);
+                    initial = false;
+                    nextRefresh = System.currentTimeMillis() + shardRefresh.toMillis();
+                }
+                
+                int records = 0;
+                for (ShardPosition shard : new ArrayList<>(shards.values())) {
+                    if (shard.parentShardId != null && shards.containsKey(shard.parentShardId)) {
+                        continue;
+                    }
+                    records += poll(shard);
+                    if (shard.exhausted) {
+                        // Its children are listed by the next refresh
+                        shards.remove(shard.shardId);
+                        nextRefresh = 0;
+                        LOG.infof("Finished reading shard %s of stream %s", shard.shardId, streamArn);
+                    }
+                }
+                
+                if (records == 0) {
+                    Thread.sleep(pollInterval.toMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOG.errorf(e, "Error reading order events from stream %s", streamArn);
+                try {
+                    Thread.sleep(pollInterval.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    
+    private String resolveStreamArn() {
+        String arn = configuredStreamArn.filter(value -> !value.isBlank())
+            .orElseGet(() -> dynamoDbClient.describeTable(r -> r.tableName(tableName)).table().latestStreamArn());
+        if (arn == null) {
+            throw new IllegalStateException("Streams are not enabled on table " + tableName);
+        }
+        LOG.infof("Reading order events from stream %s", arn);
+        return arn;
+    }
+    
+    /**
+     * Start reading the shards not seen yet. On the first listing only the
+     * open shards are read, from their latest record: earlier writes have
+     * nobody waiting for them. Shards appearing later were created while
+     * running, so they are read from their oldest record.
+     */
+    private void refreshShards(boolean initial) {
+        Set<String> listed = new HashSet<>();
+        String exclusiveStartShardId = null;
+        do {
+            DescribeStreamResponse response = streamsClient.describeStream(DescribeStreamRequest.builder()
+                .streamArn(streamArn)
+                .exclusiveStartShardId(exclusiveStartShardId)
+                .build());
+            if (initial && exclusiveStartShardId == null
+                    && response.streamDescription().streamViewType() != StreamViewType.NEW_AND_OLD_IMAGES) {
+                LOG.errorf("Stream %s has view type %s, order events need NEW_AND_OLD_IMAGES",
+                    streamArn, response.streamDescription().streamViewType());
+            }
+            for (Shard shard : response.streamDescription().shards()) {
+                listed.add(shard.shardId());
+                if (!knownShards.add(shard.shardId())) {
+                    continue;
+                }
+                boolean open = shard.sequenceNumberRange().endingSequenceNumber() == null;
+                if (!initial) {
+                    shards.put(shard.shardId(), new ShardPosition(shard, ShardIteratorType.TRIM_HORIZON));
+                } else if (open) {
+                    shards.put(shard.shardId(), new ShardPosition(shard, ShardIteratorType.LATEST));
+                }
+            }
+            exclusiveStartShardId = response.streamDescription().lastEvaluatedShardId();
+        } while (exclusiveStartShardId != null);
+        
+        // Shards past the stream retention are no longer listed
+        knownShards.retainAll(listed);
+    }
+    
+    /**
+     * Read the next batch of records of a shard and deliver their events
+     * 
+     * @return The number of records read
+     */
+    private int poll(ShardPosition shard) {
+        if (shard.iterator == null) {
+            shard.iterator = iterator(shard);
+        }
+        
+        GetRecordsResponse response;
+        try {
+            response = streamsClient.getRecords(r -> r.shardIterator(shard.iterator).limit(batchSize));
+        } catch (ExpiredIteratorException e) {
+            LOG.debugf("Iterator of shard %s expired, resuming after %s", shard.shardId, shard.checkpoint);
+            shard.iterator = null;
+            return 0;
+        } catch (TrimmedDataAccessException e) {
+            LOG.warnf("Records of shard %s after %s were trimmed before being read, some order events were missed",
+                shard.shardId, shard.checkpoint);
+            shard.checkpoint = null;
+            shard.start = ShardIteratorType.TRIM_HORIZON;
+            shard.iterator = null;
+            return 0;
+        }
+        
+        // A record that can't be converted is skipped: read again, it would
+        // fail again, and in the split layout it has already been applied
+        List<Record> records = response.records();
+        List<OrderEvent> events = new ArrayList<>(records.size());
+        for (Record record : records) {
+            try {
+                if (orderRepository.isSplitLayout()) {
+                    applySplit(record, events);
+                } else {
+                    OrderEvent event = toEvent(record, null);
+                    if (event != null) {
+                        events.add(event);
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOG.errorf(e, "Error converting record %s of shard %s, its order event is skipped",
+                    record.dynamodb().sequenceNumber(), shard.shardId);
+            }
+        }
+        if (!events.isEmpty()) {
+            deliver(events);
+        }
+        if (!records.isEmpty()) {
+            shard.checkpoint = records.get(records.size() - 1).dynamodb().sequenceNumber();
+        }
+        
+        shard.iterator = response.nextShardIterator();
+        shard.exhausted = shard.iterator == null;
+        return records.size();
+    }
+    
+    private String iterator(ShardPosition shard) {
+        GetShardIteratorRequest.Builder request = GetShardIteratorRequest.builder()
+            .streamArn(streamArn)
+            .shardId(shard.shardId);
+        if (shard.checkpoint != null) {
+            request.shardIteratorType(ShardIteratorType.AFTER_SEQUENCE_NUMBER).sequenceNumber(shard.checkpoint);
+        } else {
+            request.shardIteratorType(shard.start);
+        }
+        return streamsClient.getShardIterator(request.build()).shardIterator();
+    }
+    
+    private void deliver(List<OrderEvent> events) {
+        List<OrderEvent> batch = List.copyOf(events);
+        for (Consumer<List<OrderEvent>> listener : listeners) {
+            try {
+                listener.accept(batch);
+            } catch (RuntimeException e) {
+                LOG.errorf(e, "Order event listener failed on a batch of %d events", batch.size());
+            }
+        }
+        LOG.debugf("Delivered %d order events from the stream", batch.size());
+    }
+    
+    /**
+     * Apply a record of the split layout: a line updates the lines of its
+     * order, a header queues behind the order's earlier headers (a delete
+     * replaces them). Then the order's headers whose lines are all read make
+     * their events, in order.
+     */
+    private void applySplit(Record record, List<OrderEvent> events) {
+        StreamRecord change = record.dynamodb();
+        Map<String, AttributeValue> image = change.hasNewImage() ? change.newImage() : change.oldImage();
+        OrderRepository.StoredLine line = orderRepository.lineFromStoredItem(image);
+        String id;
+        if (line != null) {
+            id = line.orderId();
+            if (record.eventName() == OperationType.REMOVE) {
+                Map<String, OrderRepository.StoredLine> orderLines = lines.get(id);
+                if (orderLines != null) {
+                    orderLines.remove(line.sortKey());
+                }
+            } else {
+                lines.computeIfAbsent(id, k -> new HashMap<>()).put(line.sortKey(), line);
+            }
+        } else {
+            id = image.get("id").s();
+            Deque<Record> waiting = waitingHeaders.computeIfAbsent(id, k -> new ArrayDeque<>());
+            if (record.eventName() == OperationType.REMOVE && !waiting.isEmpty()) {
+                // Superseded: their lines may never come, e.g. deleted before being read from the table
+                LOG.debugf("Order %s deleted, dropping %d header records waiting for lines", id, waiting.size());
+                waiting.clear();
+            }
+            waiting.add(record);
+        }
+        
+        Deque<Record> waiting = waitingHeaders.get(id);
+        while (waiting != null && !waiting.isEmpty()) {
+            List<OrderItem> items = itemsOf(waiting.peek());
+            if (items == null) {
+                return; // lines still to come
+            }
+            OrderEvent event = toEvent(waiting.poll(), items);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        waitingHeaders.remove(id);
+    }
+    
+    /**
+     * The line items of a header record, if all read
+     * 
+     * @return The items, or null if some line at the header's version is still to come
+     */
+    private List<OrderItem> itemsOf(Record header) {
+        StreamRecord change = header.dynamodb();
+        if (header.eventName() == OperationType.REMOVE) {
+            String id = change.oldImage().get("id").s();
+            return lastItems.getOrDefault(id, List.of());
+        }
+        Map<String, AttributeValue> image = change.newImage();
+        String id = image.get("id").s();
+        Map<String, OrderRepository.StoredLine> orderLines = lines.get(id);
+        if (orderLines == null && header.eventName() == OperationType.MODIFY) {
+            orderLines = readLines(id);
+        }
+        if (orderLines == null) {
+            return null;
+        }
+        long version = orderRepository.linesVersionOf(image);
+        int count = orderRepository.itemCountOf(image);
+        List<OrderItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            OrderRepository.StoredLine line = orderLines.get(OrderRepository.itemSortKey(i));
+            if (line == null || line.version() < version) {
+                return null;
+            }
+            items.add(line.item());
+        }
+        return items;
+    }
+    
+    /**
+     * Read the lines of an order changed before this instance started
+     * reading the stream, once
+     */
+    private Map<String, OrderRepository.StoredLine> readLines(String id) {
+        Map<String, OrderRepository.StoredLine> orderLines = new HashMap<>();
+        Optional<Order> stored = orderRepository.findById(id);
+        if (stored.isPresent()) {
+            List<OrderItem> items = stored.get().getItems();
+            for (int i = 0; i < items.size(); i++) {
+                String sortKey = OrderRepository.itemSortKey(i);
+                orderLines.put(sortKey, new OrderRepository.StoredLine(id, sortKey, Long.MAX_VALUE, items.get(i)));
+            }
+        }
+        lines.put(id, orderLines);
+        return orderLines;
+    }
+    
+    /**
+     * The order event of a stream record, or null if it makes none (a line
+     * item in the split layout)
+     * 
+     * @param items In the split layout, the line items of the header's version
+     */
+    private OrderEvent toEvent(Record record, List<OrderItem> items) {
+        StreamRecord change = record.dynamodb();
+        Map<String, AttributeValue> oldImage = change.hasOldImage() ? change.oldImage() : null;
+        Map<String, AttributeValue> newImage = change.hasNewImage() ? change.newImage() : null;
+        Order previous = oldImage != null ? orderRepository.fromStoredItem(oldImage) : null;
+        Order order = newImage != null ? orderRepository.fromStoredItem(newImage) : null;
+        if (items != null) {
+            withItems(order, previous, items);
+        }
+        
+        switch (record.eventName()) {
+            case INSERT -> {
+                return order != null ? OrderEvent.created(order) : null;
+            }
+            case MODIFY -> {
+                if (order == null || previous == null) {
+                    return null;
+                }
+                return statusOnly(oldImage, newImage)
+                    ? OrderEvent.statusChanged(order, previous)
+                    : OrderEvent.updated(order, previous);
+            }
+            case REMOVE -> {
+                return previous != null ? OrderEvent.deleted(previous) : null;
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+    
+    /**
+     * In the split layout, give the header orders of a record their line
+     * items: the previous version those of the order's last event. The lines
+     * of closed and deleted orders are forgotten; a closed order changed
+     * again has them read from the table.
+     */
+    private void withItems(Order order, Order previous, List<OrderItem> items) {
+        Order header = order != null ? order : previous;
+        List<OrderItem> previousItems = lastItems.getOrDefault(header.getId(), items);
+        if (order != null) {
+            order.setItems(new ArrayList<>(items));
+        }
+        if (previous != null) {
+            previous.setItems(new ArrayList<>(order != null ? previousItems : items));
+        }
+        if (order == null || !OrderBook.isActive(order)) {
+            lines.remove(header.getId());
+            lastItems.remove(header.getId());
+        } else {
+            lastItems.put(header.getId(), items);
+        }
+    }
+    
+    /**
+     * Whether a modification only changed the status (and the attributes
+     * rewritten with it)
+     */
+    private static boolean statusOnly(Map<String, AttributeValue> oldImage, Map<String, AttributeValue> newImage) {
+        if (Objects.equals(oldImage.get("status"), newImage.get("status"))) {
+            return false;
+        }
+        Map<String, AttributeValue> before = new HashMap<>(oldImage);
+        Map<String, AttributeValue> after = new HashMap<>(newImage);
+        before.keySet().removeAll(STATUS_ATTRIBUTES);
+        after.keySet().removeAll(STATUS_ATTRIBUTES);
+        return before.equals(after);
+    }
+    
+    /**
+     * Reading position in a shard
+     */
+    private static final class ShardPosition {
+        
+        private final String shardId;
+        private final String parentShardId;
+        private ShardIteratorType start; // where to begin without a checkpoint
+        private String checkpoint; // sequence number of the last record delivered
+        private String iterator;
+        private boolean exhausted;
+        
+        private ShardPosition(Shard shard, ShardIteratorType start) {
+            this.shardId = shard.shardId();
+            this.parentShardId = shard.parentShardId();
+            this.start = start;
+        }
+    }
+}
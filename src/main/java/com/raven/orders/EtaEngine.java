@@ -0,0 +1,312 @@
+package com.raven.orders;
+
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.repository.LeaseRepository;
+import com.raven.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Predicts order ETAs (etaMinutes) from the station queues and per-product
+ * preparation time statistics (PrepTimeStats), learned from the status
+ * transitions on the order event bus: an order's preparation runs from
+ * ACCEPTED or IN_PROGRESS (the latest seen; creation if neither) to READY
+ * or COMPLETED, and is observed by every product in it.
+ * 
+ * New orders get their ETA inline in OrderRepository.create. The ETAs of
+ * the open orders are recalculated in one batch per refresh interval when
+ * the queues have changed, walking each station queue in order, and
+ * written back when they moved by at least orders.eta.min-change minutes.
+ * ETAs are minutes from the order's creation. When the event bus shows
+ * every instance the same orders, only the instance holding the
+ * eta-refresh lease writes them back; the others only update the station
+ * backlogs used by predictMinutes.
+ */
+@ApplicationScoped
+public class EtaEngine {
+    
+    private static final Logger LOG = Logger.getLogger(EtaEngine.class);
+    
+    /** Longer preparations are orders forgotten in the kitchen, not learned from */
+    private static final long MAX_OBSERVED_PREP_MILLIS = Duration.ofHours(2).toMillis();
+    
+    private static final String REFRESH_LEASE = "eta-refresh";
+    
+    @ConfigProperty(name = "orders.eta.enabled", defaultValue = "true")
+    boolean enabled;
+    
+    @ConfigProperty(name = "orders.eta.quantile", defaultValue = "0.8")
+    double quantile;
+    
+    @ConfigProperty(name = "orders.eta.alpha", defaultValue = "0.05")
+    double alpha;
+    
+    @ConfigProperty(name = "orders.eta.default-prep", defaultValue = "8m")
+    Duration defaultPrep;
+    
+    @ConfigProperty(name = "orders.eta.parallelism", defaultValue = "3")
+    int parallelism;
+    
+    @ConfigProperty(name = "orders.eta.refresh-interval", defaultValue = "30s")
+    Duration refreshInterval;
+    
+    @ConfigProperty(name = "orders.eta.min-change", defaultValue = "2")
+    int minChange;
+    
+    @Inject
+    OrderEventBus eventBus;
+    
+    @Inject
+    OrderBook orderBook;
+    
+    @Inject
+    StationScheduler scheduler;
+    
+    @Inject
+    OrderRepository orderRepository;
+    
+    @Inject
+    LeaseRepository leases;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    private final Map<String, PrepTimeStats> stats = new ConcurrentHashMap<>(); // by product ID
+    private final Map<String, Long> startedAt = new ConcurrentHashMap<>(); // by order ID, epoch millis
+    private final Map<String, Long> backlogMillis = new ConcurrentHashMap<>(); // by station, per cook
+    private final AtomicBoolean queuesChanged = new AtomicBoolean(true);
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private Counter updates;
+    
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        registry.gauge("raven.eta.products", stats, Map::size);
+        updates = registry.counter("raven.eta.updates");
+        eventBus.subscribe(this::learn);
+        scheduler.listen(station -> queuesChanged.set(true));
+        vertx.setPeriodic(refreshInterval.toMillis(), timer -> {
+            if (queuesChanged.get() && refreshing.compareAndSet(false, true)) {
+                // Writes to DynamoDB: not on the event loop
+                Thread.ofVirtual().name("eta-refresh").start(() -> {
+                    try {
+                        refresh();
+                    } finally {
+                        refreshing.set(false);
+                    }
+                });
+            }
+        });
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Predict how many minutes after its creation an order will be ready:
+     * from now, for each item, the work queued at its station plus the
+     * item's preparation time quantile; the order is ready with its slowest
+     * item. O(items) and allocation-free, so it runs inline when an order is
+     * created.
+     * 
+     * @param order The order
+     * @return The ETA in minutes from createdAt, at least 1
+     */
+    public int predictMinutes(Order order) {
+        List<OrderItem> items = order.getItems();
+        long ready = 0;
+        if (items != null) {
+            for (int i = 0; i < items.size(); i++) {
+                OrderItem item = items.get(i);
+                Long backlog = item.getStation() != null ? backlogMillis.get(key(item.getStation())) : null;
+                ready = Math.max(ready, (backlog != null ? backlog : 0) + prepMillis(item, true));
+            }
+        }
+        return toMinutes(System.currentTimeMillis() + ready - epochMillis(order.getCreatedAt()));
+    }
+    
+    /**
+     * Learn preparation times from a batch of events
+     */
+    void learn(List<OrderEvent> events) {
+        for (OrderEvent event : events) {
+            Order order = event.getOrder();
+            if (order == null) {
+                continue;
+            }
+            if (event.getType() == OrderEvent.Type.DELETED) {
+                startedAt.remove(order.getId());
+                continue;
+            }
+            OrderStatus status = OrderStatus.of(order.getStatus());
+            OrderStatus before = event.getPrevious() != null ? OrderStatus.of(event.getPrevious().getStatus()) : null;
+            if (status == null || status == before) {
+                continue;
+            }
+            long at = epochMillis(order.getUpdatedAt());
+            switch (status) {
+                case ACCEPTED, IN_PROGRESS -> startedAt.put(order.getId(), at);
+                case READY, COMPLETED -> {
+                    Long started = startedAt.remove(order.getId());
+                    if (before != OrderStatus.READY) {
+                        observe(order, at - (started != null ? started : epochMillis(order.getCreatedAt())));
+                    }
+                }
+                case CANCELED -> startedAt.remove(order.getId());
+                default -> {
+                }
+            }
+        }
+    }
+    
+    /**
+     * Recalculate the ETAs of the open orders from the current queues
+     */
+    void refresh() {
+        queuesChanged.set(false);
+        long now = System.currentTimeMillis();
+        Map<String, Long> readyAt = new HashMap<>();
+        for (String station : scheduler.stations()) {
+            long queued = 0; // mean preparation time of the tickets ahead, all cooks together
+            for (StationTicket ticket : scheduler.queue(station, Integer.MAX_VALUE)) {
+                long prep = prepMillis(ticket.getItems(), true);
+                long mean = prepMillis(ticket.getItems(), false);
+                Long started = startedAt.get(ticket.getOrderId());
+                long ready;
+                if (started != null) {
+                    ready = Math.max(started + prep, now);
+                    queued += Math.max(started + mean - now, 0);
+                } else {
+                    ready = now + queued / parallelism + prep;
+                    queued += mean;
+                }
+                readyAt.merge(ticket.getOrderId(), ready, Math::max);
+            }
+            backlogMillis.put(station, queued / parallelism);
+        }
+        
+        if (!holdsRefreshLease()) {
+            return;
+        }
+        int updated = 0;
+        for (Map.Entry<String, Long> entry : readyAt.entrySet()) {
+            Order order = orderBook.get(entry.getKey());
+            if (order == null) {
+                continue;
+            }
+            int eta = toMinutes(entry.getValue() - epochMillis(order.getCreatedAt()));
+            if (order.getEtaMinutes() != null && Math.abs(eta - order.getEtaMinutes()) < minChange) {
+                continue;
+            }
+            try {
+                // null if the order changed meanwhile: the next refresh sees the new version
+                if (orderRepository.updateEta(order, eta) != null) {
+                    updated++;
+                }
+            } catch (RuntimeException e) {
+                LOG.errorf(e, "Error updating the ETA of order %s", order.getId());
+            }
+        }
+        if (updated > 0) {
+            updates.increment(updated);
+            LOG.debugf("Updated the ETA of %d of %d open orders", updated, readyAt.size());
+        }
+    }
+    
+    /**
+     * Whether this instance writes the ETAs back. Every instance sees the
+     * same orders with the DynamoDB Streams bus, and would otherwise write
+     * the same ETAs, all but one losing the race.
+     */
+    private boolean holdsRefreshLease() {
+        if (!eventBus.seesAllInstances()) {
+            return true;
+        }
+        try {
+            return leases.acquire(REFRESH_LEASE, refreshInterval.multipliedBy(3));
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Error acquiring the ETA refresh lease, ETAs are not written back");
+            return false;
+        }
+    }
+    
+    private void observe(Order order, long millis) {
+        List<OrderItem> items = order.getItems();
+        if (items == null || millis <= 0 || millis > MAX_OBSERVED_PREP_MILLIS) {
+            return;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            String productId = items.get(i).getProductId();
+            if (productId != null && !seenBefore(items, i, productId)) {
+                stats.computeIfAbsent(productId, id -> new PrepTimeStats(alpha, quantile)).observe(millis);
+            }
+        }
+    }
+    
+    private static boolean seenBefore(List<OrderItem> items, int index, String productId) {
+        for (int i = 0; i < index; i++) {
+            if (productId.equals(items.get(i).getProductId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Preparation time of a ticket: its slowest item
+     */
+    private long prepMillis(List<OrderItem> items, boolean useQuantile) {
+        long prep = 0;
+        for (int i = 0; i < items.size(); i++) {
+            prep = Math.max(prep, prepMillis(items.get(i), useQuantile));
+        }
+        return prep;
+    }
+    
+    private long prepMillis(OrderItem item, boolean useQuantile) {
+        PrepTimeStats product = item.getProductId() != null ? stats.get(item.getProductId()) : null;
+        if (product == null || product.count() == 0) {
+            return defaultPrep.toMillis();
+        }
+        return (long) (useQuantile ? product.quantileMillis() : product.meanMillis());
+    }
+    
+    private static int toMinutes(long millis) {
+        return (int) Math.max(1, (millis + 59_999) / 60_000);
+    }
+    
+    private static long epochMillis(String timestamp) {
+        try {
+            return timestamp != null ? Instant.parse(timestamp).toEpochMilli() : System.currentTimeMillis();
+        } catch (DateTimeParseException e) {
+            return System.currentTimeMillis();
+        }
+    }
+    
+    private static String key(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
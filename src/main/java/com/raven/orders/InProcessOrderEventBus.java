@@ -0,0 +1,33 @@
+package com.raven.orders;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Order event bus within a single instance (orders.events.bus=in-process):
+ * events are delivered on the writing thread, right after the write.
+ * Writes made through other instances are not seen.
+ */
+@ApplicationScoped
+@Typed(InProcessOrderEventBus.class)
+public class InProcessOrderEventBus implements OrderEventBus {
+    
+    private final List<Consumer<List<OrderEvent>>> listeners = new CopyOnWriteArrayList<>();
+    
+    @Override
+    public void publish(OrderEvent event) {
+        List<OrderEvent> batch = List.of(event);
+        for (Consumer<List<OrderEvent>> listener : listeners) {
+            listener.accept(batch);
+        }
+    }
+    
+    @Override
+    public void subscribe(Consumer<List<OrderEvent>> listener) {
+        listeners.add(listener);
+    }
+}
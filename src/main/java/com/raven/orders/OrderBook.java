@@ -0,0 +1,541 @@
+package com.raven.orders;
+
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.repository.OrderRepository;
+import com.raven.snapshot.StateSnapshotter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory book of the active orders, keyed by id, with secondary indexes
+ * by status, station and channel. It is fed by the order event bus (so
+ * with the DynamoDB Streams transport it also sees the writes of the other
+ * instances) and warmed at startup from the state snapshot, or else from
+ * DynamoDB. Completed and canceled orders stay in the book (out of the
+ * indexes, so only get finds them) for orders.book.retention, then expire
+ * through a timing wheel; deleted orders leave it at once. Past
+ * orders.book.max-entries entries the least recently written closed orders
+ * are evicted. Active orders are never evicted, since the book must hold
+ * all of them while warm: with more active orders than the cap the book
+ * grows past it, with a warning.
+ * 
+ * Entries are immutable snapshots: copied on the way in, never modified,
+ * and replaced whole with ConcurrentHashMap.compute, so writes of one order
+ * are serialized (the newest version wins) while writes of different
+ * orders run in parallel, and reads take no lock. An index may briefly
+ * point at an order that no longer matches, so query results are checked
+ * against the order itself.
+ */
+@ApplicationScoped
+public class OrderBook {
+    
+    private static final Logger LOG = Logger.getLogger(OrderBook.class);
+    
+    private static final int WHEEL_SIZE = 512; // ticks per turn of the expiry wheel
+    
+    private static final Comparator<Order> OLDEST_FIRST = Comparator
+        .comparing(Order::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(Order::getId);
+    
+    @Inject
+    OrderEventBus eventBus;
+    
+    @Inject
+    OrderRepository orderRepository;
+    
+    @Inject
+    StateSnapshotter snapshotter;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    @ConfigProperty(name = "orders.book.warmup", defaultValue = "true")
+    boolean warmup;
+    
+    @ConfigProperty(name = "orders.book.warmup-retry", defaultValue = "10s")
+    Duration warmupRetry;
+    
+    // Initialized too for books built without CDI, e.g. by the benchmarks
+    @ConfigProperty(name = "orders.book.retention", defaultValue = "10m")
+    Duration retention = Duration.ofMinutes(10);
+    
+    @ConfigProperty(name = "orders.book.expiry-tick", defaultValue = "1s")
+    Duration expiryTick = Duration.ofSeconds(1);
+    
+    @ConfigProperty(name = "orders.book.max-entries", defaultValue = "100000")
+    int maxEntries = 100_000;
+    
+    private final Map<String, Order> orders = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byStatus = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byStation = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byChannel = new ConcurrentHashMap<>();
+    
+    // While warming, the version of every order written or deleted by an
+    // event is remembered, so the scan can't bring back an older version
+    private volatile Map<String, Long> seenWhileWarming = new ConcurrentHashMap<>();
+    private volatile boolean warm;
+    private volatile long readyMillis; // since the JVM start
+    // A lock rather than a monitor: the load blocks on DynamoDB
+    private final ReentrantLock warming = new ReentrantLock();
+    
+    private final OrderExpiry expiry = new OrderExpiry(WHEEL_SIZE);
+    private Counter expired;
+    private Counter evicted;
+    private volatile boolean overCapacity; // more active orders than max-entries
+    
+    private final List<BiConsumer<String, Order>> listeners = new CopyOnWriteArrayList<>();
+    
+    void onStart(@Observes StartupEvent event) {
+        registry.gauge("raven.orders.book.size", orders, Map::size);
+        registry.gauge("raven.orders.book.ready", this, book -> book.readyMillis);
+        registry.gauge("raven.orders.book.closed", expiry, OrderExpiry::scheduled);
+        registry.gauge("raven.orders.book.bytes", expiry, OrderExpiry::bytes);
+        expired = registry.counter("raven.orders.book.evicted", "reason", "expired");
+        evicted = registry.counter("raven.orders.book.evicted", "reason", "capacity");
+        vertx.setPeriodic(expiryTick.toMillis(), timer -> expire());
+        eventBus.subscribe(this::apply);
+        if (warmup) {
+            // Subscribed first, so no write is missed between the scan and the events
+            Thread.ofVirtual().name("order-book-warmup").start(() -> {
+                while (!warm()) {
+                    try {
+                        Thread.sleep(warmupRetry.toMillis());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+     * Whether the book holds every active order; until then a query loads it
+     * first
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+    
+    /**
+     * Load the active orders from the state snapshot, or else from DynamoDB,
+     * unless the book is already warm. One load runs at a time: concurrent
+     * callers wait for it rather than scanning the table again.
+     * 
+     * @return false if they could not be loaded
+     */
+    boolean warm() {
+        warming.lock();
+        try {
+            if (warm) {
+                return true;
+            }
+            long start = System.nanoTime();
+            List<Order> stored;
+            String source = "snapshot";
+            try {
+                stored = snapshotter.restoreOrders();
+                if (stored == null) {
+                    stored = orderRepository.findAll();
+                    source = "DynamoDB";
+                }
+            } catch (RuntimeException e) {
+                LOG.errorf(e, "Error warming the order book, retrying in %s; until then queries try to load it first",
+                    warmupRetry);
+                return false;
+            }
+            load(stored);
+            readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            LOG.infof("Order book warmed from %s with %d active orders of %d in %d ms, ready %d ms after start",
+                source, orders.size(), stored.size(), (System.nanoTime() - start) / 1_000_000, readyMillis);
+            return true;
+        } finally {
+            warming.unlock();
+        }
+    }
+    
+    /**
+     * Load the stored orders (closed ones are skipped) and start answering
+     * queries from the book. Orders already written by an event keep the
+     * newer version.
+     * 
+     * @param stored Every stored order
+     */
+    public void load(List<Order> stored) {
+        Map<String, Long> seen = seenWhileWarming;
+        if (seen == null) {
+            return;
+        }
+        for (Order order : stored) {
+            write(order.getId(), current -> {
+                // Closed orders are not loaded: their retention is counted from when they are seen closed
+                Long version = seen.get(order.getId());
+                if (version != null && version >= order.getVersion()) {
+                    return current;
+                }
+                return isActive(order) ? order : null;
+            });
+        }
+        seenWhileWarming = null;
+        warm = true;
+    }
+    
+    /**
+     * Apply a batch of events from the event bus
+     */
+    public void apply(List<OrderEvent> events) {
+        for (OrderEvent event : events) {
+            Order order = event.getOrder();
+            if (order == null) {
+                continue;
+            }
+            boolean deleted = event.getType() == OrderEvent.Type.DELETED;
+            write(order.getId(), current -> {
+                Map<String, Long> seen = seenWhileWarming;
+                if (seen != null) {
+                    seen.merge(order.getId(), order.getVersion(), Math::max);
+                }
+                if (current != null && current.getVersion() > order.getVersion()) {
+                    return current; // already newer
+                }
+                return deleted ? null : order;
+            });
+        }
+    }
+    
+    /**
+     * Register a listener for the changes of the book. It receives the id
+     * and the new entry (null when the order leaves the book) of each order
+     * written, starting with the orders already in the book, and may receive
+     * the same entry twice. Calls for one order are made in write order on
+     * the writing thread, under the order's entry lock, so they must be quick.
+     * 
+     * @param listener Receives each change
+     */
+    public void listen(BiConsumer<String, Order> listener) {
+        listeners.add(listener);
+        for (String id : orders.keySet()) {
+            orders.computeIfPresent(id, (key, current) -> {
+                notify(listener, key, current);
+                return current;
+            });
+        }
+    }
+    
+    /**
+     * Get an active or recently closed order
+     * 
+     * @param id The order ID
+     * @return The order, or null if it is not in the book
+     */
+    public Order get(String id) {
+        return orders.get(id);
+    }
+    
+    /**
+     * Find active orders, oldest first. Each set holds the accepted values of
+     * one dimension (case-insensitive); null or empty accepts any value.
+     * 
+     * @param statuses Accepted statuses, e.g. NEW, IN_PROGRESS
+     * @param stations Accepted stations: an order matches if any item is prepared there
+     * @param channels Accepted channels, e.g. counter
+     * @return The matching orders
+     * @throws IllegalStateException If the book is not warm and can't be loaded
+     */
+    public List<Order> find(Set<String> statuses, Set<String> stations, Set<String> channels) {
+        if (!warm && !warm()) {
+            throw new IllegalStateException("The order book could not be loaded");
+        }
+        Set<String> statusKeys = keys(statuses);
+        Set<String> stationKeys = keys(stations);
+        Set<String> channelKeys = keys(channels);
+        
+        List<Order> found = new ArrayList<>();
+        // Walk the smallest candidate set, check the other dimensions on the order
+        Set<String> candidates = smallest(null, byStatus, statusKeys);
+        candidates = smallest(candidates, byStation, stationKeys);
+        candidates = smallest(candidates, byChannel, channelKeys);
+        if (candidates == null) {
+            for (Order order : orders.values()) {
+                if (isActive(order)) {
+                    found.add(order);
+                }
+            }
+        } else {
+            for (String id : candidates) {
+                Order order = orders.get(id);
+                if (order != null && isActive(order) && matches(order, statusKeys, stationKeys, channelKeys)) {
+                    found.add(order);
+                }
+            }
+        }
+        found.sort(OLDEST_FIRST);
+        return found;
+    }
+    
+    /**
+     * Number of entries, recently closed orders included
+     */
+    public int size() {
+        return orders.size();
+    }
+    
+    /**
+     * Whether an order is still open (not completed or canceled)
+     */
+    public static boolean isActive(Order order) {
+        OrderStatus status = OrderStatus.of(order.getStatus());
+        return status == null || !status.isFinal();
+    }
+    
+    /**
+     * Replace the entry of an order atomically. The update decides the new
+     * version from the current entry: the same entry to keep it, null to
+     * remove it, or another order, stored as a snapshot (if it is closed,
+     * unindexed and scheduled to expire, or removed without retention).
+     * Index entries of the new version are added before the
+     * entry is replaced and the stale ones removed after, so a reader never
+     * misses an order that matches both versions.
+     */
+    private void write(String id, UnaryOperator<Order> update) {
+        Order[] replaced = new Order[1];
+        Order stored = orders.compute(id, (key, current) -> {
+            Order next = update.apply(current);
+            if (next == current) {
+                return current;
+            }
+            boolean active = next != null && isActive(next);
+            long retentionTicks = retentionTicks();
+            next = active || (next != null && retentionTicks > 0) ? snapshot(next) : null;
+            if (active) {
+                index(byStatus, key(next.getStatus()), id);
+                index(byChannel, key(next.getChannel()), id);
+                for (String station : stationsOf(next)) {
+                    index(byStation, station, id);
+                }
+            }
+            for (BiConsumer<String, Order> listener : listeners) {
+                notify(listener, id, next);
+            }
+            if (next != null) {
+                expiry.touch(id, estimateBytes(next), active ? 0 : retentionTicks);
+            } else {
+                expiry.remove(id);
+            }
+            replaced[0] = current;
+            return next;
+        });
+        if (replaced[0] != null) {
+            // Under the entry's lock again, so a later write's keys are never removed
+            orders.compute(id, (key, current) -> {
+                unindexStale(id, replaced[0], current != null && isActive(current) ? current : null);
+                return current;
+            });
+        }
+        if (orders.size() > maxEntries) {
+            evictOverflow();
+        }
+    }
+    
+    /**
+     * Evict the least recently written closed orders beyond max-entries
+     */
+    private void evictOverflow() {
+        List<String> overflow = expiry.overflow(maxEntries);
+        for (String evictedId : overflow) {
+            write(evictedId, current -> current != null && isActive(current) ? current : null);
+        }
+        if (!overflow.isEmpty()) {
+            evicted.increment(overflow.size());
+            LOG.debugf("Order book over %d entries, evicted the %d least recently written closed orders",
+                maxEntries, overflow.size());
+        }
+        boolean over = expiry.size() > maxEntries;
+        if (over && !overCapacity) {
+            LOG.warnf("Order book holds %d entries, over orders.book.max-entries=%d: active orders are never evicted",
+                expiry.size(), maxEntries);
+        }
+        overCapacity = over;
+    }
+    
+    /**
+     * Remove the closed orders whose retention ended in this tick
+     */
+    private void expire() {
+        List<String> ids = expiry.tick();
+        for (String id : ids) {
+            write(id, current -> current != null && isActive(current) ? current : null);
+        }
+        if (!ids.isEmpty()) {
+            expired.increment(ids.size());
+            LOG.debugf("Expired %d closed orders from the order book", ids.size());
+        }
+    }
+    
+    private long retentionTicks() {
+        long tick = expiryTick.toMillis();
+        return (retention.toMillis() + tick - 1) / tick;
+    }
+    
+    /**
+     * Rough heap size of an entry: the order, its items and their strings
+     * (Latin-1), plus the map and eviction bookkeeping
+     */
+    private static long estimateBytes(Order order) {
+        long bytes = 200 + sizeOf(order.getId()) + sizeOf(order.getStatus()) + sizeOf(order.getSource())
+            + sizeOf(order.getChannel()) + sizeOf(order.getNotes()) + sizeOf(order.getCreatedAt())
+            + sizeOf(order.getUpdatedAt()) + (order.getCustomer() != null ? 96 : 0);
+        for (OrderItem item : order.getItems()) {
+            bytes += 72 + sizeOf(item.getProductId()) + sizeOf(item.getProductName()) + sizeOf(item.getNotes())
+                + sizeOf(item.getStation()) + sizeOf(item.getCourse());
+        }
+        return bytes;
+    }
+    
+    private static long sizeOf(String value) {
+        return value != null ? 40 + value.length() : 0;
+    }
+    
+    private static void notify(BiConsumer<String, Order> listener, String id, Order order) {
+        try {
+            listener.accept(id, order);
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Error notifying the order book listener of order %s", id);
+        }
+    }
+    
+    /**
+     * Remove the index entries of a replaced version the current one doesn't share
+     */
+    private void unindexStale(String id, Order previous, Order current) {
+        String status = key(previous.getStatus());
+        if (current == null || !Objects.equals(status, key(current.getStatus()))) {
+            unindex(byStatus, status, id);
+        }
+        String channel = key(previous.getChannel());
+        if (current == null || !Objects.equals(channel, key(current.getChannel()))) {
+            unindex(byChannel, channel, id);
+        }
+        Set<String> stations = current != null ? stationsOf(current) : Set.of();
+        for (String station : stationsOf(previous)) {
+            if (!stations.contains(station)) {
+                unindex(byStation, station, id);
+            }
+        }
+    }
+    
+    /**
+     * An immutable copy of an order to keep in the book
+     */
+    private static Order snapshot(Order order) {
+        Order stored = new Order(order);
+        stored.setItems(order.getItems() != null ? List.copyOf(order.getItems()) : List.of());
+        return stored;
+    }
+    
+    private static void index(Map<String, Set<String>> index, String key, String id) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+    
+    private static void unindex(Map<String, Set<String>> index, String key, String id) {
+        if (key == null) {
+            return;
+        }
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+    
+    /**
+     * The ids matching one dimension, if fewer than the current candidates
+     */
+    private static Set<String> smallest(Set<String> candidates, Map<String, Set<String>> index, Set<String> keys) {
+        if (keys == null) {
+            return candidates;
+        }
+        Set<String> ids = union(index, keys);
+        return candidates == null || ids.size() < candidates.size() ? ids : candidates;
+    }
+    
+    private static Set<String> union(Map<String, Set<String>> index, Set<String> keys) {
+        if (keys.size() == 1) {
+            return index.getOrDefault(keys.iterator().next(), Set.of());
+        }
+        Set<String> ids = new HashSet<>();
+        for (String key : keys) {
+            ids.addAll(index.getOrDefault(key, Set.of()));
+        }
+        return ids;
+    }
+    
+    private static boolean matches(Order order, Set<String> statuses, Set<String> stations, Set<String> channels) {
+        return accepts(statuses, key(order.getStatus()))
+            && accepts(channels, key(order.getChannel()))
+            && (stations == null || stationsOf(order).stream().anyMatch(stations::contains));
+    }
+    
+    private static boolean accepts(Set<String> keys, String key) {
+        return keys == null || (key != null && keys.contains(key));
+    }
+    
+    private static Set<String> stationsOf(Order order) {
+        Set<String> stations = new HashSet<>();
+        if (order.getItems() != null) {
+            for (OrderItem item : order.getItems()) {
+                String station = key(item.getStation());
+                if (station != null) {
+                    stations.add(station);
+                }
+            }
+        }
+        return stations;
+    }
+    
+    private static Set<String> keys(Set<String> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        Set<String> keys = new HashSet<>();
+        for (String value : values) {
+            String key = key(value);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        return keys.isEmpty() ? null : keys;
+    }
+    
+    private static String key(String value) {
+        return value == null || value.isBlank() ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
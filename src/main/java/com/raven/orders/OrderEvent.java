@@ -0,0 +1,137 @@
+package com.raven.orders;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.raven.model.Order;
+
+import java.util.List;
+
+/**
+ * Event published by OrderRepository on the order event bus after a
+ * successful write, and the envelope sent to order stream subscribers
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderEvent {
+    
+    public enum Type {
+        CREATED,
+        UPDATED,
+        STATUS_CHANGED,
+        DELETED,
+        SNAPSHOT
+    }
+    
+    @JsonProperty("type")
+    private final Type type;
+    
+    @JsonProperty("order")
+    private final Order order; // for deletes, the last stored version; null for snapshots
+    
+    @JsonProperty("orders")
+    private final List<Order> orders; // active orders, only for snapshots
+    
+    @JsonIgnore
+    private final Order previous; // version before an update or status change, otherwise null
+    
+    @JsonIgnore
+    private final String id; // stream event id, assigned by the broadcaster
+    
+    @JsonIgnore
+    private final long publishedAtNanos;
+    
+    private OrderEvent(Type type, Order order, List<Order> orders, Order previous, String id, long publishedAtNanos) {
+        this.type = type;
+        this.order = order;
+        this.orders = orders;
+        this.previous = previous;
+        this.id = id;
+        this.publishedAtNanos = publishedAtNanos;
+    }
+    
+    public static OrderEvent created(Order order) {
+        return new OrderEvent(Type.CREATED, order, null, null, null, System.nanoTime());
+    }
+    
+    public static OrderEvent updated(Order order, Order previous) {
+        return new OrderEvent(Type.UPDATED, order, null, previous, null, System.nanoTime());
+    }
+    
+    public static OrderEvent statusChanged(Order order, Order previous) {
+        return new OrderEvent(Type.STATUS_CHANGED, order, null, previous, null, System.nanoTime());
+    }
+    
+    public static OrderEvent deleted(Order order) {
+        return new OrderEvent(Type.DELETED, order, null, null, null, System.nanoTime());
+    }
+    
+    /**
+     * The state of the active orders as of a stream position, sent to a
+     * client that can't be resumed from the replay buffer
+     * 
+     * @param orders The active orders
+     * @param id The id of the last event reflected by the snapshot
+     */
+    public static OrderEvent snapshot(List<Order> orders, String id) {
+        return new OrderEvent(Type.SNAPSHOT, null, orders, null, id, System.nanoTime());
+    }
+    
+    /**
+     * The same event carrying a different view of the order and its previous
+     * version (e.g. only the items of one station)
+     */
+    public OrderEvent withOrder(Order view, Order previousView) {
+        return new OrderEvent(type, view, orders, previousView, id, publishedAtNanos);
+    }
+    
+    /**
+     * The same event with its stream id
+     */
+    public OrderEvent withId(String id) {
+        return new OrderEvent(type, order, orders, previous, id, publishedAtNanos);
+    }
+    
+    // Getters
+    public Type getType() {
+        return type;
+    }
+    
+    public Order getOrder() {
+        return order;
+    }
+    
+    public List<Order> getOrders() {
+        return orders;
+    }
+    
+    @JsonIgnore
+    public String getId() {
+        return id;
+    }
+    
+    @JsonIgnore
+    public Order getPrevious() {
+        return previous;
+    }
+    
+    @JsonIgnore
+    public String getOrderId() {
+        return order.getId();
+    }
+    
+    /**
+     * System.nanoTime() at publication, used to measure delivery latency
+     */
+    public long getPublishedAtNanos() {
+        return publishedAtNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return "OrderEvent{" +
+                "id='" + id + '\'' +
+                ", type=" + type +
+                (order != null ? ", orderId='" + order.getId() + '\'' : ", orders=" + orders.size()) +
+                '}';
+    }
+}
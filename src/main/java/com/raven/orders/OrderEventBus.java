@@ -0,0 +1,37 @@
+package com.raven.orders;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries order events from the writes made by OrderRepository to the
+ * local listeners (the order stream broadcaster and the order book).
+ * Implementations decide which writes are seen: only this instance's, or
+ * those of every instance sharing the table. Either way, each event is
+ * delivered once per instance.
+ */
+public interface OrderEventBus {
+    
+    /**
+     * Publish the event of a successful local write
+     * 
+     * @param event The event
+     */
+    void publish(OrderEvent event);
+    
+    /**
+     * Register a local listener. Events are delivered in batches, oldest
+     * first; events of the same order are always delivered in write order.
+     * 
+     * @param listener Receives each batch of events
+     */
+    void subscribe(Consumer<List<OrderEvent>> listener);
+    
+    /**
+     * Whether the events include the writes made through the other
+     * instances, so every instance sees every order
+     */
+    default boolean seesAllInstances() {
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+package com.raven.orders;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.Locale;
+
+/**
+ * Selects the order event bus transport (orders.events.bus):
+ * in-process, or dynamodb-streams to see the writes of every instance
+ */
+@ApplicationScoped
+public class OrderEventBusProducer {
+    
+    private static final Logger LOG = Logger.getLogger(OrderEventBusProducer.class);
+    
+    @ConfigProperty(name = "orders.events.bus", defaultValue = "in-process")
+    String transport;
+    
+    @Inject
+    Instance<InProcessOrderEventBus> inProcess;
+    
+    @Inject
+    Instance<DynamoDbStreamsOrderEventBus> dynamoDbStreams;
+    
+    @Produces
+    @ApplicationScoped
+    public OrderEventBus orderEventBus() {
+        OrderEventBus bus = switch (transport.trim().toLowerCase(Locale.ROOT)) {
+            case "in-process" -> inProcess.get();
+            case "dynamodb-streams" -> dynamoDbStreams.get();
+            default -> throw new IllegalArgumentException(String.format(
+                "Invalid orders.events.bus: '%s'. Must be one of: in-process, dynamodb-streams.", transport));
+        };
+        LOG.infof("Order event bus: %s", transport);
+        return bus;
+    }
+}
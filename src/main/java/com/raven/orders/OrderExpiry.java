@@ -0,0 +1,206 @@
+package com.raven.orders;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bookkeeping of the order book's entries for eviction: a hashed timing
+ * wheel of the closed orders waiting for their retention to end, and a list
+ * of those same closed orders from the least recently written. Active
+ * entries are only counted, never evicted. Each slot of the wheel
+ * holds the orders due in the same tick (those due after more than one turn
+ * count down their remaining rounds), so scheduling, cancelling and expiring
+ * an order are O(1), and a tick only visits its own slot. Thread-safe.
+ */
+final class OrderExpiry {
+    
+    private static final class Node {
+        
+        private final String id;
+        private long bytes; // estimated size of the entry
+        private Node older; // least recently written list, closed entries only
+        private Node newer;
+        private int slot = -1; // in the wheel, -1 if not scheduled
+        private long rounds; // turns of the wheel left
+        private Node previous; // in the slot
+        private Node next;
+        
+        private Node(String id) {
+            this.id = id;
+        }
+    }
+    
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final Node[] slots;
+    private int cursor; // slot of the next tick
+    private Node oldest;
+    private Node newest;
+    private int scheduled;
+    private long bytes;
+    
+    /**
+     * @param wheelSize Number of slots, i.e. ticks per turn of the wheel
+     */
+    OrderExpiry(int wheelSize) {
+        this.slots = new Node[wheelSize];
+    }
+    
+    /**
+     * Record a write of an entry: it becomes the most recently written one
+     * 
+     * @param id The order ID
+     * @param bytes The estimated size of the new entry
+     * @param expireAfterTicks Ticks until the entry expires, 0 to keep it;
+     *        an entry already scheduled keeps its deadline
+     */
+    synchronized void touch(String id, long bytes, long expireAfterTicks) {
+        Node node = nodes.get(id);
+        if (node == null) {
+            node = new Node(id);
+            nodes.put(id, node);
+        } else {
+            this.bytes -= node.bytes;
+        }
+        node.bytes = bytes;
+        this.bytes += bytes;
+        
+        if (expireAfterTicks <= 0) {
+            unschedule(node);
+        } else {
+            if (node.slot < 0) {
+                schedule(node, expireAfterTicks);
+            } else {
+                unlink(node);
+            }
+            link(node);
+        }
+    }
+    
+    /**
+     * Forget an entry that left the book
+     */
+    synchronized void remove(String id) {
+        Node node = nodes.remove(id);
+        if (node != null) {
+            unschedule(node);
+            bytes -= node.bytes;
+        }
+    }
+    
+    /**
+     * Advance the wheel by one tick
+     * 
+     * @return The ids of the entries expired; they are forgotten
+     */
+    synchronized List<String> tick() {
+        List<String> expired = new ArrayList<>();
+        Node node = slots[cursor];
+        while (node != null) {
+            Node next = node.next;
+            if (node.rounds > 0) {
+                node.rounds--;
+            } else {
+                expired.add(node.id);
+                remove(node.id);
+            }
+            node = next;
+        }
+        cursor = (cursor + 1) % slots.length;
+        return expired;
+    }
+    
+    /**
+     * The least recently written closed entries beyond a capacity. Active
+     * entries are never evicted, so more than capacity entries remain if
+     * there are more active ones.
+     * 
+     * @param capacity Maximum number of entries
+     * @return The ids of the entries to evict, oldest first; they are forgotten
+     */
+    synchronized List<String> overflow(int capacity) {
+        List<String> evicted = new ArrayList<>();
+        while (nodes.size() > capacity && oldest != null) {
+            evicted.add(oldest.id);
+            remove(oldest.id);
+        }
+        return evicted;
+    }
+    
+    synchronized int size() {
+        return nodes.size();
+    }
+    
+    /**
+     * Number of entries waiting to expire
+     */
+    synchronized int scheduled() {
+        return scheduled;
+    }
+    
+    /**
+     * Estimated size of all the entries
+     */
+    synchronized long bytes() {
+        return bytes;
+    }
+    
+    private void schedule(Node node, long ticks) {
+        // The t-th tick from now visits slot cursor + t - 1
+        node.slot = (int) ((cursor + (ticks - 1) % slots.length) % slots.length);
+        node.rounds = (ticks - 1) / slots.length;
+        node.previous = null;
+        node.next = slots[node.slot];
+        if (node.next != null) {
+            node.next.previous = node;
+        }
+        slots[node.slot] = node;
+        scheduled++;
+    }
+    
+    private void unschedule(Node node) {
+        if (node.slot < 0) {
+            return;
+        }
+        if (node.previous != null) {
+            node.previous.next = node.next;
+        } else {
+            slots[node.slot] = node.next;
+        }
+        if (node.next != null) {
+            node.next.previous = node.previous;
+        }
+        node.previous = null;
+        node.next = null;
+        node.slot = -1;
+        scheduled--;
+        unlink(node);
+    }
+    
+    private void link(Node node) {
+        node.older = newest;
+        node.newer = null;
+        if (newest != null) {
+            newest.newer = node;
+        } else {
+            oldest = node;
+        }
+        newest = node;
+    }
+    
+    private void unlink(Node node) {
+        if (node.older != null) {
+            node.older.newer = node.newer;
+        } else {
+            oldest = node.newer;
+        }
+        if (node.newer != null) {
+            node.newer.older = node.older;
+        } else {
+            newest = node.older;
+        }
+        node.older = null;
+        node.newer = null;
+    }
+}
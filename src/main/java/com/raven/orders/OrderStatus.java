@@ -0,0 +1,90 @@
+package com.raven.orders;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Order statuses and the transitions allowed between them. Orders only move
+ * forward, possibly skipping steps (a coffee can go from NEW straight to
+ * READY), and can be canceled until they are completed; COMPLETED and
+ * CANCELED are final.
+ */
+public enum OrderStatus {
+    NEW,
+    ACCEPTED,
+    IN_PROGRESS,
+    READY,
+    COMPLETED,
+    CANCELED;
+    
+    private static final Map<OrderStatus, Set<OrderStatus>> NEXT = new EnumMap<>(OrderStatus.class);
+    
+    static {
+        NEXT.put(NEW, EnumSet.of(ACCEPTED, IN_PROGRESS, READY, COMPLETED, CANCELED));
+        NEXT.put(ACCEPTED, EnumSet.of(IN_PROGRESS, READY, COMPLETED, CANCELED));
+        NEXT.put(IN_PROGRESS, EnumSet.of(READY, COMPLETED, CANCELED));
+        NEXT.put(READY, EnumSet.of(COMPLETED, CANCELED));
+        NEXT.put(COMPLETED, EnumSet.noneOf(OrderStatus.class));
+        NEXT.put(CANCELED, EnumSet.noneOf(OrderStatus.class));
+    }
+    
+    /**
+     * Whether an order in this status may move to another
+     */
+    public boolean canMoveTo(OrderStatus next) {
+        return NEXT.get(this).contains(next);
+    }
+    
+    public boolean isFinal() {
+        return NEXT.get(this).isEmpty();
+    }
+    
+    /**
+     * Parse a status (case-insensitive)
+     * 
+     * @throws IllegalArgumentException if it is not a known status
+     */
+    public static OrderStatus parse(String status) {
+        OrderStatus parsed = of(status);
+        if (parsed == null) {
+            throw new IllegalArgumentException(String.format("Invalid status: '%s'. Must be one of: %s.", status,
+                Arrays.stream(values()).map(Enum::name).collect(Collectors.joining(", "))));
+        }
+        return parsed;
+    }
+    
+    /**
+     * The status named by a string, or null if unknown (e.g. a status
+     * stored before statuses were validated)
+     */
+    public static OrderStatus of(String status) {
+        if (status == null) {
+            return null;
+        }
+        try {
+            return valueOf(status.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Check that an order may move between two statuses. Orders in an
+     * unknown status may move to any status.
+     * 
+     * @param from The current status
+     * @param to The new status
+     * @throws IllegalStateException if the transition is not allowed
+     */
+    public static void checkTransition(String from, OrderStatus to) {
+        OrderStatus current = of(from);
+        if (current != null && current != to && !current.canMoveTo(to)) {
+            throw new IllegalStateException(String.format("Order can't move from %s to %s", current, to));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.raven.orders;
+
+/**
+ * Streaming preparation time statistics of one product: an exponentially
+ * decayed mean, and a decayed quantile estimated by stochastic
+ * approximation (each observation nudges the estimate up by quantile, or
+ * down by 1 - quantile, times a step proportional to the mean). Recent
+ * observations weigh the most, so both follow changes in the kitchen.
+ * Updates are serialized; reads take no lock.
+ */
+final class PrepTimeStats {
+    
+    private final double alpha;
+    private final double quantile;
+    
+    private volatile double meanMillis;
+    private volatile double quantileMillis;
+    private volatile long count;
+    
+    /**
+     * @param alpha Weight of each new observation, between 0 and 1
+     * @param quantile The quantile to estimate, e.g. 0.8
+     */
+    PrepTimeStats(double alpha, double quantile) {
+        this.alpha = alpha;
+        this.quantile = quantile;
+    }
+    
+    synchronized void observe(long millis) {
+        if (count++ == 0) {
+            meanMillis = millis;
+            quantileMillis = millis;
+            return;
+        }
+        double mean = meanMillis + alpha * (millis - meanMillis);
+        double step = alpha * mean;
+        double estimate = quantileMillis + (millis > quantileMillis ? step * quantile : -step * (1 - quantile));
+        meanMillis = mean;
+        quantileMillis = Math.max(estimate, 0);
+    }
+    
+    double meanMillis() {
+        return meanMillis;
+    }
+    
+    double quantileMillis() {
+        return quantileMillis;
+    }
+    
+    long count() {
+        return count;
+    }
+}
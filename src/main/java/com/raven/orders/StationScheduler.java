@@ -0,0 +1,225 @@
+package com.raven.orders;
+
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Splits the open orders into station tickets, one per station and course
+ * of each order, and keeps each station's tickets in an indexed priority
+ * queue (TicketQueue), so a change to an order moves only its own tickets.
+ * 
+ * A ticket is due at the order's promised time (creation + etaMinutes, or
+ * orders.stations.default-promise), plus orders.stations.course-gap for
+ * each course before its own (starter, main, dessert), so later courses
+ * queue behind the earlier ones of the same order. Tickets of the priority
+ * channels are queued as if due orders.stations.priority-advance earlier.
+ * Tickets leave the queue when their order is READY, closed or deleted.
+ * 
+ * Fed by the order book, so it holds the orders of every instance when the
+ * book does.
+ */
+@ApplicationScoped
+public class StationScheduler {
+    
+    private static final Logger LOG = Logger.getLogger(StationScheduler.class);
+    
+    /** Courses in serving order; items without a known course go with the first */
+    private static final List<String> COURSES = List.of("starter", "main", "dessert");
+    
+    @Inject
+    OrderBook orderBook;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    @ConfigProperty(name = "orders.stations.default-promise", defaultValue = "15m")
+    Duration defaultPromise;
+    
+    @ConfigProperty(name = "orders.stations.course-gap", defaultValue = "10m")
+    Duration courseGap;
+    
+    @ConfigProperty(name = "orders.stations.priority-channels", defaultValue = "takeaway")
+    List<String> priorityChannels;
+    
+    @ConfigProperty(name = "orders.stations.priority-advance", defaultValue = "2m")
+    Duration priorityAdvance;
+    
+    private final Map<String, TicketQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, List<StationTicket>> ticketsByOrder = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private Set<String> priorityChannelKeys;
+    
+    @PostConstruct
+    void init() {
+        priorityChannelKeys = new HashSet<>();
+        for (String channel : priorityChannels) {
+            String key = key(channel);
+            if (key != null) {
+                priorityChannelKeys.add(key);
+            }
+        }
+    }
+    
+    void onStart(@Observes StartupEvent event) {
+        registry.gauge("raven.stations.tickets", queues,
+            queues -> queues.values().stream().mapToInt(TicketQueue::size).sum());
+        orderBook.listen(this::schedule);
+    }
+    
+    /**
+     * The tickets of a station, first due first
+     * 
+     * @param station The station, e.g. kitchen (case-insensitive)
+     * @param limit Maximum number of tickets
+     * @return The tickets, empty for an unknown station
+     */
+    public List<StationTicket> queue(String station, int limit) {
+        String key = key(station);
+        TicketQueue queue = key != null ? queues.get(key) : null;
+        return queue != null ? queue.first(limit) : List.of();
+    }
+    
+    /**
+     * The stations that have had tickets
+     */
+    public Set<String> stations() {
+        return Collections.unmodifiableSet(queues.keySet());
+    }
+    
+    /**
+     * Register a listener for queue changes. It receives the station of each
+     * queue that changed, on the thread writing the order, so it must be quick.
+     * 
+     * @param listener Receives the station
+     */
+    public void listen(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Bring the tickets of an order in line with its new version. Called by
+     * the order book, one call at a time for each order.
+     * 
+     * @param orderId The order ID
+     * @param order The order, or null if it left the book
+     */
+    void schedule(String orderId, Order order) {
+        List<StationTicket> tickets = order != null ? ticketsOf(order) : List.of();
+        List<StationTicket> previous = tickets.isEmpty()
+            ? ticketsByOrder.remove(orderId)
+            : ticketsByOrder.put(orderId, tickets);
+        
+        Set<String> changed = new HashSet<>();
+        if (previous != null) {
+            Set<String> kept = new HashSet<>();
+            for (StationTicket ticket : tickets) {
+                kept.add(ticket.getId());
+            }
+            for (StationTicket ticket : previous) {
+                if (!kept.contains(ticket.getId())) {
+                    queues.get(ticket.getStation()).remove(ticket.getId());
+                    changed.add(ticket.getStation());
+                }
+            }
+        }
+        for (StationTicket ticket : tickets) {
+            queues.computeIfAbsent(ticket.getStation(), station -> new TicketQueue()).put(ticket);
+            changed.add(ticket.getStation());
+        }
+        
+        for (String station : changed) {
+            for (Consumer<String> listener : listeners) {
+                try {
+                    listener.accept(station);
+                } catch (RuntimeException e) {
+                    LOG.errorf(e, "Error notifying the station queue listener of station %s", station);
+                }
+            }
+        }
+    }
+    
+    /**
+     * One ticket per station and course of an open order that is not ready yet
+     */
+    private List<StationTicket> ticketsOf(Order order) {
+        OrderStatus status = OrderStatus.of(order.getStatus());
+        if (order.getItems() == null || status == OrderStatus.READY || (status != null && status.isFinal())) {
+            return List.of();
+        }
+        
+        // station -> course -> items, in the order of the items
+        Map<String, Map<String, List<OrderItem>>> groups = new LinkedHashMap<>();
+        for (OrderItem item : order.getItems()) {
+            String station = key(item.getStation());
+            if (station != null) {
+                groups.computeIfAbsent(station, s -> new LinkedHashMap<>())
+                    .computeIfAbsent(key(item.getCourse()), c -> new ArrayList<>())
+                    .add(item);
+            }
+        }
+        if (groups.isEmpty()) {
+            return List.of();
+        }
+        
+        Instant promised = promisedAt(order);
+        long advance = priorityChannelKeys.contains(key(order.getChannel())) ? priorityAdvance.toMillis() : 0;
+        List<StationTicket> tickets = new ArrayList<>();
+        for (Map.Entry<String, Map<String, List<OrderItem>>> station : groups.entrySet()) {
+            for (Map.Entry<String, List<OrderItem>> course : station.getValue().entrySet()) {
+                String id = order.getId() + ":" + station.getKey()
+                    + (course.getKey() != null ? ":" + course.getKey() : "");
+                Instant due = promised.plus(courseGap.multipliedBy(courseIndex(course.getKey())));
+                tickets.add(new StationTicket(id, order.getId(), station.getKey(), course.getKey(), order.getChannel(),
+                    order.getStatus(), order.getNotes(), List.copyOf(course.getValue()), order.getCreatedAt(),
+                    due.toString(), due.toEpochMilli() - advance));
+            }
+        }
+        return tickets;
+    }
+    
+    /**
+     * Number of courses served before this one
+     */
+    private static int courseIndex(String course) {
+        return course != null ? Math.max(COURSES.indexOf(course), 0) : 0;
+    }
+    
+    private Instant promisedAt(Order order) {
+        Instant created;
+        try {
+            created = order.getCreatedAt() != null ? Instant.parse(order.getCreatedAt()) : Instant.now();
+        } catch (DateTimeParseException e) {
+            created = Instant.now();
+        }
+        return order.getEtaMinutes() != null
+            ? created.plus(Duration.ofMinutes(order.getEtaMinutes()))
+            : created.plus(defaultPromise);
+    }
+    
+    private static String key(String value) {
+        return value == null || value.isBlank() ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,118 @@
+package com.raven.orders;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.raven.model.OrderItem;
+
+import java.util.List;
+
+/**
+ * The work of one station for one course of an order: its items, and when
+ * it is due. Built by StationScheduler from the order and never modified.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class StationTicket {
+    
+    @JsonProperty("id")
+    private final String id; // orderId:station[:course]
+    
+    @JsonProperty("orderId")
+    private final String orderId;
+    
+    @JsonProperty("station")
+    private final String station;
+    
+    @JsonProperty("course")
+    private final String course; // null for items without a course
+    
+    @JsonProperty("channel")
+    private final String channel;
+    
+    @JsonProperty("orderStatus")
+    private final String orderStatus;
+    
+    @JsonProperty("notes")
+    private final String notes; // order notes
+    
+    @JsonProperty("items")
+    private final List<OrderItem> items;
+    
+    @JsonProperty("createdAt")
+    private final String createdAt; // order creation, ISO date format
+    
+    @JsonProperty("dueAt")
+    private final String dueAt; // ISO date format
+    
+    @JsonIgnore
+    private final long priority; // queue position key, epoch millis: dueAt, earlier for priority channels
+    
+    StationTicket(String id, String orderId, String station, String course, String channel, String orderStatus,
+                  String notes, List<OrderItem> items, String createdAt, String dueAt, long priority) {
+        this.id = id;
+        this.orderId = orderId;
+        this.station = station;
+        this.course = course;
+        this.channel = channel;
+        this.orderStatus = orderStatus;
+        this.notes = notes;
+        this.items = items;
+        this.createdAt = createdAt;
+        this.dueAt = dueAt;
+        this.priority = priority;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public String getOrderId() {
+        return orderId;
+    }
+    
+    public String getStation() {
+        return station;
+    }
+    
+    public String getCourse() {
+        return course;
+    }
+    
+    public String getChannel() {
+        return channel;
+    }
+    
+    public String getOrderStatus() {
+        return orderStatus;
+    }
+    
+    public String getNotes() {
+        return notes;
+    }
+    
+    public List<OrderItem> getItems() {
+        return items;
+    }
+    
+    public String getCreatedAt() {
+        return createdAt;
+    }
+    
+    public String getDueAt() {
+        return dueAt;
+    }
+    
+    public long getPriority() {
+        return priority;
+    }
+    
+    @Override
+    public String toString() {
+        return "StationTicket{" +
+                "id='" + id + '\'' +
+                ", dueAt='" + dueAt + '\'' +
+                ", priority=" + priority +
+                ", items=" + (items != null ? items.size() : 0) +
+                '}';
+    }
+}
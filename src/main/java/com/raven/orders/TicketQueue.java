@@ -0,0 +1,152 @@
+package com.raven.orders;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The tickets of one station in a binary min-heap on their priority, with
+ * each ticket's position in the heap indexed by id: adding, moving and
+ * removing a ticket are O(log n), and the first k tickets are read in
+ * O(k log k) without sorting the rest. Thread-safe.
+ */
+final class TicketQueue {
+    
+    private static final Comparator<Entry> ORDER = Comparator
+        .comparingLong((Entry entry) -> entry.ticket.getPriority())
+        .thenComparingLong(entry -> entry.sequence);
+    
+    private static final class Entry {
+        
+        private StationTicket ticket;
+        private final long sequence; // arrival order, breaks ties
+        private int index; // position in the heap
+        
+        private Entry(StationTicket ticket, long sequence) {
+            this.ticket = ticket;
+            this.sequence = sequence;
+        }
+    }
+    
+    private final Map<String, Entry> entries = new HashMap<>();
+    private Entry[] heap = new Entry[16];
+    private int size;
+    private long nextSequence;
+    
+    /**
+     * Add a ticket, or replace the ticket with the same id and move it to
+     * the position of its new priority
+     */
+    synchronized void put(StationTicket ticket) {
+        Entry entry = entries.get(ticket.getId());
+        if (entry == null) {
+            entry = new Entry(ticket, nextSequence++);
+            entries.put(ticket.getId(), entry);
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            entry.index = size;
+            heap[size++] = entry;
+            siftUp(entry.index);
+            return;
+        }
+        long previous = entry.ticket.getPriority();
+        entry.ticket = ticket;
+        if (ticket.getPriority() < previous) {
+            siftUp(entry.index);
+        } else if (ticket.getPriority() > previous) {
+            siftDown(entry.index);
+        }
+    }
+    
+    /**
+     * @return false if there was no ticket with that id
+     */
+    synchronized boolean remove(String id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        Entry last = heap[--size];
+        heap[size] = null;
+        if (entry != last) {
+            heap[entry.index] = last;
+            last.index = entry.index;
+            siftDown(last.index);
+            siftUp(last.index);
+        }
+        return true;
+    }
+    
+    synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * The first tickets, in priority order
+     * 
+     * @param limit Maximum number of tickets
+     */
+    synchronized List<StationTicket> first(int limit) {
+        List<StationTicket> tickets = new ArrayList<>(Math.min(limit, size));
+        if (size == 0 || limit <= 0) {
+            return tickets;
+        }
+        // The next ticket is always the smallest child of one already taken
+        PriorityQueue<Entry> frontier = new PriorityQueue<>(ORDER);
+        frontier.add(heap[0]);
+        while (!frontier.isEmpty() && tickets.size() < limit) {
+            Entry entry = frontier.poll();
+            tickets.add(entry.ticket);
+            int child = 2 * entry.index + 1;
+            if (child < size) {
+                frontier.add(heap[child]);
+            }
+            if (child + 1 < size) {
+                frontier.add(heap[child + 1]);
+            }
+        }
+        return tickets;
+    }
+    
+    private void siftUp(int index) {
+        Entry entry = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (ORDER.compare(entry, heap[parent]) >= 0) {
+                break;
+            }
+            move(heap[parent], index);
+            index = parent;
+        }
+        move(entry, index);
+    }
+    
+    private void siftDown(int index) {
+        Entry entry = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && ORDER.compare(heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if (ORDER.compare(heap[child], entry) >= 0) {
+                break;
+            }
+            move(heap[child], index);
+            index = child;
+        }
+        move(entry, index);
+    }
+    
+    private void move(Entry entry, int index) {
+        heap[index] = entry;
+        entry.index = index;
+    }
+}
@@ -0,0 +1,222 @@
+package com.raven.pricing;
+
+import com.raven.model.Modifier;
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.model.OrderTotals;
+import com.raven.model.Product;
+import com.raven.model.TaxSubtotal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable price list: the catalog price of every product in cents, with
+ * its tax rate already resolved from the tax rate table, so pricing an order
+ * is one map lookup per line and integer arithmetic only. Changes make a
+ * new price list (copy on write).
+ */
+public final class PriceList {
+    
+    /**
+     * Catalog price of a product
+     */
+    private static final class Price {
+        
+        private final long cents;
+        private final TaxRate taxRate;
+        
+        private Price(long cents, TaxRate taxRate) {
+            this.cents = cents;
+            this.taxRate = taxRate;
+        }
+    }
+    
+    private final Map<String, TaxRate> taxRates; // by id
+    private final TaxRate[] rates; // by index
+    private final TaxRate defaultTaxRate;
+    private final Map<String, Price> prices; // by product ID
+    
+    private PriceList(Map<String, TaxRate> taxRates, TaxRate[] rates, TaxRate defaultTaxRate,
+                      Map<String, Price> prices) {
+        this.taxRates = taxRates;
+        this.rates = rates;
+        this.defaultTaxRate = defaultTaxRate;
+        this.prices = prices;
+    }
+    
+    /**
+     * Build a price list
+     * 
+     * @param products The catalog products; those without a price are left out
+     * @param taxRates The tax rate table, as id:percent pairs, e.g. iva-22:22,iva-10:10
+     * @param defaultTaxRate The id of the rate of products without one, or with an unknown one
+     * @return PriceList
+     * @throws IllegalArgumentException if the tax rate table is malformed or misses the default rate
+     */
+    public static PriceList of(List<Product> products, String taxRates, String defaultTaxRate) {
+        Map<String, TaxRate> table = new LinkedHashMap<>();
+        for (String entry : taxRates.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid tax rate, expected id:percent: " + entry);
+            }
+            int basisPoints = (int) Math.round(Double.parseDouble(parts[1].trim()) * 100);
+            table.put(parts[0].trim(), new TaxRate(parts[0].trim(), basisPoints, table.size()));
+        }
+        TaxRate fallback = table.get(defaultTaxRate);
+        if (fallback == null) {
+            throw new IllegalArgumentException("Default tax rate not in the tax rate table: " + defaultTaxRate);
+        }
+        PriceList empty = new PriceList(table, table.values().toArray(new TaxRate[0]), fallback, Map.of());
+        Map<String, Price> prices = new HashMap<>();
+        for (Product product : products) {
+            Price price = empty.priceOf(product);
+            if (price != null) {
+                prices.put(product.getId(), price);
+            }
+        }
+        return empty.with(prices);
+    }
+    
+    /**
+     * A copy with a product added, repriced or, if it has no price, removed
+     */
+    public PriceList with(Product product) {
+        Map<String, Price> copy = new HashMap<>(prices);
+        Price price = priceOf(product);
+        if (price != null) {
+            copy.put(product.getId(), price);
+        } else {
+            copy.remove(product.getId());
+        }
+        return with(copy);
+    }
+    
+    /**
+     * A copy without a product
+     */
+    public PriceList without(String productId) {
+        Map<String, Price> copy = new HashMap<>(prices);
+        copy.remove(productId);
+        return with(copy);
+    }
+    
+    public int size() {
+        return prices.size();
+    }
+    
+    /**
+     * The products whose price or tax rate differs from another price list,
+     * added and removed ones included
+     */
+    public Set<String> changedSince(PriceList previous) {
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, Price> entry : prices.entrySet()) {
+            Price before = previous.prices.get(entry.getKey());
+            if (before == null || before.cents != entry.getValue().cents
+                || before.taxRate.getBasisPoints() != entry.getValue().taxRate.getBasisPoints()) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String productId : previous.prices.keySet()) {
+            if (!prices.containsKey(productId)) {
+                changed.add(productId);
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Price an order in integer cents: each line is (unit price + modifier
+     * deltas) x quantity, where the unit price is the catalog price; lines
+     * are summed per tax rate and the tax computed once per rate, so
+     * rounding doesn't add up across lines. Sets the price and line total of
+     * each item.
+     * 
+     * @param order The order; its items are modified
+     * @param pricesIncludeTax Whether prices are gross (tax included) or net
+     * @return The totals, also set on the order
+     * @throws UnpricedItemException if a product is not in the price list
+     *         (unknown or without a price), a quantity is not positive or the
+     *         modifiers make a priced product free or negative
+     */
+    public OrderTotals price(Order order, boolean pricesIncludeTax) {
+        long[] amounts = new long[rates.length]; // per tax rate, as priced (gross or net)
+        boolean[] used = new boolean[rates.length];
+        List<OrderItem> items = order.getItems();
+        if (items != null) {
+            for (int i = 0; i < items.size(); i++) {
+                OrderItem item = items.get(i);
+                Price price = item.getProductId() != null ? prices.get(item.getProductId()) : null;
+                if (price == null) {
+                    throw new UnpricedItemException("Unknown product or product without a price: "
+                        + item.getProductId());
+                }
+                Integer quantity = item.getQuantity();
+                if (quantity != null && quantity <= 0) {
+                    throw new UnpricedItemException(String.format(
+                        "Invalid quantity for product %s: %d. Must be at least 1.", item.getProductId(), quantity));
+                }
+                long unit = price.cents;
+                TaxRate taxRate = price.taxRate;
+                item.setPrice(unit / 100.0);
+                List<Modifier> modifiers = item.getModifiers();
+                if (modifiers != null) {
+                    for (int m = 0; m < modifiers.size(); m++) {
+                        unit += cents(modifiers.get(m).getPriceDelta());
+                    }
+                    // The deltas come from the client: they may lower the price, never below zero
+                    if (unit < 0 || (unit == 0 && price.cents > 0)) {
+                        throw new UnpricedItemException(String.format(
+                            "Invalid modifiers for product %s: they take the price to %d cents",
+                            item.getProductId(), unit));
+                    }
+                }
+                long line = unit * (quantity != null ? quantity : 1);
+                item.setLineTotalCents(line);
+                amounts[taxRate.getIndex()] += line;
+                used[taxRate.getIndex()] = true;
+            }
+        }
+        
+        long net = 0;
+        long tax = 0;
+        List<TaxSubtotal> taxes = new ArrayList<>(2);
+        for (TaxRate rate : rates) {
+            if (!used[rate.getIndex()]) {
+                continue;
+            }
+            long amount = amounts[rate.getIndex()];
+            long rateTax = pricesIncludeTax ? rate.taxOfGross(amount) : rate.taxOfNet(amount);
+            long rateNet = pricesIncludeTax ? amount - rateTax : amount;
+            taxes.add(new TaxSubtotal(rate.getId(), rate.getBasisPoints(), rateNet, rateTax, rateNet + rateTax));
+            net += rateNet;
+            tax += rateTax;
+        }
+        OrderTotals totals = new OrderTotals(net, tax, net + tax, taxes);
+        order.setTotals(totals);
+        return totals;
+    }
+    
+    private PriceList with(Map<String, Price> prices) {
+        return new PriceList(taxRates, rates, defaultTaxRate, prices);
+    }
+    
+    private Price priceOf(Product product) {
+        if (product.getId() == null || product.getPrice() == null) {
+            return null;
+        }
+        TaxRate taxRate = product.getTaxRateId() != null ? taxRates.get(product.getTaxRateId()) : null;
+        return new Price(cents(product.getPrice()), taxRate != null ? taxRate : defaultTaxRate);
+    }
+    
+    private static long cents(Double amount) {
+        return amount != null ? Math.round(amount * 100) : 0;
+    }
+}
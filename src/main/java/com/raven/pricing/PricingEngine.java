@@ -0,0 +1,228 @@
+package com.raven.pricing;
+
+import com.raven.catalog.CatalogCache;
+import com.raven.catalog.CatalogChange;
+import com.raven.catalog.CatalogListener;
+import com.raven.catalog.CatalogSnapshot;
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.model.OrderTotals;
+import com.raven.model.Product;
+import com.raven.orders.OrderBook;
+import com.raven.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Prices orders on the server when they are created or updated, from an
+ * in-memory PriceList of the catalog: no DynamoDB read per order. The price
+ * list is derived from the shared catalog when it is loaded and follows its
+ * product changes.
+ * 
+ * When prices change, the open orders in pricing.reprice-statuses (by
+ * default only NEW ones, not yet accepted at their price) containing the
+ * changed products are repriced in one batch against the same price list.
+ */
+@ApplicationScoped
+public class PricingEngine implements CatalogListener {
+    
+    private static final Logger LOG = Logger.getLogger(PricingEngine.class);
+    
+    private static final int MAX_REPRICE_ATTEMPTS = 3;
+    
+    @ConfigProperty(name = "pricing.enabled", defaultValue = "true")
+    boolean enabled;
+    
+    @ConfigProperty(name = "pricing.tax-rates", defaultValue = "iva-22:22,iva-10:10,iva-4:4,iva-0:0")
+    String taxRates;
+    
+    @ConfigProperty(name = "pricing.default-tax-rate", defaultValue = "iva-22")
+    String defaultTaxRate;
+    
+    @ConfigProperty(name = "pricing.prices-include-tax", defaultValue = "true")
+    boolean pricesIncludeTax;
+    
+    @ConfigProperty(name = "pricing.reprice-statuses", defaultValue = "NEW")
+    Set<String> repriceStatuses;
+    
+    @Inject
+    OrderRepository orderRepository;
+    
+    @Inject
+    CatalogCache catalogCache;
+    
+    @Inject
+    OrderBook orderBook;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    // Written by the catalog cache, one call at a time
+    private volatile PriceList priceList; // null until loaded
+    private Counter repriced;
+    
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        registry.gauge("raven.pricing.products", this, engine -> engine.priceList != null ? engine.priceList.size() : 0);
+        repriced = registry.counter("raven.pricing.repriced");
+        catalogCache.listen(this);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Price an order: sets the price and line total of each item and the
+     * order totals
+     * 
+     * @param order The order to price
+     * @throws UnpricedItemException if a product has no catalog price or a
+     *         quantity is not positive
+     * @throws PricingUnavailableException if the price list can't be loaded
+     */
+    public void price(Order order) {
+        PriceList current = priceList();
+        current.price(order, pricesIncludeTax);
+    }
+    
+    @Override
+    public void loaded(CatalogSnapshot previous, CatalogSnapshot catalog) {
+        long start = System.nanoTime();
+        PriceList next = PriceList.of(catalog.getProducts(), taxRates, defaultTaxRate);
+        PriceList current = priceList;
+        priceList = next;
+        LOG.infof("Loaded the price list of %d products in %d ms", next.size(),
+            (System.nanoTime() - start) / 1_000_000);
+        if (previous != null && current != null) {
+            pricesChanged(next.changedSince(current), next);
+        }
+    }
+    
+    @Override
+    public void changed(CatalogSnapshot catalog, CatalogChange change) {
+        PriceList current = priceList;
+        if (current == null || change.getEntityType() != CatalogChange.EntityType.PRODUCT) {
+            return;
+        }
+        PriceList next = change.getOperation() == CatalogChange.Operation.DELETE
+            ? current.without(change.getId())
+            : current.with((Product) change.getEntity());
+        priceList = next;
+        pricesChanged(next.changedSince(current), next);
+    }
+    
+    /**
+     * Reprice the open orders, in the configured statuses, that contain a
+     * changed product; on a virtual thread, since each write goes to DynamoDB
+     */
+    private void pricesChanged(Set<String> productIds, PriceList prices) {
+        if (productIds.isEmpty() || repriceStatuses.isEmpty() || !orderBook.isWarm()) {
+            return;
+        }
+        LOG.infof("Prices of %d products changed, repricing the open orders in %s", productIds.size(),
+            repriceStatuses);
+        List<Order> orders = new ArrayList<>();
+        for (Order order : orderBook.find(repriceStatuses, null, null)) {
+            if (contains(order, productIds)) {
+                orders.add(order);
+            }
+        }
+        if (!orders.isEmpty()) {
+            Thread.ofVirtual().name("order-reprice").start(() -> reprice(orders, prices));
+        }
+    }
+    
+    private void reprice(List<Order> orders, PriceList prices) {
+        int updated = 0;
+        for (Order order : orders) {
+            try {
+                if (reprice(order, prices)) {
+                    updated++;
+                }
+            } catch (RuntimeException e) {
+                LOG.warnf("Order %s not repriced: %s", order.getId(), e.getMessage());
+            }
+        }
+        repriced.increment(updated);
+        LOG.infof("Repriced %d of %d open orders", updated, orders.size());
+    }
+    
+    /**
+     * Write the new prices of an order, conditioned on the version priced, so
+     * only the items and totals change. An order written meanwhile is read
+     * again and repriced, unless it left the repriced statuses or was deleted.
+     * 
+     * @return false if the order kept its prices
+     */
+    private boolean reprice(Order order, PriceList prices) {
+        Order current = order;
+        for (int attempt = 1; attempt <= MAX_REPRICE_ATTEMPTS; attempt++) {
+            // The book's entries are shared snapshots: price a copy
+            Order copy = new Order(current);
+            List<OrderItem> items = new ArrayList<>(current.getItems().size());
+            for (OrderItem item : current.getItems()) {
+                items.add(new OrderItem(item));
+            }
+            copy.setItems(items);
+            OrderTotals totals = prices.price(copy, pricesIncludeTax);
+            if (totals.equals(current.getTotals())) {
+                return false;
+            }
+            if (orderRepository.updatePrices(current, items, totals) != null) {
+                return true;
+            }
+            current = orderRepository.findById(order.getId()).orElse(null);
+            if (current == null || !isRepriced(current)) {
+                return false;
+            }
+        }
+        LOG.warnf("Order %s not repriced: modified concurrently %d times", order.getId(), MAX_REPRICE_ATTEMPTS);
+        return false;
+    }
+    
+    private boolean isRepriced(Order order) {
+        for (String status : repriceStatuses) {
+            if (status.trim().equalsIgnoreCase(order.getStatus())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private PriceList priceList() {
+        try {
+            catalogCache.catalog();
+        } catch (RuntimeException e) {
+            // Never fall back to the client's prices
+            LOG.errorf(e, "Error loading the price list");
+            throw new PricingUnavailableException("Failed to load the price list", e);
+        }
+        PriceList current = priceList;
+        if (current == null) {
+            throw new PricingUnavailableException("The price list could not be built");
+        }
+        return current;
+    }
+    
+    private static boolean contains(Order order, Set<String> productIds) {
+        for (OrderItem item : order.getItems()) {
+            if (item.getProductId() != null && productIds.contains(item.getProductId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
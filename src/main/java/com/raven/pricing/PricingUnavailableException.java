@@ -0,0 +1,19 @@
+package com.raven.pricing;
+
+/**
+ * Orders can't be priced right now: the catalog the price list is built
+ * from can't be read. Not a client error and not a conflict; the order is
+ * never priced from the client's prices instead.
+ */
+public class PricingUnavailableException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public PricingUnavailableException(String message) {
+        super(message);
+    }
+    
+    public PricingUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
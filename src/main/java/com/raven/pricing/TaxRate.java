@@ -0,0 +1,53 @@
+package com.raven.pricing;
+
+/**
+ * A tax rate of the configured table (pricing.tax-rates), numbered by its
+ * position so per-rate sums can be kept in an array
+ */
+final class TaxRate {
+    
+    private final String id;
+    private final int basisPoints; // e.g. 2200 for 22%
+    private final int index;
+    
+    TaxRate(String id, int basisPoints, int index) {
+        this.id = id;
+        this.basisPoints = basisPoints;
+        this.index = index;
+    }
+    
+    String getId() {
+        return id;
+    }
+    
+    int getBasisPoints() {
+        return basisPoints;
+    }
+    
+    int getIndex() {
+        return index;
+    }
+    
+    /**
+     * The tax included in a gross amount, rounded half up
+     */
+    long taxOfGross(long grossCents) {
+        return divideHalfUp(grossCents * basisPoints, 10_000 + basisPoints);
+    }
+    
+    /**
+     * The tax due on a net amount, rounded half up
+     */
+    long taxOfNet(long netCents) {
+        return divideHalfUp(netCents * basisPoints, 10_000);
+    }
+    
+    private static long divideHalfUp(long dividend, long divisor) {
+        return dividend >= 0 ? (2 * dividend + divisor) / (2 * divisor) : -((-2 * dividend + divisor) / (2 * divisor));
+    }
+    
+    @Override
+    public String toString() {
+        return id + "=" + basisPoints / 100.0 + "%";
+    }
+}
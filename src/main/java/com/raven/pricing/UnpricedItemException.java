@@ -0,0 +1,16 @@
+package com.raven.pricing;
+
+/**
+ * An order item that can't be priced from the catalog: its product is
+ * unknown or has no price, its quantity is not positive or its modifiers
+ * take the price below zero. A client error, like any
+ * IllegalArgumentException, but told apart from an unknown order.
+ */
+public class UnpricedItemException extends IllegalArgumentException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public UnpricedItemException(String message) {
+        super(message);
+    }
+}
@@ -1,12 +1,15 @@
 
 package com.raven.repository;
 
+import com.raven.catalog.CatalogChange;
+import com.raven.metrics.Instrumented;
 import com.raven.model.Category;
 import com.raven.util.DynamoDBBuilder;
 import com.raven.util.DynamoDBDeserializer;
 import com.raven.util.DynamoDBKeyManager;
 import com.raven.util.DynamoDBSerializer;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
@@ -22,6 +25,7 @@ import java.util.Optional;
  * Repository for Category CRUD operations with DynamoDB
  */
 @ApplicationScoped
+@Instrumented
 public class CategoryRepository {
     
     private static final Logger LOG = Logger.getLogger(CategoryRepository.class);
@@ -41,6 +45,9 @@ public class CategoryRepository {
     @Inject
     DynamoDBKeyManager keyManager;
     
+    @Inject
+    Event<CatalogChange> catalogChanges;
+    
     @ConfigProperty(name = "dynamodb.table.categories")
     String tableName;
     
@@ -66,6 +73,7 @@ public class CategoryRepository {
             dynamoDbClient.putItem(request);
             
             LOG.infof("Created category with ID: %s", category.getId());
+            publish(CatalogChange.upsert(category));
             return category;
             
         } catch (DynamoDbException e) {
@@ -168,6 +176,7 @@ public class CategoryRepository {
             dynamoDbClient.putItem(request);
             
             LOG.infof("Updated category with ID: %s", id);
+            publish(CatalogChange.upsert(category));
             return category;
             
         } catch (DynamoDbException e) {
@@ -198,6 +207,7 @@ public class CategoryRepository {
             dynamoDbClient.deleteItem(request);
             
             LOG.infof("Deleted category with ID: %s", id);
+            publish(CatalogChange.delete(CatalogChange.EntityType.CATEGORY, id));
             return true;
             
         } catch (DynamoDbException e) {
@@ -205,4 +215,17 @@ public class CategoryRepository {
             throw new RuntimeException("Failed to delete category", e);
         }
     }
+    
+    /**
+     * Notify the catalog observers of a committed write. Their failures are
+     * logged, not thrown: the write already succeeded and must not be
+     * reported as failed.
+     */
+    private void publish(CatalogChange change) {
+        try {
+            catalogChanges.fire(change);
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Error notifying the catalog observers of %s", change);
+        }
+    }
 }
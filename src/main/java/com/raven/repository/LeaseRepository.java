@@ -0,0 +1,84 @@
+package com.raven.repository;
+
+import com.raven.metrics.Instrumented;
+import com.raven.util.DynamoDBBuilder;
+import com.raven.util.DynamoDBSerializer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Time-bound leases in the catalog meta table, so a periodic job shared by
+ * all instances runs on one of them: the holder renews its lease each run,
+ * and another instance takes it over once it has not been renewed for its
+ * duration
+ */
+@ApplicationScoped
+@Instrumented
+public class LeaseRepository {
+    
+    private static final Logger LOG = Logger.getLogger(LeaseRepository.class);
+    
+    private static final String OWNER = "owner";
+    private static final String EXPIRES_AT = "expiresAt"; // epoch millis
+    
+    @Inject
+    DynamoDbClient dynamoDbClient;
+    
+    @Inject
+    DynamoDBSerializer serializer;
+    
+    @Inject
+    DynamoDBBuilder builder;
+    
+    @ConfigProperty(name = "dynamodb.table.catalog-meta")
+    String metaTableName;
+    
+    private final String instanceId = UUID.randomUUID().toString();
+    
+    /**
+     * Take or renew a lease for this instance
+     * 
+     * @param name The lease, e.g. eta-refresh
+     * @param duration How long the lease lasts without being renewed
+     * @return true if this instance holds the lease for duration from now
+     */
+    public boolean acquire(String name, Duration duration) {
+        long now = System.currentTimeMillis();
+        try {
+            Map<String, String> expressionAttributeNames = Map.of("#owner", OWNER, "#expiresAt", EXPIRES_AT);
+            Map<String, AttributeValue> expressionAttributeValues = Map.of(
+                ":owner", serializer.stringValue(instanceId),
+                ":now", serializer.numberValue(now),
+                ":expiresAt", serializer.numberValue(now + duration.toMillis()));
+            
+            UpdateItemRequest request = builder.buildUpdateItemRequest(
+                metaTableName,
+                builder.buildKey(name),
+                "SET #owner = :owner, #expiresAt = :expiresAt",
+                expressionAttributeNames,
+                expressionAttributeValues
+            ).toBuilder()
+                .conditionExpression("attribute_not_exists(#owner) OR #owner = :owner OR #expiresAt < :now")
+                .returnValues(ReturnValue.NONE)
+                .build();
+            
+            dynamoDbClient.updateItem(request);
+            return true;
+            
+        } catch (ConditionalCheckFailedException e) {
+            LOG.debugf("Lease %s is held by another instance", name);
+            return false;
+        } catch (DynamoDbException e) {
+            LOG.errorf(e, "Error acquiring lease %s in table: %s", name, metaTableName);
+            throw new RuntimeException("Failed to acquire lease " + name, e);
+        }
+    }
+}
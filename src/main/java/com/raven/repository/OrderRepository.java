@@ -1,7 +1,15 @@
 
 package com.raven.repository;
 
+import com.raven.metrics.Instrumented;
 import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.model.OrderTotals;
+import com.raven.orders.EtaEngine;
+import com.raven.orders.OrderEvent;
+import com.raven.orders.OrderEventBus;
+import com.raven.orders.OrderStatus;
+import com.raven.pricing.PricingEngine;
 import com.raven.util.DynamoDBBuilder;
 import com.raven.util.DynamoDBDeserializer;
 import com.raven.util.DynamoDBKeyManager;
@@ -15,14 +23,27 @@ import software.amazon.awssdk.services.dynamodb.model.*;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Repository for Order CRUD operations with DynamoDB
+ * 
+ * Two table layouts are supported (dynamodb.orders.layout):
+ * - single: the whole order is one item keyed by id
+ * - split: an item collection keyed by id + sk, with the header (sk = HEADER)
+ *   and one item per line (sk = ITEM#0001, ...), so status changes only
+ *   rewrite the small header item
  */
 @ApplicationScoped
+@Instrumented
 public class OrderRepository {
     
     private static final Logger LOG = Logger.getLogger(OrderRepository.class);
@@ -42,14 +63,38 @@ public class OrderRepository {
     @Inject
     DynamoDBKeyManager keyManager;
     
+    @Inject
+    OrderEventBus eventBus;
+    
+    @Inject
+    EtaEngine etaEngine;
+    
+    @Inject
+    PricingEngine pricingEngine;
+    
+    private static final String LAYOUT_SPLIT = "split";
+    private static final String SORT_KEY = "sk";
+    private static final String HEADER_SK = "HEADER";
+    private static final String ITEM_SK_PREFIX = "ITEM#";
+    private static final String ITEM_COUNT = "itemCount";
+    private static final String LINES_VERSION = "linesVersion"; // header version the lines were last written at
+    private static final String VERSION = "version";
+    private static final int MAX_TRANSACT_ITEMS = 100;
+    private static final int MAX_WRITE_ATTEMPTS = 5;
+    private static final int MAX_READ_ATTEMPTS = 3;
+    
     @ConfigProperty(name = "dynamodb.table.orders")
     String tableName;
     
+    @ConfigProperty(name = "dynamodb.orders.layout", defaultValue = "single")
+    String layout;
+    
     /**
      * Create a new order
      * 
      * @param order The order to create
      * @return The created order with generated ID and timestamps
+     * @throws IllegalStateException if an order with the given ID already exists
      */
     public Order create(Order order) {
         try {
@@ -66,19 +111,40 @@ public class OrderRepository {
                 order.setCreatedAt(now);
             }
             order.setUpdatedAt(now);
+            order.setVersion(1);
             
             // Validate required fields
             validateOrder(order);
+            order.setStatus(OrderStatus.parse(order.getStatus()).name());
             
-            // Serialize and save
-            Map<String, AttributeValue> item = serializer.serialize(order);
-            PutItemRequest request = builder.buildPutItemRequest(tableName, item);
+            // Prices and totals come from the catalog, not from the client
+            if (pricingEngine.isEnabled()) {
+                pricingEngine.price(order);
+            }
             
-            dynamoDbClient.putItem(request);
+            // The ETA is predicted from the station queues, not taken from the client
+            if (etaEngine.isEnabled()) {
+                order.setEtaMinutes(etaEngine.predictMinutes(order));
+            }
+            
+            // Serialize and save, never over an existing order with the same ID
+            if (isSplitLayout()) {
+                writeItemCollection(order, 0, null);
+            } else {
+                Map<String, AttributeValue> item = serializer.serialize(order);
+                PutItemRequest request = builder.buildPutItemRequest(tableName, item).toBuilder()
+                    .conditionExpression("attribute_not_exists(id)")
+                    .build();
+                
+                dynamoDbClient.putItem(request);
+            }
             
             LOG.infof("Created order with ID: %s", order.getId());
+            eventBus.publish(OrderEvent.created(order));
             return order;
             
+        } catch (ConditionalCheckFailedException e) {
+            throw new IllegalStateException("Order already exists with ID: " + order.getId());
         } catch (DynamoDbException e) {
             LOG.errorf(e, "Error creating order: %s", order.getId());
             throw new RuntimeException("Failed to create order", e);
@@ -95,6 +161,12 @@ public class OrderRepository {
         try {
             keyManager.validateId(id, "Order ID");
             
+            if (isSplitLayout()) {
+                Optional<Order> order = assembleOrders(queryItemCollection(id)).stream().findFirst();
+                LOG.debugf("Order with ID %s found: %s", id, order.isPresent());
+                return order;
+            }
+            
             Map<String, AttributeValue> key = builder.buildKey(id);
             GetItemRequest request = builder.buildGetItemRequest(tableName, key);
             
@@ -123,11 +195,16 @@ public class OrderRepository {
     public List<Order> findAll() {
         try {
             ScanRequest request = builder.buildScanRequest(tableName);
-            ScanResponse response = dynamoDbClient.scan(request);
+            List<Map<String, AttributeValue>> items = scanAll(request);
             
-            List<Order> orders = new ArrayList<>();
-            for (Map<String, AttributeValue> item : response.items()) {
-                orders.add(deserializer.deserialize(item, Order.class));
+            List<Order> orders;
+            if (isSplitLayout()) {
+                orders = assembleOrders(items);
+            } else {
+                orders = new ArrayList<>();
+                for (Map<String, AttributeValue> item : items) {
+                    orders.add(deserializer.deserialize(item, Order.class));
+                }
             }
             
             LOG.infof("Found %d orders", orders.size());
@@ -140,39 +217,138 @@ public class OrderRepository {
     }
     
     /**
-     * Update an order
+     * Get the id, status and version of every order, without the rest of
+     * their attributes (in the split layout, of the headers only), e.g. to
+     * tell which orders of a snapshot changed since it was taken
      * 
-     * @param id The order ID
-     * @param order The updated order data
-     * @return The updated order
+     * @return List of orders with only id, status and version set
      */
-    public Order update(String id, Order order) {
+    public List<Order> findVersions() {
         try {
-            keyManager.validateId(id, "Order ID");
+            Map<String, String> expressionAttributeNames = new HashMap<>();
+            expressionAttributeNames.put("#id", "id");
+            expressionAttributeNames.put("#status", "status");
+            expressionAttributeNames.put("#version", "version");
             
-            // Ensure ID matches
-            order.setId(id);
+            ScanRequest.Builder request = ScanRequest.builder()
+                .tableName(tableName)
+                .projectionExpression("#id, #status, #version");
+            if (isSplitLayout()) {
+                expressionAttributeNames.put("#sk", SORT_KEY);
+                request.filterExpression("#sk = :header")
+                    .expressionAttributeValues(Map.of(":header", serializer.stringValue(HEADER_SK)));
+            }
+            request.expressionAttributeNames(expressionAttributeNames);
             
-            // Check if order exists
-            Order existingOrder = findById(id).orElseThrow(
-                () -> new IllegalArgumentException("Order not found with ID: " + id)
-            );
+            List<Order> orders = new ArrayList<>();
+            Map<String, AttributeValue> startKey = null;
+            do {
+                ScanResponse response = dynamoDbClient.scan(request.exclusiveStartKey(startKey).build());
+                for (Map<String, AttributeValue> item : response.items()) {
+                    orders.add(deserializer.deserialize(item, Order.class));
+                }
+                startKey = lastEvaluatedKey(response.hasLastEvaluatedKey(), response.lastEvaluatedKey());
+            } while (startKey != null);
             
-            // Preserve createdAt, update updatedAt
-            order.setCreatedAt(existingOrder.getCreatedAt());
-            order.setUpdatedAt(Instant.now().toString());
+            LOG.infof("Found versions of %d orders", orders.size());
+            return orders;
             
-            // Validate required fields
-            validateOrder(order);
+        } catch (DynamoDbException e) {
+            LOG.errorf(e, "Error finding order versions");
+            throw new RuntimeException("Failed to find order versions", e);
+        }
+    }
+    
+    /**
+     * Get orders created after a given order. Relies on time-ordered (UUID v7)
+     * IDs, whose string order is their creation order; orders with other IDs
+     * are never returned.
+     * 
+     * @param afterId The ID of the last order already known by the caller
+     * @return List of orders with a v7 ID greater than afterId, oldest first
+     */
+    public List<Order> findCreatedAfter(String afterId) {
+        try {
+            if (!keyManager.isTimeOrderedId(afterId)) {
+                throw new IllegalArgumentException(
+                    String.format("Invalid Order ID: '%s'. Must be a time-ordered UUID (v7).", afterId));
+            }
             
-            // Serialize and update
-            Map<String, AttributeValue> item = serializer.serialize(order);
-            PutItemRequest request = builder.buildPutItemRequest(tableName, item);
+            Map<String, String> expressionAttributeNames = new HashMap<>();
+            expressionAttributeNames.put("#id", "id");
             
-            dynamoDbClient.putItem(request);
+            Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+            expressionAttributeValues.put(":afterId", serializer.stringValue(afterId.toLowerCase(Locale.ROOT)));
             
-            LOG.infof("Updated order with ID: %s", id);
-            return order;
+            ScanRequest request = builder.buildScanRequest(
+                tableName,
+                "#id > :afterId",
+                expressionAttributeNames,
+                expressionAttributeValues
+            );
+            // Every page: the filter is applied after each 1 MB page is read
+            List<Map<String, AttributeValue>> items = scanAll(request);
+            
+            List<Order> orders;
+            if (isSplitLayout()) {
+                orders = assembleOrders(items);
+            } else {
+                orders = new ArrayList<>();
+                for (Map<String, AttributeValue> item : items) {
+                    orders.add(deserializer.deserialize(item, Order.class));
+                }
+            }
+            // Only v7 IDs sort by creation time: a random (v4) ID that sorts after afterId says nothing
+            orders.removeIf(order -> !keyManager.isTimeOrderedId(order.getId()));
+            orders.sort((a, b) -> a.getId().compareTo(b.getId()));
+            
+            LOG.infof("Found %d orders created after: %s", orders.size(), afterId);
+            return orders;
+            
+        } catch (DynamoDbException e) {
+            LOG.errorf(e, "Error finding orders created after: %s", afterId);
+            throw new RuntimeException("Failed to find orders", e);
+        }
+    }
+    
+    /**
+     * Update an order. The write only succeeds if the order is still at the
+     * version read, otherwise it is read again and retried.
+     * 
+     * @param id The order ID
+     * @param order The updated order data
+     * @return The updated order
+     * @throws IllegalStateException if the status change is not allowed
+     */
+    public Order update(String id, Order order) {
+        OrderStatus status = OrderStatus.parse(order.getStatus());
+        try {
+            keyManager.validateId(id, "Order ID");
+            
+            boolean priced = false;
+            for (int attempt = 1; ; attempt++) {
+                // Check if order exists
+                Order existingOrder = findById(id).orElseThrow(
+                    () -> new IllegalArgumentException("Order not found with ID: " + id)
+                );
+                OrderStatus.checkTransition(existingOrder.getStatus(), status);
+                
+                // Priced once the order is known to exist: a missing order is not found, whatever its items
+                if (!priced && pricingEngine.isEnabled()) {
+                    pricingEngine.price(order);
+                }
+                priced = true;
+                
+                Order candidate = new Order(order);
+                candidate.setStatus(status.name());
+                try {
+                    Order updated = replace(id, candidate, existingOrder);
+                    eventBus.publish(OrderEvent.updated(updated, existingOrder));
+                    return updated;
+                } catch (ConditionalCheckFailedException e) {
+                    onConflict(id, attempt);
+                }
+            }
             
         } catch (DynamoDbException e) {
             LOG.errorf(e, "Error updating order: %s", id);
@@ -181,28 +357,177 @@ public class OrderRepository {
     }
     
     /**
-     * Update order status
+     * Update order status, if the transition is allowed from the current
+     * status. The write only succeeds if the order is still at the version
+     * read, otherwise it is read again and retried.
      * 
      * @param id The order ID
      * @param newStatus The new status
-     * @return The updated order
+     * @return The updated order, or the current one if it already has that status
+     * @throws IllegalStateException if the transition is not allowed
      */
     public Order updateStatus(String id, String newStatus) {
+        OrderStatus status = OrderStatus.parse(newStatus);
         try {
             keyManager.validateId(id, "Order ID");
             
-            Order order = findById(id).orElseThrow(
-                () -> new IllegalArgumentException("Order not found with ID: " + id)
-            );
+            for (int attempt = 1; ; attempt++) {
+                Order previous = findById(id).orElseThrow(
+                    () -> new IllegalArgumentException("Order not found with ID: " + id)
+                );
+                if (status.name().equals(previous.getStatus())) {
+                    return previous;
+                }
+                OrderStatus.checkTransition(previous.getStatus(), status);
+                
+                Order order = new Order(previous);
+                order.setStatus(status.name());
+                try {
+                    Order updated;
+                    if (isSplitLayout()) {
+                        order.setUpdatedAt(Instant.now().toString());
+                        order.setVersion(previous.getVersion() + 1);
+                        updateHeaderStatus(id, order.getStatus(), order.getUpdatedAt(), previous.getVersion());
+                        updated = order;
+                    } else {
+                        updated = replace(id, order, previous);
+                    }
+                    
+                    eventBus.publish(OrderEvent.statusChanged(updated, previous));
+                    return updated;
+                } catch (ConditionalCheckFailedException e) {
+                    onConflict(id, attempt);
+                }
+            }
             
-            order.setStatus(newStatus);
+        } catch (DynamoDbException e) {
+            LOG.errorf(e, "Error updating order status: %s", id);
+            throw new RuntimeException("Failed to update order status", e);
+        }
+    }
+    
+    /**
+     * Set the ETA of an order, if it is still at the version read
+     * 
+     * @param current The order as read
+     * @param etaMinutes The new ETA
+     * @return The updated order, or null if the order was written or deleted meanwhile
+     */
+    public Order updateEta(Order current, int etaMinutes) {
+        String id = current.getId();
+        try {
+            Order order = new Order(current);
+            order.setEtaMinutes(etaMinutes);
             order.setUpdatedAt(Instant.now().toString());
+            order.setVersion(current.getVersion() + 1);
             
-            return update(id, order);
+            Map<String, String> expressionAttributeNames = new HashMap<>();
+            expressionAttributeNames.put("#etaMinutes", "etaMinutes");
+            expressionAttributeNames.put("#updatedAt", "updatedAt");
+            
+            Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+            expressionAttributeValues.put(":etaMinutes", serializer.numberValue(etaMinutes));
+            expressionAttributeValues.put(":updatedAt", serializer.stringValue(order.getUpdatedAt()));
+            expressionAttributeValues.put(":one", serializer.numberValue(1));
+            String condition = versionCondition(current.getVersion(), expressionAttributeNames, expressionAttributeValues);
+            
+            UpdateItemRequest request = builder.buildUpdateItemRequest(
+                tableName,
+                isSplitLayout() ? builder.buildKey(id, HEADER_SK) : builder.buildKey(id),
+                "SET #etaMinutes = :etaMinutes, #updatedAt = :updatedAt ADD #version :one",
+                expressionAttributeNames,
+                expressionAttributeValues
+            ).toBuilder()
+                .conditionExpression(condition)
+                .build();
+            
+            dynamoDbClient.updateItem(request);
+            LOG.debugf("Updated ETA of order %s to %d minutes", id, etaMinutes);
+            eventBus.publish(OrderEvent.updated(order, current));
+            return order;
             
+        } catch (ConditionalCheckFailedException e) {
+            return null;
         } catch (DynamoDbException e) {
-            LOG.errorf(e, "Error updating order status: %s", id);
-            throw new RuntimeException("Failed to update order status", e);
+            LOG.errorf(e, "Error updating order ETA: %s", id);
+            throw new RuntimeException("Failed to update order ETA", e);
+        }
+    }
+    
+    /**
+     * Set the item prices and totals of an order, if it is still at the
+     * version read. Nothing else is written, so a repricing can't undo a
+     * concurrent edit of the order.
+     * 
+     * @param current The order as read
+     * @param items The repriced items, one per item of current, in the same order
+     * @param totals The new totals
+     * @return The updated order, or null if the order was written or deleted meanwhile
+     */
+    public Order updatePrices(Order current, List<OrderItem> items, OrderTotals totals) {
+        String id = current.getId();
+        try {
+            Order order = new Order(current);
+            order.setItems(items);
+            order.setTotals(totals);
+            order.setUpdatedAt(Instant.now().toString());
+            order.setVersion(current.getVersion() + 1);
+            Map<String, AttributeValue> serialized = serializer.serialize(order);
+            
+            Map<String, String> expressionAttributeNames = new HashMap<>();
+            expressionAttributeNames.put("#totals", "totals");
+            expressionAttributeNames.put("#updatedAt", "updatedAt");
+            
+            Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+            expressionAttributeValues.put(":totals", serialized.get("totals"));
+            expressionAttributeValues.put(":updatedAt", serializer.stringValue(order.getUpdatedAt()));
+            expressionAttributeValues.put(":one", serializer.numberValue(1));
+            String condition = versionCondition(current.getVersion(), expressionAttributeNames, expressionAttributeValues);
+            
+            if (isSplitLayout()) {
+                // The header keeps everything but the totals; the lines are rewritten at the new version
+                expressionAttributeNames.put("#linesVersion", LINES_VERSION);
+                expressionAttributeValues.put(":linesVersion", serializer.numberValue(order.getVersion()));
+                List<TransactWriteItem> writes = new ArrayList<>();
+                writes.add(TransactWriteItem.builder()
+                    .update(Update.builder()
+                        .tableName(tableName)
+                        .key(builder.buildKey(id, HEADER_SK))
+                        .updateExpression("SET #totals = :totals, #updatedAt = :updatedAt, "
+                            + "#linesVersion = :linesVersion ADD #version :one")
+                        .conditionExpression(condition)
+                        .expressionAttributeNames(expressionAttributeNames)
+                        .expressionAttributeValues(expressionAttributeValues)
+                        .build())
+                    .build());
+                for (int i = 0; i < items.size(); i++) {
+                    writes.add(linePut(order, i));
+                }
+                transactWrite(writes);
+            } else {
+                expressionAttributeNames.put("#items", "items");
+                expressionAttributeValues.put(":items", serialized.get("items"));
+                UpdateItemRequest request = builder.buildUpdateItemRequest(
+                    tableName,
+                    builder.buildKey(id),
+                    "SET #items = :items, #totals = :totals, #updatedAt = :updatedAt ADD #version :one",
+                    expressionAttributeNames,
+                    expressionAttributeValues
+                ).toBuilder()
+                    .conditionExpression(condition)
+                    .build();
+                dynamoDbClient.updateItem(request);
+            }
+            
+            LOG.debugf("Updated prices of order %s", id);
+            eventBus.publish(OrderEvent.updated(order, current));
+            return order;
+            
+        } catch (ConditionalCheckFailedException e) {
+            return null;
+        } catch (DynamoDbException e) {
+            LOG.errorf(e, "Error updating order prices: %s", id);
+            throw new RuntimeException("Failed to update order prices", e);
         }
     }
     
@@ -216,8 +541,28 @@ public class OrderRepository {
         try {
             keyManager.validateId(id, "Order ID");
             
+            if (isSplitLayout()) {
+                List<Map<String, AttributeValue>> collection = queryItemCollection(id);
+                if (collection.isEmpty()) {
+                    LOG.warnf("Order not found for deletion: %s", id);
+                    return false;
+                }
+                
+                List<TransactWriteItem> deletes = new ArrayList<>();
+                for (Map<String, AttributeValue> item : collection) {
+                    deletes.add(builder.buildTransactDelete(tableName,
+                        builder.buildKey(id, item.get(SORT_KEY).s())));
+                }
+                transactWrite(deletes);
+                
+                LOG.infof("Deleted order with ID: %s", id);
+                assembleOrders(collection).forEach(order -> eventBus.publish(OrderEvent.deleted(order)));
+                return true;
+            }
+            
             // Check if exists
-            if (findById(id).isEmpty()) {
+            Optional<Order> existing = findById(id);
+            if (existing.isEmpty()) {
                 LOG.warnf("Order not found for deletion: %s", id);
                 return false;
             }
@@ -228,6 +573,7 @@ public class OrderRepository {
             dynamoDbClient.deleteItem(request);
             
             LOG.infof("Deleted order with ID: %s", id);
+            eventBus.publish(OrderEvent.deleted(existing.get()));
             return true;
             
         } catch (DynamoDbException e) {
@@ -236,6 +582,454 @@ public class OrderRepository {
         }
     }
     
+    /**
+     * The order held by a stored item, e.g. an image read from the table's
+     * DynamoDB Stream: the whole order, or in the split layout the header
+     * alone, without its line items
+     * 
+     * @param item The item attributes
+     * @return The order, or null if the item is a line item
+     */
+    public Order fromStoredItem(Map<String, AttributeValue> item) {
+        if (!isSplitLayout()) {
+            return deserializer.deserialize(item, Order.class);
+        }
+        AttributeValue sortKey = item.get(SORT_KEY);
+        if (sortKey != null && !HEADER_SK.equals(sortKey.s())) {
+            return null;
+        }
+        Map<String, AttributeValue> attributes = new HashMap<>(item);
+        attributes.remove(SORT_KEY);
+        attributes.remove(ITEM_COUNT);
+        attributes.remove(LINES_VERSION);
+        return deserializer.deserialize(attributes, Order.class);
+    }
+    
+    /**
+     * The line item held by a stored item of the split layout, e.g. an image
+     * read from the table's DynamoDB Stream
+     * 
+     * @param item The item attributes
+     * @return The line, or null if the item is a header or orders are not split
+     */
+    public StoredLine lineFromStoredItem(Map<String, AttributeValue> item) {
+        AttributeValue sortKey = item.get(SORT_KEY);
+        if (!isSplitLayout() || sortKey == null || HEADER_SK.equals(sortKey.s())) {
+            return null;
+        }
+        Map<String, AttributeValue> attributes = new HashMap<>(item);
+        String id = attributes.remove("id").s();
+        attributes.remove(SORT_KEY);
+        AttributeValue version = attributes.remove(VERSION);
+        return new StoredLine(id, sortKey.s(), version != null ? Long.parseLong(version.n()) : 0,
+            deserializer.deserialize(attributes, OrderItem.class));
+    }
+    
+    /**
+     * Number of line items of a stored split-layout header
+     */
+    public int itemCountOf(Map<String, AttributeValue> header) {
+        AttributeValue count = header.get(ITEM_COUNT);
+        return count != null ? Integer.parseInt(count.n()) : 0;
+    }
+    
+    /**
+     * Version a stored split-layout header had when its lines were last
+     * written: they carry it too, and are current once they all have it.
+     * Writes of the header alone (status, ETA) don't change it.
+     * 
+     * @return The version, 0 for headers written before lines were versioned
+     */
+    public long linesVersionOf(Map<String, AttributeValue> header) {
+        AttributeValue version = header.get(LINES_VERSION);
+        return version != null ? Long.parseLong(version.n()) : 0;
+    }
+    
+    /**
+     * Sort key of the line at an index, in the split layout
+     */
+    public static String itemSortKey(int index) {
+        return String.format(Locale.ROOT, "%s%04d", ITEM_SK_PREFIX, index + 1);
+    }
+    
+    /**
+     * A stored line item of a split-layout order
+     * 
+     * @param orderId The order ID
+     * @param sortKey ITEM#0001, ...
+     * @param version The header version the line was written at, 0 if unknown
+     * @param item The line item
+     */
+    public record StoredLine(String orderId, String sortKey, long version, OrderItem item) {
+    }
+    
+    /**
+     * Whether orders are stored as a header + line items item collection
+     */
+    public boolean isSplitLayout() {
+        return LAYOUT_SPLIT.equalsIgnoreCase(layout);
+    }
+    
+    /**
+     * Replace a stored order, keeping its creation time, if it is still at
+     * the version of existingOrder. Publishes no event, so update and
+     * updateStatus can each publish their own.
+     * 
+     * @param id The order ID
+     * @param order The updated order data
+     * @param existingOrder The currently stored version
+     * @return The updated order
+     * @throws ConditionalCheckFailedException if the order was written or deleted meanwhile
+     */
+    private Order replace(String id, Order order, Order existingOrder) {
+        try {
+            // Ensure ID matches
+            order.setId(id);
+            
+            // Preserve createdAt, update updatedAt and version
+            order.setCreatedAt(existingOrder.getCreatedAt());
+            order.setUpdatedAt(Instant.now().toString());
+            order.setVersion(existingOrder.getVersion() + 1);
+            
+            // Validate required fields
+            validateOrder(order);
+            
+            // Serialize and update
+            if (isSplitLayout()) {
+                writeItemCollection(order, existingOrder.getItems() != null ? existingOrder.getItems().size() : 0,
+                    existingOrder.getVersion());
+            } else {
+                Map<String, String> expressionAttributeNames = new HashMap<>();
+                Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+                String condition = versionCondition(existingOrder.getVersion(),
+                    expressionAttributeNames, expressionAttributeValues);
+                
+                Map<String, AttributeValue> item = serializer.serialize(order);
+                PutItemRequest request = builder.buildPutItemRequest(tableName, item).toBuilder()
+                    .conditionExpression(condition)
+                    .expressionAttributeNames(expressionAttributeNames)
+                    .expressionAttributeValues(expressionAttributeValues.isEmpty() ? null : expressionAttributeValues)
+                    .build();
+                
+                dynamoDbClient.putItem(request);
+            }
+            
+            LOG.infof("Updated order with ID: %s", id);
+            return order;
+            
+        } catch (ConditionalCheckFailedException e) {
+            throw e;
+        } catch (DynamoDbException e) {
+            LOG.errorf(e, "Error updating order: %s", id);
+            throw new RuntimeException("Failed to update order", e);
+        }
+    }
+    
+    /**
+     * Write the header and line items of an order in a single transaction,
+     * removing line items left over from a longer previous version
+     * 
+     * @param order The order to write
+     * @param previousItemCount Number of line items currently stored
+     * @param expectedVersion Version the stored header must still have, null for a new order (which
+     *                        must not exist yet)
+     */
+    private void writeItemCollection(Order order, int previousItemCount, Long expectedVersion) {
+        List<OrderItem> items = order.getItems();
+        List<TransactWriteItem> writes = new ArrayList<>();
+        
+        Map<String, AttributeValue> header = serializer.serialize(order);
+        header.remove("items");
+        header.put(SORT_KEY, serializer.stringValue(HEADER_SK));
+        header.put(ITEM_COUNT, serializer.numberValue(items.size()));
+        header.put(LINES_VERSION, serializer.numberValue(order.getVersion()));
+        TransactWriteItem headerPut = builder.buildTransactPut(tableName, header);
+        if (expectedVersion != null) {
+            Map<String, String> expressionAttributeNames = new HashMap<>();
+            Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+            String condition = versionCondition(expectedVersion, expressionAttributeNames, expressionAttributeValues);
+            headerPut = TransactWriteItem.builder()
+                .put(headerPut.put().toBuilder()
+                    .conditionExpression(condition)
+                    .expressionAttributeNames(expressionAttributeNames)
+                    .expressionAttributeValues(expressionAttributeValues.isEmpty() ? null : expressionAttributeValues)
+                    .build())
+                .build();
+        } else {
+            headerPut = TransactWriteItem.builder()
+                .put(headerPut.put().toBuilder().conditionExpression("attribute_not_exists(id)").build())
+                .build();
+        }
+        writes.add(headerPut);
+        
+        for (int i = 0; i < items.size(); i++) {
+            writes.add(linePut(order, i));
+        }
+        
+        for (int i = items.size(); i < previousItemCount; i++) {
+            writes.add(builder.buildTransactDelete(tableName, builder.buildKey(order.getId(), itemSortKey(i))));
+        }
+        
+        transactWrite(writes);
+    }
+    
+    /**
+     * Put of a line item of a split-layout order, stamped with the order's version
+     */
+    private TransactWriteItem linePut(Order order, int index) {
+        Map<String, AttributeValue> line = serializer.serialize(order.getItems().get(index));
+        line.put("id", serializer.stringValue(order.getId()));
+        line.put(SORT_KEY, serializer.stringValue(itemSortKey(index)));
+        // Every rewrite changes each line, so it always reaches the table's stream
+        line.put(VERSION, serializer.numberValue(order.getVersion()));
+        return builder.buildTransactPut(tableName, line);
+    }
+    
+    /**
+     * Update only the header item of a split-layout order, if it is still at
+     * the expected version
+     * 
+     * @param id The order ID
+     * @param newStatus The new status
+     * @param updatedAt The update time
+     * @param expectedVersion The version read before the update
+     * @throws ConditionalCheckFailedException if the order was written or deleted meanwhile
+     */
+    private void updateHeaderStatus(String id, String newStatus, String updatedAt, long expectedVersion) {
+        Map<String, String> expressionAttributeNames = new HashMap<>();
+        expressionAttributeNames.put("#status", "status");
+        expressionAttributeNames.put("#updatedAt", "updatedAt");
+        
+        Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+        expressionAttributeValues.put(":status", serializer.stringValue(newStatus));
+        expressionAttributeValues.put(":updatedAt", serializer.stringValue(updatedAt));
+        expressionAttributeValues.put(":one", serializer.numberValue(1));
+        String condition = versionCondition(expectedVersion, expressionAttributeNames, expressionAttributeValues);
+        
+        UpdateItemRequest request = builder.buildUpdateItemRequest(
+            tableName,
+            builder.buildKey(id, HEADER_SK),
+            "SET #status = :status, #updatedAt = :updatedAt ADD #version :one",
+            expressionAttributeNames,
+            expressionAttributeValues
+        ).toBuilder()
+            .conditionExpression(condition)
+            .build();
+        
+        dynamoDbClient.updateItem(request);
+        LOG.infof("Updated status of order %s to %s", id, newStatus);
+    }
+    
+    /**
+     * Condition that a stored order is still at the version read before a
+     * write, so concurrent writes of the same order can't overwrite each
+     * other. Orders stored before versioning have no version attribute.
+     * 
+     * @return The condition expression, whose names and values are added to the given maps
+     */
+    private String versionCondition(long expectedVersion, Map<String, String> expressionAttributeNames,
+                                    Map<String, AttributeValue> expressionAttributeValues) {
+        expressionAttributeNames.put("#version", "version");
+        if (expectedVersion == 0) {
+            return "attribute_exists(id) AND attribute_not_exists(#version)";
+        }
+        expressionAttributeValues.put(":expectedVersion", serializer.numberValue(expectedVersion));
+        return "#version = :expectedVersion";
+    }
+    
+    /**
+     * A conditional write lost the race with another write of the same
+     * order: let the caller read it again and retry, up to MAX_WRITE_ATTEMPTS
+     */
+    private void onConflict(String id, int attempt) {
+        if (attempt >= MAX_WRITE_ATTEMPTS) {
+            LOG.warnf("Order %s is being modified concurrently, gave up after %d attempts", id, attempt);
+            throw new IllegalStateException("Order is being modified concurrently, try again: " + id);
+        }
+        LOG.debugf("Order %s was modified concurrently, retrying (attempt %d)", id, attempt);
+    }
+    
+    /**
+     * Read all items (header and line items) of one order, following the
+     * Query's pages
+     */
+    private List<Map<String, AttributeValue>> queryItemCollection(String id) {
+        return queryItemCollection(id, false);
+    }
+    
+    /**
+     * Read all items (header and line items) of one order, following the
+     * Query's pages
+     * 
+     * @param consistentRead Whether to read every write acknowledged so far
+     */
+    private List<Map<String, AttributeValue>> queryItemCollection(String id, boolean consistentRead) {
+        Map<String, String> expressionAttributeNames = new HashMap<>();
+        expressionAttributeNames.put("#id", "id");
+        
+        Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+        expressionAttributeValues.put(":id", serializer.stringValue(id));
+        
+        QueryRequest request = builder.buildQueryRequest(
+            tableName,
+            "#id = :id",
+            expressionAttributeNames,
+            expressionAttributeValues
+        ).toBuilder().consistentRead(consistentRead).build();
+        
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        Map<String, AttributeValue> startKey = null;
+        do {
+            QueryResponse response = dynamoDbClient.query(request.toBuilder().exclusiveStartKey(startKey).build());
+            items.addAll(response.items());
+            startKey = lastEvaluatedKey(response.hasLastEvaluatedKey(), response.lastEvaluatedKey());
+        } while (startKey != null);
+        return items;
+    }
+    
+    /**
+     * Read every page of a Scan: a page stops at 1 MB, sooner in the split
+     * layout, where each order is several items
+     */
+    private List<Map<String, AttributeValue>> scanAll(ScanRequest request) {
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        Map<String, AttributeValue> startKey = null;
+        do {
+            ScanResponse response = dynamoDbClient.scan(request.toBuilder().exclusiveStartKey(startKey).build());
+            items.addAll(response.items());
+            startKey = lastEvaluatedKey(response.hasLastEvaluatedKey(), response.lastEvaluatedKey());
+        } while (startKey != null);
+        return items;
+    }
+    
+    private static Map<String, AttributeValue> lastEvaluatedKey(boolean present, Map<String, AttributeValue> key) {
+        return present && !key.isEmpty() ? key : null;
+    }
+    
+    /**
+     * Assemble orders from split-layout items. Line items are attached to
+     * their header in sort key order; collections without a header are skipped.
+     * The items of an order read while it was being rewritten (a Scan or an
+     * eventually consistent Query is not isolated from the transaction) are
+     * read again with a consistent Query, until they agree.
+     * 
+     * @throws IllegalStateException if an order keeps being rewritten while read
+     */
+    private List<Order> assembleOrders(List<Map<String, AttributeValue>> items) {
+        Set<String> torn = new HashSet<>();
+        List<Order> orders = assembleOrders(items, torn);
+        if (torn.isEmpty()) {
+            return orders;
+        }
+        
+        List<Order> consistent = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            if (!torn.contains(order.getId())) {
+                consistent.add(order);
+                continue;
+            }
+            Order reread = readConsistently(order.getId());
+            if (reread != null) {
+                consistent.add(reread);
+            }
+        }
+        return consistent;
+    }
+    
+    /**
+     * Read one split-layout order again with a consistent Query, up to
+     * MAX_READ_ATTEMPTS times until its header and lines agree
+     * 
+     * @return The order, or null if it was deleted meanwhile
+     */
+    private Order readConsistently(String id) {
+        for (int attempt = 1; attempt <= MAX_READ_ATTEMPTS; attempt++) {
+            Set<String> torn = new HashSet<>();
+            List<Order> orders = assembleOrders(queryItemCollection(id, true), torn);
+            if (torn.isEmpty()) {
+                return orders.isEmpty() ? null : orders.get(0);
+            }
+            LOG.debugf("Order %s read while being rewritten, reading it again (attempt %d)", id, attempt);
+        }
+        LOG.warnf("Order %s is being rewritten, gave up reading it after %d attempts", id, MAX_READ_ATTEMPTS);
+        throw new IllegalStateException("Order is being modified concurrently, try again: " + id);
+    }
+    
+    /**
+     * Assemble orders from split-layout items, keeping of each order only the
+     * lines below its header's item count (the others are left over from a
+     * longer version and about to be deleted)
+     * 
+     * @param torn Filled with the IDs of the orders whose lines don't match
+     *             their header: missing, or written at another version
+     */
+    private List<Order> assembleOrders(List<Map<String, AttributeValue>> items, Set<String> torn) {
+        Map<String, Order> headers = new LinkedHashMap<>();
+        Map<String, Map<String, AttributeValue>> headerItems = new HashMap<>();
+        Map<String, Map<String, Map<String, AttributeValue>>> lines = new HashMap<>();
+        
+        for (Map<String, AttributeValue> item : items) {
+            String id = item.get("id").s();
+            String sortKey = item.get(SORT_KEY) != null ? item.get(SORT_KEY).s() : HEADER_SK;
+            
+            Map<String, AttributeValue> attributes = new HashMap<>(item);
+            attributes.remove(SORT_KEY);
+            
+            if (HEADER_SK.equals(sortKey)) {
+                headerItems.put(id, item);
+                attributes.remove(ITEM_COUNT);
+                attributes.remove(LINES_VERSION);
+                headers.put(id, deserializer.deserialize(attributes, Order.class));
+            } else {
+                attributes.remove("id");
+                lines.computeIfAbsent(id, k -> new TreeMap<>()).put(sortKey, attributes);
+            }
+        }
+        
+        for (Order order : headers.values()) {
+            Map<String, AttributeValue> header = headerItems.get(order.getId());
+            // Headers written before the count was stored keep all their lines
+            String end = header.containsKey(ITEM_COUNT) ? itemSortKey(itemCountOf(header)) : null;
+            long linesVersion = linesVersionOf(header);
+            
+            List<OrderItem> orderItems = new ArrayList<>();
+            Map<String, Map<String, AttributeValue>> orderLines = lines.getOrDefault(order.getId(), Map.of());
+            for (Map.Entry<String, Map<String, AttributeValue>> line : orderLines.entrySet()) {
+                if (end != null && line.getKey().compareTo(end) >= 0) {
+                    continue;
+                }
+                Map<String, AttributeValue> attributes = line.getValue();
+                AttributeValue version = attributes.remove(VERSION);
+                if (linesVersion > 0 && (version == null || Long.parseLong(version.n()) != linesVersion)) {
+                    torn.add(order.getId());
+                }
+                orderItems.add(deserializer.deserialize(attributes, OrderItem.class));
+            }
+            if (end != null && orderItems.size() != itemCountOf(header)) {
+                torn.add(order.getId());
+            }
+            order.setItems(orderItems);
+        }
+        
+        return new ArrayList<>(headers.values());
+    }
+    
+    private void transactWrite(List<TransactWriteItem> writes) {
+        if (writes.size() > MAX_TRANSACT_ITEMS) {
+            throw new OrderTooLargeException(
+                String.format("Order has too many items for the split layout (max %d)", MAX_TRANSACT_ITEMS - 1));
+        }
+        try {
+            dynamoDbClient.transactWriteItems(builder.buildTransactWriteItemsRequest(writes));
+        } catch (TransactionCanceledException e) {
+            if (e.hasCancellationReasons()
+                    && e.cancellationReasons().stream().anyMatch(r -> "ConditionalCheckFailed".equals(r.code()))) {
+                throw ConditionalCheckFailedException.builder().message(e.getMessage()).cause(e).build();
+            }
+            throw e;
+        }
+    }
+    
     /**
      * Validate order required fields
      */
@@ -247,5 +1041,12 @@ public class OrderRepository {
         if (order.getItems() == null || order.getItems().isEmpty()) {
             throw new IllegalArgumentException("Order must have at least one item");
         }
+        
+        // The header and every line in one transaction; leftover lines of a
+        // longer version are deleted in the place of missing ones
+        if (isSplitLayout() && order.getItems().size() > MAX_TRANSACT_ITEMS - 1) {
+            throw new OrderTooLargeException(
+                String.format("Order has too many items for the split layout (max %d)", MAX_TRANSACT_ITEMS - 1));
+        }
     }
 }
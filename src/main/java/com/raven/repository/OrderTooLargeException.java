@@ -0,0 +1,15 @@
+package com.raven.repository;
+
+/**
+ * An order with more items than its layout can write at once. A client
+ * error, like any IllegalArgumentException, but told apart from an unknown
+ * order.
+ */
+public class OrderTooLargeException extends IllegalArgumentException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public OrderTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -1,12 +1,15 @@
 
 package com.raven.repository;
 
+import com.raven.catalog.CatalogChange;
+import com.raven.metrics.Instrumented;
 import com.raven.model.Product;
 import com.raven.util.DynamoDBBuilder;
 import com.raven.util.DynamoDBDeserializer;
 import com.raven.util.DynamoDBKeyManager;
 import com.raven.util.DynamoDBSerializer;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
@@ -19,6 +22,7 @@ import java.util.*;
  * Repository for Product CRUD operations with DynamoDB
  */
 @ApplicationScoped
+@Instrumented
 public class ProductRepository {
     
     private static final Logger LOG = Logger.getLogger(ProductRepository.class);
@@ -38,6 +42,9 @@ public class ProductRepository {
     @Inject
     DynamoDBKeyManager keyManager;
     
+    @Inject
+    Event<CatalogChange> catalogChanges;
+    
     @ConfigProperty(name = "dynamodb.table.products")
     String tableName;
     
@@ -71,6 +78,7 @@ public class ProductRepository {
             dynamoDbClient.putItem(request);
             
             LOG.infof("Created product with ID: %s", product.getId());
+            publish(CatalogChange.upsert(product));
             return product;
             
         } catch (DynamoDbException e) {
@@ -204,6 +212,7 @@ public class ProductRepository {
             dynamoDbClient.putItem(request);
             
             LOG.infof("Updated product with ID: %s", id);
+            publish(CatalogChange.upsert(product));
             return product;
             
         } catch (DynamoDbException e) {
@@ -234,6 +243,7 @@ public class ProductRepository {
             dynamoDbClient.deleteItem(request);
             
             LOG.infof("Deleted product with ID: %s", id);
+            publish(CatalogChange.delete(CatalogChange.EntityType.PRODUCT, id));
             return true;
             
         } catch (DynamoDbException e) {
@@ -241,4 +251,17 @@ public class ProductRepository {
             throw new RuntimeException("Failed to delete product", e);
         }
     }
+    
+    /**
+     * Notify the catalog observers of a committed write. Their failures are
+     * logged, not thrown: the write already succeeded and must not be
+     * reported as failed.
+     */
+    private void publish(CatalogChange change) {
+        try {
+            catalogChanges.fire(change);
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Error notifying the catalog observers of %s", change);
+        }
+    }
 }
@@ -0,0 +1,181 @@
+package com.raven.snapshot;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.raven.model.Order;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The in-memory state saved across restarts: the active orders and the
+ * catalog's categories and products, with the catalog sequence they hold.
+ * 
+ * File layout (big-endian): magic, format, creation time, catalog
+ * sequence, categories JSON, products JSON, orders (one Smile document, so
+ * property names are written once), CRC32 of everything before it. Each
+ * section is length-prefixed, -1 when absent. The file is read through a
+ * read-only memory mapping, and written to a temporary file moved over the
+ * previous one, so a crash never leaves a half-written snapshot.
+ */
+final class StateSnapshot {
+    
+    private static final int MAGIC = 0x52564E53; // "RVNS"
+    private static final int FORMAT = 1;
+    private static final TypeReference<List<Order>> ORDERS = new TypeReference<>() {
+    };
+    
+    private final long createdAtMillis;
+    private final long catalogSequence; // -1 if unknown
+    private final byte[] categoriesJson; // null if not cached
+    private final byte[] productsJson; // null if not cached
+    private final List<Order> orders;
+    
+    StateSnapshot(long createdAtMillis, long catalogSequence, byte[] categoriesJson, byte[] productsJson,
+                  List<Order> orders) {
+        this.createdAtMillis = createdAtMillis;
+        this.catalogSequence = catalogSequence;
+        this.categoriesJson = categoriesJson;
+        this.productsJson = productsJson;
+        this.orders = orders;
+    }
+    
+    /**
+     * Write the snapshot, replacing the file atomically
+     * 
+     * @param path The snapshot file
+     * @param smile The Smile mapper the orders are written with
+     * @return The size of the file in bytes
+     */
+    int write(Path path, ObjectMapper smile) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeLong(createdAtMillis);
+        out.writeLong(catalogSequence);
+        writeSection(out, categoriesJson);
+        writeSection(out, productsJson);
+        writeSection(out, smile.writeValueAsBytes(orders));
+        out.flush();
+        byte[] data = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer[] buffers = {ByteBuffer.wrap(data), ByteBuffer.allocate(4).putInt(0, (int) crc.getValue())};
+                while (buffers[1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return data.length + 4;
+    }
+    
+    /**
+     * Read a snapshot through a memory mapping of the file
+     * 
+     * @param path The snapshot file
+     * @param smile The Smile mapper the orders were written with
+     * @return The snapshot
+     * @throws IOException if the file can't be read, or is corrupt or of another format
+     */
+    static StateSnapshot read(Path path, ObjectMapper smile) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < 28 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+            throw new IOException("Not a state snapshot of format " + FORMAT + ": " + path);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, buffer.limit() - 4));
+        if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) {
+            throw new IOException("Corrupt state snapshot: " + path);
+        }
+        
+        buffer.position(8);
+        long createdAtMillis = buffer.getLong();
+        long catalogSequence = buffer.getLong();
+        byte[] categoriesJson = readBytes(buffer);
+        byte[] productsJson = readBytes(buffer);
+        ByteBuffer orders = readSection(buffer);
+        if (orders == null) {
+            throw new IOException("State snapshot without orders: " + path);
+        }
+        // Decoded straight from the mapped pages, without copying them to the heap first
+        return new StateSnapshot(createdAtMillis, catalogSequence, categoriesJson, productsJson,
+            smile.readValue(new ByteBufferBackedInputStream(orders), ORDERS));
+    }
+    
+    long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+    
+    long getCatalogSequence() {
+        return catalogSequence;
+    }
+    
+    byte[] getCategoriesJson() {
+        return categoriesJson;
+    }
+    
+    byte[] getProductsJson() {
+        return productsJson;
+    }
+    
+    List<Order> getOrders() {
+        return orders;
+    }
+    
+    private static void writeSection(DataOutputStream out, byte[] data) throws IOException {
+        if (data == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(data.length);
+        out.write(data);
+    }
+    
+    private static ByteBuffer readSection(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining() - 4) {
+            throw new IOException("Truncated state snapshot section");
+        }
+        ByteBuffer section = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return section;
+    }
+    
+    private static byte[] readBytes(ByteBuffer buffer) throws IOException {
+        ByteBuffer section = readSection(buffer);
+        if (section == null) {
+            return null;
+        }
+        byte[] data = new byte[section.remaining()];
+        section.get(data);
+        return data;
+    }
+}
@@ -0,0 +1,281 @@
+package com.raven.snapshot;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raven.api.WireFormat;
+import com.raven.api.WireFormatMappers;
+import com.raven.catalog.CatalogCache;
+import com.raven.catalog.CatalogSeed;
+import com.raven.catalog.CatalogSnapshot;
+import com.raven.metrics.CapacityScope;
+import com.raven.model.Category;
+import com.raven.model.Order;
+import com.raven.model.Product;
+import com.raven.orders.OrderBook;
+import com.raven.repository.OrderRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Saves the in-memory state (the order book and the shared catalog)
+ * to a snapshot file periodically and at shutdown, and restores it at
+ * startup, so a restarted instance doesn't have to read everything back
+ * from DynamoDB.
+ * 
+ * Restoring the orders only transfers and deserializes what changed since
+ * the snapshot: one scan of the orders' id, status and version tells which
+ * open orders are new or were written meanwhile (only those are read in
+ * full) and which ones were closed or deleted. That scan still reads, and
+ * bills, every item of the table, so the read capacity the restore
+ * consumes is reported next to the orders it reused. The catalog is the
+ * CatalogCache's seed: reused without reading it if its sequence hasn't
+ * moved since it was saved.
+ */
+@ApplicationScoped
+public class StateSnapshotter implements CatalogSeed {
+    
+    private static final Logger LOG = Logger.getLogger(StateSnapshotter.class);
+    
+    @ConfigProperty(name = "orders.snapshot.enabled", defaultValue = "true")
+    boolean enabled;
+    
+    @ConfigProperty(name = "orders.snapshot.path", defaultValue = "/tmp/raven/state.snapshot")
+    String path;
+    
+    @ConfigProperty(name = "orders.snapshot.interval", defaultValue = "60s")
+    Duration interval;
+    
+    @Inject
+    OrderBook orderBook;
+    
+    @Inject
+    OrderRepository orderRepository;
+    
+    @Inject
+    CatalogCache catalogCache;
+    
+    @Inject
+    WireFormatMappers mappers;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final AtomicLong ordersReused = new AtomicLong(); // taken from the snapshot, not deserialized from DynamoDB
+    private final AtomicLong catalogReadsAvoided = new AtomicLong(); // catalog items restored instead of scanned
+    private final DoubleAdder restoreCapacity = new DoubleAdder(); // capacity units consumed restoring the orders
+    
+    // Read once, on first use; the orders are dropped once restored
+    private StateSnapshot restored;
+    private boolean read;
+    
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        registry.gauge("raven.snapshot.orders.reused", ordersReused, AtomicLong::get);
+        registry.gauge("raven.snapshot.orders.restore.capacity", restoreCapacity, DoubleAdder::sum);
+        registry.gauge("raven.snapshot.catalog.reads.avoided", catalogReadsAvoided, AtomicLong::get);
+        vertx.setPeriodic(interval.toMillis(), timer -> {
+            if (writing.compareAndSet(false, true)) {
+                Thread.ofVirtual().name("state-snapshot").start(() -> {
+                    try {
+                        write();
+                    } finally {
+                        writing.set(false);
+                    }
+                });
+            }
+        });
+    }
+    
+    void onStop(@Observes ShutdownEvent event) {
+        // The newest state for the next start, e.g. right after a redeploy
+        if (enabled && writing.compareAndSet(false, true)) {
+            write();
+        }
+    }
+    
+    /**
+     * Restore the active orders from the snapshot, brought up to date with
+     * the orders changed since it was taken
+     * 
+     * @return The orders to load into the order book, or null without a
+     *         usable snapshot (the book is then loaded from DynamoDB)
+     * @throws RuntimeException if DynamoDB can't be read; the snapshot is
+     *         kept for the next attempt
+     */
+    public List<Order> restoreOrders() {
+        StateSnapshot snapshot = snapshot();
+        if (snapshot == null || snapshot.getOrders() == null) {
+            return null;
+        }
+        CapacityScope scope = CapacityScope.begin("snapshot-restore");
+        try {
+            return restoreOrders(snapshot, scope);
+        } finally {
+            scope.close();
+            restoreCapacity.add(scope.consumedCapacity());
+        }
+    }
+    
+    private List<Order> restoreOrders(StateSnapshot snapshot, CapacityScope scope) {
+        long start = System.nanoTime();
+        Map<String, Order> saved = new HashMap<>();
+        for (Order order : snapshot.getOrders()) {
+            saved.put(order.getId(), order);
+        }
+        
+        List<Order> orders = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        int active = 0;
+        int closed = 0;
+        for (Order stored : orderRepository.findVersions()) {
+            Order order = saved.remove(stored.getId());
+            if (!OrderBook.isActive(stored)) {
+                closed += order != null ? 1 : 0;
+                continue;
+            }
+            active++;
+            if (order != null && order.getVersion() == stored.getVersion()) {
+                orders.add(order);
+            } else {
+                changed.add(stored.getId());
+            }
+        }
+        int kept = orders.size();
+        if (changed.size() * 4 > active) {
+            // Most of the book changed: one more scan is cheaper than reading each order
+            LOG.infof("%d of %d active orders changed since the snapshot, loading them all (%.1f capacity units "
+                + "spent on the version scan)", changed.size(), active, scope.consumedCapacity());
+            dropOrders(snapshot);
+            return null;
+        }
+        for (String id : changed) {
+            orderRepository.findById(id).ifPresent(orders::add);
+        }
+        
+        dropOrders(snapshot);
+        ordersReused.addAndGet(kept);
+        LOG.infof("Restored %d orders from the snapshot taken %d s ago in %d ms: %d unchanged, %d fetched, "
+                + "%d closed or deleted since; %.1f capacity units consumed",
+            orders.size(), (System.currentTimeMillis() - snapshot.getCreatedAtMillis()) / 1000,
+            (System.nanoTime() - start) / 1_000_000, kept, changed.size(), closed + saved.size(),
+            scope.consumedCapacity());
+        return orders;
+    }
+    
+    /**
+     * The catalog of the snapshot, if the catalog is still at the sequence
+     * it was saved at
+     */
+    @Override
+    public CatalogSnapshot seed(long sequence) {
+        StateSnapshot snapshot = snapshot();
+        if (snapshot == null || snapshot.getCatalogSequence() < 0 || snapshot.getCategoriesJson() == null
+            || snapshot.getProductsJson() == null) {
+            return null;
+        }
+        if (sequence != snapshot.getCatalogSequence()) {
+            LOG.infof("Catalog changed since the snapshot (sequence %d, now %d), not restored",
+                snapshot.getCatalogSequence(), sequence);
+            return null;
+        }
+        ObjectMapper json = mappers.mapperFor(WireFormat.JSON);
+        try {
+            List<Category> categories = json.readValue(snapshot.getCategoriesJson(), new TypeReference<>() { });
+            List<Product> products = json.readValue(snapshot.getProductsJson(), new TypeReference<>() { });
+            catalogReadsAvoided.addAndGet(categories.size() + products.size());
+            LOG.infof("Restored %d categories and %d products from the snapshot at sequence %d", categories.size(),
+                products.size(), sequence);
+            return CatalogSnapshot.of(categories, products, sequence);
+        } catch (IOException | RuntimeException e) {
+            LOG.warnf(e, "Error restoring the catalog from the snapshot");
+            return null;
+        }
+    }
+    
+    /**
+     * Save the current state. The order book is saved only once warm, since
+     * before it doesn't hold every active order.
+     */
+    void write() {
+        if (!orderBook.isWarm()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            // The catalog only if loaded: its sequence tells which changes it holds
+            CatalogSnapshot catalog = catalogCache.isLoaded() ? catalogCache.catalog() : null;
+            ObjectMapper json = mappers.mapperFor(WireFormat.JSON);
+            StateSnapshot snapshot = new StateSnapshot(System.currentTimeMillis(),
+                catalog != null ? catalog.getSequence() : -1,
+                catalog != null ? json.writeValueAsBytes(catalog.getCategories()) : null,
+                catalog != null ? json.writeValueAsBytes(catalog.getProducts()) : null,
+                orderBook.find(null, null, null));
+            int size = snapshot.write(Path.of(path), smile());
+            LOG.debugf("Saved %d orders to snapshot %s in %d ms: %d bytes",
+                snapshot.getOrders().size(), path, (System.nanoTime() - start) / 1_000_000, size);
+        } catch (IOException | RuntimeException e) {
+            LOG.errorf(e, "Error saving the state snapshot to %s", path);
+        }
+    }
+    
+    /**
+     * The snapshot to restore, read on first use
+     */
+    private synchronized StateSnapshot snapshot() {
+        if (!enabled) {
+            return null;
+        }
+        if (!read) {
+            read = true;
+            long start = System.nanoTime();
+            try {
+                restored = StateSnapshot.read(Path.of(path), smile());
+                LOG.infof("Read state snapshot %s (%d bytes) in %d ms", path, Files.size(Path.of(path)),
+                    (System.nanoTime() - start) / 1_000_000);
+            } catch (NoSuchFileException e) {
+                LOG.infof("No state snapshot at %s, loading the state from DynamoDB", path);
+            } catch (IOException | RuntimeException e) {
+                LOG.warnf(e, "Unusable state snapshot at %s, loading the state from DynamoDB", path);
+            }
+        }
+        return restored;
+    }
+    
+    /**
+     * Keep only the catalog part of the snapshot, once the orders are restored
+     */
+    private synchronized void dropOrders(StateSnapshot snapshot) {
+        restored = new StateSnapshot(snapshot.getCreatedAtMillis(), snapshot.getCatalogSequence(),
+            snapshot.getCategoriesJson(), snapshot.getProductsJson(), null);
+    }
+    
+    private ObjectMapper smile() {
+        return mappers.mapperFor(WireFormat.SMILE);
+    }
+}
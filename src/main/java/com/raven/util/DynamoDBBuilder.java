@@ -5,6 +5,7 @@ import jakarta.enterprise.context.ApplicationScoped;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -115,6 +116,28 @@ public class DynamoDBBuilder {
             .build();
     }
     
+    /**
+     * Build a ScanRequest with a filter expression
+     * 
+     * @param tableName The table name
+     * @param filterExpression The filter expression
+     * @param expressionAttributeNames The expression attribute names
+     * @param expressionAttributeValues The expression attribute values
+     * @return ScanRequest
+     */
+    public ScanRequest buildScanRequest(
+            String tableName,
+            String filterExpression,
+            Map<String, String> expressionAttributeNames,
+            Map<String, AttributeValue> expressionAttributeValues) {
+        return ScanRequest.builder()
+            .tableName(tableName)
+            .filterExpression(filterExpression)
+            .expressionAttributeNames(expressionAttributeNames)
+            .expressionAttributeValues(expressionAttributeValues)
+            .build();
+    }
+    
     /**
      * Build a QueryRequest
      * 
@@ -145,6 +168,62 @@ public class DynamoDBBuilder {
         return builder.build();
     }
     
+    /**
+     * Build a QueryRequest on the table's primary key (no index)
+     * 
+     * @param tableName The table name
+     * @param keyConditionExpression The key condition expression
+     * @param expressionAttributeNames The expression attribute names
+     * @param expressionAttributeValues The expression attribute values
+     * @return QueryRequest
+     */
+    public QueryRequest buildQueryRequest(
+            String tableName,
+            String keyConditionExpression,
+            Map<String, String> expressionAttributeNames,
+            Map<String, AttributeValue> expressionAttributeValues) {
+        return buildQueryRequest(tableName, null, keyConditionExpression,
+            expressionAttributeNames, expressionAttributeValues);
+    }
+    
+    /**
+     * Build a TransactWriteItemsRequest
+     * 
+     * @param transactItems The write actions to apply atomically (max 100)
+     * @return TransactWriteItemsRequest
+     */
+    public TransactWriteItemsRequest buildTransactWriteItemsRequest(List<TransactWriteItem> transactItems) {
+        return TransactWriteItemsRequest.builder()
+            .transactItems(transactItems)
+            .build();
+    }
+    
+    /**
+     * Build a Put action for a TransactWriteItemsRequest
+     * 
+     * @param tableName The table name
+     * @param item The item attributes
+     * @return TransactWriteItem
+     */
+    public TransactWriteItem buildTransactPut(String tableName, Map<String, AttributeValue> item) {
+        return TransactWriteItem.builder()
+            .put(Put.builder().tableName(tableName).item(item).build())
+            .build();
+    }
+    
+    /**
+     * Build a Delete action for a TransactWriteItemsRequest
+     * 
+     * @param tableName The table name
+     * @param key The key attributes
+     * @return TransactWriteItem
+     */
+    public TransactWriteItem buildTransactDelete(String tableName, Map<String, AttributeValue> key) {
+        return TransactWriteItem.builder()
+            .delete(Delete.builder().tableName(tableName).key(key).build())
+            .build();
+    }
+    
     /**
      * Build a key map for simple partition key
      * 
@@ -156,4 +235,17 @@ public class DynamoDBBuilder {
         key.put("id", AttributeValue.builder().s(id).build());
         return key;
     }
+    
+    /**
+     * Build a key map for composite partition + sort key
+     * 
+     * @param id The partition key value
+     * @param sortKey The sort key value
+     * @return Key map
+     */
+    public Map<String, AttributeValue> buildKey(String id, String sortKey) {
+        Map<String, AttributeValue> key = buildKey(id);
+        key.put("sk", AttributeValue.builder().s(sortKey).build());
+        return key;
+    }
 }
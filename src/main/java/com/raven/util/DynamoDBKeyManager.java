@@ -2,29 +2,46 @@
 package com.raven.util;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import java.util.UUID;
-import java.util.regex.Pattern;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Utility class for managing DynamoDB keys generation and validation
+ * 
+ * Two ID modes are supported (dynamodb.id.mode):
+ * - random: UUID v4
+ * - time-ordered: UUID v7 (48-bit Unix millis + 12-bit per-node sequence +
+ *   62 random bits), so IDs sort by creation time as plain strings
  */
 @ApplicationScoped
 public class DynamoDBKeyManager {
     
     private static final Logger LOG = Logger.getLogger(DynamoDBKeyManager.class);
-    private static final Pattern UUID_PATTERN = Pattern.compile(
-        "^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$"
-    );
+    
+    private static final String MODE_TIME_ORDERED = "time-ordered";
+    private static final int UUID_LENGTH = 36;
+    private static final int SEQUENCE_BITS = 12;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    @ConfigProperty(name = "dynamodb.id.mode", defaultValue = "random")
+    String mode;
+    
+    /**
+     * Last issued (millis << 12 | sequence) value, shared by all threads of this node
+     */
+    private final AtomicLong lastTimestampAndSequence = new AtomicLong();
     
     /**
-     * Generate a new unique ID using UUID v4
+     * Generate a new unique ID using the configured mode
      * 
      * @return A new UUID string
      */
     public String generateId() {
-        String id = UUID.randomUUID().toString();
+        String id = isTimeOrdered() ? generateTimeOrderedId() : UUID.randomUUID().toString();
         LOG.debugf("Generated new ID: %s", id);
         return id;
     }
@@ -36,11 +53,37 @@ public class DynamoDBKeyManager {
      * @return A new prefixed UUID string
      */
     public String generateId(String prefix) {
-        String id = prefix + UUID.randomUUID().toString();
+        String id = prefix + (isTimeOrdered() ? generateTimeOrderedId() : UUID.randomUUID().toString());
         LOG.debugf("Generated new ID with prefix: %s", id);
         return id;
     }
     
+    /**
+     * Generate a UUID v7. The timestamp and sequence come from a monotonic
+     * per-node counter (the sequence spills into the next millisecond when
+     * exhausted); the random bits come from the calling thread's own
+     * ThreadLocalRandom, so no shared SecureRandom is involved.
+     * 
+     * @return A new time-ordered UUID string
+     */
+    public String generateTimeOrderedId() {
+        long next;
+        while (true) {
+            long last = lastTimestampAndSequence.get();
+            long candidate = System.currentTimeMillis() << SEQUENCE_BITS;
+            next = candidate > last ? candidate : last + 1;
+            if (lastTimestampAndSequence.compareAndSet(last, next)) {
+                break;
+            }
+        }
+        
+        long millis = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        long msb = (millis << 16) | 0x7000L | sequence;
+        long lsb = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return format(msb, lsb);
+    }
+    
     /**
      * Validate if a string is a valid UUID
      * 
@@ -48,10 +91,20 @@ public class DynamoDBKeyManager {
      * @return true if valid, false otherwise
      */
     public boolean isValidId(String id) {
-        if (id == null || id.isBlank()) {
+        if (id == null || id.length() != UUID_LENGTH) {
             return false;
         }
-        return UUID_PATTERN.matcher(id).matches();
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!isHexDigit(c)) {
+                return false;
+            }
+        }
+        return true;
     }
     
     /**
@@ -83,4 +136,68 @@ public class DynamoDBKeyManager {
         validateId(id, fieldName);
         return id;
     }
+    
+    /**
+     * Whether new IDs are generated in time-ordered (UUID v7) mode
+     */
+    public boolean isTimeOrdered() {
+        return MODE_TIME_ORDERED.equalsIgnoreCase(mode);
+    }
+    
+    /**
+     * Check if an ID is a valid UUID v7, i.e. it carries a creation timestamp
+     * 
+     * @param id The ID to check
+     * @return true if the ID is time-ordered
+     */
+    public boolean isTimeOrderedId(String id) {
+        return isValidId(id) && id.charAt(14) == '7';
+    }
+    
+    /**
+     * Extract the creation time of a time-ordered ID
+     * 
+     * @param id A UUID v7 string
+     * @return Unix epoch milliseconds
+     * @throws IllegalArgumentException if the ID is not time-ordered
+     */
+    public long timestampOf(String id) {
+        if (!isTimeOrderedId(id)) {
+            throw new IllegalArgumentException(
+                String.format("Invalid ID: '%s'. Must be a time-ordered UUID (v7).", id)
+            );
+        }
+        long millis = 0;
+        for (int i = 0; i < 13; i++) {
+            if (i != 8) {
+                millis = (millis << 4) | Character.digit(id.charAt(i), 16);
+            }
+        }
+        return millis;
+    }
+    
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+    
+    private static String format(long msb, long lsb) {
+        char[] chars = new char[UUID_LENGTH];
+        writeHex(chars, 0, msb >>> 32, 8);
+        chars[8] = '-';
+        writeHex(chars, 9, msb >>> 16, 4);
+        chars[13] = '-';
+        writeHex(chars, 14, msb, 4);
+        chars[18] = '-';
+        writeHex(chars, 19, lsb >>> 48, 4);
+        chars[23] = '-';
+        writeHex(chars, 24, lsb, 12);
+        return new String(chars);
+    }
+    
+    private static void writeHex(char[] chars, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
 }
@@ -0,0 +1,108 @@
+package com.raven.api;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachedResponseTest {
+    
+    private static final byte[] JSON = "[{\"id\":\"margherita\",\"price\":8.0}]".getBytes(StandardCharsets.UTF_8);
+    
+    private final CachedResponse cached = CachedResponse.encode(JSON);
+    private final String tag = cached.getTag();
+    private final String brotli = Brotli4jLoader.isAvailable() ? CachedResponse.BROTLI : CachedResponse.GZIP;
+    
+    @Test
+    void testMatchesTheTagOfAnyContentCoding() {
+        assertTrue(cached.matches("\"" + tag + "\""));
+        assertTrue(cached.matches("\"" + tag + "-gzip\""));
+        assertTrue(cached.matches("\"" + tag + "-br\""));
+        assertTrue(cached.matches(" \"" + tag + "\" "));
+    }
+    
+    @Test
+    void testMatchesWeakTagsListsAndWildcard() {
+        assertTrue(cached.matches("W/\"" + tag + "\""));
+        assertTrue(cached.matches("W/\"" + tag + "-gzip\""));
+        assertTrue(cached.matches("\"0123\", W/\"abcd\", \"" + tag + "-br\""));
+        assertTrue(cached.matches("\"0123\",\"" + tag + "\""));
+        assertTrue(cached.matches("*"));
+    }
+    
+    @Test
+    void testDoesNotMatchOtherTags() {
+        assertFalse(cached.matches(null));
+        assertFalse(cached.matches(""));
+        assertFalse(cached.matches("  "));
+        assertFalse(cached.matches("\"0123\", W/\"abcd\""));
+        assertFalse(cached.matches("\"" + tag.substring(1) + "\""));
+        assertFalse(cached.matches("\"-" + tag + "\""));
+        
+        CachedResponse changed = CachedResponse.encode("[]".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(tag, changed.getTag());
+        assertFalse(changed.matches("\"" + tag + "\""));
+    }
+    
+    @Test
+    void testSelectsBrotliThenGzipThenIdentity() {
+        assertNull(cached.selectEncoding(null));
+        assertNull(cached.selectEncoding(""));
+        assertNull(cached.selectEncoding("identity"));
+        assertNull(cached.selectEncoding("deflate, compress"));
+        assertEquals(CachedResponse.GZIP, cached.selectEncoding("gzip"));
+        assertEquals(CachedResponse.GZIP, cached.selectEncoding("GZip, deflate"));
+        assertEquals(brotli, cached.selectEncoding("gzip, deflate, br"));
+        assertEquals(brotli, cached.selectEncoding("*"));
+    }
+    
+    @Test
+    void testIgnoresCodingsRefusedWithQZero() {
+        assertNull(cached.selectEncoding("gzip;q=0"));
+        assertNull(cached.selectEncoding("gzip; q=0.0, br;q=0"));
+        assertEquals(CachedResponse.GZIP, cached.selectEncoding("br;q=0, gzip"));
+        assertEquals(CachedResponse.GZIP, cached.selectEncoding("br;q=0, gzip;q=0.5"));
+        assertEquals(CachedResponse.GZIP, cached.selectEncoding("gzip;q=0.001"));
+        // Any other q accepts the coding; the preference order is the server's
+        assertEquals(brotli, cached.selectEncoding("br;q=0.1, gzip;q=1.0"));
+        // A malformed q doesn't refuse it
+        assertEquals(CachedResponse.GZIP, cached.selectEncoding("gzip;q=high"));
+    }
+    
+    @Test
+    void testBodiesDecodeToTheSameBytes() throws Exception {
+        assertArrayEquals(JSON, cached.getBytes());
+        assertEquals(JSON.length, cached.size(null));
+        CachedResponse.Body body = (CachedResponse.Body) cached.toResponse(null, "gzip").getEntity();
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body.getBuffer().getBytes()))) {
+            assertArrayEquals(JSON, gzip.readAllBytes());
+        }
+    }
+    
+    @Test
+    void testNotModifiedKeepsTheExtraHeaders() {
+        CachedResponse withSequence = cached.withHeader(CatalogResponseCache.SEQUENCE_HEADER, "42");
+        
+        Response notModified = withSequence.toResponse("W/\"" + tag + "-gzip\"", "gzip");
+        Response ok = withSequence.toResponse("\"0123\"", "gzip");
+        
+        assertEquals(304, notModified.getStatus());
+        assertEquals("\"" + tag + "-gzip\"", notModified.getHeaderString(HttpHeaders.ETAG));
+        assertEquals("42", notModified.getHeaderString(CatalogResponseCache.SEQUENCE_HEADER));
+        assertEquals(200, ok.getStatus());
+        assertEquals("gzip", ok.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("42", ok.getHeaderString(CatalogResponseCache.SEQUENCE_HEADER));
+        assertEquals(tag, withSequence.getTag());
+    }
+}
@@ -0,0 +1,154 @@
+package com.raven.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.orders.OrderEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderDeltaTest {
+    
+    private final ObjectMapper mapper = new ObjectMapper();
+    
+    @Test
+    void testPatchHoldsOnlyChangedMembers() throws Exception {
+        JsonNode source = mapper.readTree("{\"status\":\"NEW\",\"notes\":\"a\",\"customer\":{\"name\":\"x\",\"phone\":\"1\"}}");
+        JsonNode target = mapper.readTree("{\"status\":\"NEW\",\"notes\":\"b\",\"customer\":{\"name\":\"x\",\"phone\":\"2\"}}");
+        
+        assertEquals(mapper.readTree("{\"notes\":\"b\",\"customer\":{\"phone\":\"2\"}}"),
+            OrderDelta.mergePatch(source, target));
+    }
+    
+    @Test
+    void testRemovedMembersAreNulledAndArraysReplacedWhole() throws Exception {
+        JsonNode source = mapper.readTree("{\"notes\":\"a\",\"items\":[1,2,3]}");
+        JsonNode target = mapper.readTree("{\"items\":[1,2]}");
+        
+        assertEquals(mapper.readTree("{\"notes\":null,\"items\":[1,2]}"), OrderDelta.mergePatch(source, target));
+    }
+    
+    @Test
+    void testUnchangedDocumentGivesEmptyPatch() throws Exception {
+        JsonNode order = mapper.readTree("{\"status\":\"NEW\",\"items\":[{\"q\":1}]}");
+        
+        assertTrue(OrderDelta.mergePatch(order, order.deepCopy()).isEmpty());
+    }
+    
+    @Test
+    void testPatchAppliedToSourceGivesTarget() {
+        // Merge patches can't set a member to null, so the documents have none
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            JsonNode source = randomObject(random, 3);
+            JsonNode target = randomObject(random, 3);
+            
+            JsonNode patch = OrderDelta.mergePatch(source, target);
+            
+            assertEquals(target, apply(source.deepCopy(), patch), () -> source + " patched with " + patch);
+        }
+    }
+    
+    @Test
+    void testUpdateDeltaPatchesPreviousVersion() {
+        Order previous = order("NEW", "no onions");
+        Order updated = new Order(previous);
+        updated.setNotes(null);
+        updated.setVersion(3);
+        
+        ObjectNode delta = OrderDelta.of(OrderEvent.updated(updated, previous), mapper);
+        
+        assertEquals("UPDATED", delta.get("type").asText());
+        assertEquals("o-1", delta.get("id").asText());
+        assertEquals(3, delta.get("version").asLong());
+        // A member set to null is removed by the patch, which clients read the same
+        assertEquals(mapper.createObjectNode().putNull("notes").put("version", 3L), delta.get("patch"));
+    }
+    
+    @Test
+    void testStatusChangeAndDeleteDeltasCarryNoOrder() {
+        Order previous = order("NEW", null);
+        Order started = new Order(previous);
+        started.setStatus("IN_PROGRESS");
+        started.setUpdatedAt("2026-01-01T10:05:00Z");
+        
+        ObjectNode statusChanged = OrderDelta.of(OrderEvent.statusChanged(started, previous), mapper);
+        ObjectNode deleted = OrderDelta.of(OrderEvent.deleted(started), mapper);
+        
+        assertEquals("IN_PROGRESS", statusChanged.get("status").asText());
+        assertEquals("2026-01-01T10:05:00Z", statusChanged.get("updatedAt").asText());
+        assertFalse(statusChanged.has("patch"));
+        assertEquals(List.of("type", "id", "version"), fieldNames(deleted));
+    }
+    
+    @Test
+    void testEventsWithoutPreviousVersionAreSentWhole() {
+        Order order = order("NEW", null);
+        
+        assertNull(OrderDelta.of(OrderEvent.created(order), mapper));
+        assertNull(OrderDelta.of(OrderEvent.updated(order, null), mapper));
+        assertNull(OrderDelta.of(OrderEvent.snapshot(List.of(order), "e-1"), mapper));
+    }
+    
+    /**
+     * RFC 7386 MergePatch(target, patch)
+     */
+    private static JsonNode apply(JsonNode target, JsonNode patch) {
+        if (!patch.isObject()) {
+            return patch;
+        }
+        ObjectNode result = target.isObject() ? (ObjectNode) target : new ObjectMapper().createObjectNode();
+        for (Iterator<Map.Entry<String, JsonNode>> it = patch.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = it.next();
+            if (field.getValue().isNull()) {
+                result.remove(field.getKey());
+            } else {
+                JsonNode current = result.get(field.getKey());
+                result.set(field.getKey(), apply(current != null ? current : new ObjectMapper().nullNode(),
+                    field.getValue()));
+            }
+        }
+        return result;
+    }
+    
+    private JsonNode randomObject(Random random, int depth) {
+        ObjectNode node = mapper.createObjectNode();
+        String[] names = {"a", "b", "c", "d"};
+        for (String name : names) {
+            switch (random.nextInt(depth > 0 ? 5 : 4)) {
+                case 0 -> { } // absent
+                case 1 -> node.put(name, random.nextInt(3));
+                case 2 -> node.put(name, "s" + random.nextInt(3));
+                case 3 -> node.putArray(name).add(random.nextInt(2)).add(random.nextInt(2));
+                default -> node.set(name, randomObject(random, depth - 1));
+            }
+        }
+        return node;
+    }
+    
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+    
+    private static Order order(String status, String notes) {
+        OrderItem item = new OrderItem("p-1", "Margherita", 2, 8.5, null);
+        Order order = new Order("o-1", status, "pos", "counter", null, null, notes, List.of(item),
+            "2026-01-01T10:00:00Z", "2026-01-01T10:00:00Z");
+        order.setVersion(2);
+        return order;
+    }
+}
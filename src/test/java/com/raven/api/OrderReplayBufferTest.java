@@ -0,0 +1,76 @@
+package com.raven.api;
+
+import com.raven.model.Order;
+import com.raven.orders.OrderEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderReplayBufferTest {
+    
+    @Test
+    void testResumeReturnsMissedEventsOldestFirst() {
+        OrderReplayBuffer buffer = new OrderReplayBuffer(8);
+        String first = buffer.append(event("a")).getId();
+        buffer.append(event("b"));
+        buffer.append(event("c"));
+        
+        List<OrderEvent> missed = buffer.since(first);
+        
+        assertEquals(List.of("b", "c"), missed.stream().map(OrderEvent::getOrderId).toList());
+        assertEquals(buffer.lastId(), missed.get(1).getId());
+    }
+    
+    @Test
+    void testResumeAtLastIdMissesNothing() {
+        OrderReplayBuffer buffer = new OrderReplayBuffer(4);
+        assertTrue(buffer.since(buffer.lastId()).isEmpty());
+        
+        buffer.append(event("a"));
+        assertTrue(buffer.since(buffer.lastId()).isEmpty());
+    }
+    
+    @Test
+    void testResumeFromEvictedEventIsRefused() {
+        OrderReplayBuffer buffer = new OrderReplayBuffer(3);
+        String first = buffer.append(event("a")).getId();
+        String second = buffer.append(event("b")).getId();
+        buffer.append(event("c"));
+        buffer.append(event("d"));
+        buffer.append(event("e"));
+        
+        // Three events after the second fit; four after the first don't
+        assertNull(buffer.since(first));
+        assertEquals(List.of("c", "d", "e"), buffer.since(second).stream().map(OrderEvent::getOrderId).toList());
+    }
+    
+    @Test
+    void testForeignOrMalformedIdsAreRefused() {
+        OrderReplayBuffer buffer = new OrderReplayBuffer(4);
+        buffer.append(event("a"));
+        String last = buffer.lastId();
+        String epoch = last.substring(0, last.lastIndexOf('-'));
+        
+        assertNull(buffer.since("other-1"));
+        assertNull(buffer.since("1"));
+        assertNull(buffer.since(epoch + "-x"));
+        assertNull(buffer.since(epoch + "-5")); // ahead of the newest event
+        assertNull(buffer.since(epoch + "--1"));
+    }
+    
+    @Test
+    void testCapacityMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new OrderReplayBuffer(0));
+    }
+    
+    private static OrderEvent event(String id) {
+        Order order = new Order();
+        order.setId(id);
+        return OrderEvent.created(order);
+    }
+}
@@ -0,0 +1,282 @@
+package com.raven.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raven.model.Order;
+import com.raven.orders.OrderEvent;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Queuing, batching and flushing of one stream connection, against a
+ * connection whose writes complete when the test says so
+ */
+class OrderSubscriberTest {
+    
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Connection connection = new Connection();
+    private final List<OrderSubscriber> closed = new ArrayList<>();
+    
+    @Test
+    void testWritesOneFrameAtATime() {
+        OrderSubscriber subscriber = subscriber(OrderStreamMode.FULL, 8, OrderSubscriber.OverflowPolicy.DROP_OLDEST,
+            0, 64);
+        connection.holdWrites = true;
+        
+        subscriber.offer(frame("a", 1));
+        subscriber.offer(frame("b", 1));
+        subscriber.offer(frame("c", 1));
+        
+        assertEquals(1, connection.writes.size());
+        assertEquals(2, subscriber.stats().queueDepth);
+        connection.complete();
+        assertEquals(2, connection.writes.size());
+        assertTrue(connection.written(1).contains("\"id\":\"b\""));
+        connection.complete();
+        connection.complete();
+        assertEquals(3, connection.writes.size());
+        assertEquals(3, subscriber.stats().delivered);
+        assertEquals(0, subscriber.stats().queueDepth);
+    }
+    
+    @Test
+    void testBatchWindowFlushesOneBatchFrame() {
+        OrderSubscriber subscriber = subscriber(OrderStreamMode.FULL, 8, OrderSubscriber.OverflowPolicy.DROP_OLDEST,
+            50, 64);
+        
+        subscriber.offer(frame("a", 1));
+        subscriber.offer(frame("b", 1));
+        
+        assertTrue(connection.writes.isEmpty());
+        assertEquals(1, connection.timers.size()); // started by the first event only
+        connection.fireTimer();
+        assertEquals(1, connection.writes.size());
+        String batch = connection.written(0);
+        assertTrue(batch.startsWith("data: {\"type\":\"BATCH\",\"events\":["), batch);
+        assertTrue(batch.indexOf("\"id\":\"a\"") < batch.indexOf("\"id\":\"b\""), batch);
+        assertEquals(1, subscriber.stats().batches);
+        assertEquals(2, subscriber.stats().delivered);
+    }
+    
+    @Test
+    void testFullBatchIsWrittenWithoutWaitingForTheWindow() {
+        OrderSubscriber subscriber = subscriber(OrderStreamMode.FULL, 8, OrderSubscriber.OverflowPolicy.DROP_OLDEST,
+            50, 3);
+        
+        subscriber.offer(frame("a", 1));
+        subscriber.offer(frame("b", 1));
+        subscriber.offer(frame("c", 1));
+        
+        assertEquals(1, connection.writes.size());
+        assertEquals(3, subscriber.stats().delivered);
+        // The window timer still fires, with nothing left to flush
+        connection.fireTimer();
+        assertEquals(1, connection.writes.size());
+    }
+    
+    @Test
+    void testFullModeCollapsesEventsOfTheSameOrderInABatch() {
+        OrderSubscriber subscriber = subscriber(OrderStreamMode.FULL, 8, OrderSubscriber.OverflowPolicy.DROP_OLDEST,
+            50, 64);
+        
+        subscriber.offer(frame("a", 1));
+        subscriber.offer(frame("b", 1));
+        subscriber.offer(frame("a", 2));
+        connection.fireTimer();
+        
+        String batch = connection.written(0);
+        // One event left for order a, after b: at the position of its latest
+        assertEquals(batch.indexOf("\"id\":\"a\""), batch.lastIndexOf("\"id\":\"a\""), batch);
+        assertTrue(batch.indexOf("\"id\":\"b\"") < batch.indexOf("\"id\":\"a\""), batch);
+        assertEquals(1, subscriber.stats().collapsed);
+        assertEquals(2, subscriber.stats().delivered);
+    }
+    
+    @Test
+    void testDeltaModeKeepsEveryEventInABatch() {
+        OrderSubscriber subscriber = subscriber(OrderStreamMode.DELTA, 8, OrderSubscriber.OverflowPolicy.DROP_OLDEST,
+            50, 64);
+        
+        subscriber.offer(frame("a", 1));
+        subscriber.offer(frame("a", 2));
+        connection.fireTimer();
+        
+        assertEquals(1, connection.writes.size());
+        assertEquals(0, subscriber.stats().collapsed);
+        assertEquals(2, subscriber.stats().delivered);
+    }
+    
+    @Test
+    void testDropOldestKeepsTheLatestEvents() {
+        OrderSubscriber subscriber = subscriber(OrderStreamMode.FULL, 2, OrderSubscriber.OverflowPolicy.DROP_OLDEST,
+            0, 64);
+        connection.holdWrites = true;
+        
+        subscriber.offer(frame("a", 1)); // being written
+        subscriber.offer(frame("b", 1));
+        subscriber.offer(frame("c", 1));
+        assertTrue(subscriber.offer(frame("d", 1)));
+        
+        assertEquals(1, subscriber.stats().dropped);
+        connection.complete();
+        connection.complete();
+        assertTrue(connection.written(1).contains("\"id\":\"c\""));
+        assertTrue(connection.written(2).contains("\"id\":\"d\""));
+    }
+    
+    @Test
+    void testDisconnectOverflowSendsResyncAndCloses() {
+        OrderSubscriber subscriber = subscriber(OrderStreamMode.FULL, 1, OrderSubscriber.OverflowPolicy.DISCONNECT,
+            0, 64);
+        connection.holdWrites = true;
+        
+        subscriber.offer(frame("a", 1));
+        subscriber.offer(frame("b", 1));
+        subscriber.offer(frame("c", 1));
+        
+        assertEquals(OrderStreamFrame.RESYNC.toString(), connection.written(1));
+        assertTrue(subscriber.isClosed());
+        assertFalse(subscriber.offer(frame("d", 1)));
+        connection.complete(); // the write of a
+        assertTrue(closed.isEmpty());
+        connection.complete(); // the RESYNC write
+        assertEquals(List.of(subscriber), closed);
+    }
+    
+    @Test
+    void testHoldQueuesUntilResumeWithTheSnapshotFirst() {
+        OrderSubscriber subscriber = subscriber(OrderStreamMode.FULL, 8, OrderSubscriber.OverflowPolicy.DROP_OLDEST,
+            0, 64);
+        subscriber.hold();
+        subscriber.offer(frame("a", 1));
+        subscriber.offer(frame("b", 1));
+        assertTrue(connection.writes.isEmpty());
+        
+        // The snapshot already holds order a
+        OrderStreamFrame snapshot = OrderStreamFrame.encode(OrderEvent.snapshot(List.of(order("a", 1)), "1-1"),
+            mapper);
+        subscriber.resume(snapshot, queued -> queued.getOrderId().equals("a"));
+        
+        assertEquals(2, connection.writes.size());
+        assertTrue(connection.written(0).contains("SNAPSHOT"));
+        assertTrue(connection.written(1).contains("\"id\":\"b\""));
+    }
+    
+    @Test
+    void testIdleConnectionGetsAHeartbeat() {
+        OrderSubscriber subscriber = subscriber(OrderStreamMode.FULL, 8, OrderSubscriber.OverflowPolicy.DROP_OLDEST,
+            0, 64);
+        
+        assertNull(subscriber.sweep(0, Long.MAX_VALUE, 0));
+        
+        assertEquals(OrderStreamFrame.HEARTBEAT.toString(), connection.written(0));
+        assertEquals(1, subscriber.stats().heartbeats);
+    }
+    
+    @Test
+    void testStalledWriteIsEvicted() throws Exception {
+        OrderSubscriber subscriber = subscriber(OrderStreamMode.FULL, 8, OrderSubscriber.OverflowPolicy.DROP_OLDEST,
+            0, 64);
+        connection.holdWrites = true;
+        subscriber.offer(frame("a", 1));
+        subscriber.offer(frame("b", 1));
+        Thread.sleep(5);
+        
+        assertEquals(OrderSubscriber.Eviction.STALLED, subscriber.sweep(Long.MAX_VALUE, 1_000_000, 0));
+        
+        assertTrue(connection.reset);
+        assertEquals(1, subscriber.stats().dropped);
+        assertEquals(List.of(subscriber), closed);
+    }
+    
+    private OrderSubscriber subscriber(OrderStreamMode mode, int capacity, OrderSubscriber.OverflowPolicy policy,
+                                       long batchWindowMillis, int batchMaxEvents) {
+        return new OrderSubscriber(1, OrderStreamFilter.NONE, mode, connection.response(),
+            capacity, policy, batchWindowMillis, batchMaxEvents, connection.vertx(), closed::add);
+    }
+    
+    private OrderStreamFrame frame(String orderId, long version) {
+        return OrderStreamFrame.encode(OrderEvent.created(order(orderId, version)), mapper);
+    }
+    
+    private static Order order(String id, long version) {
+        Order order = new Order();
+        order.setId(id);
+        order.setVersion(version);
+        return order;
+    }
+    
+    /**
+     * An HTTP response and a Vert.x instance whose writes and timers are
+     * recorded, and completed or fired by the test
+     */
+    private static final class Connection {
+        
+        private final List<Buffer> writes = new ArrayList<>();
+        private final Deque<Promise<Void>> pending = new ArrayDeque<>();
+        private final Deque<Handler<Long>> timers = new ArrayDeque<>();
+        private boolean holdWrites;
+        private boolean reset;
+        
+        String written(int index) {
+            return writes.get(index).toString();
+        }
+        
+        void complete() {
+            pending.poll().complete();
+        }
+        
+        void fireTimer() {
+            timers.poll().handle(1L);
+        }
+        
+        HttpServerResponse response() {
+            return (HttpServerResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {HttpServerResponse.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "write" -> {
+                        writes.add((Buffer) args[0]);
+                        if (!holdWrites) {
+                            yield Future.succeededFuture();
+                        }
+                        Promise<Void> promise = Promise.promise();
+                        pending.add(promise);
+                        yield promise.future();
+                    }
+                    case "end" -> Future.succeededFuture();
+                    case "reset" -> reset = true;
+                    case "closed", "ended" -> false;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+        }
+        
+        Vertx vertx() {
+            return (Vertx) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Vertx.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("setTimer")) {
+                        @SuppressWarnings("unchecked")
+                        Handler<Long> handler = (Handler<Long>) args[1];
+                        timers.add(handler);
+                        return 1L;
+                    }
+                    return null;
+                });
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.raven.bench;
+
+import com.raven.model.Order;
+import com.raven.orders.OrderBook;
+import com.raven.orders.OrderEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Contention on the order book: 4 threads apply status changes while 2
+ * threads read single orders and 2 query by status. With 1 order every
+ * writer hits the same entry; with more, writes of different orders run
+ * in parallel and only the index sets are shared.
+ * 
+ * Run with: ./mvnw -Pbench test-compile exec:exec@bench -Dbench.include=OrderBook
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderBookBenchmark {
+    
+    private static final Set<String> READY = Set.of("READY");
+    
+    @Param({"1", "64", "4096"})
+    public int orders;
+    
+    private OrderBook book;
+    private Order[] stored;
+    private AtomicLongArray versions;
+    
+    @Setup
+    public void setup() {
+        List<Order> sample = SampleData.orders(orders, SampleData.menu(20, 15));
+        for (Order order : sample) {
+            order.setStatus("IN_PROGRESS");
+            order.setVersion(1);
+        }
+        book = new OrderBook();
+        book.load(sample);
+        stored = sample.toArray(new Order[0]);
+        versions = new AtomicLongArray(orders);
+        for (int i = 0; i < orders; i++) {
+            versions.set(i, 1);
+        }
+    }
+    
+    @Benchmark
+    @Group("book")
+    @GroupThreads(4)
+    public void transition() {
+        int i = ThreadLocalRandom.current().nextInt(orders);
+        long version = versions.incrementAndGet(i);
+        Order order = new Order(stored[i]);
+        order.setStatus(version % 2 == 0 ? "READY" : "IN_PROGRESS");
+        order.setVersion(version);
+        book.apply(List.of(OrderEvent.statusChanged(order, stored[i])));
+    }
+    
+    @Benchmark
+    @Group("book")
+    @GroupThreads(2)
+    public Order get() {
+        return book.get(stored[ThreadLocalRandom.current().nextInt(orders)].getId());
+    }
+    
+    @Benchmark
+    @Group("book")
+    @GroupThreads(2)
+    public List<Order> find() {
+        return book.find(READY, null, null);
+    }
+}
@@ -0,0 +1,70 @@
+package com.raven.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raven.api.OrderStreamFrame;
+import com.raven.model.Order;
+import com.raven.orders.OrderEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of delivering one order event to N stream subscribers:
+ * perConnection serializes and frames the event for every connection (as
+ * a JAX-RS SseEventSink does), shared encodes it once and hands each
+ * connection a slice of the same buffer (as OrderBroadcaster does).
+ * 
+ * Run with: ./mvnw -Pbench test-compile exec:exec@bench -Dbench.include=OrderFanOut
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderFanOutBenchmark {
+    
+    @Param({"10", "100", "1000", "5000"})
+    public int subscribers;
+    
+    private ObjectMapper mapper;
+    private OrderEvent event;
+    
+    @Setup
+    public void setup() {
+        mapper = new ObjectMapper();
+        Order order = SampleData.orders(1, SampleData.menu(20, 15)).get(0);
+        event = OrderEvent.created(order).withId("bench-1");
+    }
+    
+    @Benchmark
+    public void perConnection(Blackhole blackhole) throws IOException {
+        for (int i = 0; i < subscribers; i++) {
+            String json = mapper.writeValueAsString(event);
+            String frame = "id: " + event.getId() + "\ndata: " + json + "\n\n";
+            blackhole.consume(frame.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    @Benchmark
+    public void shared(Blackhole blackhole) {
+        OrderStreamFrame frame = OrderStreamFrame.encode(event, mapper);
+        for (int i = 0; i < subscribers; i++) {
+            // Each connection writes a view of the same bytes, as OrderSubscriber does
+            blackhole.consume(frame.getData().slice());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.raven.bench;
+
+import com.raven.model.Modifier;
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.model.OrderTotals;
+import com.raven.model.Product;
+import com.raven.pricing.PriceList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of order pricing against a 300 product price list: one order
+ * priced per call, with 1-6 lines, a third of them with a modifier, so
+ * each call is a few map lookups and the per-rate tax. reprice measures the
+ * batch repricing after a price change, with a fresh price list each
+ * time and the orders copied as the engine does.
+ * 
+ * Run with: ./mvnw -Pbench test-compile exec:exec@bench -Dbench.include=Pricing
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PricingBenchmark {
+    
+    private static final String TAX_RATES = "iva-22:22,iva-10:10,iva-4:4,iva-0:0";
+    
+    @Param({"1000"})
+    public int orders;
+    
+    private List<Product> menu;
+    private PriceList priceList;
+    private Order[] sample;
+    
+    @Setup
+    public void setup() {
+        menu = SampleData.menu(20, 15);
+        priceList = PriceList.of(menu, TAX_RATES, "iva-22");
+        List<Order> list = SampleData.orders(orders, menu);
+        for (Order order : list) {
+            for (int i = 0; i < order.getItems().size(); i += 3) {
+                order.getItems().get(i).setModifiers(List.of(new Modifier("mod-1", "Extra mozzarella", 1.5)));
+            }
+        }
+        sample = list.toArray(new Order[0]);
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public OrderTotals price() {
+        Order order = sample[ThreadLocalRandom.current().nextInt(sample.length)];
+        return priceList.price(copy(order), true);
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int reprice() {
+        Product first = menu.get(0);
+        Product product = new Product(first.getId(), first.getCategoryId(), first.getName(), first.getDescription(),
+            first.getPrice() + 0.1, first.getImageUrl(), first.getTaxRateId(), first.getVisibleOn(),
+            first.getIngredients(), first.getAllergens());
+        PriceList next = priceList.with(product);
+        int changed = 0;
+        for (Order order : sample) {
+            OrderTotals totals = next.price(copy(order), true);
+            changed += totals.getTotalCents() > 0 ? 1 : 0;
+        }
+        return changed + next.changedSince(priceList).size();
+    }
+    
+    private static Order copy(Order order) {
+        Order copy = new Order(order);
+        List<OrderItem> items = new ArrayList<>(order.getItems().size());
+        for (OrderItem item : order.getItems()) {
+            items.add(new OrderItem(item));
+        }
+        copy.setItems(items);
+        return copy;
+    }
+}
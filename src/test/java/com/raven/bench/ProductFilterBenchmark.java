@@ -0,0 +1,86 @@
+package com.raven.bench;
+
+import com.raven.catalog.ProductFilter;
+import com.raven.catalog.ProductFilterIndex;
+import com.raven.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "No gluten, no nuts, no meat, visible on the app" over the menu: bitmap
+ * evaluation against a scan of every product's allergens and ingredients,
+ * both returning the matches by name. A broad filter (about a fifth of the
+ * menu matches) and a narrow one (two categories).
+ * 
+ * Run with: ./mvnw -Pbench test-compile exec:exec@bench -Dbench.include=ProductFilter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductFilterBenchmark {
+    
+    private static final Set<String> ALLERGENS = Set.of("glutine", "frutta a guscio");
+    private static final Set<String> MEAT = Set.of("prosciutto crudo", "guanciale", "salsiccia", "tonno");
+    
+    @Param({"5000", "50000"})
+    public int products;
+    
+    @Param({"broad", "narrow"})
+    public String filter;
+    
+    private List<Product> menu;
+    private ProductFilterIndex index;
+    private ProductFilter criteria;
+    
+    @Setup
+    public void setup() {
+        menu = SampleData.menu(100, products / 100);
+        index = new ProductFilterIndex();
+        for (Product product : menu) {
+            index.put(product);
+        }
+        Set<String> categories = filter.equals("narrow")
+            ? Set.of(menu.get(0).getCategoryId(), menu.get(menu.size() - 1).getCategoryId())
+            : Set.of();
+        criteria = new ProductFilter(categories, Set.of(), MEAT, ALLERGENS, Set.of("app"));
+    }
+    
+    @Benchmark
+    public List<Product> bitmaps() {
+        return index.filter(criteria);
+    }
+    
+    @Benchmark
+    public List<Product> scan() {
+        List<Product> result = new ArrayList<>();
+        for (Product product : menu) {
+            if ((criteria.getCategories().isEmpty() || criteria.getCategories().contains(product.getCategoryId()))
+                && Boolean.TRUE.equals(product.getVisibleOn().getApp())
+                && Collections.disjoint(product.getAllergens(), ALLERGENS)
+                && Collections.disjoint(product.getIngredients(), MEAT)) {
+                result.add(product);
+            }
+        }
+        result.sort(Comparator.comparing(Product::getName).thenComparing(Product::getId));
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+package com.raven.bench;
+
+import com.raven.catalog.ProductSearchIndex;
+import com.raven.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution (p50/p99 in the sample-time output) of product
+ * searches on 4 threads: whole words, prefixes of a word being typed, typos
+ * and multi-word queries. The sample menu has a small vocabulary, so
+ * ingredient queries match a large share of the products: a worst case for
+ * ranking. update measures replacing a product in the index.
+ * 
+ * Run with: ./mvnw -Pbench test-compile exec:exec@bench -Dbench.include=ProductSearch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductSearchBenchmark {
+    
+    private static final String[] QUERIES = {
+        "mozzarella", "pizze 12", "mozarel", "pomodoro basilico", "sals", "prosciuto crudo",
+        "birre", "pi", "guanciale pecorino", "zuchine"
+    };
+    
+    @Param({"5000", "50000"})
+    public int products;
+    
+    private ProductSearchIndex index;
+    private List<Product> menu;
+    
+    @Setup
+    public void setup() {
+        menu = SampleData.menu(100, products / 100);
+        index = new ProductSearchIndex();
+        for (Product product : menu) {
+            index.put(product);
+        }
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public List<Product> search() {
+        return index.search(QUERIES[ThreadLocalRandom.current().nextInt(QUERIES.length)], 20);
+    }
+    
+    @Benchmark
+    public void update() {
+        index.put(menu.get(ThreadLocalRandom.current().nextInt(menu.size())));
+    }
+}
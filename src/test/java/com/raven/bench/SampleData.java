@@ -0,0 +1,130 @@
+package com.raven.bench;
+
+import com.raven.model.Category;
+import com.raven.model.Customer;
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.model.Product;
+import com.raven.model.VisibleOn;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Representative, deterministic catalog and order data for benchmarks
+ */
+public final class SampleData {
+    
+    private static final String[] CATEGORY_NAMES = {
+        "Antipasti", "Primi", "Secondi", "Contorni", "Pizze", "Panini", "Insalate", "Dolci",
+        "Bevande", "Birre", "Vini", "Caffetteria", "Menu bambini", "Specialita", "Fritti"
+    };
+    private static final String[] INGREDIENTS = {
+        "pomodoro", "mozzarella", "basilico", "olio extravergine", "aglio", "prosciutto crudo",
+        "funghi", "salsiccia", "rucola", "parmigiano", "melanzane", "zucchine", "tonno", "cipolla",
+        "peperoncino", "uova", "guanciale", "pecorino", "panna", "farina 00"
+    };
+    private static final String[] ALLERGENS = {
+        "glutine", "latte", "uova", "pesce", "frutta a guscio", "soia", "sedano", "senape"
+    };
+    private static final String[] STATUSES = {"NEW", "ACCEPTED", "IN_PROGRESS", "READY", "COMPLETED"};
+    private static final String[] SOURCES = {"pos", "mobile", "restaurant_fe"};
+    private static final String[] CHANNELS = {"counter", "takeaway"};
+    
+    private SampleData() {
+    }
+    
+    public static List<Category> categories(int count) {
+        List<Category> categories = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Category category = new Category();
+            category.setId(uuid(1, i));
+            category.setName(CATEGORY_NAMES[i % CATEGORY_NAMES.length] + (i < CATEGORY_NAMES.length ? "" : " " + i));
+            category.setColor(String.format("#%06x", (i * 0x3a5f17) & 0xFFFFFF));
+            category.setSortOrder(i);
+            category.setDescription("Selezione di " + category.getName().toLowerCase());
+            category.setIcon("icon-" + i);
+            categories.add(category);
+        }
+        return categories;
+    }
+    
+    /**
+     * A menu of categories x productsPerCategory products
+     */
+    public static List<Product> menu(int categories, int productsPerCategory) {
+        Random random = new Random(42);
+        List<Category> categoryList = categories(categories);
+        List<Product> products = new ArrayList<>(categories * productsPerCategory);
+        for (Category category : categoryList) {
+            for (int i = 0; i < productsPerCategory; i++) {
+                int n = products.size();
+                List<String> ingredients = pick(random, INGREDIENTS, 3 + random.nextInt(5));
+                Product product = new Product(
+                    uuid(2, n),
+                    category.getId(),
+                    category.getName() + " " + (i + 1),
+                    "Preparato con " + String.join(", ", ingredients) + ". Porzione da " + (200 + random.nextInt(300)) + " g.",
+                    Math.round((3 + random.nextDouble() * 20) * 10) / 10.0,
+                    "https://cdn.example.com/products/" + uuid(2, n) + ".jpg",
+                    random.nextBoolean() ? "iva-10" : "iva-22",
+                    new VisibleOn(true, random.nextInt(10) > 0),
+                    ingredients,
+                    pick(random, ALLERGENS, random.nextInt(3))
+                );
+                products.add(product);
+            }
+        }
+        return products;
+    }
+    
+    /**
+     * A list of orders, each with 1-6 lines drawn from the menu
+     */
+    public static List<Order> orders(int count, List<Product> menu) {
+        Random random = new Random(7);
+        long now = Instant.parse("2025-01-01T12:00:00Z").toEpochMilli();
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int lines = 1 + random.nextInt(6);
+            List<OrderItem> items = new ArrayList<>(lines);
+            for (int l = 0; l < lines; l++) {
+                Product product = menu.get(random.nextInt(menu.size()));
+                items.add(new OrderItem(product.getId(), product.getName(), 1 + random.nextInt(3),
+                    product.getPrice(), random.nextInt(5) == 0 ? "senza cipolla" : null));
+            }
+            String timestamp = Instant.ofEpochMilli(now + i * 15_000L).toString();
+            orders.add(new Order(
+                uuid(3, i),
+                STATUSES[random.nextInt(STATUSES.length)],
+                SOURCES[random.nextInt(SOURCES.length)],
+                CHANNELS[random.nextInt(CHANNELS.length)],
+                5 + random.nextInt(25),
+                new Customer("Cliente " + i, "+39 333 " + (1000000 + i), null),
+                random.nextInt(4) == 0 ? "Tavolo " + random.nextInt(30) : null,
+                items,
+                timestamp,
+                timestamp
+            ));
+        }
+        return orders;
+    }
+    
+    private static List<String> pick(Random random, String[] values, int count) {
+        List<String> picked = new ArrayList<>(count);
+        while (picked.size() < count) {
+            String value = values[random.nextInt(values.length)];
+            if (!picked.contains(value)) {
+                picked.add(value);
+            }
+        }
+        return picked;
+    }
+    
+    private static String uuid(int kind, int n) {
+        return new UUID(0x1000L * kind + n, 0x8000000000000000L | n * 31L).toString();
+    }
+}
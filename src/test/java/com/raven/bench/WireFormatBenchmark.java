@@ -0,0 +1,91 @@
+package com.raven.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raven.api.WireFormat;
+import com.raven.api.WireFormatMappers;
+import com.raven.model.Order;
+import com.raven.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encode/decode cost of a menu (300 products) and an order list (200 orders)
+ * in JSON, CBOR and Smile. Payload sizes, raw and gzipped, are printed at setup.
+ * 
+ * Run with: ./mvnw -Pbench test-compile exec:exec@bench -Dbench.include=WireFormat
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+    
+    private static final TypeReference<List<Product>> PRODUCTS = new TypeReference<>() { };
+    private static final TypeReference<List<Order>> ORDERS = new TypeReference<>() { };
+    
+    @Param({"JSON", "CBOR", "SMILE"})
+    public WireFormat format;
+    
+    private ObjectMapper mapper;
+    private List<Product> menu;
+    private List<Order> orders;
+    private byte[] encodedMenu;
+    private byte[] encodedOrders;
+    
+    @Setup
+    public void setup() throws IOException {
+        mapper = WireFormatMappers.create(new ObjectMapper(), format);
+        menu = SampleData.menu(20, 15);
+        orders = SampleData.orders(200, menu);
+        encodedMenu = mapper.writeValueAsBytes(menu);
+        encodedOrders = mapper.writeValueAsBytes(orders);
+        System.out.printf("%n%s sizes: menu %d bytes (%d gzip), orders %d bytes (%d gzip)%n", format,
+            encodedMenu.length, gzipSize(encodedMenu), encodedOrders.length, gzipSize(encodedOrders));
+    }
+    
+    @Benchmark
+    public byte[] encodeMenu() throws IOException {
+        return mapper.writeValueAsBytes(menu);
+    }
+    
+    @Benchmark
+    public List<Product> decodeMenu() throws IOException {
+        return mapper.readValue(encodedMenu, PRODUCTS);
+    }
+    
+    @Benchmark
+    public byte[] encodeOrders() throws IOException {
+        return mapper.writeValueAsBytes(orders);
+    }
+    
+    @Benchmark
+    public List<Order> decodeOrders() throws IOException {
+        return mapper.readValue(encodedOrders, ORDERS);
+    }
+    
+    private static int gzipSize(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,74 @@
+package com.raven.catalog;
+
+import com.raven.model.Category;
+import com.raven.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CatalogSnapshotTest {
+    
+    @Test
+    void testChangesMakeANewSnapshotAndKeepTheOrder() {
+        Product margherita = product("1", "Margherita");
+        Product marinara = product("2", "Marinara");
+        CatalogSnapshot catalog = CatalogSnapshot.of(List.of(category("pizze")), List.of(margherita, marinara), 7);
+        
+        Product renamed = product("1", "Margherita DOP");
+        Product diavola = product("3", "Diavola");
+        CatalogSnapshot next = catalog.with(CatalogChange.upsert(renamed))
+            .with(CatalogChange.upsert(diavola))
+            .with(CatalogChange.delete(CatalogChange.EntityType.PRODUCT, "2"));
+        
+        assertEquals(List.of(renamed, diavola), next.getProducts());
+        assertSame(renamed, next.getProduct("1"));
+        assertNull(next.getProduct("2"));
+        assertEquals(7, next.getSequence());
+        // The original is untouched
+        assertEquals(List.of(margherita, marinara), catalog.getProducts());
+        assertEquals(1, next.getCategories().size());
+    }
+    
+    @Test
+    void testCategoryChangesLeaveTheProducts() {
+        Product margherita = product("1", "Margherita");
+        CatalogSnapshot catalog = CatalogSnapshot.of(List.of(category("pizze")), List.of(margherita), 3);
+        
+        CatalogSnapshot next = catalog.with(CatalogChange.upsert(category("dolci")))
+            .with(CatalogChange.delete(CatalogChange.EntityType.CATEGORY, "pizze"));
+        
+        assertEquals(List.of("dolci"), next.getCategories().stream().map(Category::getId).toList());
+        assertSame(catalog.getProducts(), next.getProducts());
+    }
+    
+    @Test
+    void testAtMovesOnlyTheSequence() {
+        Product margherita = product("1", "Margherita");
+        CatalogSnapshot catalog = CatalogSnapshot.of(List.of(category("pizze")), List.of(margherita), 3);
+        
+        CatalogSnapshot later = catalog.at(9);
+        
+        assertEquals(9, later.getSequence());
+        assertSame(catalog.getProducts(), later.getProducts());
+        assertSame(catalog.getCategories(), later.getCategories());
+    }
+    
+    private static Product product(String id, String name) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setCategoryId("pizze");
+        return product;
+    }
+    
+    private static Category category(String id) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(id);
+        return category;
+    }
+}
@@ -0,0 +1,100 @@
+package com.raven.catalog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocBitmapTest {
+    
+    @Test
+    void testSwitchesToWordsWhenDenseAndBackWhenSparse() {
+        DocBitmap bitmap = new DocBitmap();
+        for (int doc = 0; doc < 256; doc++) {
+            bitmap.add(doc);
+        }
+        // 4 words rather than 256 ints
+        assertEquals(32, bitmap.bytes());
+        assertEquals(256, bitmap.cardinality());
+        
+        for (int doc = 1; doc < 256; doc++) {
+            bitmap.remove(doc);
+        }
+        // Back to a sorted array of docs
+        assertEquals(1, bitmap.cardinality());
+        assertEquals(16, bitmap.bytes());
+        long[] accumulator = {-1L, -1L};
+        bitmap.andInto(accumulator);
+        assertArrayEquals(new long[] {1L, 0}, accumulator);
+    }
+    
+    @Test
+    void testAddAndRemoveAreIdempotent() {
+        DocBitmap bitmap = new DocBitmap();
+        bitmap.add(5);
+        bitmap.add(5);
+        bitmap.remove(7);
+        assertEquals(1, bitmap.cardinality());
+        bitmap.remove(5);
+        bitmap.remove(5);
+        assertEquals(0, bitmap.cardinality());
+    }
+    
+    @Test
+    void testRandomOperationsMatchBitSet() {
+        Random random = new Random(11);
+        for (int run = 0; run < 200; run++) {
+            DocBitmap bitmap = new DocBitmap();
+            BitSet expected = new BitSet();
+            // From a few docs over a wide range (sparse) to most of a narrow one (dense)
+            int range = 1 + random.nextInt(2000);
+            int operations = random.nextInt(4000);
+            double adds = 0.3 + random.nextDouble() * 0.6;
+            for (int i = 0; i < operations; i++) {
+                int doc = random.nextInt(range);
+                if (random.nextDouble() < adds) {
+                    bitmap.add(doc);
+                    expected.set(doc);
+                } else {
+                    bitmap.remove(doc);
+                    expected.clear(doc);
+                }
+                assertEquals(expected.cardinality(), bitmap.cardinality());
+            }
+            
+            // Accumulators shorter and longer than the bitmap
+            int length = random.nextInt(range / 64 + 3);
+            long[] other = random.longs(length).toArray();
+            BitSet operand = BitSet.valueOf(other);
+            
+            long[] and = other.clone();
+            bitmap.andInto(and);
+            BitSet expectedAnd = (BitSet) operand.clone();
+            expectedAnd.and(expected);
+            assertArrayEquals(words(expectedAnd, length), and);
+            
+            long[] or = other.clone();
+            bitmap.orInto(or);
+            BitSet expectedOr = (BitSet) operand.clone();
+            expectedOr.or(expected.get(0, length * 64));
+            assertArrayEquals(words(expectedOr, length), or);
+            
+            long[] andNot = other.clone();
+            bitmap.andNotInto(andNot);
+            BitSet expectedAndNot = (BitSet) operand.clone();
+            expectedAndNot.andNot(expected);
+            assertArrayEquals(words(expectedAndNot, length), andNot);
+            
+            assertTrue(bitmap.bytes() > 0);
+        }
+    }
+    
+    private static long[] words(BitSet bits, int length) {
+        return Arrays.copyOf(bits.toLongArray(), length);
+    }
+}
@@ -0,0 +1,183 @@
+package com.raven.catalog;
+
+import com.raven.model.Product;
+import com.raven.model.VisibleOn;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductFilterIndexTest {
+    
+    private static final List<String> CATEGORIES = List.of("pizze", "primi", "dolci", "bevande");
+    private static final List<String> INGREDIENTS = List.of("Mozzarella", "pomodoro", "basilico", "guanciale",
+        "uovo", "pecorino", "prosciutto crudo", "funghi");
+    private static final List<String> ALLERGENS = List.of("glutine", "Lattosio", "uova", "frutta a guscio");
+    private static final Comparator<Product> BY_NAME = Comparator.comparing(Product::getName,
+        Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(Product::getId);
+    
+    @Test
+    void testUnknownAllergensAreExcludedByAnyAllergenExclusion() {
+        ProductFilterIndex index = new ProductFilterIndex();
+        Product declared = product("1", "Margherita", List.of("glutine", "lattosio"));
+        Product none = product("2", "Acqua", List.of());
+        Product unknown = product("3", "Tiramisù", null);
+        index.put(declared);
+        index.put(none);
+        index.put(unknown);
+        
+        assertEquals(List.of(none, declared, unknown), index.filter(filter(Set.of())));
+        assertEquals(List.of(none), index.filter(filter(Set.of("Glutine"))));
+        assertEquals(List.of(none, declared), index.filter(filter(Set.of("sesamo"))));
+        
+        // Declared later: no longer unknown
+        Product known = product("3", "Tiramisù", List.of("uova"));
+        index.put(known);
+        assertEquals(List.of(none, declared, known), index.filter(filter(Set.of("sesamo"))));
+    }
+    
+    @Test
+    void testRandomFiltersMatchABruteForceScan() {
+        Random random = new Random(5);
+        ProductFilterIndex index = new ProductFilterIndex();
+        Map<String, Product> products = new LinkedHashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            String id = "p" + random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                products.remove(id);
+            } else {
+                Product product = randomProduct(random, id);
+                index.put(product);
+                products.put(id, product);
+            }
+            if (i % 50 == 0) {
+                ProductFilter filter = randomFilter(random);
+                assertEquals(scan(products.values(), filter), index.filter(filter), filter.toString());
+                assertEquals(products.size(), index.size());
+            }
+        }
+    }
+    
+    private static List<Product> scan(Iterable<Product> products, ProductFilter filter) {
+        List<Product> result = new ArrayList<>();
+        for (Product product : products) {
+            if (matches(product, filter)) {
+                result.add(product);
+            }
+        }
+        result.sort(BY_NAME);
+        return result;
+    }
+    
+    private static boolean matches(Product product, ProductFilter filter) {
+        if (!filter.getCategories().isEmpty() && !filter.getCategories().contains(product.getCategoryId())) {
+            return false;
+        }
+        Set<String> ingredients = normalized(product.getIngredients());
+        if (!ingredients.containsAll(filter.getIngredients())) {
+            return false;
+        }
+        for (String excluded : filter.getExcludedIngredients()) {
+            if (ingredients.contains(excluded)) {
+                return false;
+            }
+        }
+        if (!filter.getExcludedAllergens().isEmpty()) {
+            if (product.getAllergens() == null) {
+                return false;
+            }
+            Set<String> allergens = normalized(product.getAllergens());
+            for (String excluded : filter.getExcludedAllergens()) {
+                if (allergens.contains(excluded)) {
+                    return false;
+                }
+            }
+        }
+        VisibleOn visibleOn = product.getVisibleOn();
+        for (String channel : filter.getVisibleOn()) {
+            Boolean visible = visibleOn == null ? null
+                : channel.equals("pos") ? visibleOn.getPos() : visibleOn.getApp();
+            if (!Boolean.TRUE.equals(visible)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static Set<String> normalized(List<String> values) {
+        Set<String> normalized = new HashSet<>();
+        if (values != null) {
+            for (String value : values) {
+                normalized.add(ProductFilter.normalize(value));
+            }
+        }
+        return normalized;
+    }
+    
+    private static Product randomProduct(Random random, String id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(random.nextInt(20) == 0 ? null : "Prodotto " + random.nextInt(100));
+        product.setCategoryId(pick(random, CATEGORIES));
+        product.setIngredients(random.nextInt(10) == 0 ? null : List.copyOf(some(random, INGREDIENTS)));
+        product.setAllergens(random.nextInt(5) == 0 ? null : List.copyOf(some(random, ALLERGENS)));
+        if (random.nextInt(10) != 0) {
+            Boolean app = random.nextInt(3) == 0 ? null : random.nextBoolean();
+            product.setVisibleOn(new VisibleOn(random.nextBoolean(), app));
+        }
+        return product;
+    }
+    
+    private static ProductFilter randomFilter(Random random) {
+        return new ProductFilter(random.nextBoolean() ? Set.of() : some(random, CATEGORIES),
+            random.nextInt(3) == 0 ? some(random, INGREDIENTS.subList(0, 3)) : Set.of(),
+            random.nextBoolean() ? some(random, INGREDIENTS) : Set.of(),
+            random.nextBoolean() ? upperCased(some(random, ALLERGENS)) : Set.of(),
+            random.nextBoolean() ? some(random, List.copyOf(ProductFilter.CHANNELS)) : Set.of());
+    }
+    
+    private static Set<String> some(Random random, List<String> values) {
+        Set<String> some = new HashSet<>();
+        for (String value : values) {
+            if (random.nextInt(3) == 0) {
+                some.add(value);
+            }
+        }
+        return some;
+    }
+    
+    private static Set<String> upperCased(Set<String> values) {
+        Set<String> upperCased = new HashSet<>();
+        for (String value : values) {
+            upperCased.add(value.toUpperCase(Locale.ROOT));
+        }
+        return upperCased;
+    }
+    
+    private static String pick(Random random, List<String> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+    
+    private static Product product(String id, String name, List<String> allergens) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setCategoryId("menu");
+        product.setAllergens(allergens);
+        return product;
+    }
+    
+    private static ProductFilter filter(Set<String> excludedAllergens) {
+        return new ProductFilter(Set.of(), Set.of(), Set.of(), excludedAllergens, Set.of());
+    }
+}
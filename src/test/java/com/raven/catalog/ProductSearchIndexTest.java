@@ -0,0 +1,153 @@
+package com.raven.catalog;
+
+import com.raven.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSearchIndexTest {
+    
+    @Test
+    void testMatchesWholeWordsIgnoringCaseAndAccents() {
+        ProductSearchIndex index = index();
+        
+        assertEquals(List.of("caffe"), ids(index.search("caffè", 10)));
+        assertEquals(List.of("caffe"), ids(index.search("CAFFE", 10)));
+        assertEquals(List.of("caffe"), ids(index.search("Caffé!", 10)));
+    }
+    
+    @Test
+    void testMatchesPrefixesFromTwoLetters() {
+        ProductSearchIndex index = index();
+        
+        assertEquals(List.of("margherita"), ids(index.search("marg", 10)));
+        assertEquals(List.of("margherita"), ids(index.search("ma", 10)));
+        // One letter only matches a whole term
+        assertTrue(index.search("m", 10).isEmpty());
+    }
+    
+    @Test
+    void testMatchesTyposByLength() {
+        ProductSearchIndex index = index();
+        
+        // Missing letter, in a word still being typed: close to a prefix of "mozzarella"
+        assertEquals(List.of("margherita", "funghi"), ids(index.search("mozarel", 10)));
+        // Two edits from 8 letters
+        assertEquals(List.of("margherita"), ids(index.search("margerita", 10)));
+        // No typos under 4 letters
+        assertTrue(index.search("fug", 10).isEmpty());
+        assertEquals(List.of("funghi"), ids(index.search("fugh", 10)));
+        // Too different
+        assertTrue(index.search("marinara", 10).isEmpty());
+    }
+    
+    @Test
+    void testEveryWordMustMatch() {
+        ProductSearchIndex index = index();
+        
+        assertEquals(List.of("funghi"), ids(index.search("mozzarella funghi", 10)));
+        assertTrue(index.search("mozzarella espresso", 10).isEmpty());
+    }
+    
+    @Test
+    void testRanksNameThenIngredientsThenDescription() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.put(product("description", "Bruschetta", List.of("pane"), "Con funghi di stagione"));
+        index.put(product("ingredient", "Boscaiola", List.of("funghi", "salsiccia"), null));
+        index.put(product("name", "Funghi", List.of("pomodoro"), null));
+        
+        assertEquals(List.of("name", "ingredient", "description"), ids(index.search("funghi", 10)));
+        // A completion ranks below an exact match in the same field, above one in a lighter field
+        index.put(product("prefix", "Funghini", List.of(), null));
+        assertEquals(List.of("name", "prefix", "ingredient", "description"), ids(index.search("funghi", 10)));
+    }
+    
+    @Test
+    void testLimitKeepsTheBestWithTiesInIndexOrder() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        for (int i = 0; i < 20; i++) {
+            index.put(product("pizza-" + i, "Pizza " + i, List.of(), null));
+        }
+        
+        assertEquals(List.of("pizza-0", "pizza-1", "pizza-2"), ids(index.search("pizza", 3)));
+        assertEquals(List.of("pizza-7"), ids(index.search("pizza 7", 3)));
+        assertTrue(index.search("pizza", 0).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+    
+    @Test
+    void testPutReplacesTheTermsOfAProduct() {
+        ProductSearchIndex index = index();
+        int terms = index.termCount();
+        
+        index.put(product("caffe", "Cappuccino", List.of("latte"), null));
+        
+        assertEquals(4, index.size());
+        assertTrue(index.search("caffe", 10).isEmpty());
+        assertEquals(List.of("caffe"), ids(index.search("cappuccino", 10)));
+        // "caffe", "espresso", "miscela" and "arabica" out, "cappuccino" and "latte" in
+        assertEquals(terms - 2, index.termCount());
+    }
+    
+    @Test
+    void testRemovedProductIsNotFoundAndItsDocIsReused() {
+        ProductSearchIndex index = index();
+        
+        index.remove("margherita");
+        index.remove("unknown");
+        
+        assertEquals(3, index.size());
+        assertEquals(List.of("funghi"), ids(index.search("mozzarella", 10)));
+        assertTrue(index.search("margherita", 10).isEmpty());
+        
+        // Takes the freed doc of margherita, so it ties ahead of funghi again
+        index.put(product("diavola", "Diavola", List.of("mozzarella", "salame piccante"), null));
+        assertEquals(List.of("diavola", "funghi"), ids(index.search("mozzarella", 10)));
+        assertEquals(List.of("diavola"), ids(index.search("piccante", 10)));
+    }
+    
+    @Test
+    void testRepeatedSearchesGiveTheSameResults() {
+        ProductSearchIndex index = index();
+        List<List<String>> first = new ArrayList<>();
+        List<List<String>> again = new ArrayList<>();
+        for (String query : List.of("mozzarella", "marg", "espresso", "mozzarella funghi", "zzz", "mozarel")) {
+            first.add(ids(index.search(query, 10)));
+        }
+        for (String query : List.of("mozzarella", "marg", "espresso", "mozzarella funghi", "zzz", "mozarel")) {
+            again.add(ids(index.search(query, 10)));
+        }
+        
+        assertEquals(first, again);
+    }
+    
+    private static ProductSearchIndex index() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.put(product("margherita", "Margherita", List.of("pomodoro", "mozzarella", "basilico"), null));
+        index.put(product("funghi", "Funghi", List.of("pomodoro", "mozzarella", "funghi"), null));
+        index.put(product("caffe", "Caffè", List.of("espresso"), "Miscela arabica"));
+        index.put(product("acqua", "Acqua", List.of(), "Naturale o frizzante"));
+        return index;
+    }
+    
+    private static Product product(String id, String name, List<String> ingredients, String description) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setIngredients(ingredients);
+        product.setDescription(description);
+        return product;
+    }
+    
+    private static List<String> ids(List<Product> products) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.getId());
+        }
+        return ids;
+    }
+}
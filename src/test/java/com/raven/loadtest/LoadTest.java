@@ -0,0 +1,126 @@
+package com.raven.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Closed-loop HTTP load generator (JDK only): N concurrent clients, each on
+ * its own virtual thread, send requests back to back for a fixed duration,
+ * then throughput and latency percentiles are printed.
+ * 
+ * Usage: LoadTest [url] [concurrency] [durationSeconds] [warmupSeconds]
+ * e.g.   LoadTest http://localhost:8080/api/orders 400 60 10
+ */
+public class LoadTest {
+    
+    public static void main(String[] args) throws Exception {
+        URI uri = URI.create(args.length > 0 ? args[0] : "http://localhost:8080/api/orders");
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 30);
+        Duration warmup = Duration.ofSeconds(args.length > 3 ? Long.parseLong(args[3]) : 5);
+        
+        System.out.printf("Target %s, %d clients, %ds warmup + %ds measured%n",
+            uri, concurrency, warmup.toSeconds(), duration.toSeconds());
+        
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .timeout(Duration.ofSeconds(30))
+            .header("Accept", "application/json")
+            .GET()
+            .build();
+        
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        
+        List<Future<Recorder>> futures = new ArrayList<>(concurrency);
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(clients.submit(() -> run(client, request, measureFrom, end)));
+            }
+        }
+        
+        Recorder total = new Recorder();
+        for (Future<Recorder> future : futures) {
+            total.merge(future.get());
+        }
+        total.print(duration);
+    }
+    
+    private static Recorder run(HttpClient client, HttpRequest request, long measureFrom, long end) {
+        Recorder recorder = new Recorder();
+        while (true) {
+            long sent = System.nanoTime();
+            if (sent >= end) {
+                return recorder;
+            }
+            boolean ok;
+            try {
+                HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                ok = response.statusCode() < 400;
+            } catch (Exception e) {
+                ok = false;
+            }
+            if (sent >= measureFrom) {
+                recorder.record(System.nanoTime() - sent, ok);
+            }
+        }
+    }
+    
+    /**
+     * Latencies of one client, merged at the end
+     */
+    private static final class Recorder {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+        
+        void record(long nanos, boolean ok) {
+            if (!ok) {
+                errors++;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+        
+        void merge(Recorder other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            errors += other.errors;
+        }
+        
+        void print(Duration duration) {
+            Arrays.sort(latencies, 0, count);
+            System.out.printf("requests %d, errors %d, throughput %.1f req/s%n",
+                count, errors, count / (double) duration.toSeconds());
+            if (count > 0) {
+                System.out.printf("latency ms: p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                    percentile(0.50), percentile(0.90), percentile(0.99), percentile(0.999),
+                    latencies[count - 1] / 1e6);
+            }
+        }
+        
+        private double percentile(double p) {
+            int index = (int) Math.min(count - 1, Math.ceil(p * count) - 1);
+            return latencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.raven.loadtest;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Order stream connection load generator (JDK only): holds N concurrent
+ * SSE connections to /orders/stream, reports the server memory per
+ * connection (heap and direct buffer deltas from /q/metrics), then creates
+ * orders one at a time and reports how long each takes to reach every
+ * connection (from sending the POST to the data line arriving).
+ * 
+ * Usage: StreamLoadTest [baseUrl] [connections] [events] [connectionsPerSecond]
+ * e.g.   StreamLoadTest http://localhost:8080 10000 20 1000
+ * 
+ * Each connection is a socket on both sides: raise the open file limit of
+ * the client and the server (ulimit -n) above the number of connections.
+ */
+public class StreamLoadTest {
+    
+    private static final String MARKER = "stream-loadtest-";
+    private static final Pattern MARKER_PATTERN = Pattern.compile(MARKER + "(\\d+)");
+    private static final Pattern ID_PATTERN = Pattern.compile("\"id\"\\s*:\\s*\"([^\"]+)\"");
+    
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int events = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int perSecond = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        
+        System.out.printf("Target %s, %d connections (%d/s), %d events%n", baseUrl, connections, perSecond, events);
+        
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+        
+        Memory before = Memory.read(client, baseUrl);
+        
+        // arrivals[event * connections + connection]: System.nanoTime() of the first data line, 0 until then
+        AtomicLongArray arrivals = new AtomicLongArray(events * connections);
+        AtomicInteger[] received = new AtomicInteger[events];
+        for (int i = 0; i < events; i++) {
+            received[i] = new AtomicInteger();
+        }
+        AtomicInteger connected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger ended = new AtomicInteger();
+        AtomicInteger heartbeats = new AtomicInteger();
+        CountDownLatch opened = new CountDownLatch(connections);
+        
+        HttpRequest stream = HttpRequest.newBuilder(URI.create(baseUrl + "/orders/stream"))
+            .header("Accept", "text/event-stream")
+            .GET()
+            .build();
+        ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+        long rampStart = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            int connection = c;
+            readers.submit(() -> {
+                try {
+                    HttpResponse<InputStream> response = client.send(stream, HttpResponse.BodyHandlers.ofInputStream());
+                    if (response.statusCode() != 200) {
+                        failed.incrementAndGet();
+                        opened.countDown();
+                        return null;
+                    }
+                    connected.incrementAndGet();
+                    opened.countDown();
+                    read(response.body(), connection, connections, arrivals, received, heartbeats);
+                    ended.incrementAndGet();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    opened.countDown();
+                }
+                return null;
+            });
+            // Pace the ramp so the server's accept queue doesn't overflow
+            long due = rampStart + TimeUnit.SECONDS.toNanos(c + 1) / perSecond;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+        opened.await(60, TimeUnit.SECONDS);
+        System.out.printf("connected %d, failed %d in %.1f s%n",
+            connected.get(), failed.get(), (System.nanoTime() - rampStart) / 1e9);
+        
+        // Let the server settle before sampling memory again; the heap figure
+        // includes garbage not collected yet, so it is an upper bound
+        Thread.sleep(5000);
+        Memory after = Memory.read(client, baseUrl);
+        if (before != null && after != null && connected.get() > 0) {
+            System.out.printf("server memory per connection: heap %.1f KiB, direct %.1f KiB%n",
+                (after.heap - before.heap) / 1024.0 / connected.get(),
+                (after.direct - before.direct) / 1024.0 / connected.get());
+        } else {
+            System.out.println("server memory not available (is /q/metrics enabled?)");
+        }
+        
+        // Orders are priced by the server, so they need a product with a price
+        String productId = createProduct(client, baseUrl);
+        if (productId == null) {
+            readers.shutdownNow();
+            System.exit(1);
+        }
+        
+        List<String> created = new ArrayList<>();
+        long[] latencies = new long[connected.get()];
+        for (int e = 0; e < events; e++) {
+            long sent = System.nanoTime();
+            String id = createOrder(client, baseUrl, productId, e);
+            long posted = System.nanoTime() - sent;
+            if (id != null) {
+                created.add(id);
+            }
+            
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (received[e].get() < connected.get() - ended.get() && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            
+            int count = 0;
+            for (int c = 0; c < connections && count < latencies.length; c++) {
+                long arrival = arrivals.get(e * connections + c);
+                if (arrival != 0) {
+                    latencies[count++] = arrival - sent;
+                }
+            }
+            Arrays.sort(latencies, 0, count);
+            System.out.printf("event %2d: POST %.1f ms, reached %d/%d, fan-out ms p50 %.1f  p99 %.1f  max %.1f%n",
+                e, posted / 1e6, count, connected.get(),
+                percentile(latencies, count, 0.50), percentile(latencies, count, 0.99),
+                count > 0 ? latencies[count - 1] / 1e6 : 0.0);
+        }
+        System.out.printf("streams ended by the server %d, heartbeats received %d%n", ended.get(), heartbeats.get());
+        
+        for (String id : created) {
+            client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/orders/" + id)).DELETE().build(),
+                HttpResponse.BodyHandlers.discarding());
+        }
+        client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/products/" + productId)).DELETE().build(),
+            HttpResponse.BodyHandlers.discarding());
+        readers.shutdownNow();
+        System.exit(0);
+    }
+    
+    /**
+     * Read one stream until it ends, recording the first arrival of each
+     * test event
+     */
+    private static void read(InputStream body, int connection, int connections, AtomicLongArray arrivals,
+                             AtomicInteger[] received, AtomicInteger heartbeats) throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(": heartbeat")) {
+                    heartbeats.incrementAndGet();
+                    continue;
+                }
+                if (!line.startsWith("data:")) {
+                    continue;
+                }
+                long now = System.nanoTime();
+                Matcher matcher = MARKER_PATTERN.matcher(line);
+                while (matcher.find()) {
+                    int event = Integer.parseInt(matcher.group(1));
+                    if (event < received.length && arrivals.compareAndSet(event * connections + connection, 0, now)) {
+                        received[event].incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+    
+    private static String createProduct(HttpClient client, String baseUrl) throws Exception {
+        return post(client, baseUrl + "/api/products",
+            "{\"name\":\"Load test\",\"categoryId\":\"loadtest\",\"price\":1.0}");
+    }
+    
+    private static String createOrder(HttpClient client, String baseUrl, String productId, int event)
+            throws Exception {
+        return post(client, baseUrl + "/api/orders", "{\"status\":\"NEW\",\"notes\":\"" + MARKER + event + "\","
+            + "\"items\":[{\"productId\":\"" + productId + "\",\"quantity\":1}]}");
+    }
+    
+    /**
+     * @return The id of the created resource, null if the request failed
+     */
+    private static String post(HttpClient client, String url, String body) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            System.out.printf("POST %s failed: %d %s%n", url, response.statusCode(), response.body());
+            return null;
+        }
+        Matcher matcher = ID_PATTERN.matcher(response.body());
+        return matcher.find() ? matcher.group(1) : null;
+    }
+    
+    private static double percentile(long[] sorted, int count, double p) {
+        if (count == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(count - 1, Math.ceil(p * count) - 1);
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+    
+    /**
+     * Server memory in use, from the Prometheus metrics
+     */
+    private record Memory(double heap, double direct) {
+        
+        static Memory read(HttpClient client, String baseUrl) {
+            try {
+                HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(URI.create(baseUrl + "/q/metrics")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    return null;
+                }
+                double heap = 0;
+                double direct = 0;
+                for (String line : response.body().split("\n")) {
+                    if (line.startsWith("jvm_memory_used_bytes{") && line.contains("area=\"heap\"")) {
+                        heap += value(line);
+                    } else if (line.startsWith("jvm_buffer_memory_used_bytes{") && line.contains("id=\"direct\"")) {
+                        direct += value(line);
+                    }
+                }
+                return new Memory(heap, direct);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        
+        private static double value(String line) {
+            return Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.raven.orders;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderExpiryTest {
+    
+    @Test
+    void testClosedEntriesExpireAfterTheirTicks() {
+        OrderExpiry expiry = new OrderExpiry(4);
+        expiry.touch("a", 10, 1);
+        expiry.touch("b", 10, 3);
+        // More than one turn of the wheel
+        expiry.touch("c", 10, 9);
+        expiry.touch("d", 10, 0);
+        
+        assertEquals(List.of("a"), expiry.tick());
+        assertEquals(List.of(), expiry.tick());
+        assertEquals(List.of("b"), expiry.tick());
+        for (int i = 4; i < 9; i++) {
+            assertEquals(List.of(), expiry.tick());
+        }
+        assertEquals(List.of("c"), expiry.tick());
+        assertEquals(1, expiry.size());
+        assertEquals(0, expiry.scheduled());
+        assertEquals(10, expiry.bytes());
+    }
+    
+    @Test
+    void testRewriteKeepsTheDeadlineUntilReopened() {
+        OrderExpiry expiry = new OrderExpiry(8);
+        expiry.touch("a", 10, 2);
+        expiry.tick();
+        // Written again while closed: still due at the original tick
+        expiry.touch("a", 20, 5);
+        assertEquals(List.of("a"), expiry.tick());
+        
+        expiry.touch("b", 10, 1);
+        // Active again: no longer scheduled
+        expiry.touch("b", 10, 0);
+        assertEquals(List.of(), expiry.tick());
+        assertEquals(1, expiry.size());
+        assertEquals(0, expiry.scheduled());
+    }
+    
+    @Test
+    void testOverflowEvictsOnlyClosedEntriesOldestFirst() {
+        OrderExpiry expiry = new OrderExpiry(8);
+        expiry.touch("active1", 10, 0);
+        expiry.touch("closed1", 10, 100);
+        expiry.touch("active2", 10, 0);
+        expiry.touch("closed2", 10, 100);
+        expiry.touch("closed3", 10, 100);
+        // Written again: now the most recent closed entry
+        expiry.touch("closed1", 10, 100);
+        
+        assertEquals(List.of("closed2"), expiry.overflow(4));
+        assertEquals(List.of("closed3", "closed1"), expiry.overflow(1));
+        // Only active entries left: none is evicted, whatever the capacity
+        assertEquals(List.of(), expiry.overflow(0));
+        assertEquals(2, expiry.size());
+        assertEquals(0, expiry.scheduled());
+        assertEquals(20, expiry.bytes());
+    }
+    
+    @Test
+    void testRandomOperationsMatchAReferenceModel() {
+        Random random = new Random(7);
+        OrderExpiry expiry = new OrderExpiry(16);
+        Map<String, Entry> model = new HashMap<>();
+        long now = 0; // ticks done
+        long writes = 0;
+        for (int i = 0; i < 300_000; i++) {
+            String id = "o" + random.nextInt(500);
+            int op = random.nextInt(100);
+            if (op < 55) {
+                long bytes = 1 + random.nextInt(1000);
+                long ticks = random.nextBoolean() ? 0 : 1 + random.nextInt(60);
+                expiry.touch(id, bytes, ticks);
+                Entry entry = model.computeIfAbsent(id, key -> new Entry());
+                entry.bytes = bytes;
+                entry.written = writes++;
+                if (ticks == 0) {
+                    entry.dueAt = -1;
+                } else if (entry.dueAt < 0) {
+                    entry.dueAt = now + ticks;
+                }
+            } else if (op < 65) {
+                expiry.remove(id);
+                model.remove(id);
+            } else if (op < 97) {
+                now++;
+                long tick = now;
+                List<String> expected = new ArrayList<>();
+                model.forEach((key, entry) -> {
+                    if (entry.dueAt == tick) {
+                        expected.add(key);
+                    }
+                });
+                expected.forEach(model::remove);
+                List<String> expired = expiry.tick();
+                assertEquals(new HashSet<>(expected), new HashSet<>(expired), "tick " + now);
+                assertEquals(expected.size(), expired.size());
+            } else {
+                int capacity = random.nextInt(model.size() + 1);
+                List<String> closed = new ArrayList<>();
+                model.forEach((key, entry) -> {
+                    if (entry.dueAt >= 0) {
+                        closed.add(key);
+                    }
+                });
+                closed.sort(Comparator.comparingLong(key -> model.get(key).written));
+                int over = Math.max(0, model.size() - capacity);
+                List<String> expected = closed.subList(0, Math.min(closed.size(), over));
+                assertEquals(expected, expiry.overflow(capacity));
+                expected.forEach(model::remove);
+                assertTrue(expiry.size() <= capacity || expiry.scheduled() == 0);
+            }
+            
+            assertEquals(model.size(), expiry.size());
+            assertEquals(model.values().stream().filter(entry -> entry.dueAt >= 0).count(), expiry.scheduled());
+            assertEquals(model.values().stream().mapToLong(entry -> entry.bytes).sum(), expiry.bytes());
+        }
+    }
+    
+    private static final class Entry {
+        
+        private long bytes;
+        private long written; // write sequence
+        private long dueAt = -1; // tick it expires at, -1 if active
+    }
+}
@@ -0,0 +1,75 @@
+package com.raven.orders;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.raven.orders.OrderStatus.ACCEPTED;
+import static com.raven.orders.OrderStatus.CANCELED;
+import static com.raven.orders.OrderStatus.COMPLETED;
+import static com.raven.orders.OrderStatus.IN_PROGRESS;
+import static com.raven.orders.OrderStatus.NEW;
+import static com.raven.orders.OrderStatus.READY;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderStatusTest {
+    
+    // Every allowed transition; any other pair of distinct statuses is refused
+    private static final Map<OrderStatus, Set<OrderStatus>> ALLOWED = Map.of(
+        NEW, EnumSet.of(ACCEPTED, IN_PROGRESS, READY, COMPLETED, CANCELED),
+        ACCEPTED, EnumSet.of(IN_PROGRESS, READY, COMPLETED, CANCELED),
+        IN_PROGRESS, EnumSet.of(READY, COMPLETED, CANCELED),
+        READY, EnumSet.of(COMPLETED, CANCELED),
+        COMPLETED, EnumSet.noneOf(OrderStatus.class),
+        CANCELED, EnumSet.noneOf(OrderStatus.class));
+    
+    @Test
+    void testTransitionTable() {
+        for (OrderStatus from : OrderStatus.values()) {
+            for (OrderStatus to : OrderStatus.values()) {
+                assertEquals(ALLOWED.get(from).contains(to), from.canMoveTo(to), from + " -> " + to);
+            }
+        }
+    }
+    
+    @Test
+    void testOnlyCompletedAndCanceledAreFinal() {
+        for (OrderStatus status : OrderStatus.values()) {
+            assertEquals(status == COMPLETED || status == CANCELED, status.isFinal(), status.name());
+        }
+    }
+    
+    @Test
+    void testCheckTransition() {
+        assertDoesNotThrow(() -> OrderStatus.checkTransition("NEW", READY));
+        assertDoesNotThrow(() -> OrderStatus.checkTransition("in_progress", CANCELED));
+        // Staying in the same status is not a transition
+        assertDoesNotThrow(() -> OrderStatus.checkTransition("COMPLETED", COMPLETED));
+        // Orders in an unknown status may move anywhere
+        assertDoesNotThrow(() -> OrderStatus.checkTransition("PREPARING", NEW));
+        assertDoesNotThrow(() -> OrderStatus.checkTransition(null, READY));
+        
+        assertThrows(IllegalStateException.class, () -> OrderStatus.checkTransition("READY", IN_PROGRESS));
+        assertThrows(IllegalStateException.class, () -> OrderStatus.checkTransition("COMPLETED", CANCELED));
+        assertThrows(IllegalStateException.class, () -> OrderStatus.checkTransition("CANCELED", NEW));
+    }
+    
+    @Test
+    void testParse() {
+        assertEquals(IN_PROGRESS, OrderStatus.parse(" in_Progress "));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> OrderStatus.parse("DONE"));
+        assertTrue(e.getMessage().contains("NEW, ACCEPTED, IN_PROGRESS, READY, COMPLETED, CANCELED"));
+        assertThrows(IllegalArgumentException.class, () -> OrderStatus.parse(null));
+        
+        assertNull(OrderStatus.of("DONE"));
+        assertNull(OrderStatus.of(null));
+        assertFalse(OrderStatus.of("ready").isFinal());
+    }
+}
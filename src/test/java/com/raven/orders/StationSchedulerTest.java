@@ -0,0 +1,109 @@
+package com.raven.orders;
+
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StationSchedulerTest {
+    
+    private static final String CREATED = "2026-01-01T12:00:00Z";
+    
+    @Test
+    void testOneTicketPerStationAndCourseWithTheCourseGap() {
+        StationScheduler scheduler = scheduler();
+        Order order = order("o1", "counter", CREATED, 20,
+            item("kitchen", "dessert"), item("kitchen", "Starter"), item("Bar", null), item("kitchen", "main"),
+            item("kitchen", "starter"), item(null, "main"));
+        
+        scheduler.schedule("o1", order);
+        
+        List<StationTicket> kitchen = scheduler.queue("KITCHEN", 10);
+        assertEquals(List.of("o1:kitchen:starter", "o1:kitchen:main", "o1:kitchen:dessert"),
+            kitchen.stream().map(StationTicket::getId).toList());
+        // Promised 20 minutes after creation, then 10 minutes per earlier course
+        assertEquals(List.of("2026-01-01T12:20:00Z", "2026-01-01T12:30:00Z", "2026-01-01T12:40:00Z"),
+            kitchen.stream().map(StationTicket::getDueAt).toList());
+        assertEquals(2, kitchen.get(0).getItems().size());
+        
+        List<StationTicket> bar = scheduler.queue("bar", 10);
+        assertEquals(1, bar.size());
+        assertEquals("o1:bar", bar.get(0).getId());
+        assertNull(bar.get(0).getCourse());
+        assertEquals("2026-01-01T12:20:00Z", bar.get(0).getDueAt());
+    }
+    
+    @Test
+    void testPriorityChannelsQueueAheadWithoutChangingTheDueTime() {
+        StationScheduler scheduler = scheduler();
+        scheduler.schedule("counter", order("counter", "counter", "2026-01-01T12:00:00Z", null, item("bar", null)));
+        scheduler.schedule("takeaway", order("takeaway", "Takeaway", "2026-01-01T12:01:00Z", null,
+            item("bar", null)));
+        scheduler.schedule("late", order("late", "takeaway", "2026-01-01T12:03:00Z", null, item("bar", null)));
+        
+        List<StationTicket> bar = scheduler.queue("bar", 10);
+        // Takeaway tickets are queued 2 minutes early: only the one within 2 minutes passes the counter order
+        assertEquals(List.of("takeaway:bar", "counter:bar", "late:bar"),
+            bar.stream().map(StationTicket::getId).toList());
+        // No ETA: due at the default promise
+        assertEquals("2026-01-01T12:16:00Z", bar.get(0).getDueAt());
+    }
+    
+    @Test
+    void testTicketsFollowTheOrder() {
+        StationScheduler scheduler = scheduler();
+        scheduler.schedule("o1", order("o1", "counter", CREATED, 10, item("kitchen", "main"), item("bar", null)));
+        
+        // A line moved off the kitchen drops its ticket
+        scheduler.schedule("o1", order("o1", "counter", CREATED, 10, item("bar", null)));
+        assertTrue(scheduler.queue("kitchen", 10).isEmpty());
+        assertEquals(1, scheduler.queue("bar", 10).size());
+        
+        // Ready orders leave the queues
+        Order ready = order("o1", "counter", CREATED, 10, item("bar", null));
+        ready.setStatus("READY");
+        scheduler.schedule("o1", ready);
+        assertTrue(scheduler.queue("bar", 10).isEmpty());
+        
+        scheduler.schedule("o1", order("o1", "counter", CREATED, 10, item("bar", null)));
+        scheduler.schedule("o1", null);
+        assertTrue(scheduler.queue("bar", 10).isEmpty());
+        assertTrue(scheduler.queue("unknown", 10).isEmpty());
+    }
+    
+    private static StationScheduler scheduler() {
+        StationScheduler scheduler = new StationScheduler();
+        scheduler.defaultPromise = Duration.ofMinutes(15);
+        scheduler.courseGap = Duration.ofMinutes(10);
+        scheduler.priorityChannels = List.of("takeaway");
+        scheduler.priorityAdvance = Duration.ofMinutes(2);
+        scheduler.init();
+        return scheduler;
+    }
+    
+    private static Order order(String id, String channel, String createdAt, Integer etaMinutes, OrderItem... items) {
+        Order order = new Order();
+        order.setId(id);
+        order.setStatus("NEW");
+        order.setChannel(channel);
+        order.setCreatedAt(createdAt);
+        order.setEtaMinutes(etaMinutes);
+        order.setItems(List.of(items));
+        return order;
+    }
+    
+    private static OrderItem item(String station, String course) {
+        OrderItem item = new OrderItem();
+        item.setProductId("p");
+        item.setQuantity(1);
+        item.setStation(station);
+        item.setCourse(course);
+        return item;
+    }
+}
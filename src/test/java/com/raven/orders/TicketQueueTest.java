@@ -0,0 +1,106 @@
+package com.raven.orders;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TicketQueueTest {
+    
+    @Test
+    void testFirstIsInPriorityOrderWithTiesByArrival() {
+        TicketQueue queue = new TicketQueue();
+        queue.put(ticket("a", 30));
+        queue.put(ticket("b", 10));
+        queue.put(ticket("c", 20));
+        queue.put(ticket("d", 10));
+        
+        assertEquals(List.of("b", "d", "c", "a"), ids(queue.first(10)));
+        assertEquals(List.of("b", "d"), ids(queue.first(2)));
+        assertTrue(queue.first(0).isEmpty());
+        assertEquals(4, queue.size());
+    }
+    
+    @Test
+    void testPutMovesAnExistingTicketAndKeepsItsArrival() {
+        TicketQueue queue = new TicketQueue();
+        queue.put(ticket("a", 10));
+        queue.put(ticket("b", 20));
+        queue.put(ticket("c", 30));
+        
+        queue.put(ticket("c", 5));
+        assertEquals(List.of("c", "a", "b"), ids(queue.first(3)));
+        queue.put(ticket("c", 40));
+        assertEquals(List.of("a", "b", "c"), ids(queue.first(3)));
+        // Tied with b, but a arrived first
+        queue.put(ticket("a", 20));
+        assertEquals(List.of("a", "b", "c"), ids(queue.first(3)));
+        assertEquals(3, queue.size());
+    }
+    
+    @Test
+    void testRemove() {
+        TicketQueue queue = new TicketQueue();
+        queue.put(ticket("a", 10));
+        queue.put(ticket("b", 20));
+        queue.put(ticket("c", 30));
+        
+        assertTrue(queue.remove("a"));
+        assertFalse(queue.remove("a"));
+        assertFalse(queue.remove("z"));
+        assertEquals(List.of("b", "c"), ids(queue.first(3)));
+        assertTrue(queue.remove("c"));
+        assertTrue(queue.remove("b"));
+        assertEquals(0, queue.size());
+        assertTrue(queue.first(3).isEmpty());
+    }
+    
+    @Test
+    void testRandomOperationsMatchASortedList() {
+        Random random = new Random(42);
+        TicketQueue queue = new TicketQueue();
+        // id -> {priority, arrival}
+        Map<String, long[]> expected = new HashMap<>();
+        long arrivals = 0;
+        for (int i = 0; i < 20_000; i++) {
+            String id = "t" + random.nextInt(300);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(id) != null, queue.remove(id));
+            } else {
+                long priority = random.nextInt(50);
+                long[] entry = expected.get(id);
+                if (entry == null) {
+                    expected.put(id, new long[] {priority, arrivals++});
+                } else {
+                    entry[0] = priority;
+                }
+                queue.put(ticket(id, priority));
+            }
+            
+            if (i % 50 == 0) {
+                List<String> sorted = new ArrayList<>(expected.keySet());
+                sorted.sort(Comparator.<String>comparingLong(t -> expected.get(t)[0])
+                    .thenComparingLong(t -> expected.get(t)[1]));
+                int limit = random.nextInt(sorted.size() + 2);
+                assertEquals(sorted.subList(0, Math.min(limit, sorted.size())), ids(queue.first(limit)));
+                assertEquals(expected.size(), queue.size());
+            }
+        }
+    }
+    
+    private static StationTicket ticket(String id, long priority) {
+        return new StationTicket(id, id, "kitchen", null, null, "NEW", null, List.of(), null, null, priority);
+    }
+    
+    private static List<String> ids(List<StationTicket> tickets) {
+        return tickets.stream().map(StationTicket::getId).toList();
+    }
+}
@@ -0,0 +1,72 @@
+package com.raven.pricing;
+
+import com.raven.model.Modifier;
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PriceListTest {
+    
+    private static final PriceList PRICES = PriceList.of(List.of(product("pizza", 8.0), product("water", 0.0)),
+        "iva-10:10", "iva-10");
+    
+    @Test
+    void testNegativeModifierLowersTheCatalogPrice() {
+        Order order = order(item("pizza", 2, -1.5));
+        
+        PRICES.price(order, true);
+        
+        assertEquals(8.0, order.getItems().get(0).getPrice());
+        assertEquals(1300, order.getItems().get(0).getLineTotalCents());
+        assertEquals(1300, order.getTotals().getTotalCents());
+    }
+    
+    @Test
+    void testModifiersCantMakeAPricedProductFreeOrNegative() {
+        assertThrows(UnpricedItemException.class, () -> PRICES.price(order(item("pizza", 1, -8.0)), true));
+        assertThrows(UnpricedItemException.class, () -> PRICES.price(order(item("pizza", 1, -5.0, -5.0)), true));
+        assertThrows(UnpricedItemException.class, () -> PRICES.price(order(item("water", 1, -0.5)), true));
+    }
+    
+    @Test
+    void testFreeProductStaysFreeWithoutModifiers() {
+        Order order = order(item("water", 3));
+        
+        PRICES.price(order, true);
+        
+        assertEquals(0, order.getTotals().getTotalCents());
+    }
+    
+    private static Product product(String id, double price) {
+        Product product = new Product();
+        product.setId(id);
+        product.setPrice(price);
+        return product;
+    }
+    
+    private static OrderItem item(String productId, int quantity, double... deltas) {
+        OrderItem item = new OrderItem();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        if (deltas.length > 0) {
+            Modifier[] modifiers = new Modifier[deltas.length];
+            for (int i = 0; i < deltas.length; i++) {
+                modifiers[i] = new Modifier(null, "modifier " + i, deltas[i]);
+            }
+            item.setModifiers(List.of(modifiers));
+        }
+        return item;
+    }
+    
+    private static Order order(OrderItem item) {
+        Order order = new Order();
+        order.setItems(List.of(item));
+        return order;
+    }
+}
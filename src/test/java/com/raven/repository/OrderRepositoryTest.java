@@ -0,0 +1,401 @@
+package com.raven.repository;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raven.model.Order;
+import com.raven.model.OrderItem;
+import com.raven.orders.OrderEvent;
+import com.raven.orders.EtaEngine;
+import com.raven.orders.OrderEventBus;
+import com.raven.pricing.PricingEngine;
+import com.raven.util.DynamoDBBuilder;
+import com.raven.util.DynamoDBDeserializer;
+import com.raven.util.DynamoDBKeyManager;
+import com.raven.util.DynamoDBSerializer;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The compare-and-set loop of status updates, the checks of creates and
+ * updates and the reads of split-layout orders, against a one-item table
+ * that honours the write conditions
+ */
+class OrderRepositoryTest {
+    
+    private static final String ID = "3f1c2a9e-8b7d-4c6e-9a5f-2d4b6c8e0a1f";
+    
+    @Test
+    void testStatusUpdateRetriesAfterConflict() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        table.store(order("NEW", 1));
+        // Another instance accepts the order between the read and the first write
+        table.beforeWrite = attempt -> {
+            if (attempt == 1) {
+                table.store(order("ACCEPTED", 2));
+            }
+        };
+        
+        Order updated = repository.updateStatus(ID, "in_progress");
+        
+        assertEquals(2, table.writes);
+        assertEquals("IN_PROGRESS", updated.getStatus());
+        assertEquals(3, updated.getVersion());
+        assertEquals("IN_PROGRESS", table.load().getStatus());
+        assertEquals(3, table.load().getVersion());
+        // One event, whose previous version is the one the write replaced
+        assertEquals(1, table.events.size());
+        assertEquals(2, table.events.get(0).getPrevious().getVersion());
+    }
+    
+    @Test
+    void testStatusUpdateGivesUpAfterMaxAttempts() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        table.store(order("NEW", 1));
+        // Every write loses the race with a note edit that keeps the status
+        table.beforeWrite = attempt -> table.store(order("NEW", attempt + 1));
+        
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+            () -> repository.updateStatus(ID, "READY"));
+        
+        assertTrue(e.getMessage().contains("modified concurrently"));
+        assertEquals(5, table.writes);
+        assertEquals("NEW", table.load().getStatus());
+        assertTrue(table.events.isEmpty());
+    }
+    
+    @Test
+    void testStatusUpdateChecksTheTransitionAgainOnRetry() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        table.store(order("ACCEPTED", 1));
+        // The order is completed meanwhile: it can no longer move back to IN_PROGRESS
+        table.beforeWrite = attempt -> table.store(order("COMPLETED", 2));
+        
+        assertThrows(IllegalStateException.class, () -> repository.updateStatus(ID, "IN_PROGRESS"));
+        
+        assertEquals(1, table.writes);
+        assertEquals("COMPLETED", table.load().getStatus());
+        assertTrue(table.events.isEmpty());
+    }
+    
+    @Test
+    void testStatusUpdateToTheCurrentStatusWritesNothing() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        table.store(order("READY", 4));
+        
+        Order current = repository.updateStatus(ID, "ready");
+        
+        assertEquals(0, table.writes);
+        assertEquals(4, current.getVersion());
+        assertTrue(table.events.isEmpty());
+    }
+    
+    @Test
+    void testOrderStoredBeforeVersioningIsUpdatedOnce() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        table.store(order("NEW", 0));
+        
+        Order updated = repository.updateStatus(ID, "CANCELED");
+        
+        assertEquals(1, table.writes);
+        assertEquals(1, updated.getVersion());
+        assertThrows(IllegalStateException.class, () -> repository.updateStatus(ID, "NEW"));
+    }
+    
+    @Test
+    void testCreateDoesNotOverwriteAnExistingOrder() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        table.store(order("READY", 3));
+        
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+            () -> repository.create(order("NEW", 0)));
+        
+        assertTrue(e.getMessage().contains("already exists"));
+        assertEquals("READY", table.load().getStatus());
+        assertEquals(3, table.load().getVersion());
+        assertTrue(table.events.isEmpty());
+    }
+    
+    @Test
+    void testCreateValidatesAndNormalizesTheStatus() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        
+        assertThrows(IllegalArgumentException.class, () -> repository.create(order("SHIPPED", 0)));
+        assertNull(table.item);
+        
+        Order created = repository.create(order("new", 0));
+        
+        assertEquals("NEW", created.getStatus());
+        assertEquals(1, created.getVersion());
+        assertEquals("NEW", table.load().getStatus());
+        assertEquals(1, table.events.size());
+    }
+    
+    @Test
+    void testUpdateOfAMissingOrderIsNotFoundBeforePricing() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> repository.update(ID, order("NEW", 0)));
+        
+        assertTrue(e.getMessage().contains("not found"));
+        assertEquals(0, table.priced);
+        assertEquals(0, table.writes);
+    }
+    
+    @Test
+    void testUpdateIsPricedOnceAcrossRetries() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        table.store(order("NEW", 1));
+        table.beforeWrite = attempt -> {
+            if (attempt == 1) {
+                table.store(order("NEW", 2));
+            }
+        };
+        
+        Order updated = repository.update(ID, order("ACCEPTED", 0));
+        
+        assertEquals(1, table.priced);
+        assertEquals(2, table.writes);
+        assertEquals(3, updated.getVersion());
+        assertEquals("ACCEPTED", table.load().getStatus());
+    }
+    
+    @Test
+    void testUpdateRejectsAMalformedId() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        
+        assertThrows(IllegalArgumentException.class, () -> repository.update("../orders", order("NEW", 0)));
+        assertEquals(0, table.priced);
+    }
+    
+    @Test
+    void testSplitOrderReadDuringARewriteIsReadAgainConsistently() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        repository.layout = "split";
+        // The second line is still at the previous version when first read
+        table.queries.add(List.of(header(2, 3), line(0, "espresso", 3), line(1, "cappuccino", 2)));
+        // A leftover third line, not yet deleted, is below no item count
+        table.queries.add(List.of(header(2, 3), line(0, "espresso", 3), line(1, "cornetto", 3),
+            line(2, "cappuccino", 2)));
+        
+        Order order = repository.findById(ID).orElseThrow();
+        
+        assertEquals(List.of(false, true), table.consistentReads);
+        assertEquals(2, order.getItems().size());
+        assertEquals("cornetto", order.getItems().get(1).getProductId());
+    }
+    
+    @Test
+    void testSplitOrderMissingLinesIsNeverReturned() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        repository.layout = "split";
+        for (int i = 0; i < 4; i++) {
+            table.queries.add(List.of(header(2, 3), line(0, "espresso", 3)));
+        }
+        
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> repository.findById(ID));
+        
+        assertTrue(e.getMessage().contains("modified concurrently"));
+        assertEquals(List.of(false, true, true, true), table.consistentReads);
+    }
+    
+    @Test
+    void testSplitOrderWithTooManyItemsIsRejectedBeforePricing() throws Exception {
+        Table table = new Table();
+        OrderRepository repository = repository(table);
+        repository.layout = "split";
+        Order order = order("NEW", 0);
+        order.setItems(new ArrayList<>(Collections.nCopies(100, order.getItems().get(0))));
+        
+        assertThrows(OrderTooLargeException.class, () -> repository.create(order));
+        
+        assertEquals(0, table.priced);
+        assertEquals(0, table.writes);
+    }
+    
+    private static Map<String, AttributeValue> header(int itemCount, long version) {
+        Map<String, AttributeValue> header = new HashMap<>();
+        header.put("id", AttributeValue.fromS(ID));
+        header.put("sk", AttributeValue.fromS("HEADER"));
+        header.put("status", AttributeValue.fromS("NEW"));
+        header.put("version", AttributeValue.fromN(Long.toString(version)));
+        header.put("itemCount", AttributeValue.fromN(Integer.toString(itemCount)));
+        header.put("linesVersion", AttributeValue.fromN(Long.toString(version)));
+        return header;
+    }
+    
+    private static Map<String, AttributeValue> line(int index, String productId, long version) {
+        Map<String, AttributeValue> line = new HashMap<>();
+        line.put("id", AttributeValue.fromS(ID));
+        line.put("sk", AttributeValue.fromS(OrderRepository.itemSortKey(index)));
+        line.put("productId", AttributeValue.fromS(productId));
+        line.put("quantity", AttributeValue.fromN("1"));
+        line.put("version", AttributeValue.fromN(Long.toString(version)));
+        return line;
+    }
+    
+    private static Order order(String status, long version) {
+        OrderItem item = new OrderItem();
+        item.setProductId("espresso");
+        item.setQuantity(1);
+        Order order = new Order();
+        order.setId(ID);
+        order.setStatus(status);
+        order.setItems(List.of(item));
+        order.setCreatedAt("2026-01-01T10:00:00Z");
+        order.setVersion(version);
+        return order;
+    }
+    
+    private static OrderRepository repository(Table table) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        table.serializer = inject(new DynamoDBSerializer(), "objectMapper", objectMapper);
+        table.deserializer = inject(new DynamoDBDeserializer(), "objectMapper", objectMapper);
+        
+        OrderRepository repository = new OrderRepository();
+        repository.dynamoDbClient = table;
+        repository.serializer = table.serializer;
+        repository.deserializer = table.deserializer;
+        repository.builder = new DynamoDBBuilder();
+        repository.keyManager = new DynamoDBKeyManager();
+        repository.eventBus = table;
+        repository.pricingEngine = new PricingEngine() {
+            @Override
+            public boolean isEnabled() {
+                return true;
+            }
+            
+            @Override
+            public void price(Order order) {
+                table.priced++;
+            }
+        };
+        repository.etaEngine = new EtaEngine() {
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+        };
+        repository.tableName = "orders";
+        repository.layout = "single";
+        return repository;
+    }
+    
+    private static <T> T inject(T target, String field, Object value) throws Exception {
+        var declared = target.getClass().getDeclaredField(field);
+        declared.setAccessible(true);
+        declared.set(target, value);
+        return target;
+    }
+    
+    /**
+     * A table holding one order, which applies the conditions of puts and
+     * answers queries from a script, and the event bus the repository
+     * publishes to
+     */
+    private static final class Table implements DynamoDbClient, OrderEventBus {
+        
+        private DynamoDBSerializer serializer;
+        private DynamoDBDeserializer deserializer;
+        private Map<String, AttributeValue> item;
+        private Consumer<Integer> beforeWrite = attempt -> { };
+        private int writes;
+        private int priced;
+        private final Deque<List<Map<String, AttributeValue>>> queries = new ArrayDeque<>();
+        private final List<Boolean> consistentReads = new ArrayList<>();
+        private final List<OrderEvent> events = new ArrayList<>();
+        
+        void store(Order order) {
+            item = serializer.serialize(order);
+            if (order.getVersion() == 0) {
+                item.remove("version");
+            }
+        }
+        
+        Order load() {
+            return deserializer.deserialize(item, Order.class);
+        }
+        
+        @Override
+        public GetItemResponse getItem(GetItemRequest request) {
+            return GetItemResponse.builder().item(item == null ? null : new HashMap<>(item)).build();
+        }
+        
+        @Override
+        public PutItemResponse putItem(PutItemRequest request) {
+            beforeWrite.accept(++writes);
+            boolean holds;
+            if ("attribute_not_exists(id)".equals(request.conditionExpression())) {
+                holds = item == null;
+            } else {
+                AttributeValue stored = item.get("version");
+                AttributeValue expected = request.expressionAttributeValues().get(":expectedVersion");
+                holds = expected == null ? stored == null : expected.equals(stored);
+            }
+            if (!holds) {
+                throw ConditionalCheckFailedException.builder().message("The conditional request failed").build();
+            }
+            item = new HashMap<>(request.item());
+            return PutItemResponse.builder().build();
+        }
+        
+        @Override
+        public QueryResponse query(QueryRequest request) {
+            consistentReads.add(Boolean.TRUE.equals(request.consistentRead()));
+            return QueryResponse.builder().items(queries.poll()).build();
+        }
+        
+        @Override
+        public void publish(OrderEvent event) {
+            events.add(event);
+        }
+        
+        @Override
+        public void subscribe(Consumer<List<OrderEvent>> listener) {
+        }
+        
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
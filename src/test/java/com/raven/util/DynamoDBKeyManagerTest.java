@@ -0,0 +1,129 @@
+package com.raven.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DynamoDBKeyManagerTest {
+    
+    @Test
+    void testTimeOrderedIdsIncreaseWithinTheSameMillisecond() {
+        DynamoDBKeyManager keyManager = keyManager("time-ordered");
+        long before = System.currentTimeMillis();
+        
+        // More than the 4096 sequence numbers of one millisecond: the sequence spills over
+        String previous = keyManager.generateId();
+        for (int i = 0; i < 10_000; i++) {
+            String id = keyManager.generateId();
+            assertTrue(id.compareTo(previous) > 0, id + " after " + previous);
+            previous = id;
+        }
+        
+        assertTrue(keyManager.timestampOf(previous) >= before);
+    }
+    
+    @Test
+    void testTimeOrderedIdsAreUniqueAcrossThreads() throws Exception {
+        DynamoDBKeyManager keyManager = keyManager("time-ordered");
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        ids.add(keyManager.generateTimeOrderedId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        
+        assertEquals(20_000, ids.size());
+    }
+    
+    @Test
+    void testTimeOrderedIdHasVersionAndVariantBits() {
+        DynamoDBKeyManager keyManager = keyManager("time-ordered");
+        long before = System.currentTimeMillis();
+        
+        String id = keyManager.generateId();
+        UUID uuid = UUID.fromString(id);
+        
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant()); // RFC 9562, 10xx
+        assertEquals(id, uuid.toString());
+        assertTrue(keyManager.isTimeOrderedId(id));
+        long timestamp = keyManager.timestampOf(id);
+        assertTrue(timestamp >= before && timestamp <= System.currentTimeMillis() + 1, "timestamp " + timestamp);
+    }
+    
+    @Test
+    void testRandomModeGeneratesVersion4Ids() {
+        DynamoDBKeyManager keyManager = keyManager("random");
+        
+        String id = keyManager.generateId();
+        
+        assertEquals(4, UUID.fromString(id).version());
+        assertTrue(keyManager.isValidId(id));
+        assertFalse(keyManager.isTimeOrderedId(id));
+        assertThrows(IllegalArgumentException.class, () -> keyManager.timestampOf(id));
+    }
+    
+    @Test
+    void testMalformedIdsAreRejected() {
+        DynamoDBKeyManager keyManager = keyManager("time-ordered");
+        Set<String> malformed = new HashSet<>();
+        malformed.add("");
+        malformed.add("0190a6b2-7c3d-7e4f-8a1b-2c3d4e5f6a7"); // one digit short
+        malformed.add("0190a6b2-7c3d-7e4f-8a1b-2c3d4e5f6a7b0"); // one digit more
+        malformed.add("0190a6b27c3d-7e4f-8a1b-2c3d4e5f6a7b-"); // dash misplaced
+        malformed.add("0190a6b2-7c3d-7e4f-8a1b-2c3d4e5f6a7g"); // not hex
+        malformed.add("../../orders/0190a6b2-7c3d-7e4f-8a1b");
+        
+        for (String id : malformed) {
+            assertFalse(keyManager.isValidId(id), id);
+            assertFalse(keyManager.isTimeOrderedId(id), id);
+            assertThrows(IllegalArgumentException.class, () -> keyManager.validateId(id, "Order ID"), id);
+        }
+        assertFalse(keyManager.isValidId(null));
+        assertThrows(IllegalArgumentException.class, () -> keyManager.validateId(null, "Order ID"));
+        
+        // Upper case hex is a valid UUID
+        keyManager.validateId("0190A6B2-7C3D-7E4F-8A1B-2C3D4E5F6A7B", "Order ID");
+    }
+    
+    @Test
+    void testEnsureValidIdGeneratesOnlyWhenMissing() {
+        DynamoDBKeyManager keyManager = keyManager("time-ordered");
+        String id = "0190a6b2-7c3d-7e4f-8a1b-2c3d4e5f6a7b";
+        
+        assertEquals(id, keyManager.ensureValidId(id, "Order ID"));
+        assertTrue(keyManager.isTimeOrderedId(keyManager.ensureValidId(" ", "Order ID")));
+        assertThrows(IllegalArgumentException.class, () -> keyManager.ensureValidId("not-a-uuid", "Order ID"));
+        assertEquals(0x0190a6b27c3dL, keyManager.timestampOf(id));
+    }
+    
+    private static DynamoDBKeyManager keyManager(String mode) {
+        DynamoDBKeyManager keyManager = new DynamoDBKeyManager();
+        keyManager.mode = mode;
+        return keyManager;
+    }
+}